@@ -0,0 +1,69 @@
+package edu.isi.bmkeg.uimaBioC.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uimafit.util.JCasUtil;
+
+import bioc.BioCDocument;
+import bioc.type.UimaBioCDocument;
+import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+
+/**
+ * Converting whole documents between the UIMA types and BioC objects, as
+ * done by every reader and writer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BioCConversionBenchmark {
+
+	@Param({ Fixtures.SMALL, Fixtures.MEDIUM, Fixtures.LARGE })
+	public String doc;
+
+	private JCas source;
+	private UimaBioCDocument uiD;
+	private BioCDocument bioC;
+	private JCas target;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		Fixtures.Document d = Fixtures.get(doc);
+		source = d.getJCas();
+		uiD = JCasUtil.selectSingle(source, UimaBioCDocument.class);
+		bioC = d.getBioC();
+		target = Fixtures.newJCas();
+	}
+
+	@Setup(Level.Invocation)
+	public void resetTarget() {
+		target.reset();
+	}
+
+	@Benchmark
+	public BioCDocument convertUimaBioCDocument() {
+		return UimaBioCUtils.convertUimaBioCDocument(uiD, source);
+	}
+
+	@Benchmark
+	public JCas addBioCDocumentToUimaCas() {
+		UimaBioCUtils.addBioCDocumentToUimaCas(bioC, target);
+		return target;
+	}
+
+}
@@ -0,0 +1,186 @@
+package edu.isi.bmkeg.uimaBioC.benchmarks;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.cleartk.token.tokenizer.TokenAnnotator;
+import org.cleartk.token.type.Sentence;
+import org.uimafit.factory.AggregateBuilder;
+import org.uimafit.factory.AnalysisEngineFactory;
+import org.uimafit.factory.CollectionReaderFactory;
+import org.uimafit.factory.JCasFactory;
+import org.uimafit.factory.TypeSystemDescriptionFactory;
+import org.uimafit.util.JCasUtil;
+
+import bioc.BioCCollection;
+import bioc.BioCDocument;
+import bioc.type.UimaBioCDocument;
+import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.refactoredCleartk.SentenceAnnotator;
+import edu.isi.bmkeg.uimaBioC.uima.readers.NxmlFilesCollectionReader;
+import edu.isi.bmkeg.uimaBioC.utils.BioCJson;
+import edu.isi.bmkeg.uimaBioC.utils.BioCXml;
+
+/**
+ * The documents the benchmarks run on, built from the .nxml files in
+ * src/test/resources/01_plOpenAccess_data (or the directory named by the
+ * 'uimaBioC.fixtures' system property, relative to the directory the
+ * benchmarks are run from) the way the pipelines see them: converted by
+ * NxmlFilesCollectionReader, then split into sentences and tokens as in
+ * UIMABIOC_02_preprocessToBioC. Each document is built once per JVM.
+ */
+public class Fixtures {
+
+	public static final String DIR_PROPERTY = "uimaBioC.fixtures";
+	public static final String DEFAULT_DIR = "src/test/resources/01_plOpenAccess_data/coprecipitation";
+
+	/*
+	 * The smallest full-text article in the test data, the median one and
+	 * the largest one (43k, 86k and 192k of nxml).
+	 */
+	public static final String SMALL = "16520382";
+	public static final String MEDIUM = "19783983";
+	public static final String LARGE = "10871282";
+
+	public static class Document {
+
+		private final String id;
+		private final JCas jCas;
+		private final BioCDocument bioC;
+		private final List<String> sentences;
+		private final Map<String, File> files = new HashMap<String, File>();
+
+		private Document(String id, JCas jCas, BioCDocument bioC, List<String> sentences) {
+			this.id = id;
+			this.jCas = jCas;
+			this.bioC = bioC;
+			this.sentences = sentences;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * The document's CAS, with the reader's annotations, sentences and
+		 * tokens. Benchmarks must not add to it.
+		 */
+		public JCas getJCas() {
+			return jCas;
+		}
+
+		public BioCDocument getBioC() {
+			return bioC;
+		}
+
+		public String getText() {
+			return jCas.getDocumentText();
+		}
+
+		public List<String> getSentences() {
+			return sentences;
+		}
+
+		/**
+		 * The document written out as a BioC file in the given format
+		 * (UimaBioCUtils.JSON or XML), deleted when the JVM exits.
+		 */
+		public synchronized File getFile(String format) throws Exception {
+			File f = files.get(format);
+			if (f == null) {
+				f = File.createTempFile("uimaBioC-" + id + "-", "." + format);
+				f.deleteOnExit();
+				if (format.equals(UimaBioCUtils.JSON))
+					BioCJson.write(bioC, f);
+				else
+					BioCXml.write(new BioCCollection(), bioC, f);
+				files.put(format, f);
+			}
+			return f;
+		}
+
+	}
+
+	private static final Map<String, Document> documents = new HashMap<String, Document>();
+
+	private static TypeSystemDescription typeSystem;
+	private static AnalysisEngine preprocessor;
+
+	public static synchronized Document get(String id) throws Exception {
+
+		Document d = documents.get(id);
+		if (d != null)
+			return d;
+
+		File dir = new File(System.getProperty(DIR_PROPERTY, DEFAULT_DIR));
+		File nxml = new File(dir, id + ".nxml");
+		if (!nxml.exists())
+			throw new FileNotFoundException(nxml.getAbsolutePath() + " (run the benchmarks from the project "
+					+ "directory or set -D" + DIR_PROPERTY + ")");
+
+		// The reader walks a directory, so give it one with just this file.
+		File tmp = Files.createTempDirectory("uimaBioC-jmh").toFile();
+		JCas jCas = newJCas();
+		try {
+			FileUtils.copyFileToDirectory(nxml, tmp);
+			CollectionReader cr = CollectionReaderFactory.createCollectionReader(
+					NxmlFilesCollectionReader.class, typeSystem(),
+					NxmlFilesCollectionReader.PARAM_INPUT_DIRECTORY, tmp.getPath());
+			cr.getNext(jCas.getCas());
+			cr.close();
+		} finally {
+			FileUtils.deleteDirectory(tmp);
+		}
+
+		UimaBioCDocument uiD = JCasUtil.selectSingle(jCas, UimaBioCDocument.class);
+		BioCDocument bioC = UimaBioCUtils.convertUimaBioCDocument(uiD, jCas);
+
+		preprocessor().process(jCas);
+		List<String> sentences = new ArrayList<String>();
+		for (Sentence s : JCasUtil.select(jCas, Sentence.class))
+			sentences.add(s.getCoveredText());
+
+		d = new Document(id, jCas, bioC, Collections.unmodifiableList(sentences));
+		documents.put(id, d);
+		return d;
+
+	}
+
+	/**
+	 * An empty CAS with the BioC and ClearTK token types.
+	 */
+	public static synchronized JCas newJCas() throws Exception {
+		return JCasFactory.createJCas(typeSystem());
+	}
+
+	private static TypeSystemDescription typeSystem() {
+		if (typeSystem == null)
+			typeSystem = TypeSystemDescriptionFactory.createTypeSystemDescription("bioc.TypeSystem",
+					"org.cleartk.token.TypeSystem");
+		return typeSystem;
+	}
+
+	private static AnalysisEngine preprocessor() throws Exception {
+		if (preprocessor == null) {
+			AggregateBuilder builder = new AggregateBuilder();
+			builder.add(SentenceAnnotator.getDescription());
+			builder.add(AnalysisEngineFactory.createPrimitiveDescription(TokenAnnotator.class,
+					TokenAnnotator.PARAM_TOKENIZER_NAME,
+					"edu.isi.bmkeg.uimaBioC.refactoredCleartk.PennTreebankTokenizer"));
+			preprocessor = builder.createAggregate();
+		}
+		return preprocessor;
+	}
+
+}
@@ -0,0 +1,76 @@
+package edu.isi.bmkeg.uimaBioC.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.uimafit.util.JCasUtil;
+
+import bioc.type.UimaBioCAnnotation;
+import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+
+/**
+ * UimaBioCUtils.convertInfons in both directions, over the infons of every
+ * annotation in a document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InfonsBenchmark {
+
+	@Param({ Fixtures.SMALL, Fixtures.MEDIUM, Fixtures.LARGE })
+	public String doc;
+
+	private List<FSArray> fsArrays = new ArrayList<FSArray>();
+	private List<Map<String, String>> maps = new ArrayList<Map<String, String>>();
+	private JCas target;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		JCas jCas = Fixtures.get(doc).getJCas();
+		for (UimaBioCAnnotation a : JCasUtil.select(jCas, UimaBioCAnnotation.class)) {
+			fsArrays.add(a.getInfons());
+			maps.add(UimaBioCUtils.convertInfons(a.getInfons()));
+		}
+		target = Fixtures.newJCas();
+	}
+
+	// convertInfons(Map, JCas) adds to the CAS heap, so start each call on
+	// an empty CAS.
+	@Setup(Level.Invocation)
+	public void resetTarget() {
+		target.reset();
+	}
+
+	@Benchmark
+	public void toMap(Blackhole bh) {
+		for (FSArray a : fsArrays)
+			bh.consume(UimaBioCUtils.convertInfons(a));
+	}
+
+	@Benchmark
+	public void toFSArray(Blackhole bh) {
+		for (Map<String, String> m : maps)
+			bh.consume(UimaBioCUtils.convertInfons(m, target));
+	}
+
+}
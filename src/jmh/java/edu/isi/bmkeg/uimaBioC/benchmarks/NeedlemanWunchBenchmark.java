@@ -0,0 +1,69 @@
+package edu.isi.bmkeg.uimaBioC.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.isi.bmkeg.uimaBioC.utils.NeedlemanWunch;
+
+/**
+ * NeedlemanWunch.compare on pairs of neighbouring sentences from the
+ * body of a document. The alignment is quadratic in the length of the
+ * strings, so sentences are taken in order until 'chars' characters have
+ * been compared.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NeedlemanWunchBenchmark {
+
+	@Param({ Fixtures.LARGE })
+	public String doc;
+
+	@Param({ "20000" })
+	public int chars;
+
+	private NeedlemanWunch metric;
+	private String[] first;
+	private String[] second;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		metric = new NeedlemanWunch();
+		List<String> sentences = Fixtures.get(doc).getSentences();
+		// skip the title and front matter
+		int start = Math.min(sentences.size() / 4, 20);
+		int n = 0, total = 0;
+		for (int i = start; i + 1 < sentences.size() && total < chars; i++, n++)
+			total += sentences.get(i).length();
+		first = new String[n];
+		second = new String[n];
+		for (int i = 0; i < n; i++) {
+			first[i] = sentences.get(start + i);
+			second[i] = sentences.get(start + i + 1);
+		}
+	}
+
+	@Benchmark
+	public void compare(Blackhole bh) {
+		for (int i = 0; i < first.length; i++)
+			bh.consume(metric.compare(first[i], second[i]));
+	}
+
+}
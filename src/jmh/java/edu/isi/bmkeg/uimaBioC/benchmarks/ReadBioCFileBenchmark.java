@@ -0,0 +1,58 @@
+package edu.isi.bmkeg.uimaBioC.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bioc.BioCDocument;
+import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+
+/**
+ * UimaBioCUtils.readBioCFile on the JSON and XML versions of a document.
+ * The files are small enough to stay in the page cache, so this measures
+ * parsing rather than disk reads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBioCFileBenchmark {
+
+	@Param({ Fixtures.SMALL, Fixtures.MEDIUM, Fixtures.LARGE })
+	public String doc;
+
+	private File json;
+	private File xml;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		Fixtures.Document d = Fixtures.get(doc);
+		json = d.getFile(UimaBioCUtils.JSON);
+		xml = d.getFile(UimaBioCUtils.XML);
+	}
+
+	@Benchmark
+	public BioCDocument readJson() throws Exception {
+		return UimaBioCUtils.readBioCFile(json);
+	}
+
+	@Benchmark
+	public BioCDocument readXml() throws Exception {
+		return UimaBioCUtils.readBioCFile(xml);
+	}
+
+}
@@ -0,0 +1,73 @@
+package edu.isi.bmkeg.uimaBioC.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.factory.UimaContextFactory;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.isi.bmkeg.uimaBioC.refactoredCleartk.SentenceAnnotator;
+
+/**
+ * SentenceAnnotator.processText on the whole text of a document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SentenceAnnotatorBenchmark {
+
+	/**
+	 * Opens up processText(), which is protected.
+	 */
+	static class Annotator extends SentenceAnnotator {
+		void run(JCas jCas, String text) throws AnalysisEngineProcessException {
+			processText(jCas, text, 0);
+		}
+	}
+
+	@Param({ Fixtures.SMALL, Fixtures.MEDIUM, Fixtures.LARGE })
+	public String doc;
+
+	private Annotator annotator;
+	private String text;
+	private JCas jCas;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		annotator = new Annotator();
+		annotator.initialize(UimaContextFactory.createUimaContext(
+				SentenceAnnotator.PARAM_SENTENCE_MODEL_PATH, "/models/en-sent.bin"));
+		text = Fixtures.get(doc).getText();
+		jCas = Fixtures.newJCas();
+	}
+
+	// processText adds the sentences to the CAS, so start each call on an
+	// empty one.
+	@Setup(Level.Invocation)
+	public void resetCas() {
+		jCas.reset();
+		jCas.setDocumentText(text);
+	}
+
+	@Benchmark
+	public JCas processText() throws Exception {
+		annotator.run(jCas, text);
+		return jCas;
+	}
+
+}
@@ -0,0 +1,70 @@
+package edu.isi.bmkeg.uimaBioC.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.uimafit.util.JCasUtil;
+
+import bioc.type.UimaBioCAnnotation;
+import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.SubFigureNumberExtractor;
+
+/**
+ * SubFigureNumberExtractor.cleanUpFigureReference on the figure codes of a
+ * document, read from its figure references with readExptCodes() as in
+ * extractExptsFromClause().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubFigureNumberBenchmark {
+
+	@Param({ Fixtures.SMALL, Fixtures.MEDIUM, Fixtures.LARGE })
+	public String doc;
+
+	private SubFigureNumberExtractor extractor;
+	private List<String> codes = new ArrayList<String>();
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		extractor = new SubFigureNumberExtractor();
+		JCas jCas = Fixtures.get(doc).getJCas();
+		for (UimaBioCAnnotation a : JCasUtil.select(jCas, UimaBioCAnnotation.class)) {
+			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
+			String refType = infons.get("refType");
+			if (refType != null && (refType.equals("fig") || refType.equals("supplementary-material"))) {
+				String c = extractor.readExptCodes(jCas, a);
+				if (c.length() > 0 && !c.equals("-"))
+					codes.add(c);
+			}
+		}
+		if (codes.isEmpty())
+			throw new IllegalStateException("No figure references in " + doc);
+	}
+
+	@Benchmark
+	public void cleanUpFigureReference(Blackhole bh) {
+		for (String c : codes)
+			bh.consume(extractor.cleanUpFigureReference(c));
+	}
+
+}
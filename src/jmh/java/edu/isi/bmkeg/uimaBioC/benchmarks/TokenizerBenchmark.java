@@ -0,0 +1,52 @@
+package edu.isi.bmkeg.uimaBioC.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.isi.bmkeg.uimaBioC.refactoredCleartk.PennTreebankTokenizer;
+
+/**
+ * PennTreebankTokenizer.getTokenTexts over every sentence of a document,
+ * which is how the TokenAnnotator calls it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+
+	@Param({ Fixtures.SMALL, Fixtures.MEDIUM, Fixtures.LARGE })
+	public String doc;
+
+	private PennTreebankTokenizer tokenizer;
+	private List<String> sentences;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		tokenizer = new PennTreebankTokenizer();
+		sentences = Fixtures.get(doc).getSentences();
+	}
+
+	@Benchmark
+	public void getTokenTexts(Blackhole bh) {
+		for (String s : sentences)
+			bh.consume(tokenizer.getTokenTexts(s));
+	}
+
+}
@@ -0,0 +1,88 @@
+package edu.isi.bmkeg.uimaBioC.uima.ae.nlp;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.jcas.JCas;
+import org.cleartk.token.type.Sentence;
+import org.cleartk.token.type.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.uimafit.util.JCasUtil;
+
+import edu.isi.bmkeg.uimaBioC.benchmarks.Fixtures;
+import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
+import edu.stanford.nlp.trees.PennTreeReader;
+import edu.stanford.nlp.trees.Tree;
+
+/**
+ * SeparateClauses' extractSatClause (with the treeToString() that process()
+ * applies to its result) on Stanford parses of sentences from the body of
+ * a document. The parses are made once at setup with the englishPCFG model
+ * that StanfordParse uses, and read back with a PennTreeReader as
+ * process() reads the 'stanford-parse' annotations.
+ *
+ * In this package because extractSatClause is package-private.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeparateClausesBenchmark {
+
+	@Param({ Fixtures.LARGE })
+	public String doc;
+
+	@Param({ "25" })
+	public int sentences;
+
+	private SeparateClauses separateClauses;
+	private List<Tree> trees = new ArrayList<Tree>();
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+
+		separateClauses = new SeparateClauses();
+		LexicalizedParser lp = LexicalizedParser.loadModel(
+				"edu/stanford/nlp/models/lexparser/englishPCFG.ser.gz", "-outputFormat", "penn");
+
+		JCas jCas = Fixtures.get(doc).getJCas();
+		List<Sentence> all = new ArrayList<Sentence>(JCasUtil.select(jCas, Sentence.class));
+		// skip the title and front matter, and keep the parses quick
+		for (int i = all.size() / 4; i < all.size() && trees.size() < sentences; i++) {
+			List<Token> tokens = JCasUtil.selectCovered(Token.class, all.get(i));
+			if (tokens.size() < 10 || tokens.size() > 40)
+				continue;
+			List<String> words = new ArrayList<String>();
+			for (Token t : tokens)
+				words.add(t.getCoveredText());
+			Tree parse = lp.parseStrings(words);
+			PennTreeReader ptr = new PennTreeReader(new StringReader(parse.toString()));
+			trees.add(ptr.readTree());
+			ptr.close();
+		}
+
+	}
+
+	@Benchmark
+	public void extractSatClause(Blackhole bh) {
+		for (Tree t : trees)
+			bh.consume(separateClauses.treeToString(separateClauses.extractSatClause(t)));
+	}
+
+}
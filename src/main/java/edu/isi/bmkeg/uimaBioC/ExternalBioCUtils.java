@@ -1,14 +1,9 @@
 package edu.isi.bmkeg.uimaBioC;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
@@ -29,9 +24,14 @@ import bioc.type.UimaBioCNode;
 import bioc.type.UimaBioCPassage;
 import bioc.type.UimaBioCRelation;
 import bioc.type.UimaBioCSentence;
+import edu.isi.bmkeg.uimaBioC.utils.Nxml2TxtProcessPool;
 
 public class ExternalBioCUtils {
 
+	/**
+	 * Runs the python nxml2txt script on one file, killing it if it takes 
+	 * longer than ten minutes. Nxml2TxtProcessPool runs many files at once.
+	 */
 	public static void runNxml2TextPython(File f, 
 			String suffix, File inDir, File outDir,
 			File execPath) throws Exception {
@@ -42,50 +42,14 @@ public class ExternalBioCUtils {
 		String s = "." + suffix + "$";
 		File txtFile = new File(newPath.replaceAll(s, ".txt"));
 		File annFile = new File(newPath.replaceAll(s, ".so"));
-		File logFile = new File(newPath.replaceAll(s, "_nxml2txt.log"));
 		txtFile.getParentFile().mkdirs();
 
-		String command = "python " + execPath.getPath() + " " + f.getPath() 
-				+ " " + txtFile.getPath()
-				+ " " + annFile.getPath() + "";
-
-		if( txtFile.getPath().contains(" ") )
-			command = "python " + execPath.getPath() + " \"" + f.getPath() 
-			+ "\" \"" + txtFile.getPath()
-			+ "\" \"" + annFile.getPath() + "\"";
-
-		ProcessBuilder pb = new ProcessBuilder(command.split(" "));
-		Map<String,String> env = pb.environment();
-		env.put("PYTHONPATH", "/usr/local/lib/python2.7/site-packages");
-		Process p = pb.start();
-		
-		if (p == null) {
-			throw new Exception("Can't execute " + command);
-		}
-
-		InputStream in = p.getErrorStream();
-		BufferedInputStream buf = new BufferedInputStream(in);
-		InputStreamReader inread = new InputStreamReader(buf);
-		BufferedReader bufferedreader = new BufferedReader(inread);
-		String line, out = "";
-
-		while ((line = bufferedreader.readLine()) != null) {
-			out += line;
-		}
-		
-		try {
-			if (p.waitFor() != 0) {
-				System.err.println("CMD: " + command);
-				System.err.println("RETURNED ERROR: " + out);
-			}
-		} catch (Exception e) {
-			System.err.println(out);
-		} finally {
-			// Close the InputStream
-			bufferedreader.close();
-			inread.close();
-			buf.close();
-			in.close();
+		Nxml2TxtProcessPool.Attempt a = Nxml2TxtProcessPool.run(
+				execPath, f, txtFile, annFile, 600);
+		if( !a.succeeded() ) {
+			System.err.println("CMD: python " + execPath.getPath() + " " + f.getPath());
+			System.err.println("RETURNED ERROR: " 
+					+ (a.isTimedOut() ? "timed out " : "") + a.getOutput());
 		}
 
 	}
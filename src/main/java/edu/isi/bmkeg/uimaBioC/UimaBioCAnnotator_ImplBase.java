@@ -0,0 +1,24 @@
+package edu.isi.bmkeg.uimaBioC;
+
+import org.uimafit.component.JCasAnnotator_ImplBase;
+import org.uimafit.descriptor.FsIndex;
+import org.uimafit.descriptor.FsIndexCollection;
+import org.uimafit.descriptor.FsIndexKey;
+
+import bioc.type.UimaBioCAnnotation;
+
+/**
+ * Base class for annotators that look up annotations with 
+ * UimaBioCInfons.select(...). It declares UimaBioCInfons.TYPE_VALUE_INDEX,
+ * the sorted index over the infonType / infonValue features of the type 
+ * system, so that every subclass gets the same definition. uimaFIT picks 
+ * the declaration up from the superclass.
+ */
+@FsIndexCollection(fsIndexes = { @FsIndex(label = UimaBioCInfons.TYPE_VALUE_INDEX, 
+		type = UimaBioCAnnotation.class, kind = FsIndex.KIND_SORTED, keys = {
+				@FsIndexKey(featureName = "infonType"), 
+				@FsIndexKey(featureName = "infonValue"),
+				@FsIndexKey(featureName = "begin") }) })
+public abstract class UimaBioCAnnotator_ImplBase extends JCasAnnotator_ImplBase {
+
+}
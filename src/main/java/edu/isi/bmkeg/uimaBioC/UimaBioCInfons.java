@@ -0,0 +1,284 @@
+package edu.isi.bmkeg.uimaBioC;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.FSIndex;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.impl.LowLevelCAS;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.cas.text.AnnotationIndex;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.uimafit.util.JCasUtil;
+
+import bioc.type.MapEntry;
+import bioc.type.UimaBioCAnnotation;
+
+/**
+ * Read-only access to infons stored on UIMA BioC types.
+ *
+ * Infons are held in the CAS as an FSArray of MapEntry objects. Calling
+ * UimaBioCUtils.convertInfons(FSArray) builds a new HashMap every time,
+ * which is wasteful when all we want is to check the 'type' or 'value'
+ * of each annotation inside a loop. Infon arrays are short (usually two
+ * to five entries) so these methods just scan the array in place and
+ * return the string stored in the CAS without allocating anything.
+ *
+ * Use UimaBioCUtils.convertInfons(FSArray) only when the whole map is
+ * needed (e.g., to edit the infons or to write them out as BioC).
+ *
+ * UimaBioCAnnotation also carries copies of the 'type' and 'value'
+ * infons as the infonType / infonValue features. These are what the
+ * TYPE_VALUE_INDEX sorts on, so always set annotation infons through
+ * setInfons(...) below to keep the two in step.
+ */
+public class UimaBioCInfons {
+
+	public static final String TYPE = "type";
+	public static final String VALUE = "value";
+
+	/**
+	 * Label of the sorted index over UimaBioCAnnotation keyed on
+	 * (infonType, infonValue, begin). It is declared once, on
+	 * UimaBioCAnnotator_ImplBase, which components that use select(...)
+	 * extend.
+	 */
+	public static final String TYPE_VALUE_INDEX = "bioc.TypeValueIndex";
+
+	public static String getInfon(FSArray fsArray, String key) {
+		if (fsArray == null)
+			return null;
+		for (int i = 0; i < fsArray.size(); i++) {
+			MapEntry me = (MapEntry) fsArray.get(i);
+			if (me != null && key.equals(me.getKey()))
+				return me.getValue();
+		}
+		return null;
+	}
+
+	public static boolean hasInfon(FSArray fsArray, String key) {
+		if (fsArray == null)
+			return false;
+		for (int i = 0; i < fsArray.size(); i++) {
+			MapEntry me = (MapEntry) fsArray.get(i);
+			if (me != null && key.equals(me.getKey()))
+				return true;
+		}
+		return false;
+	}
+
+	public static String getType(FSArray fsArray) {
+		return getInfon(fsArray, TYPE);
+	}
+
+	public static String getValue(FSArray fsArray) {
+		return getInfon(fsArray, VALUE);
+	}
+
+	/**
+	 * True if the infons contain the key with exactly this value.
+	 */
+	public static boolean isInfon(FSArray fsArray, String key, String value) {
+		return value.equals(getInfon(fsArray, key));
+	}
+
+	/**
+	 * True if the infons have both this 'type' and this 'value'.
+	 */
+	public static boolean is(FSArray fsArray, String type, String value) {
+		return isInfon(fsArray, TYPE, type) && isInfon(fsArray, VALUE, value);
+	}
+
+	//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// Shortcuts for annotations, by far the most common case.
+	//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	public static String getInfon(UimaBioCAnnotation a, String key) {
+		return getInfon(a.getInfons(), key);
+	}
+
+	public static boolean hasInfon(UimaBioCAnnotation a, String key) {
+		return hasInfon(a.getInfons(), key);
+	}
+
+	public static String getType(UimaBioCAnnotation a) {
+		return getInfon(a.getInfons(), TYPE);
+	}
+
+	public static String getValue(UimaBioCAnnotation a) {
+		return getInfon(a.getInfons(), VALUE);
+	}
+
+	public static boolean isInfon(UimaBioCAnnotation a, String key, String value) {
+		return isInfon(a.getInfons(), key, value);
+	}
+
+	public static boolean isType(UimaBioCAnnotation a, String type) {
+		return isInfon(a.getInfons(), TYPE, type);
+	}
+
+	public static boolean isValue(UimaBioCAnnotation a, String value) {
+		return isInfon(a.getInfons(), VALUE, value);
+	}
+
+	public static boolean is(UimaBioCAnnotation a, String type, String value) {
+		return is(a.getInfons(), type, value);
+	}
+
+	//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// Writing infons
+	//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	/**
+	 * Sets the infons of an annotation and copies 'type' and 'value' onto
+	 * the infonType / infonValue features. Those features are index keys, 
+	 * so an annotation that is already in the indexes is taken out while 
+	 * they change and put back afterwards.
+	 */
+	public static void setInfons(UimaBioCAnnotation a, Map<String, String> infons, JCas jCas) {
+		a.setInfons(UimaBioCUtils.convertInfons(infons, jCas));
+		String type = infons.get(TYPE);
+		String value = infons.get(VALUE);
+		if (equal(type, a.getInfonType()) && equal(value, a.getInfonValue()))
+			return;
+		boolean indexed = isIndexed(a);
+		if (indexed)
+			a.removeFromIndexes();
+		a.setInfonType(type);
+		a.setInfonValue(value);
+		if (indexed)
+			a.addToIndexes();
+	}
+
+	/**
+	 * True if this very annotation (not just one with the same span) is in
+	 * the annotation index of its view.
+	 */
+	private static boolean isIndexed(Annotation a) {
+		LowLevelCAS cas = a.getCAS().getLowLevelCAS();
+		AnnotationIndex<AnnotationFS> index = a.getCAS().getAnnotationIndex();
+		FSIterator<AnnotationFS> it = index.iterator();
+		it.moveTo(a);
+		while (it.isValid() && index.compare(it.get(), a) == 0) {
+			if (cas.ll_getFSRef(it.get()) == a.getAddress())
+				return true;
+			it.moveToNext();
+		}
+		return false;
+	}
+
+	private static boolean equal(String s1, String s2) {
+		return s1 == null ? s2 == null : s1.equals(s2);
+	}
+
+	//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// Indexed selection
+	//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	/**
+	 * All annotations with this type and value that lie inside the span,
+	 * in order of their begin offsets. Makes a new Selector for the call; 
+	 * inside a loop, make one Selector per document and reuse it.
+	 */
+	public static List<UimaBioCAnnotation> select(JCas jCas, String type, String value, 
+			int begin, int end) {
+		return new Selector(jCas).select(type, value, begin, end);
+	}
+
+	public static List<UimaBioCAnnotation> select(JCas jCas, String type, String value, 
+			Annotation covering) {
+		return select(jCas, type, value, covering.getBegin(), covering.getEnd());
+	}
+
+	/**
+	 * Looks up annotations by type and value in one CAS, using 
+	 * TYPE_VALUE_INDEX to jump straight to the first match instead of 
+	 * filtering every annotation under the span. The probe used to 
+	 * position the index iterator is made once, so make a Selector at 
+	 * the start of process(...) and drop it at the end: it must not 
+	 * outlive the document (the probe goes when the CAS is reset).
+	 * 
+	 * Annotations whose infonType / infonValue features were never set 
+	 * (infons written without setInfons(...), or read from an old XMI 
+	 * file) sort first in the index and are matched on their infons 
+	 * instead. If the running component does not declare the index at 
+	 * all (see UimaBioCAnnotator_ImplBase), every annotation under the 
+	 * span is checked.
+	 */
+	public static class Selector {
+
+		private FSIndex<FeatureStructure> index;
+		private UimaBioCAnnotation probe;
+		private JCas jCas;
+
+		public Selector(JCas jCas) {
+			this.jCas = jCas;
+			this.index = jCas.getFSIndexRepository().getIndex(TYPE_VALUE_INDEX);
+			if (this.index != null)
+				this.probe = new UimaBioCAnnotation(jCas);
+		}
+
+		public List<UimaBioCAnnotation> select(String type, String value, Annotation covering) {
+			return select(type, value, covering.getBegin(), covering.getEnd());
+		}
+
+		public List<UimaBioCAnnotation> select(String type, String value, int begin, int end) {
+
+			List<UimaBioCAnnotation> list = new ArrayList<UimaBioCAnnotation>();
+
+			if (index == null) {
+				for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, 
+						UimaBioCAnnotation.class, begin, end)) {
+					if (is(a, type, value))
+						list.add(a);
+				}
+				return list;
+			}
+
+			// annotations without keys come first
+			boolean unkeyed = false;
+			FSIterator<FeatureStructure> it = index.iterator();
+			while (it.isValid()) {
+				UimaBioCAnnotation a = (UimaBioCAnnotation) it.get();
+				if (a.getInfonType() != null || a.getInfonValue() != null)
+					break;
+				if (a.getBegin() >= begin && a.getEnd() <= end && is(a, type, value)) {
+					list.add(a);
+					unkeyed = true;
+				}
+				it.moveToNext();
+			}
+
+			probe.setInfonType(type);
+			probe.setInfonValue(value);
+			probe.setBegin(begin);
+			it.moveTo(probe);
+			while (it.isValid()) {
+				UimaBioCAnnotation a = (UimaBioCAnnotation) it.get();
+				if (!equal(type, a.getInfonType()) 
+						|| !equal(value, a.getInfonValue())
+						|| a.getBegin() >= end)
+					break;
+				if (a.getBegin() >= begin && a.getEnd() <= end)
+					list.add(a);
+				it.moveToNext();
+			}
+
+			if (unkeyed) {
+				Collections.sort(list, new Comparator<UimaBioCAnnotation>() {
+					public int compare(UimaBioCAnnotation a1, UimaBioCAnnotation a2) {
+						return a1.getBegin() - a2.getBegin();
+					}
+				});
+			}
+
+			return list;
+
+		}
+
+	}
+
+}
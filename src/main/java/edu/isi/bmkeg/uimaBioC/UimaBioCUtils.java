@@ -1,7 +1,12 @@
 package edu.isi.bmkeg.uimaBioC;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -26,7 +31,8 @@ import org.cleartk.token.type.Sentence;
 import org.cleartk.token.type.Token;
 import org.uimafit.util.JCasUtil;
 
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import bioc.BioCAnnotation;
 import bioc.BioCDocument;
@@ -35,8 +41,6 @@ import bioc.BioCNode;
 import bioc.BioCPassage;
 import bioc.BioCRelation;
 import bioc.BioCSentence;
-import bioc.io.BioCDocumentReader;
-import bioc.io.BioCFactory;
 import bioc.type.MapEntry;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
@@ -45,6 +49,10 @@ import bioc.type.UimaBioCNode;
 import bioc.type.UimaBioCPassage;
 import bioc.type.UimaBioCRelation;
 import bioc.type.UimaBioCSentence;
+import edu.isi.bmkeg.uimaBioC.utils.BioCJson;
+import edu.isi.bmkeg.uimaBioC.utils.BioCXml;
+import edu.isi.bmkeg.uimaBioC.utils.SectionTree;
+import edu.isi.bmkeg.uimaBioC.utils.TokenTable;
 
 public class UimaBioCUtils {
 
@@ -87,9 +95,8 @@ public class UimaBioCUtils {
 
 		for (UimaBioCAnnotation a1 : JCasUtil.selectCovering(jCas, 
 				UimaBioCAnnotation.class, a.getBegin(), a.getEnd())) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a1.getInfons());
-			if ( infons.get("value").equals("fig") || 
-					infons.get("value").equals("table-wrap") ) {
+			if ( UimaBioCInfons.isValue(a1, "fig") || 
+					UimaBioCInfons.isValue(a1, "table-wrap") ) {
 				return true;
 			}
 		}
@@ -376,7 +383,7 @@ public class UimaBioCUtils {
 
 		UimaBioCAnnotation uiA = new UimaBioCAnnotation(jcas);
 
-		uiA.setInfons(convertInfons(a.getInfons(), jcas));
+		UimaBioCInfons.setInfons(uiA, a.getInfons(), jcas);
 		uiA.setId(a.getID());
 		uiA.setText(a.getText());
 
@@ -450,20 +457,14 @@ public class UimaBioCUtils {
 	}
 
 	public static String readInfons(FSArray fsArray, String key) {
-
-		Map<String, String> infons = UimaBioCUtils.convertInfons(fsArray);
-		if (infons.containsKey(key))
-			return infons.get(key);
-		else
-			return null;
+		return UimaBioCInfons.getInfon(fsArray, key);
 	}
 
 	public static UimaBioCPassage readDocument(JCas jCas) {
 
 		UimaBioCDocument uiD = JCasUtil.selectSingle(jCas, UimaBioCDocument.class);
 		for (UimaBioCPassage p : JCasUtil.selectCovered(UimaBioCPassage.class, uiD)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(p.getInfons());
-			if (infons.get("type").equals("document")) {
+			if (UimaBioCInfons.isInfon(p.getInfons(), UimaBioCInfons.TYPE, "document")) {
 				return p;
 			}
 		}
@@ -476,8 +477,7 @@ public class UimaBioCUtils {
 
 		UimaBioCDocument uiD = JCasUtil.selectSingle(jCas, UimaBioCDocument.class);
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(UimaBioCAnnotation.class, uiD)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.get("type").equals("formatting") && infons.get("value").equals("article-title")) {
+			if (UimaBioCInfons.is(a, "formatting", "article-title")) {
 				return a;
 			}
 		}
@@ -490,8 +490,7 @@ public class UimaBioCUtils {
 
 		UimaBioCDocument uiD = JCasUtil.selectSingle(jCas, UimaBioCDocument.class);
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(UimaBioCAnnotation.class, uiD)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.get("type").equals("formatting") && infons.get("value").equals("abstract")) {
+			if (UimaBioCInfons.is(a, "formatting", "abstract")) {
 				return a;
 			}
 		}
@@ -505,8 +504,7 @@ public class UimaBioCUtils {
 		UimaBioCDocument uiD = JCasUtil.selectSingle(jCas, UimaBioCDocument.class);
 		List<UimaBioCAnnotation> floats = new ArrayList<UimaBioCAnnotation>();
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, uiD)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.containsKey("position") && infons.get("position").equals("float")) {
+			if (UimaBioCInfons.isInfon(a, "position", "float")) {
 				floats.add(a);
 			}
 
@@ -521,12 +519,12 @@ public class UimaBioCUtils {
 		UimaBioCDocument uiD = JCasUtil.selectSingle(jCas, UimaBioCDocument.class);
 		List<UimaBioCAnnotation> parags = new ArrayList<UimaBioCAnnotation>();
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, uiD)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.containsKey("value")
-					&& (infons.get("value").equals("p") || 
-							infons.get("value").equals("title") || 
-							infons.get("value").equals("label") || 
-							infons.get("value").equals("article-title")) 
+			String value = UimaBioCInfons.getValue(a);
+			if (value != null
+					&& (value.equals("p") || 
+							value.equals("title") || 
+							value.equals("label") || 
+							value.equals("article-title")) 
 					&& (a.getEnd()-a.getBegin()) > 1) {
 				parags.add(a);
 			}
@@ -543,9 +541,9 @@ public class UimaBioCUtils {
 
 		UimaBioCDocument uiD = JCasUtil.selectSingle(jCas, UimaBioCDocument.class);
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, s)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.containsKey("refType") && infons.containsKey("value") && infons.get("value").equals("xref")) {
-				if (infons.get("refType").equals("fig") || infons.get("refType").startsWith("bib")) {
+			String refType = UimaBioCInfons.getInfon(a, "refType");
+			if (refType != null && UimaBioCInfons.isValue(a, "xref")) {
+				if (refType.equals("fig") || refType.startsWith("bib")) {
 
 					// Can we find enclosing brackets for Figures?
 					String s1 = text.substring(0, a.getBegin() - s.getBegin());
@@ -571,30 +569,27 @@ public class UimaBioCUtils {
 
 		for (UimaBioCAnnotation section : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, uiD)) {
 
-			Map<String, String> infons = UimaBioCUtils.convertInfons(section.getInfons());
-			if ((infons.get("type").equals("formatting") && infons.get("value").equals("article-title"))
-					|| (infons.get("type").equals("formatting") && infons.get("value").equals("abstract"))) {
+			if (UimaBioCInfons.is(section, "formatting", "article-title")
+					|| UimaBioCInfons.is(section, "formatting", "abstract")) {
 
 				passages.add(section);
 
-			} else if (infons.get("type").equals("formatting") && infons.get("value").equals("body")) {
+			} else if (UimaBioCInfons.is(section, "formatting", "body")) {
 
 				for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, section)) {
-					Map<String, String> infons2 = UimaBioCUtils.convertInfons(a.getInfons());
 
-					if (infons2.containsKey("value")
-							&& (infons2.get("value").equals("p") || infons2.get("value").equals("title"))) {
+					if (UimaBioCInfons.isValue(a, "p") || UimaBioCInfons.isValue(a, "title")) {
 
 						passages.add(a);
 
 					}
 					// note that we discard labels for 'Tables'
-					else if (infons2.get("type").equals("formatting") && infons2.get("value").equals("label")
+					else if (UimaBioCInfons.is(a, "formatting", "label")
 							&& !a.getCoveredText().toLowerCase().startsWith("table")) {
 
 						passages.add(a);
 
-					} else if (infons2.get("type").equals("formatting") && infons2.get("value").equals("caption")) {
+					} else if (UimaBioCInfons.is(a, "formatting", "caption")) {
 
 						passages.add(a);
 
@@ -675,7 +670,7 @@ public class UimaBioCUtils {
 		uiA.setBegin(begin);
 		uiA.setEnd(end);
 
-		uiA.setInfons(UimaBioCUtils.convertInfons(infons, jcas));
+		UimaBioCInfons.setInfons(uiA, infons, jcas);
 		uiA.addToIndexes();
 
 		FSArray locations = new FSArray(jcas, 1);
@@ -698,8 +693,8 @@ public class UimaBioCUtils {
 		//
 		List<UimaBioCAnnotation> bibRefs = new ArrayList<UimaBioCAnnotation>();
 		for (UimaBioCAnnotation a1 : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, a.getBegin(), a.getEnd())) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a1.getInfons());
-			if (infons.containsKey("refType") && infons.get("refType").startsWith("bib")) {
+			String refType = UimaBioCInfons.getInfon(a1, "refType");
+			if (refType != null && refType.startsWith("bib")) {
 				String pre = txt.substring(0, a1.getBegin()-a.getBegin());
 				String filler = StringUtils.leftPad("", a1.getCoveredText().length(), ' '); 
 				String post = txt.substring(a1.getEnd()-a.getBegin(), txt.length());
@@ -715,19 +710,27 @@ public class UimaBioCUtils {
 	
 	
 	public static String readTokenizedText(JCas jCas, Annotation a) {
+		return readTokenizedText(jCas, JCasUtil.selectCovered(jCas, Token.class, a), a);
+	}
+
+	public static String readTokenizedText(JCas jCas, TokenTable tokens, Annotation a) {
+		return readTokenizedText(jCas, tokens.readCoveredTokens(a), a);
+	}
+
+	private static String readTokenizedText(JCas jCas, List<Token> tokens, Annotation a) {
 		String txt = "";
 
 		// Look for exLinks
 		List<UimaBioCAnnotation> bibRefs = new ArrayList<UimaBioCAnnotation>();
 		for (UimaBioCAnnotation a1 : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, a.getBegin(), a.getEnd())) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a1.getInfons());
-			if (infons.containsKey("refType") && infons.get("refType").startsWith("bib")) {
+			String refType = UimaBioCInfons.getInfon(a1, "refType");
+			if (refType != null && refType.startsWith("bib")) {
 				bibRefs.add(a1);
 			}
 		}
 
 		String lastToken = "";
-		for (Token t : JCasUtil.selectCovered(jCas, Token.class, a)) {
+		for (Token t : tokens) {
 
 			boolean noRef = true;
 			for (UimaBioCAnnotation bibRef : bibRefs) {
@@ -756,9 +759,8 @@ public class UimaBioCUtils {
 
 		List<UimaBioCAnnotation> precedingList = JCasUtil.selectPreceding(jCas, UimaBioCAnnotation.class, clause, 100);
 		for (UimaBioCAnnotation precede : precedingList) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(precede.getInfons());
-			if (infons.get("type").equals("rubicon") && infons.get("value").equals("clause")
-					&& infons.containsKey("scidp-experiment-labels")) {
+			if (UimaBioCInfons.is(precede, "rubicon", "clause")
+					&& UimaBioCInfons.hasInfon(precede, "scidp-experiment-labels")) {
 				return precede;
 			}
 		}
@@ -772,9 +774,8 @@ public class UimaBioCUtils {
 		List<UimaBioCAnnotation> followingingList = JCasUtil.selectFollowing(jCas, UimaBioCAnnotation.class, clause,
 				10);
 		for (UimaBioCAnnotation follow : followingingList) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(follow.getInfons());
-			if (infons.get("type").equals("rubicon") && infons.get("value").equals("clause")
-					&& infons.containsKey("scidp-experiment-labels")) {
+			if (UimaBioCInfons.is(follow, "rubicon", "clause")
+					&& UimaBioCInfons.hasInfon(follow, "scidp-experiment-labels")) {
 				return follow;
 			}
 		}
@@ -806,33 +807,141 @@ public class UimaBioCUtils {
 		String suffix = fn.substring(fn.lastIndexOf(".") + 1);
 		if (suffix.equals(XML)) {
 
-			BioCDocumentReader reader = BioCFactory.newFactory(BioCFactory.STANDARD)
-					.createBioCDocumentReader(new FileReader(bioCFile));
+			bioD = BioCXml.read(bioCFile);
+
+		} else if (suffix.equals(JSON)) {
+
+			bioD = BioCJson.read(bioCFile);
+
+		} else {
+
+			throw new Exception("Please write to an *.xml or a *.json file");
+
+		}
+		return bioD;
+	}
+
+	/**
+	 * Reads a BioC document from a stream, going by the extension of
+	 * 'fileName' to tell XML from JSON. The stream is closed.
+	 */
+	public static BioCDocument readBioC(InputStream in, String fileName) throws Exception {
+
+		String suffix = fileName.substring(fileName.lastIndexOf(".") + 1);
+		if (suffix.equals(XML)) {
+
+			return BioCXml.read(in);
+
+		} else if (suffix.equals(JSON)) {
+
+			try (Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+				return BioCJson.read(r);
+			}
 
-			bioD = reader.readDocument();
+		} else {
+
+			in.close();
+			throw new Exception("Please write to an *.xml or a *.json file");
+
+		}
+	}
 
-			reader.close();
+	/**
+	 * Reads a BioC file's document with just its id and infons, no
+	 * passages. The XML reader stops at the first <passage>, and the JSON
+	 * reader once it has seen the top-level "id" and "infons" (which
+	 * BioCJson writes before the passages). Returns null if the file has no
+	 * document.
+	 */
+	public static BioCDocument readBioCFileHeader(File bioCFile) throws Exception {
+
+		String fn = bioCFile.getName();
+		String suffix = fn.substring(fn.lastIndexOf(".") + 1);
+		if (suffix.equals(XML)) {
+
+			try (BioCXml.DocumentReader reader = new BioCXml.DocumentReader(bioCFile)) {
+				return reader.readDocumentHeader();
+			}
 
 		} else if (suffix.equals(JSON)) {
 
-			Gson gson = new Gson();
-			bioD = gson.fromJson(new FileReader(bioCFile), BioCDocument.class);
+			BioCDocument d = new BioCDocument();
+			boolean id = false;
+			boolean infons = false;
+			try (JsonReader json = new JsonReader(new BufferedReader(
+					new InputStreamReader(new FileInputStream(bioCFile), StandardCharsets.UTF_8)))) {
+				json.beginObject();
+				while (json.hasNext() && !(id && infons)) {
+					String name = json.nextName();
+					if (name.equals("id") && json.peek() == JsonToken.STRING) {
+						d.setID(json.nextString());
+						id = true;
+					} else if (name.equals("infons") && json.peek() == JsonToken.BEGIN_OBJECT) {
+						json.beginObject();
+						while (json.hasNext()) {
+							String key = json.nextName();
+							if (json.peek() == JsonToken.STRING)
+								d.getInfons().put(key, json.nextString());
+							else
+								json.skipValue();
+						}
+						json.endObject();
+						infons = true;
+					} else {
+						json.skipValue();
+					}
+				}
+			}
+			return d;
+
+		} else {
+
+			throw new Exception("Please write to an *.xml or a *.json file");
+
+		}
+	}
+
+	/**
+	 * Reads just the document id from a BioC file without building the
+	 * document. The JSON reader stops at the first top-level "id" field and
+	 * the XML reader at the first <id> inside <document>, so this is cheap
+	 * even for large files. Returns null if there is no id.
+	 */
+	public static String readBioCFileId(File bioCFile) throws Exception {
+
+		String fn = bioCFile.getName();
+		String suffix = fn.substring(fn.lastIndexOf(".") + 1);
+		if (suffix.equals(XML)) {
+
+			return BioCXml.readId(bioCFile);
+
+		} else if (suffix.equals(JSON)) {
+
+			try (JsonReader json = new JsonReader(new BufferedReader(
+					new InputStreamReader(new FileInputStream(bioCFile), StandardCharsets.UTF_8)))) {
+				json.beginObject();
+				while (json.hasNext()) {
+					if (json.nextName().equals("id") && json.peek() == JsonToken.STRING)
+						return json.nextString();
+					json.skipValue();
+				}
+			}
+			return null;
 
 		} else {
 
 			throw new Exception("Please write to an *.xml or a *.json file");
 
 		}
-		return bioD;
 	}
 
 	public static Set<String> extractExptsFromClause(JCas jCas, Annotation clause) {
 		Set<String> expts = new HashSet<String>();
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(UimaBioCAnnotation.class, clause)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if( infons.containsKey("refType") ) {
-				if( infons.get("refType").equals("fig") || 
-						infons.get("refType").equals("supplementary-material")) {
+			String refType = UimaBioCInfons.getInfon(a, "refType");
+			if( refType != null ) {
+				if( refType.equals("fig") || 
+						refType.equals("supplementary-material")) {
 					String exptCodes = readExptCodes(jCas, a);
 					expts.add(exptCodes);
 				}
@@ -844,14 +953,14 @@ public class UimaBioCUtils {
 	public static Set<String> extractCodesFromClause(JCas jCas, Annotation clause) {
 		Set<String> codes = new HashSet<String>();
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(UimaBioCAnnotation.class, clause)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.containsKey("refType") && infons.get("refType").startsWith("bib")) {
+			String refType = UimaBioCInfons.getInfon(a, "refType");
+			if (refType != null && refType.startsWith("bib")) {
 				codes.add("exLink");
-			} else if (infons.containsKey("refType") && infons.get("refType").equals("fig")) {
+			} else if (refType != null && refType.equals("fig")) {
 				codes.add("inLink");
-			} else if (infons.containsKey("refType") && infons.get("refType").equals("supplementary-material")) {
+			} else if (refType != null && refType.equals("supplementary-material")) {
 				codes.add("inLink");
-			} else if (infons.get("value").equals("label")) {
+			} else if (UimaBioCInfons.isValue(a, "label")) {
 				codes.add("label");
 			}
 		}
@@ -861,10 +970,10 @@ public class UimaBioCUtils {
 	public static Set<String> extractPmidFromReference(JCas jCas, Annotation clause) {
 		Set<String> pmids = new HashSet<String>();
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(UimaBioCAnnotation.class, clause)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.containsKey("refType") && infons.get("refType").startsWith("bib") && 
-					infons.containsKey("pmid")) {
-				pmids.add(infons.get("pmid"));
+			String refType = UimaBioCInfons.getInfon(a, "refType");
+			String pmid = UimaBioCInfons.getInfon(a, "pmid");
+			if (refType != null && refType.startsWith("bib") && pmid != null) {
+				pmids.add(pmid);
 			} 
 		}
 		return pmids;
@@ -908,79 +1017,40 @@ public class UimaBioCUtils {
 		return exptCode;
 	}
 
+	/**
+	 * @deprecated builds a SectionTree for each call; build one per
+	 *             document and call SectionTree.readSectionHeading.
+	 */
+	@Deprecated
 	public static UimaBioCAnnotation readSectionHeading(JCas jCas, UimaBioCAnnotation a) {
-
-		// Looking for section headings
-		for (UimaBioCAnnotation a1 : JCasUtil.selectCovering(jCas, UimaBioCAnnotation.class, a.getBegin(),
-				a.getEnd())) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a1.getInfons());
-			if (infons.containsKey("sectionHeading") && a1.getBegin() == a.getBegin()) {
-				return a1;
-			}
-		}
-
-		return null;
-
+		return new SectionTree(jCas).readSectionHeading(a);
 	}
 
-	public static int readHeadingLevel(JCas jCas, UimaBioCAnnotation a, int level) throws StackOverflowError {
-
-		// Looking for section headings
-		for (UimaBioCAnnotation a1 : JCasUtil.selectCovering(jCas, UimaBioCAnnotation.class, a.getBegin(),
-				a.getEnd())) {
-			if (a1.equals(a))
-				continue;
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a1.getInfons());
-			if (infons.containsKey("sectionHeading")) {
-				level = readHeadingLevel(jCas, a1, level + 1);
-				return level;
-			}
-		}
-
-		return level;
-
+	/**
+	 * @deprecated builds a SectionTree for each call; build one per
+	 *             document and call SectionTree.readHeadingLevel.
+	 */
+	@Deprecated
+	public static int readHeadingLevel(JCas jCas, UimaBioCAnnotation a, int level) {
+		return level + new SectionTree(jCas).readHeadingLevel(a);
 	}
 	
-	public static String readHeadingString(JCas jCas, UimaBioCAnnotation a, String heading) throws StackOverflowError {
-
-		// Looking for section headings
-		for (UimaBioCAnnotation a1 : JCasUtil.selectCovering(jCas, UimaBioCAnnotation.class, a.getBegin(),
-				a.getEnd())) {
-			if (a1.equals(a))
-				continue;
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a1.getInfons());
-			if (infons.containsKey("sectionHeading")) {
-				if( !heading.equals("") )
-					heading += "|";
-				return heading + infons.get("sectionHeading");
-			}
-		}
-
-		return heading;
-
+	/**
+	 * @deprecated builds a SectionTree for each call; build one per
+	 *             document and call SectionTree.readHeadingString.
+	 */
+	@Deprecated
+	public static String readHeadingString(JCas jCas, UimaBioCAnnotation a, String heading) {
+		return new SectionTree(jCas).readHeadingString(a, heading);
 	}
 
-	public static String readHeadingString(JCas jCas, Sentence a, String heading) throws StackOverflowError {
-
-		// Looking for section headings
-		for (UimaBioCAnnotation a1 : JCasUtil.selectCovering(jCas, UimaBioCAnnotation.class, a.getBegin(),
-				a.getEnd())) {
-			if (a1.equals(a))
-				continue;
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a1.getInfons());
-			if (infons.containsKey("sectionHeading")) {
-				if( !heading.equals("") )
-					heading += "|";
-				return heading + infons.get("sectionHeading");
-			} else if(infons.get("value").equals("article-title") ||
-					infons.get("value").equals("abstract") ) {
-				return infons.get("value");
-			}
-
-		}
-
-		return heading;
-
+	/**
+	 * @deprecated builds a SectionTree for each call; build one per
+	 *             document and call SectionTree.readHeadingString.
+	 */
+	@Deprecated
+	public static String readHeadingString(JCas jCas, Sentence a, String heading) {
+		return new SectionTree(jCas).readHeadingString(a, heading);
 	}
 	
 	public static String readTokenizedText(JCas jCas, Sentence s) {
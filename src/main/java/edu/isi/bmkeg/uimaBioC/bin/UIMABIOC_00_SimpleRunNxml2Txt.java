@@ -1,24 +1,49 @@
 package edu.isi.bmkeg.uimaBioC.bin;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 
+import edu.isi.bmkeg.uimaBioC.utils.ArchiveBundles;
+import edu.isi.bmkeg.uimaBioC.utils.Nxml2Txt;
+import edu.isi.bmkeg.uimaBioC.utils.Nxml2TxtProcessPool;
+
 /**
- * This script runs through serialized JSON files from the model and converts
- * them to VPDMf KEfED models, including the data.
+ * This script converts the *.nxml files under inDir to the .txt and .so 
+ * files read by Nxml2TxtFilesCollectionReader, on nThreads threads.
+ * 
+ * The python nxml2txt script at execPath is run on each file by a 
+ * Nxml2TxtProcessPool, with a per-file timeout, retries and (optionally) a 
+ * quarantine directory for the files that still fail. With -java the 
+ * files are converted in Java by Nxml2Txt instead, which writes the same 
+ * .txt files without starting a python process per file.
  * 
  * @author Gully
  * 
@@ -27,15 +52,30 @@ public class UIMABIOC_00_SimpleRunNxml2Txt {
 
 	public static class Options {
 
-		@Option(name = "-inDir", usage = "Input Directory", required = true, metaVar = "INPUT")
+		@Option(name = "-inDir", usage = "Input Directory, or a .tar.gz/.tgz/.zip archive", required = true, metaVar = "INPUT")
 		public File inDir;
 
 		@Option(name = "-outDir", usage = "Output", metaVar = "OUTPUT")
 		public File outDir;
 
-		@Option(name = "-execPath", usage = "Path to the nxml2text executable", required = true, metaVar = "PATH")
+		@Option(name = "-execPath", usage = "Path to the nxml2text executable (needed unless -java is given)", required = false, metaVar = "PATH")
 		public File execPath;
 
+		@Option(name = "-java", usage = "Convert in Java with Nxml2Txt instead of running execPath", required = false)
+		public boolean java = false;
+
+		@Option(name = "-nThreads", usage = "Number of files converted at once", required = false, metaVar = "N")
+		public int nThreads = Runtime.getRuntime().availableProcessors();
+
+		@Option(name = "-timeout", usage = "Seconds before a python run is killed (0 = no limit)", required = false, metaVar = "SECONDS")
+		public long timeout = 300;
+
+		@Option(name = "-retries", usage = "Times a failed python run is retried", required = false, metaVar = "N")
+		public int retries = 1;
+
+		@Option(name = "-quarantineDir", usage = "Where to copy .nxml files the python script can't convert", required = false, metaVar = "DIRECTORY")
+		public File quarantineDir;
+
 		@Option(name = "-suffix", usage = "Altered suffix of *.nxml files", required = false, metaVar = "NXML SUFFIX")
 		public String suffix = "nxml";
 
@@ -58,6 +98,9 @@ public class UIMABIOC_00_SimpleRunNxml2Txt {
 
 			parser.parseArgument(args);
 
+			if( options.execPath == null && !options.java )
+				throw new CmdLineException(parser, "Option \"-execPath\" is required unless -java is given");
+
 		} catch (CmdLineException e) {
 
 			System.err.println(e.getMessage());
@@ -69,6 +112,12 @@ public class UIMABIOC_00_SimpleRunNxml2Txt {
 
 		}
 
+		boolean archive = ArchiveBundles.isArchive(options.inDir);
+		if( options.outDir == null && archive ) {
+			System.err.println("-outDir is needed when reading from an archive");
+			System.exit(-1);
+		}
+		
 		if( options.outDir == null )
 			options.outDir = options.inDir;
 		
@@ -83,6 +132,42 @@ public class UIMABIOC_00_SimpleRunNxml2Txt {
 		
 		String[] fileTypes = {fileEx};
 		
+		// a short queue, so files aren't read much ahead of the converters
+		int n = Math.max(1, options.nThreads);
+		ExecutorService pool = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(4 * n), new ThreadPoolExecutor.CallerRunsPolicy());
+		JavaJobs jobs = new JavaJobs(pool);
+		Nxml2TxtProcessPool procs = null;
+		if( !options.java ) {
+			if( options.quarantineDir != null )
+				options.quarantineDir.mkdirs();
+			procs = new Nxml2TxtProcessPool(options.execPath, n, options.timeout, 
+					options.retries, options.quarantineDir);
+		}
+		try {
+			
+			if( archive )
+				runOnArchive(options, fileEx, jobs, procs);
+			else 
+				runOnDirectory(options, fileTypes, jobs, procs);
+			
+			jobs.finish();
+			
+		} finally {
+			pool.shutdown();
+			if( procs != null )
+				procs.close();
+		}
+		
+	}
+
+	/**
+	 * Converts the matching files under inDir, in Java on 'jobs' or with 
+	 * the python script on 'procs' if that isn't null.
+	 */
+	private static void runOnDirectory(final Options options, String[] fileTypes, 
+			JavaJobs jobs, Nxml2TxtProcessPool procs) {
+		
 		@SuppressWarnings("unchecked")
 		Iterator<File> it = FileUtils.iterateFiles(options.inDir, fileTypes, true);
 		
@@ -97,9 +182,9 @@ public class UIMABIOC_00_SimpleRunNxml2Txt {
 					options.inDir.getPath(),
 					options.outDir.getPath());
 			String s = "." + options.suffix + "$";
-			File txtFile = new File(newPath.replaceAll(s, ".txt"));
-			File annFile = new File(newPath.replaceAll(s, ".so"));
-			File logFile = new File(newPath.replaceAll(s, "_nxml2txt.log"));
+			final File nxmlFile = f;
+			final File txtFile = new File(newPath.replaceAll(s, ".txt"));
+			final File annFile = new File(newPath.replaceAll(s, ".so"));
 			txtFile.getParentFile().mkdirs();
 
 			System.out.print((pos++) + "\r");
@@ -107,52 +192,142 @@ public class UIMABIOC_00_SimpleRunNxml2Txt {
 			if( txtFile.exists() ) 
 				continue;
 			
-			String command = "python " + options.execPath.getPath() + " " + f.getPath() 
-					+ " " + txtFile.getPath()
-					+ " " + annFile.getPath() + "";
-
-			if( txtFile.getPath().contains(" ") )
-				command = "python " + options.execPath.getPath() + " \"" + f.getPath() 
-				+ "\" \"" + txtFile.getPath()
-				+ "\" \"" + annFile.getPath() + "\"";
-
-			ProcessBuilder pb = new ProcessBuilder(command.split(" "));
-			Map<String,String> env = pb.environment();
-			env.put("PYTHONPATH", "/usr/local/lib/python2.7/site-packages");
-			Process p = pb.start();
+			if( procs != null ) {
+				procs.submit(nxmlFile, options.inDir.toURI().relativize(f.toURI()).getPath(), 
+						txtFile, annFile);
+				continue;
+			}
+			
+			jobs.submit(() -> {
+				try (InputStream in = new BufferedInputStream(new FileInputStream(nxmlFile), 1 << 16)) {
+					convertInJava(in, nxmlFile.getPath(), txtFile, annFile);
+				}
+				return null;
+			});
 			
-			if (p == null) {
-				throw new Exception("Can't execute " + command);
+		}
+		
+	}
+
+	/**
+	 * Converts the matching entries of an archive. The .txt and .so files 
+	 * go under outDir at the entry's path inside the archive.
+	 */
+	private static void runOnArchive(final Options options, final String fileEx, 
+			JavaJobs jobs, Nxml2TxtProcessPool procs) throws Exception {
+		
+		int pos = 0;
+		try (ArchiveBundles it = new ArchiveBundles(options.inDir, 1, fileEx)) {
+			while( it.hasNext() ) {
+				ArchiveBundles.Bundle b = it.next();
+				
+				if( !b.getPath(fileEx).endsWith(options.suffix) )
+					continue;
+				
+				String stem = options.outDir.getPath() + "/" + b.getStem();
+				final File txtFile = new File(stem + ".txt");
+				final File annFile = new File(stem + ".so");
+				txtFile.getParentFile().mkdirs();
+				
+				System.out.print((pos++) + "\r");
+				
+				if( txtFile.exists() ) 
+					continue;
+				
+				final byte[] nxml = b.get(fileEx);
+				if( procs != null ) {
+					procs.submit(nxml, b.getPath(fileEx), txtFile, annFile);
+					continue;
+				}
+				
+				jobs.submit(() -> {
+					convertInJava(new ByteArrayInputStream(nxml), b.getPath(fileEx), txtFile, annFile);
+					return null;
+				});
 			}
+		}
+		
+	}
 
-			InputStream in = p.getErrorStream();
-			BufferedInputStream buf = new BufferedInputStream(in);
-			InputStreamReader inread = new InputStreamReader(buf);
-			BufferedReader bufferedreader = new BufferedReader(inread);
-			String line, out = "";
+	/**
+	 * The Java conversions running on a pool. As in Nxml2TxtProcessPool,
+	 * the jobs that are done are forgotten whenever another is submitted,
+	 * keeping the first failure for finish(), so a large corpus doesn't
+	 * leave a future behind for every file.
+	 */
+	private static class JavaJobs {
+
+		private ExecutorService pool;
+		private List<Future<?>> jobs = new ArrayList<Future<?>>();
+		private Exception error;
+
+		JavaJobs(ExecutorService pool) {
+			this.pool = pool;
+		}
+
+		void submit(Callable<?> job) {
+			removeFinished();
+			jobs.add(pool.submit(job));
+		}
 
-			while ((line = bufferedreader.readLine()) != null) {
-				out += line;
+		private void removeFinished() {
+			Iterator<Future<?>> it = jobs.iterator();
+			while( it.hasNext() ) {
+				Future<?> job = it.next();
+				if( !job.isDone() )
+					continue;
+				it.remove();
+				try {
+					job.get();
+				} catch (Exception e) {
+					if( error == null )
+						error = e;
+				}
 			}
-			
-			try {
-				if (p.waitFor() != 0) {
-					System.err.println("CMD: " + command);
-					System.err.println("RETURNED ERROR: " + out);
+		}
+
+		/**
+		 * Waits for the jobs still running and throws the first failure.
+		 */
+		void finish() throws Exception {
+			for( Future<?> job : jobs ) {
+				try {
+					job.get();
+				} catch (Exception e) {
+					if( error == null )
+						error = e;
 				}
-			} catch (Exception e) {
-				System.err.println(out);
-			} finally {
-				// Close the InputStream
-				bufferedreader.close();
-				inread.close();
-				buf.close();
-				in.close();
 			}
+			jobs.clear();
+			if( error != null )
+				throw error;
+		}
 
-			
+	}
+
+	/**
+	 * Converts one article with Nxml2Txt. A file that can't be parsed is
+	 * reported on stderr and skipped, as it is with the python script.
+	 */
+	private static void convertInJava(InputStream in, String name, File txtFile, File annFile) throws Exception {
+		Nxml2Txt.Result r;
+		try {
+			r = Nxml2Txt.convert(in);
+		} catch (XMLStreamException e) {
+			System.err.println("Can't convert " + name + ": " + e.getMessage());
+			return;
 		}
-		
+		try (Writer out = newWriter(annFile)) {
+			r.writeStandoffs(out);
+		}
+		// the .txt file goes last, since its presence marks the file as done
+		try (Writer out = newWriter(txtFile)) {
+			r.writeText(out);
+		}
+	}
+
+	private static Writer newWriter(File f) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8));
 	}
 
-}
\ No newline at end of file
+}
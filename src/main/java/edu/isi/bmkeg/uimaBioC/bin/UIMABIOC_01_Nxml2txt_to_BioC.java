@@ -1,9 +1,12 @@
 package edu.isi.bmkeg.uimaBioC.bin;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.log4j.Logger;
-import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.collection.CollectionReaderDescription;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.cleartk.opennlp.tools.SentenceAnnotator;
 import org.cleartk.token.tokenizer.TokenAnnotator;
@@ -14,25 +17,32 @@ import org.uimafit.factory.AggregateBuilder;
 import org.uimafit.factory.AnalysisEngineFactory;
 import org.uimafit.factory.CollectionReaderFactory;
 import org.uimafit.factory.TypeSystemDescriptionFactory;
-import org.uimafit.pipeline.SimplePipeline;
 
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.AddAnnotationsFromNxmlFormatting;
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.AddFeaturesToClauses;
+import edu.isi.bmkeg.uimaBioC.uima.ae.core.CostProbe;
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.FixSentencesFromHeadings;
 import edu.isi.bmkeg.uimaBioC.uima.out.SaveAsBioCDocuments;
 import edu.isi.bmkeg.uimaBioC.uima.readers.Nxml2TxtFilesCollectionReader;
+import edu.isi.bmkeg.uimaBioC.uima.readers.NxmlFilesCollectionReader;
+import edu.isi.bmkeg.uimaBioC.utils.CostSchedule;
+import edu.isi.bmkeg.uimaBioC.utils.PipelineRunner;
 
 /**
  * This script provides a simple demonstration of loading BioC data from 
  * text derived from NXML files with the added annotations on top of them.
  * It then dumps the output as BioC files in the specified output directory. 
  * 
+ * With -fromNxml, inDir holds the .nxml files themselves and they are read
+ * straight into the CAS by NxmlFilesCollectionReader, skipping the .txt and
+ * .so files (which -teeDir can still write out).
+ * 
  * @author Gully
  * 
  */
 public class UIMABIOC_01_Nxml2txt_to_BioC {
 
-	public static class Options {
+	public static class Options extends PipelineRunner.Options {
 
 		@Option(name = "-inDir", usage = "Input Directory", required = true, metaVar = "IN-DIRECTORY")
 		public File inDir;
@@ -46,6 +56,33 @@ public class UIMABIOC_01_Nxml2txt_to_BioC {
 		@Option(name = "-outFormat", usage = "Output Format", required = true, metaVar = "XML/JSON")
 		public String outFormat;
 
+		@Option(name = "-prefetch", usage = "Number of documents to read ahead (0 = off)", required = false, metaVar = "N")
+		public int prefetch = 0;
+
+		@Option(name = "-ioThreads", usage = "Reader I/O threads when prefetching", required = false, metaVar = "N")
+		public int ioThreads = 4;
+
+		@Option(name = "-shard", usage = "Index of this shard (0..shards-1)", required = false, metaVar = "I")
+		public int shard = 0;
+
+		@Option(name = "-shards", usage = "Number of shards to split the input into", required = false, metaVar = "N")
+		public int shards = 1;
+
+		@Option(name = "-schedule", usage = "Input order: fifo, largestFirst or interleaved", required = false, metaVar = "ORDER")
+		public String schedule = CostSchedule.FIFO;
+
+		@Option(name = "-costEstimate", usage = "Document cost for -schedule: size, soSize or soLines", required = false, metaVar = "ESTIMATE")
+		public String costEstimate = CostSchedule.SIZE;
+
+		@Option(name = "-manifest", usage = "Run manifest to record finished documents in and resume from", required = false, metaVar = "MANIFEST-FILE")
+		public File manifest;
+
+		@Option(name = "-fromNxml", usage = "Read .nxml files instead of nxml2txt output", required = false)
+		public boolean fromNxml = false;
+
+		@Option(name = "-teeDir", usage = "With -fromNxml, also write the .txt and .so files here", required = false, metaVar = "TEE-DIRECTORY")
+		public File teeDir;
+
 	}
 
 	private static Logger logger = Logger
@@ -82,21 +119,63 @@ public class UIMABIOC_01_Nxml2txt_to_BioC {
 		TypeSystemDescription typeSystem = TypeSystemDescriptionFactory
 				.createTypeSystemDescription("bioc.TypeSystem");
 
-		CollectionReader cr = CollectionReaderFactory.createCollectionReader(
-				Nxml2TxtFilesCollectionReader.class, typeSystem,
-				Nxml2TxtFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir,
-				Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_DIRECTORY, options.outDir,
-				Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_TYPE, options.outFormat);
-		if( options.refDir != null ) 
-			cr = CollectionReaderFactory.createCollectionReader(
+		String manifest = options.manifest != null ? options.manifest.getPath() : null;
+
+		CollectionReaderDescription cr;
+		if( options.fromNxml ) {
+			List<Object> params = new ArrayList<Object>(Arrays.asList(
+					NxmlFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir,
+					NxmlFilesCollectionReader.PARAM_OUTPUT_DIRECTORY, options.outDir,
+					NxmlFilesCollectionReader.PARAM_OUTPUT_TYPE, options.outFormat,
+					NxmlFilesCollectionReader.PARAM_SHARD_INDEX, options.shard,
+					NxmlFilesCollectionReader.PARAM_SHARD_COUNT, options.shards,
+					NxmlFilesCollectionReader.PARAM_SCHEDULE, options.schedule,
+					NxmlFilesCollectionReader.PARAM_COST_ESTIMATE, options.costEstimate,
+					NxmlFilesCollectionReader.PARAM_MANIFEST, manifest));
+			if( options.refDir != null )
+				params.addAll(Arrays.asList(NxmlFilesCollectionReader.PARAM_REF_DIRECTORY, options.refDir));
+			if( options.teeDir != null )
+				params.addAll(Arrays.asList(NxmlFilesCollectionReader.PARAM_TEE_DIRECTORY, options.teeDir));
+			cr = CollectionReaderFactory.createDescription(
+					NxmlFilesCollectionReader.class, typeSystem, params.toArray());
+		} else if( options.refDir != null ) 
+			cr = CollectionReaderFactory.createDescription(
+					Nxml2TxtFilesCollectionReader.class, typeSystem,
+					Nxml2TxtFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir,
+					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_DIRECTORY, options.outDir,
+					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_TYPE, options.outFormat,
+					Nxml2TxtFilesCollectionReader.PARAM_REF_DIRECTORY, options.refDir,
+					Nxml2TxtFilesCollectionReader.PARAM_PREFETCH_QUEUE_SIZE, options.prefetch,
+					Nxml2TxtFilesCollectionReader.PARAM_IO_THREADS, options.ioThreads,
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_INDEX, options.shard,
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_COUNT, options.shards,
+					Nxml2TxtFilesCollectionReader.PARAM_SCHEDULE, options.schedule,
+					Nxml2TxtFilesCollectionReader.PARAM_COST_ESTIMATE, options.costEstimate,
+					Nxml2TxtFilesCollectionReader.PARAM_MANIFEST, manifest);
+		else
+			cr = CollectionReaderFactory.createDescription(
 					Nxml2TxtFilesCollectionReader.class, typeSystem,
 					Nxml2TxtFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir,
 					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_DIRECTORY, options.outDir,
 					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_TYPE, options.outFormat,
-					Nxml2TxtFilesCollectionReader.PARAM_REF_DIRECTORY, options.refDir);
+					Nxml2TxtFilesCollectionReader.PARAM_PREFETCH_QUEUE_SIZE, options.prefetch,
+					Nxml2TxtFilesCollectionReader.PARAM_IO_THREADS, options.ioThreads,
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_INDEX, options.shard,
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_COUNT, options.shards,
+					Nxml2TxtFilesCollectionReader.PARAM_SCHEDULE, options.schedule,
+					Nxml2TxtFilesCollectionReader.PARAM_COST_ESTIMATE, options.costEstimate,
+					Nxml2TxtFilesCollectionReader.PARAM_MANIFEST, manifest);
 
 		AggregateBuilder builder = new AggregateBuilder();
 
+		//
+		// With a schedule, time each document to check the cost estimates
+		//
+		boolean timeCosts = !CostSchedule.FIFO.equals(options.schedule);
+		if (timeCosts)
+			builder.add(AnalysisEngineFactory.createPrimitiveDescription(CostProbe.class, 
+					CostProbe.PARAM_BEGIN, true));
+
 		builder.add(AnalysisEngineFactory.createPrimitiveDescription(
 				AddAnnotationsFromNxmlFormatting.class));		
 		
@@ -123,9 +202,16 @@ public class UIMABIOC_01_Nxml2txt_to_BioC {
 				SaveAsBioCDocuments.PARAM_FILE_PATH,
 				options.outDir.getPath(),
 				SaveAsBioCDocuments.PARAM_FORMAT,
-				outFormat));
+				outFormat,
+				SaveAsBioCDocuments.PARAM_MANIFEST,
+				manifest));
+
+		if (timeCosts)
+			builder.add(AnalysisEngineFactory.createPrimitiveDescription(CostProbe.class, 
+					CostProbe.PARAM_BEGIN, false));
 
-		SimplePipeline.runPipeline(cr, builder.createAggregateDescription());
+		if (!PipelineRunner.run(cr, builder.createAggregateDescription(), options))
+			System.exit(1);
 		
 	}
 
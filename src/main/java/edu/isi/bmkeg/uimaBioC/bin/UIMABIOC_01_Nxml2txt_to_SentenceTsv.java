@@ -3,10 +3,8 @@ package edu.isi.bmkeg.uimaBioC.bin;
 import java.io.File;
 
 import org.apache.log4j.Logger;
-import org.apache.uima.collection.CollectionProcessingEngine;
 import org.apache.uima.collection.CollectionReader;
 import org.apache.uima.collection.CollectionReaderDescription;
-import org.apache.uima.collection.StatusCallbackListener;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.cleartk.opennlp.tools.SentenceAnnotator;
 import org.cleartk.token.tokenizer.TokenAnnotator;
@@ -16,9 +14,7 @@ import org.kohsuke.args4j.Option;
 import org.uimafit.factory.AggregateBuilder;
 import org.uimafit.factory.AnalysisEngineFactory;
 import org.uimafit.factory.CollectionReaderFactory;
-import org.uimafit.factory.CpeBuilder;
 import org.uimafit.factory.TypeSystemDescriptionFactory;
-import org.uimafit.pipeline.SimplePipeline;
 
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.AddAnnotationsFromNxmlFormatting;
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.FixSentencesFromHeadings;
@@ -26,7 +22,7 @@ import edu.isi.bmkeg.uimaBioC.uima.out.SaveAsSentenceSpreadsheets;
 import edu.isi.bmkeg.uimaBioC.uima.out.SaveAsSimpleSentenceSpreadsheets;
 import edu.isi.bmkeg.uimaBioC.uima.readers.BioCCollectionReader;
 import edu.isi.bmkeg.uimaBioC.uima.readers.Nxml2TxtFilesCollectionReader;
-import edu.isi.bmkeg.uimaBioC.utils.StatusCallbackListenerImpl;
+import edu.isi.bmkeg.uimaBioC.utils.PipelineRunner;
 
 /**
  * This script provides a simple demonstration of loading BioC data from 
@@ -38,7 +34,7 @@ import edu.isi.bmkeg.uimaBioC.utils.StatusCallbackListenerImpl;
  */
 public class UIMABIOC_01_Nxml2txt_to_SentenceTsv {
 
-	public static class Options {
+	public static class Options extends PipelineRunner.Options {
 
 		@Option(name = "-inDir", usage = "Input Directory", required = true, metaVar = "IN-DIRECTORY")
 		public File inDir;
@@ -52,8 +48,11 @@ public class UIMABIOC_01_Nxml2txt_to_SentenceTsv {
 		@Option(name = "-outType", usage = "Output Type", required = false, metaVar = "OUTPUT-FILE-TYPE")
 		public String outType;
 
-		@Option(name = "-nThreads", usage = "Number of threads", required = true, metaVar = "IN-DIRECTORY")
-		public int nThreads;
+		@Option(name = "-shard", usage = "Index of this shard (0..shards-1)", required = false, metaVar = "I")
+		public int shard = 0;
+
+		@Option(name = "-shards", usage = "Number of shards to split the input into", required = false, metaVar = "N")
+		public int shards = 1;
 
 	}
 
@@ -98,7 +97,9 @@ public class UIMABIOC_01_Nxml2txt_to_SentenceTsv {
 
 		CollectionReaderDescription cr = CollectionReaderFactory.createDescription(
 				Nxml2TxtFilesCollectionReader.class, typeSystem,
-				Nxml2TxtFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir);
+				Nxml2TxtFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir,
+				Nxml2TxtFilesCollectionReader.PARAM_SHARD_INDEX, options.shard,
+				Nxml2TxtFilesCollectionReader.PARAM_SHARD_COUNT, options.shards);
 
 		boolean refsSpecified = (options.refDir != null);
 		boolean outSpecified = (options.outDir != null && options.outType != null);
@@ -107,25 +108,28 @@ public class UIMABIOC_01_Nxml2txt_to_SentenceTsv {
 			cr = CollectionReaderFactory.createDescription(
 					Nxml2TxtFilesCollectionReader.class, typeSystem,
 					Nxml2TxtFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir,
-					Nxml2TxtFilesCollectionReader.PARAM_REF_DIRECTORY, options.refDir);
+					Nxml2TxtFilesCollectionReader.PARAM_REF_DIRECTORY, options.refDir,
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_INDEX, options.shard,
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_COUNT, options.shards);
 		} else if( !refsSpecified && outSpecified ) {	
 			cr = CollectionReaderFactory.createDescription(
 					Nxml2TxtFilesCollectionReader.class, typeSystem,
 					Nxml2TxtFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir,
 					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_DIRECTORY, options.outDir,
-					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_TYPE, options.outType);
+					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_TYPE, options.outType,
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_INDEX, options.shard,
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_COUNT, options.shards);
 		} else if( refsSpecified && outSpecified ) {
 			cr = CollectionReaderFactory.createDescription(
 					Nxml2TxtFilesCollectionReader.class, typeSystem,
 					Nxml2TxtFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir,
 					Nxml2TxtFilesCollectionReader.PARAM_REF_DIRECTORY, options.refDir,
 					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_DIRECTORY, options.outDir,
-					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_TYPE, options.outType);
+					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_TYPE, options.outType,
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_INDEX, options.shard,
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_COUNT, options.shards);
 		}					
 
-		CpeBuilder cpeBuilder = new CpeBuilder();
-		cpeBuilder.setReader(cr);
-
 		AggregateBuilder builder = new AggregateBuilder();
 
 		builder.add(AnalysisEngineFactory.createPrimitiveDescription(
@@ -146,33 +150,15 @@ public class UIMABIOC_01_Nxml2txt_to_SentenceTsv {
 				);
 
 		
-		cpeBuilder.setAnalysisEngine(builder.createAggregateDescription());
-
-		cpeBuilder.setMaxProcessingUnitThreatCount(options.nThreads);
-		StatusCallbackListener callback = new StatusCallbackListenerImpl();
-		CollectionProcessingEngine cpe = cpeBuilder.createCpe(callback);
-		System.out.println("Running CPE");
-		cpe.process();
-
-		try {
-			Thread.sleep(500);
-		} catch (InterruptedException e) {
-		}
-
-		while (cpe.isProcessing())
-			try {
-				Thread.sleep(200);
-			} catch (InterruptedException e) {
-			}
-
-		System.out.println("\n\n ------------------ PERFORMANCE REPORT ------------------\n");
-		System.out.println(cpe.getPerformanceReport().toString());
+		PipelineRunner runner = new PipelineRunner(cr, builder.createAggregateDescription(), options);
+		boolean ok = runner.run();
 
 		long endTime = System.currentTimeMillis();
 		float duration = (float) (endTime - startTime);
 		System.out.format("\n\nTOTAL EXECUTION TIME: %.3f s", duration / 1000);
-		
-		SimplePipeline.runPipeline(cr, builder.createAggregateDescription());
+
+		if (!ok)
+			System.exit(1);
 		
 	}
 
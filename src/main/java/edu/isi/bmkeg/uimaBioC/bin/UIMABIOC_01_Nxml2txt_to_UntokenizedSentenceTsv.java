@@ -3,9 +3,7 @@ package edu.isi.bmkeg.uimaBioC.bin;
 import java.io.File;
 
 import org.apache.log4j.Logger;
-import org.apache.uima.collection.CollectionProcessingEngine;
 import org.apache.uima.collection.CollectionReaderDescription;
-import org.apache.uima.collection.StatusCallbackListener;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.cleartk.opennlp.tools.SentenceAnnotator;
 import org.cleartk.token.tokenizer.TokenAnnotator;
@@ -15,15 +13,13 @@ import org.kohsuke.args4j.Option;
 import org.uimafit.factory.AggregateBuilder;
 import org.uimafit.factory.AnalysisEngineFactory;
 import org.uimafit.factory.CollectionReaderFactory;
-import org.uimafit.factory.CpeBuilder;
 import org.uimafit.factory.TypeSystemDescriptionFactory;
-import org.uimafit.pipeline.SimplePipeline;
 
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.AddAnnotationsFromNxmlFormatting;
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.FixSentencesFromHeadings;
 import edu.isi.bmkeg.uimaBioC.uima.out.SaveAsUntokenizedSentenceSpreadsheets;
 import edu.isi.bmkeg.uimaBioC.uima.readers.Nxml2TxtFilesCollectionReader;
-import edu.isi.bmkeg.uimaBioC.utils.StatusCallbackListenerImpl;
+import edu.isi.bmkeg.uimaBioC.utils.PipelineRunner;
 
 /**
  * This script provides a simple demonstration of loading BioC data from 
@@ -35,7 +31,7 @@ import edu.isi.bmkeg.uimaBioC.utils.StatusCallbackListenerImpl;
  */
 public class UIMABIOC_01_Nxml2txt_to_UntokenizedSentenceTsv {
 
-	public static class Options {
+	public static class Options extends PipelineRunner.Options {
 
 		@Option(name = "-inDir", usage = "Input Directory", required = true, metaVar = "IN-DIRECTORY")
 		public File inDir;
@@ -46,8 +42,11 @@ public class UIMABIOC_01_Nxml2txt_to_UntokenizedSentenceTsv {
 		@Option(name = "-refDir", usage = "Reference Directory", required = false, metaVar = "REFERENCE-FILES-DIRECTORY")
 		public File refDir;
 		
-		@Option(name = "-nThreads", usage = "Number of threads", required = true, metaVar = "IN-DIRECTORY")
-		public int nThreads;
+		@Option(name = "-shard", usage = "Index of this shard (0..shards-1)", required = false, metaVar = "I")
+		public int shard = 0;
+
+		@Option(name = "-shards", usage = "Number of shards to split the input into", required = false, metaVar = "N")
+		public int shards = 1;
 
 	}
 
@@ -92,7 +91,9 @@ public class UIMABIOC_01_Nxml2txt_to_UntokenizedSentenceTsv {
 
 		CollectionReaderDescription cr = CollectionReaderFactory.createDescription(
 				Nxml2TxtFilesCollectionReader.class, typeSystem,
-				Nxml2TxtFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir);
+				Nxml2TxtFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir,
+				Nxml2TxtFilesCollectionReader.PARAM_SHARD_INDEX, options.shard,
+				Nxml2TxtFilesCollectionReader.PARAM_SHARD_COUNT, options.shards);
 
 		boolean refsSpecified = (options.refDir != null);
 		
@@ -102,18 +103,19 @@ public class UIMABIOC_01_Nxml2txt_to_UntokenizedSentenceTsv {
 					Nxml2TxtFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir,
 					Nxml2TxtFilesCollectionReader.PARAM_REF_DIRECTORY, options.refDir,
 					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_DIRECTORY, options.outDir,
-					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_TYPE, "tsv");
+					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_TYPE, "tsv",
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_INDEX, options.shard,
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_COUNT, options.shards);
 		} else {	
 			cr = CollectionReaderFactory.createDescription(
 					Nxml2TxtFilesCollectionReader.class, typeSystem,
 					Nxml2TxtFilesCollectionReader.PARAM_INPUT_DIRECTORY, options.inDir,
 					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_DIRECTORY, options.outDir,
-					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_TYPE, "tsv");
+					Nxml2TxtFilesCollectionReader.PARAM_OUTPUT_TYPE, "tsv",
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_INDEX, options.shard,
+					Nxml2TxtFilesCollectionReader.PARAM_SHARD_COUNT, options.shards);
 		} 
 		
-		CpeBuilder cpeBuilder = new CpeBuilder();
-		cpeBuilder.setReader(cr);
-
 		AggregateBuilder builder = new AggregateBuilder();
 
 		builder.add(AnalysisEngineFactory.createPrimitiveDescription(
@@ -134,33 +136,15 @@ public class UIMABIOC_01_Nxml2txt_to_UntokenizedSentenceTsv {
 				);
 
 		
-		cpeBuilder.setAnalysisEngine(builder.createAggregateDescription());
-
-		cpeBuilder.setMaxProcessingUnitThreatCount(options.nThreads);
-		StatusCallbackListener callback = new StatusCallbackListenerImpl();
-		CollectionProcessingEngine cpe = cpeBuilder.createCpe(callback);
-		System.out.println("Running CPE");
-		cpe.process();
-
-		try {
-			Thread.sleep(500);
-		} catch (InterruptedException e) {
-		}
-
-		while (cpe.isProcessing())
-			try {
-				Thread.sleep(200);
-			} catch (InterruptedException e) {
-			}
-
-		System.out.println("\n\n ------------------ PERFORMANCE REPORT ------------------\n");
-		System.out.println(cpe.getPerformanceReport().toString());
+		PipelineRunner runner = new PipelineRunner(cr, builder.createAggregateDescription(), options);
+		boolean ok = runner.run();
 
 		long endTime = System.currentTimeMillis();
 		float duration = (float) (endTime - startTime);
 		System.out.format("\n\nTOTAL EXECUTION TIME: %.3f s", duration / 1000);
-		
-		SimplePipeline.runPipeline(cr, builder.createAggregateDescription());
+
+		if (!ok)
+			System.exit(1);
 		
 	}
 
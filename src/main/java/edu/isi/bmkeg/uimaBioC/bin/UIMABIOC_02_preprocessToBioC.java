@@ -3,9 +3,7 @@ package edu.isi.bmkeg.uimaBioC.bin;
 import java.io.File;
 
 import org.apache.log4j.Logger;
-import org.apache.uima.collection.CollectionProcessingEngine;
 import org.apache.uima.collection.CollectionReaderDescription;
-import org.apache.uima.collection.StatusCallbackListener;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.cleartk.token.tokenizer.TokenAnnotator;
 import org.kohsuke.args4j.CmdLineException;
@@ -14,30 +12,37 @@ import org.kohsuke.args4j.Option;
 import org.uimafit.factory.AggregateBuilder;
 import org.uimafit.factory.AnalysisEngineFactory;
 import org.uimafit.factory.CollectionReaderFactory;
-import org.uimafit.factory.CpeBuilder;
 import org.uimafit.factory.TypeSystemDescriptionFactory;
 
 import edu.isi.bmkeg.uimaBioC.refactoredCleartk.SentenceAnnotator;
 import edu.isi.bmkeg.uimaBioC.rubicon.RemoveSentencesNotInTitleAbstractBody;
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.AddFeaturesToClauses;
+import edu.isi.bmkeg.uimaBioC.uima.ae.core.CostProbe;
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.FixSentencesFromHeadings;
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.RemoveRepeatedBioCAnnotations;
 import edu.isi.bmkeg.uimaBioC.uima.ae.nlp.SeparateClauses;
 import edu.isi.bmkeg.uimaBioC.uima.ae.nlp.StanfordParse;
 import edu.isi.bmkeg.uimaBioC.uima.out.SaveAsBioCDocuments;
 import edu.isi.bmkeg.uimaBioC.uima.readers.BioCCollectionReader;
-import edu.isi.bmkeg.uimaBioC.utils.StatusCallbackListenerImpl;
+import edu.isi.bmkeg.uimaBioC.utils.CostSchedule;
+import edu.isi.bmkeg.uimaBioC.utils.PipelineRunner;
 
 public class UIMABIOC_02_preprocessToBioC {
 
-	public static class Options {
-
-		@Option(name = "-nThreads", usage = "Number of threads", required = true, metaVar = "IN-DIRECTORY")
-		public int nThreads;
+	public static class Options extends PipelineRunner.Options {
 
 		@Option(name = "-maxSentenceLength", usage = "Maximum length of sentences to be parsed", required = false, metaVar = "MAX-PARSE-LENGTH")
 		public int maxSentenceLength;
 
+		@Option(name = "-sentenceTimeout", usage = "Milliseconds to parse one sentence for (0: no limit)", required = false, metaVar = "MS")
+		public int sentenceTimeout = 20000;
+
+		@Option(name = "-documentTimeout", usage = "Milliseconds to parse one document for (0: no limit)", required = false, metaVar = "MS")
+		public int documentTimeout = 300000;
+
+		@Option(name = "-parseTimeoutReport", usage = "Write the sentences that ran out of parsing time to this file", required = false, metaVar = "TSV-FILE")
+		public File parseTimeoutReport;
+
 		@Option(name = "-biocDir", usage = "Input Directory", required = true, metaVar = "IN-DIRECTORY")
 		public File biocDir;
 
@@ -46,7 +51,22 @@ public class UIMABIOC_02_preprocessToBioC {
 		
 		@Option(name = "-outFormat", usage = "Output format: e.g., ID.json, ID.tsv etc.", required = true, metaVar = "NXML SUFFIX")
 		public String outFormat = "ID.json";
-		
+
+		@Option(name = "-shard", usage = "Index of this shard (0..shards-1)", required = false, metaVar = "I")
+		public int shard = 0;
+
+		@Option(name = "-shards", usage = "Number of shards to split the input into", required = false, metaVar = "N")
+		public int shards = 1;
+
+		@Option(name = "-schedule", usage = "Input order: fifo, largestFirst or interleaved", required = false, metaVar = "ORDER")
+		public String schedule = CostSchedule.FIFO;
+
+		@Option(name = "-costEstimate", usage = "Document cost for -schedule: size, soSize or soLines", required = false, metaVar = "ESTIMATE")
+		public String costEstimate = CostSchedule.SIZE;
+
+		@Option(name = "-manifest", usage = "Run manifest to record finished documents in and resume from", required = false, metaVar = "MANIFEST-FILE")
+		public File manifest;
+
 	}
 
 	private static Logger logger = Logger.getLogger(UIMABIOC_02_preprocessToBioC.class);
@@ -80,16 +100,37 @@ public class UIMABIOC_02_preprocessToBioC {
 
 		TypeSystemDescription typeSystem = TypeSystemDescriptionFactory.createTypeSystemDescription("bioc.TypeSystem");
 
+		String manifest = options.manifest != null ? options.manifest.getPath() : null;
+
+		String outFormat = null;
+		if( options.outFormat.toLowerCase().endsWith("xml") ) 
+			outFormat = SaveAsBioCDocuments.XML;
+		else if( options.outFormat.toLowerCase().endsWith("json") ) 
+			outFormat = SaveAsBioCDocuments.JSON;
+		else 
+			throw new Exception("Output format " + options.outFormat + " not recognized");
+
 		CollectionReaderDescription crDesc = CollectionReaderFactory.createDescription(BioCCollectionReader.class,
 				typeSystem, BioCCollectionReader.INPUT_DIRECTORY, options.biocDir.getPath(),
 				BioCCollectionReader.OUTPUT_DIRECTORY, options.outDir.getPath(), 
-				BioCCollectionReader.PARAM_FORMAT, BioCCollectionReader.JSON);
-
-		CpeBuilder cpeBuilder = new CpeBuilder();
-		cpeBuilder.setReader(crDesc);
+				BioCCollectionReader.OUTPUT_FORMAT, outFormat,
+				BioCCollectionReader.PARAM_FORMAT, BioCCollectionReader.JSON,
+				BioCCollectionReader.PARAM_SHARD_INDEX, options.shard,
+				BioCCollectionReader.PARAM_SHARD_COUNT, options.shards,
+				BioCCollectionReader.PARAM_SCHEDULE, options.schedule,
+				BioCCollectionReader.PARAM_COST_ESTIMATE, options.costEstimate,
+				BioCCollectionReader.PARAM_MANIFEST, manifest);
 
 		AggregateBuilder builder = new AggregateBuilder();
 
+		//
+		// With a schedule, time each document to check the cost estimates
+		//
+		boolean timeCosts = !CostSchedule.FIFO.equals(options.schedule);
+		if (timeCosts)
+			builder.add(AnalysisEngineFactory.createPrimitiveDescription(CostProbe.class, 
+					CostProbe.PARAM_BEGIN, true));
+
 		builder.add(SentenceAnnotator.getDescription()); // Sentence
 		
 		builder.add(AnalysisEngineFactory.createPrimitiveDescription(TokenAnnotator.class,
@@ -104,7 +145,11 @@ public class UIMABIOC_02_preprocessToBioC {
 		builder.add(AnalysisEngineFactory.createPrimitiveDescription(RemoveSentencesNotInTitleAbstractBody.class));
 
 		builder.add(AnalysisEngineFactory.createPrimitiveDescription(StanfordParse.class,
-				StanfordParse.PARAM_MAX_LENGTH, options.maxSentenceLength));
+				StanfordParse.PARAM_MAX_LENGTH, options.maxSentenceLength,
+				StanfordParse.PARAM_SENTENCE_TIMEOUT, options.sentenceTimeout,
+				StanfordParse.PARAM_DOCUMENT_TIMEOUT, options.documentTimeout,
+				StanfordParse.PARAM_TIMEOUT_REPORT, 
+				options.parseTimeoutReport != null ? options.parseTimeoutReport.getPath() : null));
 		//builder.add(AnalysisEngineFactory.createPrimitiveDescription(StanfordTag.class));
 
 		builder.add(AnalysisEngineFactory.createPrimitiveDescription(SeparateClauses.class));
@@ -113,47 +158,29 @@ public class UIMABIOC_02_preprocessToBioC {
 
 		builder.add(AnalysisEngineFactory.createPrimitiveDescription(RemoveRepeatedBioCAnnotations.class));
 
-		String outFormat = null;
-		if( options.outFormat.toLowerCase().endsWith("xml") ) 
-			outFormat = SaveAsBioCDocuments.XML;
-		else if( options.outFormat.toLowerCase().endsWith("json") ) 
-			outFormat = SaveAsBioCDocuments.JSON;
-		else 
-			throw new Exception("Output format " + options.outFormat + " not recognized");
-
 		builder.add(AnalysisEngineFactory.createPrimitiveDescription(
 				SaveAsBioCDocuments.class, 
 				SaveAsBioCDocuments.PARAM_FILE_PATH,
 				options.outDir.getPath(),
 				SaveAsBioCDocuments.PARAM_FORMAT,
-				outFormat));
-		
-		cpeBuilder.setAnalysisEngine(builder.createAggregateDescription());
-
-		cpeBuilder.setMaxProcessingUnitThreatCount(options.nThreads);
-		StatusCallbackListener callback = new StatusCallbackListenerImpl();
-		CollectionProcessingEngine cpe = cpeBuilder.createCpe(callback);
-		System.out.println("Running CPE");
-		cpe.process();
-
-		try {
-			Thread.sleep(500);
-		} catch (InterruptedException e) {
-		}
-
-		while (cpe.isProcessing())
-			try {
-				Thread.sleep(200);
-			} catch (InterruptedException e) {
-			}
+				outFormat,
+				SaveAsBioCDocuments.PARAM_MANIFEST,
+				manifest));
 
-		System.out.println("\n\n ------------------ PERFORMANCE REPORT ------------------\n");
-		System.out.println(cpe.getPerformanceReport().toString());
+		if (timeCosts)
+			builder.add(AnalysisEngineFactory.createPrimitiveDescription(CostProbe.class, 
+					CostProbe.PARAM_BEGIN, false));
+		
+		PipelineRunner runner = new PipelineRunner(crDesc, builder.createAggregateDescription(), options);
+		boolean ok = runner.run();
 
 		long endTime = System.currentTimeMillis();
 		float duration = (float) (endTime - startTime);
 		System.out.format("\n\nTOTAL EXECUTION TIME: %.3f s", duration / 1000);
 
+		if (!ok)
+			System.exit(1);
+
 	}
 
 }
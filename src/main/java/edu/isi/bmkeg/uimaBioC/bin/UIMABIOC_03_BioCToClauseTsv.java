@@ -3,9 +3,7 @@ package edu.isi.bmkeg.uimaBioC.bin;
 import java.io.File;
 
 import org.apache.log4j.Logger;
-import org.apache.uima.collection.CollectionProcessingEngine;
 import org.apache.uima.collection.CollectionReaderDescription;
-import org.apache.uima.collection.StatusCallbackListener;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.cleartk.opennlp.tools.SentenceAnnotator;
 import org.cleartk.token.tokenizer.TokenAnnotator;
@@ -15,21 +13,17 @@ import org.kohsuke.args4j.Option;
 import org.uimafit.factory.AggregateBuilder;
 import org.uimafit.factory.AnalysisEngineFactory;
 import org.uimafit.factory.CollectionReaderFactory;
-import org.uimafit.factory.CpeBuilder;
 import org.uimafit.factory.TypeSystemDescriptionFactory;
 
 import edu.isi.bmkeg.uimaBioC.rubicon.RemoveSentencesNotInTitleAbstractBody;
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.FixSentencesFromHeadings;
 import edu.isi.bmkeg.uimaBioC.uima.out.SaveAsClauseSpreadsheets;
 import edu.isi.bmkeg.uimaBioC.uima.readers.BioCCollectionReader;
-import edu.isi.bmkeg.uimaBioC.utils.StatusCallbackListenerImpl;
+import edu.isi.bmkeg.uimaBioC.utils.PipelineRunner;
 
 public class UIMABIOC_03_BioCToClauseTsv {
 
-	public static class Options {
-
-		@Option(name = "-nThreads", usage = "Number of threads", required = true, metaVar = "IN-DIRECTORY")
-		public int nThreads;
+	public static class Options extends PipelineRunner.Options {
 
 		@Option(name = "-biocDir", usage = "Input Directory", required = true, metaVar = "IN-DIRECTORY")
 		public File biocDir;
@@ -43,6 +37,12 @@ public class UIMABIOC_03_BioCToClauseTsv {
 		@Option(name = "-pmcFileNames", usage = "Use PMC-encoded Filenames?", required = false, metaVar = "PMC")
 		public Boolean pmcFileNames = false;
 
+		@Option(name = "-shard", usage = "Index of this shard (0..shards-1)", required = false, metaVar = "I")
+		public int shard = 0;
+
+		@Option(name = "-shards", usage = "Number of shards to split the input into", required = false, metaVar = "N")
+		public int shards = 1;
+
 	}
 
 	private static Logger logger = Logger.getLogger(UIMABIOC_03_BioCToClauseTsv.class);
@@ -81,10 +81,9 @@ public class UIMABIOC_03_BioCToClauseTsv {
 				BioCCollectionReader.INPUT_DIRECTORY, options.biocDir.getPath(),
 				BioCCollectionReader.OUTPUT_DIRECTORY, options.outDir.getPath(), 
 				BioCCollectionReader.OUTPUT_FORMAT, options.outFormat, 
-				BioCCollectionReader.PARAM_FORMAT, BioCCollectionReader.JSON);
-
-		CpeBuilder cpeBuilder = new CpeBuilder();
-		cpeBuilder.setReader(crDesc);
+				BioCCollectionReader.PARAM_FORMAT, BioCCollectionReader.JSON,
+				BioCCollectionReader.PARAM_SHARD_INDEX, options.shard,
+				BioCCollectionReader.PARAM_SHARD_COUNT, options.shards);
 
 		AggregateBuilder builder = new AggregateBuilder();
 
@@ -103,32 +102,16 @@ public class UIMABIOC_03_BioCToClauseTsv {
 					SaveAsClauseSpreadsheets.PARAM_ADD_FRIES_CODES, "false",
 					SaveAsClauseSpreadsheets.PARAM_PMC_FILE_NAMES, options.pmcFileNames.toString().toLowerCase()));
 
-		cpeBuilder.setAnalysisEngine(builder.createAggregateDescription());
-
-		cpeBuilder.setMaxProcessingUnitThreatCount(options.nThreads);
-		StatusCallbackListener callback = new StatusCallbackListenerImpl();
-		CollectionProcessingEngine cpe = cpeBuilder.createCpe(callback);
-		System.out.println("Running CPE");
-		cpe.process();
-
-		try {
-			Thread.sleep(500);
-		} catch (InterruptedException e) {
-		}
-
-		while (cpe.isProcessing())
-			try {
-				Thread.sleep(200);
-			} catch (InterruptedException e) {
-			}
-
-		System.out.println("\n\n ------------------ PERFORMANCE REPORT ------------------\n");
-		System.out.println(cpe.getPerformanceReport().toString());
+		PipelineRunner runner = new PipelineRunner(crDesc, builder.createAggregateDescription(), options);
+		boolean ok = runner.run();
 
 		long endTime = System.currentTimeMillis();
 		float duration = (float) (endTime - startTime);
 		System.out.format("\n\nTOTAL EXECUTION TIME: %.3f s", duration / 1000);
 
+		if (!ok)
+			System.exit(1);
+
 	}
 
 }
@@ -3,7 +3,7 @@ package edu.isi.bmkeg.uimaBioC.bin;
 import java.io.File;
 
 import org.apache.log4j.Logger;
-import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.collection.CollectionReaderDescription;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.cleartk.opennlp.tools.SentenceAnnotator;
 import org.cleartk.token.tokenizer.TokenAnnotator;
@@ -14,12 +14,12 @@ import org.uimafit.factory.AggregateBuilder;
 import org.uimafit.factory.AnalysisEngineFactory;
 import org.uimafit.factory.CollectionReaderFactory;
 import org.uimafit.factory.TypeSystemDescriptionFactory;
-import org.uimafit.pipeline.SimplePipeline;
 
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.FixSentencesFromHeadings;
 import edu.isi.bmkeg.uimaBioC.uima.out.SaveBody;
 import edu.isi.bmkeg.uimaBioC.uima.out.SaveAsClauseSpreadsheets;
 import edu.isi.bmkeg.uimaBioC.uima.readers.BioCCollectionReader;
+import edu.isi.bmkeg.uimaBioC.utils.PipelineRunner;
 
 /**
  * This script runs through serialized JSON files from the model and converts
@@ -30,7 +30,7 @@ import edu.isi.bmkeg.uimaBioC.uima.readers.BioCCollectionReader;
  */
 public class UIMABIOC_03_ExtractSections {
 
-	public static class Options {
+	public static class Options extends PipelineRunner.Options {
 
 		@Option(name = "-inDir", usage = "Input Directory", required = true, metaVar = "IN-DIRECTORY")
 		public File inDir;
@@ -38,6 +38,12 @@ public class UIMABIOC_03_ExtractSections {
 		@Option(name = "-outDir", usage = "Output Directory", required = true, metaVar = "OUT-FILE")
 		public File outDir;
 
+		@Option(name = "-shard", usage = "Index of this shard (0..shards-1)", required = false, metaVar = "I")
+		public int shard = 0;
+
+		@Option(name = "-shards", usage = "Number of shards to split the input into", required = false, metaVar = "N")
+		public int shards = 1;
+
 	}
 
 	private static Logger logger = Logger
@@ -71,11 +77,13 @@ public class UIMABIOC_03_ExtractSections {
 		TypeSystemDescription typeSystem = TypeSystemDescriptionFactory
 				.createTypeSystemDescription("bioc.TypeSystem");
 
-		CollectionReader cr = CollectionReaderFactory.createCollectionReader(
+		CollectionReaderDescription cr = CollectionReaderFactory.createDescription(
 				BioCCollectionReader.class, typeSystem,
 				BioCCollectionReader.INPUT_DIRECTORY, options.inDir,
 				BioCCollectionReader.OUTPUT_DIRECTORY, options.outDir,
-				BioCCollectionReader.PARAM_FORMAT, BioCCollectionReader.JSON);
+				BioCCollectionReader.PARAM_FORMAT, BioCCollectionReader.JSON,
+				BioCCollectionReader.PARAM_SHARD_INDEX, options.shard,
+				BioCCollectionReader.PARAM_SHARD_COUNT, options.shards);
 
 		AggregateBuilder builder = new AggregateBuilder();
 
@@ -92,7 +100,8 @@ public class UIMABIOC_03_ExtractSections {
 					options.outDir.getPath()
 					));
 
-		SimplePipeline.runPipeline(cr, builder.createAggregateDescription());
+		if (!PipelineRunner.run(cr, builder.createAggregateDescription(), options))
+			System.exit(1);
 
 	}
 
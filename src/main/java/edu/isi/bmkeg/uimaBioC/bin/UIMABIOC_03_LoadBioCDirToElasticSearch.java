@@ -1,7 +1,6 @@
 package edu.isi.bmkeg.uimaBioC.bin;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.Collection;
 
@@ -18,16 +17,14 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.stereotype.Component;
 
-import com.google.gson.Gson;
-
 import bioc.BioCDocument;
 import bioc.esViews.BioCDocument.BioCDocument__BioCAnnotation;
 import bioc.esViews.BioCDocument.BioCDocument__BioCDocument;
 import bioc.esViews.BioCDocument.BioCDocument__BioCLocation;
 import bioc.esViews.BioCDocument.BioCDocument__BioCPassage;
-import bioc.io.BioCDocumentReader;
-import bioc.io.BioCFactory;
 import edu.isi.bmkeg.uimaBioC.elasticSearch.BioCDocumentRepository;
+import edu.isi.bmkeg.uimaBioC.utils.BioCJson;
+import edu.isi.bmkeg.uimaBioC.utils.BioCXml;
 
 @Component
 public class UIMABIOC_03_LoadBioCDirToElasticSearch {
@@ -79,17 +76,11 @@ public class UIMABIOC_03_LoadBioCDirToElasticSearch {
 			BioCDocument bioD = null;
 			if (f.getName().endsWith(".json")) {
 
-				Gson gson = new Gson();
-				bioD = gson.fromJson(new FileReader(f), BioCDocument.class);
+				bioD = BioCJson.read(f);
 
 			} else {
 
-				BioCDocumentReader reader = BioCFactory.newFactory(BioCFactory.STANDARD)
-						.createBioCDocumentReader(new FileReader(f));
-
-				bioD = reader.readDocument();
-
-				reader.close();
+				bioD = BioCXml.read(f);
 			}
 
 			BioCDocument__BioCDocument esBioD = main.convertToES(bioD);
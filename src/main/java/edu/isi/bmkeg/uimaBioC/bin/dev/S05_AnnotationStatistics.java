@@ -1,24 +1,23 @@
 package edu.isi.bmkeg.uimaBioC.bin.dev;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
-import org.apache.uima.collection.CollectionReader;
-import org.apache.uima.resource.metadata.TypeSystemDescription;
-import org.cleartk.opennlp.tools.SentenceAnnotator;
-import org.cleartk.token.tokenizer.TokenAnnotator;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
-import org.uimafit.factory.AggregateBuilder;
-import org.uimafit.factory.AnalysisEngineFactory;
-import org.uimafit.factory.CollectionReaderFactory;
-import org.uimafit.factory.TypeSystemDescriptionFactory;
-import org.uimafit.pipeline.SimplePipeline;
 
-import edu.isi.bmkeg.uimaBioC.uima.out.SaveAsBioCDocuments;
-import edu.isi.bmkeg.uimaBioC.uima.out.TabulateBioCAnnotationTypes;
-import edu.isi.bmkeg.uimaBioC.uima.readers.BioCCollectionReader;
+import bioc.BioCAnnotation;
+import bioc.BioCDocument;
+import bioc.BioCPassage;
+import edu.isi.bmkeg.uimaBioC.utils.BioCJson;
+import edu.isi.bmkeg.uimaBioC.utils.BioCXml;
+import edu.isi.bmkeg.uimaBioC.utils.FileWalker;
 
 
 
@@ -69,27 +68,69 @@ public class S05_AnnotationStatistics {
 
 		}
 
-		TypeSystemDescription typeSystem = TypeSystemDescriptionFactory
-				.createTypeSystemDescription("bioc.TypeSystem");
+		// Streams each document a passage at a time rather than building
+		// a CAS for it: only the annotations' infons are needed.
+		Map<String, Map<String, Integer>> table = new HashMap<String, Map<String, Integer>>();
+		FileWalker files = new FileWalker(options.inDir, true, "xml", "json");
+		while (files.hasNext()) {
+			File f = files.next();
+			if (f.getName().endsWith(".json")) {
+				BioCDocument d = BioCJson.read(f);
+				for (BioCPassage p : d.getPassages())
+					countAnnotations(d, p, table);
+			} else {
+				try (BioCXml.DocumentReader reader = new BioCXml.DocumentReader(f)) {
+					BioCDocument d;
+					while ((d = reader.readDocumentHeader()) != null) {
+						BioCPassage p;
+						while ((p = reader.nextPassage()) != null)
+							countAnnotations(d, p, table);
+					}
+				}
+			}
+		}
 
-		CollectionReader cr = CollectionReaderFactory.createCollectionReader(
-				BioCCollectionReader.class, typeSystem,
-				BioCCollectionReader.INPUT_DIRECTORY, options.inDir,
-				BioCCollectionReader.PARAM_FORMAT, BioCCollectionReader.JSON);
+		if (options.outFile.getParentFile() != null && !options.outFile.getParentFile().exists())
+			options.outFile.getParentFile().mkdirs();
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(options.outFile)));
+		out.println(options.inDir.getPath());
+		out.println("pmid\ttype\tcount");
+		for (String pmid : table.keySet()) {
+			for (String key : table.get(pmid).keySet()) {
+				out.println(pmid + "\t" + key + "\t" + table.get(pmid).get(key));
+			}
+		}
+		out.close();
 
-		AggregateBuilder builder = new AggregateBuilder();
+	}
 
-		builder.add(SentenceAnnotator.getDescription()); // Sentence
-		builder.add(TokenAnnotator.getDescription());   // Tokenization
-	
-		builder.add(AnalysisEngineFactory.createPrimitiveDescription(
-				TabulateBioCAnnotationTypes.class, 
-				TabulateBioCAnnotationTypes.PARAM_TITLE,
-				options.inDir.getPath(),
-				TabulateBioCAnnotationTypes.PARAM_FILE_PATH,
-				options.outFile.getPath()));
+	/**
+	 * Counts the annotations that TabulateBioCAnnotationTypes would count
+	 * once the passage was in a CAS, i.e. the ones with a 'type' infon less
+	 * the formatting that UimaBioCUtils leaves out.
+	 */
+	private static void countAnnotations(BioCDocument d, BioCPassage p, Map<String, Map<String, Integer>> table) {
 
-		SimplePipeline.runPipeline(cr, builder.createAggregateDescription());
+		if (d.getID() == null || d.getID().equals("skip"))
+			return;
+
+		Map<String, Integer> row = table.get(d.getID());
+		if (row == null) {
+			row = new HashMap<String, Integer>();
+			table.put(d.getID(), row);
+		}
+
+		for (BioCAnnotation a : p.getAnnotations()) {
+			String value = a.getInfons().get("value");
+			if (value == null || value.equals("bold") || value.equals("italic") || value.equals("sup")
+					|| value.equals("sub"))
+				continue;
+			if (!a.getInfons().containsKey("type"))
+				continue;
+			String key = a.getInfons().get("type") + "." + value;
+			Integer count = row.get(key);
+			row.put(key, count == null ? 1 : count + 1);
+		}
 
 	}
 
@@ -86,6 +86,8 @@ public class S12_accessElasticSearchIndexes {
 				typeSystem);
 	    bindExternalResource(crDesc, "bioCRepository", 
 	    		BioCDocumentElasticSearchReader.BIOC_ES_REPO);
+	    bindExternalResource(crDesc, "elasticsearchTemplate", 
+	    		BioCDocumentElasticSearchReader.ES_TEMPLATE);
 	    
 	    CollectionReader cr =  UIMAFramework.produceCollectionReader(crDesc, resMgr, null);
 	    
@@ -3,8 +3,6 @@ package edu.isi.bmkeg.uimaBioC.bin.dev;
 import java.io.File;
 
 import org.apache.log4j.Logger;
-import org.apache.uima.UIMAFramework;
-import org.apache.uima.collection.CollectionReader;
 import org.apache.uima.collection.CollectionReaderDescription;
 import org.apache.uima.fit.factory.CollectionReaderFactory;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
@@ -17,15 +15,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.uimafit.factory.AggregateBuilder;
 import org.uimafit.factory.AnalysisEngineFactory;
-import org.uimafit.factory.CpeBuilder;
 import org.uimafit.factory.TypeSystemDescriptionFactory;
-import org.uimafit.pipeline.SimplePipeline;
 
 import edu.isi.bmkeg.uimaBioC.elasticSearch.BioCDocumentRepository;
 import edu.isi.bmkeg.uimaBioC.rubicon.RemoveSentencesNotInTitleAbstractBody;
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.FixSentencesFromHeadings;
 import edu.isi.bmkeg.uimaBioC.uima.ae.nlp.StanfordParse;
 import edu.isi.bmkeg.uimaBioC.uima.readers.BioCCollectionReader;
+import edu.isi.bmkeg.uimaBioC.utils.PipelineRunner;
 
 
 /** 
@@ -39,7 +36,7 @@ public class S14_runParser {
 	@Autowired
 	BioCDocumentRepository biocRepo;
 
-	public static class Options {
+	public static class Options extends PipelineRunner.Options {
 		
 		@Option(name = "-biocDir", usage = "Input Directory", required = true, metaVar = "IN-DIRECTORY")
 		public File biocDir;
@@ -78,9 +75,7 @@ public class S14_runParser {
 				BioCCollectionReader.class, typeSystem,
 				BioCCollectionReader.INPUT_DIRECTORY, options.biocDir,
 				BioCCollectionReader.PARAM_FORMAT, BioCCollectionReader.JSON);
-	    
-	    CollectionReader cr =  UIMAFramework.produceCollectionReader(crDesc, null, null);	    
-	    
+
 		AggregateBuilder builder = new AggregateBuilder();
 
 		builder.add(SentenceAnnotator.getDescription()); // Sentence
@@ -96,9 +91,8 @@ public class S14_runParser {
 		builder.add(AnalysisEngineFactory.createPrimitiveDescription(
 				StanfordParse.class));
 		
-		CpeBuilder builder2 = new CpeBuilder();
-		builder2.setMaxProcessingUnitThreatCount(10);
-		SimplePipeline.runPipeline(crDesc, builder.createAggregateDescription());
+		if (!PipelineRunner.run(crDesc, builder.createAggregateDescription(), options))
+			System.exit(1);
 
 	}
 
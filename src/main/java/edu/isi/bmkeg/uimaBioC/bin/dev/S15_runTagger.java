@@ -3,8 +3,6 @@ package edu.isi.bmkeg.uimaBioC.bin.dev;
 import java.io.File;
 
 import org.apache.log4j.Logger;
-import org.apache.uima.UIMAFramework;
-import org.apache.uima.collection.CollectionReader;
 import org.apache.uima.collection.CollectionReaderDescription;
 import org.apache.uima.fit.factory.CollectionReaderFactory;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
@@ -18,13 +16,13 @@ import org.springframework.stereotype.Component;
 import org.uimafit.factory.AggregateBuilder;
 import org.uimafit.factory.AnalysisEngineFactory;
 import org.uimafit.factory.TypeSystemDescriptionFactory;
-import org.uimafit.pipeline.SimplePipeline;
 
 import edu.isi.bmkeg.uimaBioC.elasticSearch.BioCDocumentRepository;
 import edu.isi.bmkeg.uimaBioC.rubicon.RemoveSentencesNotInTitleAbstractBody;
 import edu.isi.bmkeg.uimaBioC.uima.ae.core.FixSentencesFromHeadings;
 import edu.isi.bmkeg.uimaBioC.uima.ae.nlp.StanfordTag;
 import edu.isi.bmkeg.uimaBioC.uima.readers.BioCCollectionReader;
+import edu.isi.bmkeg.uimaBioC.utils.PipelineRunner;
 
 
 @Component
@@ -33,7 +31,7 @@ public class S15_runTagger {
 	@Autowired
 	BioCDocumentRepository biocRepo;
 
-	public static class Options {
+	public static class Options extends PipelineRunner.Options {
 		
 		@Option(name = "-biocDir", usage = "Input Directory", required = true, metaVar = "IN-DIRECTORY")
 		public File biocDir;
@@ -72,9 +70,7 @@ public class S15_runTagger {
 				BioCCollectionReader.class, typeSystem,
 				BioCCollectionReader.INPUT_DIRECTORY, options.biocDir,
 				BioCCollectionReader.PARAM_FORMAT, BioCCollectionReader.JSON);
-	    
-	    CollectionReader cr =  UIMAFramework.produceCollectionReader(crDesc, null, null);	    
-	    
+
 		AggregateBuilder builder = new AggregateBuilder();
 
 		builder.add(SentenceAnnotator.getDescription()); // Sentence
@@ -91,7 +87,8 @@ public class S15_runTagger {
 		builder.add(AnalysisEngineFactory.createPrimitiveDescription(
 				StanfordTag.class));
 		
-		SimplePipeline.runPipeline(crDesc, builder.createAggregateDescription());
+		if (!PipelineRunner.run(crDesc, builder.createAggregateDescription(), options))
+			System.exit(1);
 
 	}
 
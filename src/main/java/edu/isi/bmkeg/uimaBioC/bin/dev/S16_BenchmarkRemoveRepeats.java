@@ -0,0 +1,159 @@
+package edu.isi.bmkeg.uimaBioC.bin.dev;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.apache.uima.jcas.JCas;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.uimafit.factory.JCasFactory;
+import org.uimafit.util.JCasUtil;
+
+import bioc.BioCDocument;
+import bioc.type.UimaBioCAnnotation;
+import bioc.type.UimaBioCPassage;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
+import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.uima.ae.core.RemoveRepeatedBioCAnnotations;
+
+/**
+ * Times RemoveRepeatedBioCAnnotations.readRepeats against the original
+ * pairwise stringify() comparison on a directory of BioC files, and
+ * checks that both pick out exactly the same annotations.
+ *
+ * Use -copies to add that many repeats of every annotation, which makes
+ * ordinary documents as annotation-heavy as the ones that carry lapdf
+ * blocks, parses and clauses.
+ */
+public class S16_BenchmarkRemoveRepeats {
+
+	public static class Options {
+
+		@Option(name = "-inDir", usage = "Directory of BioC files", required = true, metaVar = "IN-DIRECTORY")
+		public File inDir;
+
+		@Option(name = "-copies", usage = "Extra copies of each annotation to add", required = false, metaVar = "N")
+		public int copies = 0;
+
+		@Option(name = "-maxFiles", usage = "Stop after this many files", required = false, metaVar = "N")
+		public int maxFiles = 100;
+
+	}
+
+	private static Logger logger = Logger.getLogger(S16_BenchmarkRemoveRepeats.class);
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+
+		Options options = new Options();
+
+		CmdLineParser parser = new CmdLineParser(options);
+
+		try {
+
+			parser.parseArgument(args);
+
+		} catch (CmdLineException e) {
+
+			System.err.println(e.getMessage());
+			System.err.print("Arguments: ");
+			parser.printSingleLineUsage(System.err);
+			System.err.println("\n\n Options: \n");
+			parser.printUsage(System.err);
+			System.exit(-1);
+
+		}
+
+		String[] fileTypes = { "xml", "json" };
+		Collection<File> files = (Collection<File>) FileUtils.listFiles(options.inDir, fileTypes, true);
+
+		JCas jCas = JCasFactory.createJCas("bioc.TypeSystem");
+
+		long oldTime = 0, newTime = 0;
+		int nFiles = 0, nAnnotations = 0, nRepeats = 0;
+		for (File f : files) {
+
+			if (nFiles >= options.maxFiles)
+				break;
+
+			BioCDocument d = UimaBioCUtils.readBioCFile(f);
+			jCas.reset();
+			UimaBioCUtils.addBioCDocumentToUimaCas(d, jCas);
+			UimaBioCPassage docP = UimaBioCUtils.readDocument(jCas);
+			if (docP == null)
+				continue;
+
+			addCopies(jCas, options.copies);
+			nAnnotations += JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, docP).size();
+
+			long t = System.nanoTime();
+			Set<UimaBioCAnnotation> oldRepeats = readRepeatsPairwise(jCas, docP);
+			oldTime += System.nanoTime() - t;
+
+			t = System.nanoTime();
+			Set<UimaBioCAnnotation> newRepeats = RemoveRepeatedBioCAnnotations.readRepeats(jCas, docP);
+			newTime += System.nanoTime() - t;
+
+			if (!oldRepeats.equals(newRepeats)) {
+				logger.error("Results differ for " + f.getPath() + ": " + oldRepeats.size() + " vs "
+						+ newRepeats.size());
+			}
+			nRepeats += newRepeats.size();
+			nFiles++;
+
+		}
+
+		System.out.println("files: " + nFiles + ", annotations: " + nAnnotations + ", repeats: " + nRepeats);
+		System.out.println("pairwise:    " + (oldTime / 1000000) + " ms");
+		System.out.println("fingerprint: " + (newTime / 1000000) + " ms");
+		if (newTime > 0)
+			System.out.println("speedup:     " + String.format("%.1f", (double) oldTime / newTime) + "x");
+
+	}
+
+	private static void addCopies(JCas jCas, int copies) {
+		if (copies <= 0)
+			return;
+		List<UimaBioCAnnotation> originals = new ArrayList<UimaBioCAnnotation>(
+				JCasUtil.select(jCas, UimaBioCAnnotation.class));
+		for (UimaBioCAnnotation a : originals) {
+			for (int i = 0; i < copies; i++) {
+				UimaBioCAnnotation c = new UimaBioCAnnotation(jCas, a.getBegin(), a.getEnd());
+				UimaBioCInfons.setInfons(c, UimaBioCUtils.convertInfons(a.getInfons()), jCas);
+				c.addToIndexes();
+			}
+		}
+	}
+
+	/**
+	 * The original implementation, kept here as the reference.
+	 */
+	private static Set<UimaBioCAnnotation> readRepeatsPairwise(JCas jCas, UimaBioCPassage docP) {
+		Set<UimaBioCAnnotation> repeats = new HashSet<UimaBioCAnnotation>();
+		for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, docP)) {
+			String s1 = UimaBioCUtils.stringify(a);
+			for (UimaBioCAnnotation aa : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, a.getBegin(), a.getEnd())) {
+				if( repeats.contains(a) )
+					continue;
+				if( !a.equals(aa) ) {
+					String s2 = UimaBioCUtils.stringify(aa);
+					if( s1.equals(s2) ) {
+						repeats.add(aa);
+					}
+				}
+			}
+		}
+		return repeats;
+	}
+
+}
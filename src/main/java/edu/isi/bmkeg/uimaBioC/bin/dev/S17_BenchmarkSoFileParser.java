@@ -0,0 +1,136 @@
+package edu.isi.bmkeg.uimaBioC.bin.dev;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import edu.isi.bmkeg.uimaBioC.utils.SoFileParser;
+
+/**
+ * Times SoFileParser against the line.split() parsing that
+ * Nxml2TxtFilesCollectionReader used to do, over a directory of nxml2txt
+ * .so files, and checks that both read the same tags and offsets.
+ */
+public class S17_BenchmarkSoFileParser {
+
+	public static class Options {
+
+		@Option(name = "-inDir", usage = "Directory of .so files", required = true, metaVar = "IN-DIRECTORY")
+		public File inDir;
+
+		@Option(name = "-maxFiles", usage = "Stop after this many files", required = false, metaVar = "N")
+		public int maxFiles = 1000;
+
+		@Option(name = "-rounds", usage = "Number of passes over the files", required = false, metaVar = "N")
+		public int rounds = 3;
+
+	}
+
+	private static Logger logger = Logger.getLogger(S17_BenchmarkSoFileParser.class);
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+
+		Options options = new Options();
+
+		CmdLineParser parser = new CmdLineParser(options);
+
+		try {
+
+			parser.parseArgument(args);
+
+		} catch (CmdLineException e) {
+
+			System.err.println(e.getMessage());
+			System.err.print("Arguments: ");
+			parser.printSingleLineUsage(System.err);
+			System.err.println("\n\n Options: \n");
+			parser.printUsage(System.err);
+			System.exit(-1);
+
+		}
+
+		String[] fileTypes = { "so" };
+		List<File> files = new ArrayList<File>();
+		for (File f : (Collection<File>) FileUtils.listFiles(options.inDir, fileTypes, true)) {
+			if (files.size() >= options.maxFiles)
+				break;
+			files.add(f);
+		}
+
+		SoFileParser.Records records = new SoFileParser.Records();
+		long oldTime = 0, newTime = 0;
+		int nLines = 0;
+		for (int round = 0; round < options.rounds; round++) {
+			for (File f : files) {
+
+				long t = System.nanoTime();
+				List<String> old = parseWithSplit(f);
+				oldTime += System.nanoTime() - t;
+
+				t = System.nanoTime();
+				SoFileParser.parse(f.toPath(), records);
+				newTime += System.nanoTime() - t;
+
+				if (round > 0)
+					continue;
+				nLines += records.size();
+				List<String> parsed = new ArrayList<String>(records.size());
+				for (int i = 0; i < records.size(); i++) {
+					parsed.add(records.getTag(i).getName() + " " + records.getBegin(i) + " " + records.getEnd(i)
+							+ "\t" + records.getStr(i) + "\t" + records.getCodes(i));
+				}
+				if (!old.equals(parsed))
+					logger.error("Results differ for " + f.getPath());
+
+			}
+		}
+
+		System.out.println("files: " + files.size() + ", records: " + nLines + ", rounds: " + options.rounds);
+		System.out.println("split:        " + (oldTime / 1000000) + " ms");
+		System.out.println("SoFileParser: " + (newTime / 1000000) + " ms");
+		if (newTime > 0)
+			System.out.println("speedup:      " + String.format("%.1f", (double) oldTime / newTime) + "x");
+
+	}
+
+	/**
+	 * The original parsing loop, kept here as the reference.
+	 */
+	private static List<String> parseWithSplit(File f) throws Exception {
+		List<String> parsed = new ArrayList<String>();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF-8"))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] fields = line.split("\t");
+				if (fields.length < 3)
+					continue;
+				String[] typeOffsetArray = fields[1].split(" ");
+				String type = typeOffsetArray[0];
+				if (SoFileParser.readTag(type) == null)
+					continue;
+				int begin = new Integer(typeOffsetArray[1]);
+				int end = new Integer(typeOffsetArray[2]);
+				String codes = "";
+				if (fields.length > 3)
+					codes = fields[3];
+				parsed.add(type + " " + begin + " " + end + "\t" + fields[2] + "\t" + codes);
+			}
+		}
+		return parsed;
+	}
+
+}
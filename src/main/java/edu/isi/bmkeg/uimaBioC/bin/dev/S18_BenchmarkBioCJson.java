@@ -0,0 +1,131 @@
+package edu.isi.bmkeg.uimaBioC.bin.dev;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import bioc.BioCDocument;
+
+import com.google.gson.Gson;
+
+import edu.isi.bmkeg.uimaBioC.utils.BioCJson;
+
+/**
+ * Times BioCJson against reflective Gson on a directory of BioC .json
+ * files, reading each file and writing it back out, and checks that both
+ * write exactly the same JSON.
+ */
+public class S18_BenchmarkBioCJson {
+
+	public static class Options {
+
+		@Option(name = "-inDir", usage = "Directory of BioC .json files", required = true, metaVar = "IN-DIRECTORY")
+		public File inDir;
+
+		@Option(name = "-maxFiles", usage = "Stop after this many files", required = false, metaVar = "N")
+		public int maxFiles = 1000;
+
+		@Option(name = "-rounds", usage = "Number of passes over the files", required = false, metaVar = "N")
+		public int rounds = 3;
+
+	}
+
+	private static Logger logger = Logger.getLogger(S18_BenchmarkBioCJson.class);
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+
+		Options options = new Options();
+
+		CmdLineParser parser = new CmdLineParser(options);
+
+		try {
+
+			parser.parseArgument(args);
+
+		} catch (CmdLineException e) {
+
+			System.err.println(e.getMessage());
+			System.err.print("Arguments: ");
+			parser.printSingleLineUsage(System.err);
+			System.err.println("\n\n Options: \n");
+			parser.printUsage(System.err);
+			System.exit(-1);
+
+		}
+
+		String[] fileTypes = { "json" };
+		List<File> files = new ArrayList<File>();
+		for (File f : (Collection<File>) FileUtils.listFiles(options.inDir, fileTypes, true)) {
+			if (files.size() >= options.maxFiles)
+				break;
+			files.add(f);
+		}
+
+		Gson gson = new Gson();
+		long gsonRead = 0, gsonWrite = 0, codecRead = 0, codecWrite = 0;
+		long nChars = 0;
+		int nDiffs = 0;
+		for (int round = 0; round < options.rounds; round++) {
+			for (File f : files) {
+
+				long t = System.nanoTime();
+				BioCDocument d1;
+				try (Reader r = new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8)) {
+					d1 = gson.fromJson(r, BioCDocument.class);
+				}
+				gsonRead += System.nanoTime() - t;
+
+				t = System.nanoTime();
+				BioCDocument d2 = BioCJson.read(f);
+				codecRead += System.nanoTime() - t;
+
+				t = System.nanoTime();
+				String json1 = gson.toJson(d1);
+				gsonWrite += System.nanoTime() - t;
+
+				t = System.nanoTime();
+				StringWriter w = new StringWriter(json1.length());
+				BioCJson.write(d2, w);
+				String json2 = w.toString();
+				codecWrite += System.nanoTime() - t;
+
+				if (round > 0)
+					continue;
+				nChars += json1.length();
+				if (!json1.equals(json2)) {
+					logger.error("Output differs for " + f.getPath());
+					nDiffs++;
+				}
+
+			}
+		}
+
+		System.out.println("files: " + files.size() + ", chars: " + nChars + ", rounds: " + options.rounds
+				+ ", differences: " + nDiffs);
+		System.out.println("read  gson:     " + (gsonRead / 1000000) + " ms");
+		System.out.println("read  BioCJson: " + (codecRead / 1000000) + " ms");
+		System.out.println("write gson:     " + (gsonWrite / 1000000) + " ms");
+		System.out.println("write BioCJson: " + (codecWrite / 1000000) + " ms");
+		if (codecRead + codecWrite > 0)
+			System.out.println("speedup:        "
+					+ String.format("%.1f", (double) (gsonRead + gsonWrite) / (codecRead + codecWrite)) + "x");
+
+	}
+
+}
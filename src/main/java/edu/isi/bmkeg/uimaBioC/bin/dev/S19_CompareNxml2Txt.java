@@ -0,0 +1,171 @@
+package edu.isi.bmkeg.uimaBioC.bin.dev;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import edu.isi.bmkeg.uimaBioC.utils.FileWalker;
+import edu.isi.bmkeg.uimaBioC.utils.Nxml2Txt;
+import edu.isi.bmkeg.uimaBioC.utils.SoFileParser;
+
+/**
+ * Checks Nxml2Txt against the output of the python nxml2txt script. Every
+ * .nxml file under inDir is converted in memory and compared with the
+ * .txt and .so files at the same relative path under goldDir (e.g. the
+ * outDir of UIMABIOC_00_SimpleRunNxml2Txt run with -execPath). The .so
+ * files are compared on the lines the collection readers use (see
+ * SoFileParser.Tag): tag, offsets and attributes.
+ *
+ * Without -goldDir, this only times the conversion, e.g. on
+ * src/test/resources/01_plOpenAccess_data.
+ */
+public class S19_CompareNxml2Txt {
+
+	public static class Options {
+
+		@Option(name = "-inDir", usage = "Directory of .nxml files", required = true, metaVar = "IN-DIRECTORY")
+		public File inDir;
+
+		@Option(name = "-goldDir", usage = "Directory of .txt and .so files written by nxml2txt", required = false, metaVar = "GOLD-DIRECTORY")
+		public File goldDir;
+
+		@Option(name = "-rounds", usage = "Number of passes over the files", required = false, metaVar = "N")
+		public int rounds = 1;
+
+	}
+
+	private static Logger logger = Logger.getLogger(S19_CompareNxml2Txt.class);
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+
+		Options options = new Options();
+
+		CmdLineParser parser = new CmdLineParser(options);
+
+		try {
+
+			parser.parseArgument(args);
+
+		} catch (CmdLineException e) {
+
+			System.err.println(e.getMessage());
+			System.err.print("Arguments: ");
+			parser.printSingleLineUsage(System.err);
+			System.err.println("\n\n Options: \n");
+			parser.printUsage(System.err);
+			System.exit(-1);
+
+		}
+
+		List<File> files = new ArrayList<File>();
+		FileWalker walker = new FileWalker(options.inDir, true, "nxml");
+		while (walker.hasNext())
+			files.add(walker.next());
+
+		int nRoot = options.inDir.getPath().length();
+		long time = 0, nChars = 0;
+		int nFiles = 0, nTextDiffs = 0, nSoDiffs = 0, nMissing = 0;
+		for (int round = 0; round < options.rounds; round++) {
+			for (File f : files) {
+
+				long t = System.nanoTime();
+				Nxml2Txt.Result r;
+				try (InputStream in = new BufferedInputStream(new FileInputStream(f), 1 << 16)) {
+					r = Nxml2Txt.convert(in);
+				}
+				time += System.nanoTime() - t;
+
+				if (round > 0)
+					continue;
+				nFiles++;
+				nChars += r.getText().length();
+				if (options.goldDir == null)
+					continue;
+
+				String stem = f.getPath().substring(nRoot, f.getPath().length() - ".nxml".length());
+				File txtFile = new File(options.goldDir, stem + ".txt");
+				File soFile = new File(options.goldDir, stem + ".so");
+				if (!txtFile.exists() || !soFile.exists()) {
+					nMissing++;
+					continue;
+				}
+
+				String txt = FileUtils.readFileToString(txtFile, "UTF-8");
+				if (!txt.equals(r.getText())) {
+					nTextDiffs++;
+					logger.error("Text differs for " + f.getPath() + " at char " + firstDifference(txt, r.getText()));
+				}
+
+				StringWriter so = new StringWriter();
+				r.writeStandoffs(so);
+				List<String> expected = readerLines(FileUtils.readFileToString(soFile, "UTF-8"));
+				List<String> actual = readerLines(so.toString());
+				if (!expected.equals(actual)) {
+					nSoDiffs++;
+					int i = 0;
+					while (i < expected.size() && i < actual.size() && expected.get(i).equals(actual.get(i)))
+						i++;
+					logger.error("Standoffs differ for " + f.getPath() + ": expected '"
+							+ (i < expected.size() ? expected.get(i) : "") + "', got '"
+							+ (i < actual.size() ? actual.get(i) : "") + "'");
+				}
+
+			}
+		}
+
+		System.out.println("files: " + nFiles + ", chars: " + nChars + ", rounds: " + options.rounds);
+		System.out.println("Nxml2Txt: " + (time / 1000000) + " ms");
+		if (options.goldDir != null)
+			System.out.println("missing: " + nMissing + ", text differences: " + nTextDiffs
+					+ ", standoff differences: " + nSoDiffs);
+
+	}
+
+	private static int firstDifference(String a, String b) {
+		int i = 0;
+		while (i < a.length() && i < b.length() && a.charAt(i) == b.charAt(i))
+			i++;
+		return i;
+	}
+
+	/**
+	 * The 'tag begin end<TAB>attributes' of each line whose tag the readers
+	 * use, leaving out the id and covered text.
+	 */
+	private static List<String> readerLines(String so) {
+
+		Set<String> tags = new HashSet<String>();
+		for (SoFileParser.Tag t : SoFileParser.Tag.values())
+			tags.add(t.getName());
+
+		List<String> lines = new ArrayList<String>();
+		for (String line : so.split("\n")) {
+			String[] fields = line.split("\t");
+			if (fields.length < 2)
+				continue;
+			String tag = fields[1].substring(0, Math.max(0, fields[1].indexOf(' ')));
+			if (!tags.contains(tag))
+				continue;
+			lines.add(fields[1] + "\t" + (fields.length > 3 ? fields[3] : ""));
+		}
+		return lines;
+
+	}
+
+}
@@ -0,0 +1,504 @@
+package edu.isi.bmkeg.uimaBioC.bin.dev;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import edu.isi.bmkeg.uimaBioC.bin.UIMABIOC_00_SimpleRunNxml2Txt;
+import edu.isi.bmkeg.uimaBioC.bin.UIMABIOC_01_Nxml2txt_to_BioC;
+import edu.isi.bmkeg.uimaBioC.bin.UIMABIOC_02_preprocessToBioC;
+import edu.isi.bmkeg.uimaBioC.bin.UIMABIOC_03_BioCToClauseTsv;
+
+/**
+ * Runs stages 00 (nxml2txt), 01 (BioC), 02 (parse and clauses) and 03
+ * (clause spreadsheets) end to end on a corpus of .nxml files - by default
+ * the PMC articles under src/test/resources/01_plOpenAccess_data - once
+ * for each thread count, and reports for each stage the documents per
+ * second, the p50/p95/p99 time per document, the peak heap and the bytes
+ * written. The peak heap is the most used heap seen by sampling every
+ * few milliseconds while the stage runs, so a short spike can be missed.
+ *
+ * -replicas N copies every article N times (the copies get new PubMed
+ * IDs, so each is a document of its own) to see how the stages hold up
+ * on a bigger corpus. The report is written as JSON and, with -baseline,
+ * compared with an earlier report: a stage that is more than -tolerance
+ * slower (in documents per second or p95), or scales worse from one
+ * thread to N than it did, counts as a regression and the exit status is
+ * 2.
+ *
+ * Everything runs in this JVM by calling the drivers' main() methods, with
+ * -nThreads set and per-document times taken from their -metrics output
+ * (see PipelineMetrics). Stage 00 has no per-document times. The models
+ * all come from the classpath, so no network access is needed. A stage
+ * that fails exits the JVM, as the drivers do.
+ */
+public class S20_BenchmarkPipeline {
+
+	public static class Options {
+
+		@Option(name = "-inDir", usage = "Directory of .nxml files", required = false, metaVar = "IN-DIRECTORY")
+		public File inDir = new File("src/test/resources/01_plOpenAccess_data");
+
+		@Option(name = "-workDir", usage = "Directory for the corpus and the output of each run", required = true, metaVar = "WORK-DIRECTORY")
+		public File workDir;
+
+		@Option(name = "-replicas", usage = "Copies of each article in the corpus", required = false, metaVar = "N")
+		public int replicas = 1;
+
+		@Option(name = "-threads", usage = "Comma-separated thread counts to run with", required = false, metaVar = "N,N,...")
+		public String threads = "1,2,4";
+
+		@Option(name = "-stages", usage = "Comma-separated stages to run", required = false, metaVar = "00,01,02,03")
+		public String stages = "00,01,02,03";
+
+		@Option(name = "-execPath", usage = "Path to the nxml2text executable for stage 00 (default: convert in Java)", required = false, metaVar = "PATH")
+		public File execPath;
+
+		@Option(name = "-maxSentenceLength", usage = "Longest sentence stage 02 parses (characters)", required = false, metaVar = "N")
+		public int maxSentenceLength = 200;
+
+		@Option(name = "-report", usage = "Where to write the report (default: WORK-DIRECTORY/benchmark.json)", required = false, metaVar = "REPORT-FILE")
+		public File report;
+
+		@Option(name = "-baseline", usage = "An earlier report to compare with", required = false, metaVar = "BASELINE-FILE")
+		public File baseline;
+
+		@Option(name = "-tolerance", usage = "Slowdown relative to the baseline that counts as a regression", required = false, metaVar = "FRACTION")
+		public double tolerance = 0.15;
+
+	}
+
+	/**
+	 * One stage run with one thread count.
+	 */
+	public static class StageResult {
+		public String stage;
+		public int threads;
+		public long documents;
+		public double seconds;
+		public double documentsPerSecond;
+		// null for stage 00
+		public Double p50Ms;
+		public Double p95Ms;
+		public Double p99Ms;
+		public long peakHeapBytes;
+		public long outputBytes;
+	}
+
+	public static class Report {
+		public long time;
+		public String corpus;
+		public int articles;
+		public int replicas;
+		public int documents;
+		public int availableProcessors;
+		public long maxHeapBytes;
+		public String javaVersion;
+		public List<StageResult> results = new ArrayList<StageResult>();
+	}
+
+	private static final Pattern PMID = Pattern
+			.compile("(<article-id\\s+pub-id-type=\"pmid\"\\s*>\\s*)(\\d+)(\\s*</article-id>)");
+
+	// replica r of article n gets the PubMed ID r * OFFSET + n
+	private static final long OFFSET = 1000000000L;
+
+	private static Logger logger = Logger.getLogger(S20_BenchmarkPipeline.class);
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+
+		Options options = new Options();
+
+		CmdLineParser parser = new CmdLineParser(options);
+
+		try {
+
+			parser.parseArgument(args);
+
+		} catch (CmdLineException e) {
+
+			System.err.println(e.getMessage());
+			System.err.print("Arguments: ");
+			parser.printSingleLineUsage(System.err);
+			System.err.println("\n\n Options: \n");
+			parser.printUsage(System.err);
+			System.exit(-1);
+
+		}
+
+		List<String> stages = Arrays.asList(options.stages.split("\\s*,\\s*"));
+		for (String s : stages) {
+			if (!Arrays.asList("00", "01", "02", "03").contains(s)) {
+				System.err.println("Unknown stage " + s + ", expected 00, 01, 02 or 03");
+				System.exit(-1);
+			}
+		}
+		if (stages.contains("02") && !stages.contains("01")) {
+			System.err.println("Stage 02 reads the output of stage 01");
+			System.exit(-1);
+		}
+		if (stages.contains("03") && !stages.contains("02")) {
+			System.err.println("Stage 03 reads the clauses added by stage 02");
+			System.exit(-1);
+		}
+		List<Integer> threadCounts = new ArrayList<Integer>();
+		for (String t : options.threads.split("\\s*,\\s*"))
+			threadCounts.add(Integer.parseInt(t));
+		if (options.report == null)
+			options.report = new File(options.workDir, "benchmark.json");
+
+		Report report = new Report();
+		report.time = System.currentTimeMillis();
+		report.corpus = options.inDir.getPath();
+		report.replicas = options.replicas;
+		report.availableProcessors = Runtime.getRuntime().availableProcessors();
+		report.maxHeapBytes = Runtime.getRuntime().maxMemory();
+		report.javaVersion = System.getProperty("java.version");
+
+		File corpus = new File(options.workDir, "corpus");
+		if (corpus.exists())
+			FileUtils.deleteDirectory(corpus);
+		report.articles = replicate(options.inDir, corpus, options.replicas);
+		report.documents = report.articles * options.replicas;
+		logger.info("Corpus of " + report.documents + " documents (" + report.articles + " articles x "
+				+ options.replicas + ") in " + corpus);
+
+		for (int threads : threadCounts) {
+
+			File runDir = new File(options.workDir, "threads-" + threads);
+			if (runDir.exists())
+				FileUtils.deleteDirectory(runDir);
+			File txtDir = new File(runDir, "00-txt");
+			File biocDir = new File(runDir, "01-bioc");
+			File parsedDir = new File(runDir, "02-bioc");
+			File tsvDir = new File(runDir, "03-tsv");
+			String n = String.valueOf(threads);
+
+			if (stages.contains("00")) {
+				List<String> a = new ArrayList<String>(Arrays.asList(
+						"-inDir", corpus.getPath(), "-outDir", txtDir.getPath(), "-nThreads", n));
+				if (options.execPath != null)
+					a.addAll(Arrays.asList("-execPath", options.execPath.getPath()));
+				else
+					a.add("-java");
+				report.results.add(runStage("00", threads, runDir, txtDir, null,
+						() -> UIMABIOC_00_SimpleRunNxml2Txt.main(a.toArray(new String[a.size()]))));
+			}
+
+			if (stages.contains("01")) {
+				File metrics = new File(runDir, "metrics-01.json");
+				List<String> a = new ArrayList<String>(Arrays.asList(
+						"-outDir", biocDir.getPath(), "-outFormat", "json",
+						"-nThreads", n, "-metrics", metrics.getPath(), "-metricsInterval", "86400"));
+				if (stages.contains("00"))
+					a.addAll(Arrays.asList("-inDir", txtDir.getPath()));
+				else
+					a.addAll(Arrays.asList("-inDir", corpus.getPath(), "-fromNxml"));
+				report.results.add(runStage("01", threads, runDir, biocDir, metrics,
+						() -> UIMABIOC_01_Nxml2txt_to_BioC.main(a.toArray(new String[a.size()]))));
+			}
+
+			if (stages.contains("02")) {
+				File metrics = new File(runDir, "metrics-02.json");
+				report.results.add(runStage("02", threads, runDir, parsedDir, metrics,
+						() -> UIMABIOC_02_preprocessToBioC.main(new String[] {
+								"-biocDir", biocDir.getPath(), "-outDir", parsedDir.getPath(), "-outFormat", "json",
+								"-maxSentenceLength", String.valueOf(options.maxSentenceLength),
+								"-nThreads", n, "-metrics", metrics.getPath(), "-metricsInterval", "86400" })));
+			}
+
+			if (stages.contains("03")) {
+				File metrics = new File(runDir, "metrics-03.json");
+				report.results.add(runStage("03", threads, runDir, tsvDir, metrics,
+						() -> UIMABIOC_03_BioCToClauseTsv.main(new String[] {
+								"-biocDir", parsedDir.getPath(), "-outDir", tsvDir.getPath(), "-outFormat", "tsv",
+								"-nThreads", n, "-metrics", metrics.getPath(), "-metricsInterval", "86400" })));
+			}
+
+		}
+
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		try (Writer w = new OutputStreamWriter(new FileOutputStream(options.report), StandardCharsets.UTF_8)) {
+			gson.toJson(report, w);
+		}
+
+		System.out.println("\n\n ------------------ PIPELINE BENCHMARK ------------------\n");
+		System.out.println(report.documents + " documents (" + report.articles + " articles x " + report.replicas
+				+ "), " + report.availableProcessors + " processors, max heap " + (report.maxHeapBytes >> 20)
+				+ " MB, Java " + report.javaVersion + "\n");
+		System.out.format("%-6s %7s %6s %9s %9s %9s %9s %9s %10s %10s\n", "stage", "threads", "docs", "seconds",
+				"docs/s", "p50 ms", "p95 ms", "p99 ms", "peak MB", "output MB");
+		for (StageResult r : report.results) {
+			System.out.format(Locale.ROOT, "%-6s %7d %6d %9.1f %9.2f %9s %9s %9s %10d %10.1f\n", r.stage, r.threads,
+					r.documents, r.seconds, r.documentsPerSecond, ms(r.p50Ms), ms(r.p95Ms), ms(r.p99Ms),
+					r.peakHeapBytes >> 20, r.outputBytes / 1048576.0);
+		}
+		System.out.println("\nReport written to " + options.report);
+
+		int regressions = 0;
+		if (options.baseline != null) {
+			Report baseline;
+			try (Reader r = new InputStreamReader(new FileInputStream(options.baseline), StandardCharsets.UTF_8)) {
+				baseline = gson.fromJson(r, Report.class);
+			}
+			regressions = compare(report, baseline, options.tolerance);
+		}
+
+		// The CPE can leave non-daemon threads behind.
+		System.exit(regressions > 0 ? 2 : 0);
+
+	}
+
+	private interface Stage {
+		void run() throws Exception;
+	}
+
+	private static StageResult runStage(String stage, int threads, File runDir, File outDir, File metrics, Stage s)
+			throws Exception {
+
+		logger.info("Stage " + stage + " with " + threads + " threads");
+		runDir.mkdirs();
+
+		System.gc();
+		HeapSampler heap = new HeapSampler();
+		heap.start();
+
+		long t = System.nanoTime();
+		try {
+			s.run();
+		} finally {
+			heap.finish();
+		}
+		long nanos = System.nanoTime() - t;
+
+		StageResult r = new StageResult();
+		r.stage = stage;
+		r.threads = threads;
+		r.seconds = nanos / 1e9;
+		r.peakHeapBytes = heap.peak;
+		r.outputBytes = outDir.exists() ? FileUtils.sizeOfDirectory(outDir) : 0;
+
+		if (metrics != null) {
+			JsonObject last = readLastSnapshot(metrics);
+			r.documents = last.get("documents").getAsLong();
+			JsonObject doc = last.getAsJsonObject("document");
+			r.p50Ms = doc.get("p50Ms").getAsDouble();
+			r.p95Ms = doc.get("p95Ms").getAsDouble();
+			r.p99Ms = doc.get("p99Ms").getAsDouble();
+		} else {
+			String[] fileTypes = { "txt" };
+			r.documents = FileUtils.listFiles(outDir, fileTypes, true).size();
+		}
+		r.documentsPerSecond = r.seconds > 0 ? r.documents / r.seconds : 0;
+
+		logger.info(String.format(Locale.ROOT, "Stage %s with %d threads: %d documents in %.1f s (%.2f/s)", stage,
+				threads, r.documents, r.seconds, r.documentsPerSecond));
+		return r;
+
+	}
+
+	/**
+	 * Samples the used heap, all pools together, until finish() is called.
+	 * The peaks the memory pools keep are each pool's own high-water mark,
+	 * reached at different times, so adding them up overstates the heap.
+	 */
+	private static class HeapSampler extends Thread {
+
+		private static final long INTERVAL_MS = 5;
+
+		private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		private volatile boolean running = true;
+		private long peak;
+
+		HeapSampler() {
+			super("heap-sampler");
+			setDaemon(true);
+			sample();
+		}
+
+		private void sample() {
+			peak = Math.max(peak, memory.getHeapMemoryUsage().getUsed());
+		}
+
+		public void run() {
+			while (running) {
+				sample();
+				try {
+					Thread.sleep(INTERVAL_MS);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+
+		void finish() throws InterruptedException {
+			running = false;
+			join();
+			sample();
+		}
+
+	}
+
+	private static JsonObject readLastSnapshot(File metrics) throws IOException {
+		String last = null;
+		for (String line : Files.readAllLines(metrics.toPath(), StandardCharsets.UTF_8)) {
+			if (line.trim().length() > 0)
+				last = line;
+		}
+		if (last == null)
+			throw new IOException("No metrics in " + metrics);
+		return new JsonParser().parse(last).getAsJsonObject();
+	}
+
+	/**
+	 * Copies the .nxml files under inDir to outDir, 'replicas' times over.
+	 * The first copy of each article is unchanged, the others have their
+	 * pmid article-id (and file name) changed so every copy has its own
+	 * document ID and output file.
+	 *
+	 * @return the number of articles
+	 */
+	private static int replicate(File inDir, File outDir, int replicas) throws IOException {
+
+		String[] fileTypes = { "nxml" };
+		@SuppressWarnings("unchecked")
+		Collection<File> files = FileUtils.listFiles(inDir, fileTypes, true);
+		String inPath = inDir.getAbsoluteFile().toURI().getPath();
+
+		for (File f : files) {
+
+			String rel = f.getAbsoluteFile().toURI().getPath().substring(inPath.length());
+			File target = new File(outDir, rel);
+			target.getParentFile().mkdirs();
+			FileUtils.copyFile(f, target);
+			if (replicas <= 1)
+				continue;
+
+			String xml = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+			Matcher m = PMID.matcher(xml);
+			boolean hasPmid = m.find();
+			for (int i = 1; i < replicas; i++) {
+				String copy = xml;
+				String name = "r" + i + "_" + f.getName();
+				if (hasPmid) {
+					String pmid = String.valueOf(i * OFFSET + Long.parseLong(m.group(2)));
+					copy = xml.substring(0, m.start()) + m.group(1) + pmid + m.group(3) + xml.substring(m.end());
+					name = pmid + ".nxml";
+				}
+				Files.write(new File(target.getParentFile(), name).toPath(), copy.getBytes(StandardCharsets.UTF_8));
+			}
+
+		}
+		return files.size();
+
+	}
+
+	/**
+	 * Prints each stage's change against the baseline and returns the number
+	 * of regressions.
+	 */
+	private static int compare(Report current, Report baseline, double tolerance) {
+
+		System.out.println("\n ------------------ COMPARED WITH " + new Date(baseline.time) + " ------------------\n");
+		if (current.documents != baseline.documents || current.availableProcessors != baseline.availableProcessors)
+			System.out.println("NOTE: the baseline ran " + baseline.documents + " documents on "
+					+ baseline.availableProcessors + " processors, this run " + current.documents + " on "
+					+ current.availableProcessors + "\n");
+
+		Map<String, StageResult> base = index(baseline.results);
+		Map<String, StageResult> cur = index(current.results);
+
+		int regressions = 0;
+		System.out.format("%-6s %7s %11s %11s %8s %9s %9s %8s %9s %9s\n", "stage", "threads", "docs/s", "baseline",
+				"change", "p95 ms", "baseline", "change", "speedup", "baseline");
+		for (StageResult r : current.results) {
+
+			StageResult b = base.get(r.stage + "@" + r.threads);
+			if (b == null)
+				continue;
+
+			List<String> problems = new ArrayList<String>();
+			if (r.documentsPerSecond < b.documentsPerSecond * (1 - tolerance))
+				problems.add("throughput");
+			if (r.p95Ms != null && b.p95Ms != null && r.p95Ms > b.p95Ms * (1 + tolerance))
+				problems.add("p95");
+
+			// speedup over the same stage on one thread, in both reports
+			Double speedup = speedup(r, cur.get(r.stage + "@1"));
+			Double baseSpeedup = speedup(b, base.get(r.stage + "@1"));
+			if (r.threads > 1 && speedup != null && baseSpeedup != null && speedup < baseSpeedup * (1 - tolerance))
+				problems.add("scaling");
+
+			System.out.format(Locale.ROOT, "%-6s %7d %11.2f %11.2f %7.1f%% %9s %9s %8s %9s %9s%s\n", r.stage,
+					r.threads, r.documentsPerSecond, b.documentsPerSecond,
+					change(r.documentsPerSecond, b.documentsPerSecond), ms(r.p95Ms), ms(b.p95Ms),
+					r.p95Ms != null && b.p95Ms != null ? String.format(Locale.ROOT, "%.1f%%", change(r.p95Ms, b.p95Ms))
+							: "-",
+					speedup != null ? String.format(Locale.ROOT, "%.2fx", speedup) : "-",
+					baseSpeedup != null ? String.format(Locale.ROOT, "%.2fx", baseSpeedup) : "-",
+					problems.isEmpty() ? "" : "   REGRESSION (" + String.join(", ", problems) + ")");
+			if (!problems.isEmpty())
+				regressions++;
+
+		}
+		System.out.println("\n" + regressions + " regressions (tolerance " + Math.round(tolerance * 100) + "%)");
+		return regressions;
+
+	}
+
+	private static Map<String, StageResult> index(List<StageResult> results) {
+		Map<String, StageResult> m = new HashMap<String, StageResult>();
+		for (StageResult r : results)
+			m.put(r.stage + "@" + r.threads, r);
+		return m;
+	}
+
+	private static Double speedup(StageResult r, StageResult single) {
+		if (single == null || single.documentsPerSecond <= 0)
+			return null;
+		return r.documentsPerSecond / single.documentsPerSecond;
+	}
+
+	private static double change(double now, double then) {
+		return then > 0 ? (now - then) * 100 / then : 0;
+	}
+
+	private static String ms(Double d) {
+		return d == null ? "-" : String.format(Locale.ROOT, "%.0f", d);
+	}
+
+}
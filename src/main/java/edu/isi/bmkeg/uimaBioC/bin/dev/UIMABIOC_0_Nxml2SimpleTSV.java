@@ -28,9 +28,12 @@ public class UIMABIOC_0_Nxml2SimpleTSV {
 		@Option(name = "-inDir", usage = "Input Directory", required = true, metaVar = "INPUT")
 		public File inDir;
 
-		@Option(name = "-nxml2textPath", usage = "Path to the nxml2text executable", required = true, metaVar = "PATH")
+		@Option(name = "-nxml2textPath", usage = "Path to the nxml2text executable (needed unless -fromNxml is given)", required = false, metaVar = "PATH")
 		public File nxml2textPath;
 
+		@Option(name = "-fromNxml", usage = "Read the .nxml files directly, converting them in Java, instead of running nxml2textPath", required = false)
+		public boolean fromNxml = false;
+
 		@Option(name = "-nThreads", usage = "Number of threads", required = true, metaVar = "IN-DIRECTORY")
 		public int nThreads;
 		
@@ -52,6 +55,8 @@ public class UIMABIOC_0_Nxml2SimpleTSV {
 		try {
 
 			parser.parseArgument(args);
+			if( options.nxml2textPath == null && !options.fromNxml )
+				throw new CmdLineException(parser, "Option \"-nxml2textPath\" is required unless -fromNxml is given");
 
 		} catch (CmdLineException e) {
 
@@ -64,20 +69,35 @@ public class UIMABIOC_0_Nxml2SimpleTSV {
 
 		}
 		
-		String[] args00 = new String[] { 
-				"-inDir", options.inDir + "/nxml", 
-				"-outDir", options.inDir + "/nxml2txt",
-				"-execPath", options.nxml2textPath.getPath()
-				};
-		UIMABIOC_00_SimpleRunNxml2Txt.main(args00);
-		
-		String[] args01 = new String[] { 
-				"-inDir", options.inDir + "/nxml2txt", 
-				"-outDir", options.inDir + "/bioc",
-				"-refDir", options.inDir + "/refs",
-				"-outFormat", "json"
-				};
-		UIMABIOC_01_Nxml2txt_to_BioC.main(args01);
+		if( !options.fromNxml ) {
+			
+			String[] args00 = new String[] { 
+					"-inDir", options.inDir + "/nxml", 
+					"-outDir", options.inDir + "/nxml2txt",
+					"-execPath", options.nxml2textPath.getPath()
+					};
+			UIMABIOC_00_SimpleRunNxml2Txt.main(args00);
+			
+			String[] args01 = new String[] { 
+					"-inDir", options.inDir + "/nxml2txt", 
+					"-outDir", options.inDir + "/bioc",
+					"-refDir", options.inDir + "/refs",
+					"-outFormat", "json"
+					};
+			UIMABIOC_01_Nxml2txt_to_BioC.main(args01);
+			
+		} else {
+			
+			String[] args01 = new String[] { 
+					"-inDir", options.inDir + "/nxml", 
+					"-outDir", options.inDir + "/bioc",
+					"-refDir", options.inDir + "/refs",
+					"-outFormat", "json",
+					"-fromNxml"
+					};
+			UIMABIOC_01_Nxml2txt_to_BioC.main(args01);
+			
+		}
 		
 		String[] args05 = new String[] { 
 				"-biocDir", options.inDir + "/bioc",
@@ -18,7 +18,6 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.token.type.Sentence;
 import org.cleartk.token.type.Token;
-import org.uimafit.component.JCasAnnotator_ImplBase;
 import org.uimafit.descriptor.ConfigurationParameter;
 import org.uimafit.factory.ConfigurationParameterFactory;
 import org.uimafit.util.JCasUtil;
@@ -28,12 +27,14 @@ import com.google.common.io.Files;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
 import bioc.type.UimaBioCPassage;
+import edu.isi.bmkeg.uimaBioC.UimaBioCAnnotator_ImplBase;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
 
 /**
  * 
  */
-public class TagPassagesAnnotator extends JCasAnnotator_ImplBase {
+public class TagPassagesAnnotator extends UimaBioCAnnotator_ImplBase {
 
 	private static Logger logger = Logger.getLogger(TagPassagesAnnotator.class);
 
@@ -79,22 +80,18 @@ public class TagPassagesAnnotator extends JCasAnnotator_ImplBase {
 			}
 			
 			UimaBioCPassage docP = UimaBioCUtils.readDocument(jCas);
+			UimaBioCInfons.Selector clauses = new UimaBioCInfons.Selector(jCas);
 
 			for (UimaBioCAnnotation paragraph : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, docP)) {
-				Map<String, String> infons = UimaBioCUtils.convertInfons(paragraph.getInfons());
-				if (infons.get("type").equals("formatting") && 
-						(infons.get("value").equals("p") ) ) {
+				if (UimaBioCInfons.is(paragraph, "formatting", "p") ) {
 					boolean go = false;
 					for( Sentence sentence : JCasUtil.selectCovered(Sentence.class, paragraph) ) {	
-						for (UimaBioCAnnotation clause : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, sentence)) {
-							Map<String, String> infons2 = UimaBioCUtils.convertInfons(clause.getInfons());
-							if (infons2.get("type").equals("rubicon") && infons2.get("value").equals("clause")  ) {
-								go  = true;
-								for (Token t : JCasUtil.selectCovered(jCas, Token.class, clause)) {
-									out.print( t.getCoveredText() + " ");		
-								}
-								out.print("\n");		
+						for (UimaBioCAnnotation clause : clauses.select("rubicon", "clause", sentence)) {
+							go  = true;
+							for (Token t : JCasUtil.selectCovered(jCas, Token.class, clause)) {
+								out.print( t.getCoveredText() + " ");		
 							}
+							out.print("\n");		
 						}	
 					}
 					if(go)
@@ -23,7 +23,6 @@ import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.token.type.Sentence;
 import org.cleartk.token.type.Token;
-import org.uimafit.component.JCasAnnotator_ImplBase;
 import org.uimafit.descriptor.ConfigurationParameter;
 import org.uimafit.factory.ConfigurationParameterFactory;
 import org.uimafit.util.JCasUtil;
@@ -32,13 +31,17 @@ import bioc.BioCCollection;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
 import bioc.type.UimaBioCLocation;
+import edu.isi.bmkeg.uimaBioC.UimaBioCAnnotator_ImplBase;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.SectionTree;
 
-public class AddFeaturesToClauses extends JCasAnnotator_ImplBase {
+public class AddFeaturesToClauses extends UimaBioCAnnotator_ImplBase {
 
 	private static Logger logger = Logger.getLogger(AddFeaturesToClauses.class);
 
 	private BioCCollection collection;
+	private SectionTree sections;
 
 	Map<String, Map<String, Integer>> table = new HashMap<String, Map<String, Integer>>();
 
@@ -56,6 +59,7 @@ public class AddFeaturesToClauses extends JCasAnnotator_ImplBase {
 			return;
 
 		String id = uiD.getId();
+		this.sections = new SectionTree(jCas);
 
 		List<UimaBioCAnnotation> outerAnnotations = JCasUtil.selectCovered(UimaBioCAnnotation.class, uiD);
 
@@ -69,20 +73,21 @@ public class AddFeaturesToClauses extends JCasAnnotator_ImplBase {
 		List<UimaBioCAnnotation> floats = new ArrayList<UimaBioCAnnotation>();
 		List<UimaBioCAnnotation> parags = new ArrayList<UimaBioCAnnotation>();
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, start, end)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.containsKey("position") && infons.get("position").equals("float")) {
+			String value = UimaBioCInfons.getValue(a);
+			if (UimaBioCInfons.isInfon(a, "position", "float")) {
 				floats.add(a);
-			} else if (infons.containsKey("value")
-					&& (infons.get("value").equals("p") || 
-							infons.get("value").equals("title") || 
-							infons.get("value").equals("label") || 
-							infons.get("value").equals("article-title"))) {
+			} else if (value != null
+					&& (value.equals("p") || 
+							value.equals("title") || 
+							value.equals("label") || 
+							value.equals("article-title"))) {
 				parags.add(a);
 			}
 
 		}
 		
 		int sNumber = 0;
+		UimaBioCInfons.Selector clauses = new UimaBioCInfons.Selector(jCas);
 		List<Sentence> sentences = JCasUtil.selectCovered(jCas, Sentence.class, start, end);
 		SENTENCE_LOOP: for (Sentence s : sentences) {
 
@@ -98,9 +103,8 @@ public class AddFeaturesToClauses extends JCasAnnotator_ImplBase {
 			//
 			for (UimaBioCAnnotation a : JCasUtil.selectCovering(jCas, UimaBioCAnnotation.class, s.getBegin(),
 					s.getEnd())) {
-				Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-				if (infons.get("value").equals("title")) {
-					UimaBioCAnnotation secAnn = UimaBioCUtils.readSectionHeading(jCas, a);
+				if (UimaBioCInfons.isValue(a, "title")) {
+					UimaBioCAnnotation secAnn = this.sections.readSectionHeading(a);
 					if (secAnn == null) {
 						UimaBioCDocument uiD = JCasUtil.selectSingle(jCas, UimaBioCDocument.class);
 						System.err.println(uiD.getId() + " has title sentence '" + s.getCoveredText()
@@ -109,12 +113,7 @@ public class AddFeaturesToClauses extends JCasAnnotator_ImplBase {
 						continue;
 					}
 
-					int level = 99;
-					try {
-						level = UimaBioCUtils.readHeadingLevel(jCas, secAnn, 0);
-					} catch (StackOverflowError e) {
-						e.printStackTrace();
-					}
+					int level = this.sections.readHeadingLevel(secAnn);
 
 					if (currLvl.containsKey(level)) {
 						currLvl.put(level, currLvl.get(level) + 1);
@@ -139,20 +138,14 @@ public class AddFeaturesToClauses extends JCasAnnotator_ImplBase {
 			for (int i = 0; i < parags.size(); i++) {
 				UimaBioCAnnotation p = parags.get(i);
 				if (s.getBegin() >= p.getBegin() && s.getEnd() <= p.getEnd()) {
-					UimaBioCUtils.convertInfons(p.getInfons()).get("value");
-					pCode = UimaBioCUtils.convertInfons(p.getInfons()).get("value") + i;
+					pCode = UimaBioCInfons.getValue(p) + i;
 					break;
 				}
 			}
 
 			sNumber++;
 
-			List<UimaBioCAnnotation> clauseList = new ArrayList<UimaBioCAnnotation>();
-			for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, s)) {
-				Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-				if (infons.get("type").equals("rubicon") && infons.get("value").equals("clause"))
-					clauseList.add(a);
-			}
+			List<UimaBioCAnnotation> clauseList = clauses.select("rubicon", "clause", s);
 			
 			if(clauseList.size() == 0) {
 				UimaBioCDocument uiD = JCasUtil.selectSingle(jCas, UimaBioCDocument.class);
@@ -167,7 +160,7 @@ public class AddFeaturesToClauses extends JCasAnnotator_ImplBase {
 				Set<String> expts = UimaBioCUtils.extractExptsFromClause(jCas, clause);
 				Set<String> newCodes = UimaBioCUtils.extractCodesFromClause(jCas, clause);
 				newCodes.addAll(codes);
-				String headingString = UimaBioCUtils.readHeadingString(jCas, clause, "");
+				String headingString = this.sections.readHeadingString(clause, "");
 				
 				Map<String,String> infons = UimaBioCUtils.convertInfons(clause.getInfons());
 				infons.put("scidp-heading-string", headingString);
@@ -176,7 +169,7 @@ public class AddFeaturesToClauses extends JCasAnnotator_ImplBase {
 				infons.put("scidp-paragraph-number", pCode);
 				infons.put("scidp-sentence-number", "s" + sNumber);
 				
-				clause.setInfons(UimaBioCUtils.convertInfons(infons, jCas));
+				UimaBioCInfons.setInfons(clause, infons, jCas);
 				
 			}
 
@@ -207,7 +200,7 @@ public class AddFeaturesToClauses extends JCasAnnotator_ImplBase {
 		infons.put("type", "rubicon");
 		infons.put("value", "clause");
 
-		uiA.setInfons(UimaBioCUtils.convertInfons(infons, jCas));
+		UimaBioCInfons.setInfons(uiA, infons, jCas);
 
 		return uiA;
 
@@ -0,0 +1,42 @@
+package edu.isi.bmkeg.uimaBioC.uima.ae.core;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.uimafit.component.JCasAnnotator_ImplBase;
+import org.uimafit.descriptor.ConfigurationParameter;
+import org.uimafit.factory.ConfigurationParameterFactory;
+
+import edu.isi.bmkeg.uimaBioC.utils.CostSchedule;
+
+/**
+ * Times each document for CostSchedule. Goes first in the pipeline (with
+ * begin true), where it starts the document's clock, and last (with begin
+ * false), where it logs the document's estimate next to its actual time.
+ * The time spent waiting in a CPE's CAS queue is left out.
+ *
+ * The readers only record estimates while a CostProbe is deployed, so a
+ * pipeline without one doesn't collect them.
+ */
+public class CostProbe extends JCasAnnotator_ImplBase {
+
+	public final static String PARAM_BEGIN = ConfigurationParameterFactory
+			.createConfigurationParameterName(CostProbe.class, "begin");
+	@ConfigurationParameter(mandatory = true, description = "Whether this probe comes before the rest of the pipeline")
+	boolean begin;
+
+	public void initialize(UimaContext context) throws ResourceInitializationException {
+		super.initialize(context);
+		CostSchedule.startTiming();
+	}
+
+	public void process(JCas jCas) throws AnalysisEngineProcessException {
+		String key = CostSchedule.readDocumentKey(jCas);
+		if (begin)
+			CostSchedule.startClock(key);
+		else
+			CostSchedule.logActual(key);
+	}
+
+}
@@ -20,6 +20,7 @@ import org.uimafit.util.JCasUtil;
 
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
 
 public class FilterUnwantedSections extends JCasAnnotator_ImplBase {
@@ -67,16 +68,11 @@ public class FilterUnwantedSections extends JCasAnnotator_ImplBase {
 				UimaBioCAnnotation.class, uiD);
 		for (UimaBioCAnnotation uiA1 : outerAnnotations) {
 			
-			Map<String, String> inf = UimaBioCUtils.convertInfons(uiA1.getInfons());
-			if( !inf.containsKey("type")  ) 
-				continue;
-
-			if( !(inf.get("type").equals("formatting") &&
-					inf.get("value").equals("sec")) ) {
+			if( !UimaBioCInfons.is(uiA1, "formatting", "sec") ) {
 				continue;
 			}
 			
-			Matcher match = this.patt.matcher(inf.get("sectionHeading"));
+			Matcher match = this.patt.matcher(UimaBioCInfons.getInfon(uiA1, "sectionHeading"));
 			if( !match.find() ) {
 				continue;
 			}
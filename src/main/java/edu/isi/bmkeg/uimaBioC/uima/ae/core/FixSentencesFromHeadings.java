@@ -2,7 +2,6 @@ package edu.isi.bmkeg.uimaBioC.uima.ae.core;
 
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -17,6 +16,7 @@ import org.uimafit.util.JCasUtil;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
 import bioc.type.UimaBioCPassage;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
 
 public class FixSentencesFromHeadings extends JCasAnnotator_ImplBase {
@@ -38,13 +38,13 @@ public class FixSentencesFromHeadings extends JCasAnnotator_ImplBase {
 
 		List<UimaBioCAnnotation> annotations = JCasUtil.selectCovered(UimaBioCAnnotation.class, docPassage);
 		for (UimaBioCAnnotation a : annotations) {
-			Map<String, String> inf = UimaBioCUtils.convertInfons(a.getInfons());
+			String value = UimaBioCInfons.getValue(a);
 
 			//
 			// detects 'run-on' sentences from titles that do not end in a
 			// period
 			//
-			if (inf.containsKey("value") && inf.get("value").toLowerCase().equals("title") ) {
+			if (value != null && value.toLowerCase().equals("title") ) {
 
 				List<Sentence> sentences = JCasUtil.selectCovering(jCas, Sentence.class, a.getBegin(), a.getEnd());
 
@@ -62,7 +62,7 @@ public class FixSentencesFromHeadings extends JCasAnnotator_ImplBase {
 					}
 				}
 
-			} else if( inf.get("value").toLowerCase().equals("article-title") ) {
+			} else if( value != null && value.toLowerCase().equals("article-title") ) {
 
 				List<Sentence> sentences = JCasUtil.selectCovering(jCas, Sentence.class, a.getBegin(), a.getEnd());
 				for (Sentence oldSentence : sentences) {
@@ -78,7 +78,8 @@ public class FixSentencesFromHeadings extends JCasAnnotator_ImplBase {
 			//
 			// FINDS BUGGY SENTENCES THAT PARTIALLY OVERLAP FLOATS
 			//
-			else if (inf.containsKey("position") && inf.get("position").toLowerCase().equals("float")) {
+			else if (UimaBioCInfons.hasInfon(a, "position") 
+					&& UimaBioCInfons.getInfon(a, "position").toLowerCase().equals("float")) {
 
 				List<Sentence> covered = JCasUtil.selectCovered(Sentence.class, a);
 				if( covered.size() == 0 )
@@ -133,9 +134,10 @@ public class FixSentencesFromHeadings extends JCasAnnotator_ImplBase {
 			for( UimaBioCAnnotation ref : JCasUtil.selectCovering(
 					jCas, UimaBioCAnnotation.class, 
 					s.getBegin(), s.getBegin()+1) ) {
-				Map<String, String> inf1 = UimaBioCUtils.convertInfons(ref.getInfons());
-				if (inf1.containsKey("value") && inf1.get("value").toLowerCase().equals("xref") && 
-						inf1.get("refType").toLowerCase().equals("bibr")) {
+				String value = UimaBioCInfons.getValue(ref);
+				String refType = UimaBioCInfons.getInfon(ref, "refType");
+				if (value != null && value.toLowerCase().equals("xref") && 
+						refType != null && refType.toLowerCase().equals("bibr")) {
 					// One big reference that covers the whole sentence. 
 					if(ref.getBegin() <= s.getBegin() && ref.getEnd() >= s.getEnd() ) 
 						toRemove.add(s);
@@ -159,9 +161,10 @@ public class FixSentencesFromHeadings extends JCasAnnotator_ImplBase {
 			for( UimaBioCAnnotation a2 : JCasUtil.selectCovering(
 					jCas, UimaBioCAnnotation.class, 
 					s.getBegin(), s.getBegin()+1) ) {
-				Map<String, String> inf2 = UimaBioCUtils.convertInfons(a2.getInfons());
-				if (inf2.containsKey("value") && inf2.get("value").toLowerCase().equals("xref") && 
-						inf2.get("refType").toLowerCase().equals("bibr") ) {
+				String value = UimaBioCInfons.getValue(a2);
+				String refType = UimaBioCInfons.getInfon(a2, "refType");
+				if (value != null && value.toLowerCase().equals("xref") && 
+						refType != null && refType.toLowerCase().equals("bibr") ) {
 					Matcher m = numericRefPatter.matcher(a2.getCoveredText());
 					if( m.find() ) {
 						toRemove.add(s);
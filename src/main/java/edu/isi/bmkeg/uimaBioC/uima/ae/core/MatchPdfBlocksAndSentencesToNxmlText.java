@@ -39,6 +39,7 @@ import edu.isi.bmkeg.lapdf.xml.model.LapdftextXMLChunk;
 import edu.isi.bmkeg.lapdf.xml.model.LapdftextXMLDocument;
 import edu.isi.bmkeg.lapdf.xml.model.LapdftextXMLPage;
 import edu.isi.bmkeg.lapdf.xml.model.LapdftextXMLWord;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
 import edu.isi.bmkeg.utils.xml.XmlBindingTools;
 
@@ -364,7 +365,7 @@ public class MatchPdfBlocksAndSentencesToNxmlText extends
 		infons.put("t", w.getT() + "");
 		infons.put("font", w.getFont());
 		infons.put("p", p + "");
-		uiA.setInfons(UimaBioCUtils.convertInfons(infons, jCas));
+		UimaBioCInfons.setInfons(uiA, infons, jCas);
 		uiA.addToIndexes();
 
 		if (!w.getT().toLowerCase().equals(uiA.getCoveredText().toLowerCase())) {
@@ -396,7 +397,7 @@ public class MatchPdfBlocksAndSentencesToNxmlText extends
 		infons.put("h", c.getH() + "");
 		infons.put("font", c.getFont());
 		infons.put("p", p + "");
-		uiA.setInfons(UimaBioCUtils.convertInfons(infons, jCas));
+		UimaBioCInfons.setInfons(uiA, infons, jCas);
 		uiA.addToIndexes();
 
 		FSArray locations = new FSArray(jCas, 1);
@@ -0,0 +1,58 @@
+package edu.isi.bmkeg.uimaBioC.uima.ae.core;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.uimafit.component.JCasAnnotator_ImplBase;
+import org.uimafit.descriptor.ConfigurationParameter;
+import org.uimafit.factory.ConfigurationParameterFactory;
+
+import edu.isi.bmkeg.uimaBioC.utils.PipelineMetrics;
+
+/**
+ * Marks the start or end of an analysis engine (or, with index -1, of the
+ * whole pipeline) for PipelineMetrics. Added by PipelineMetrics.instrument()
+ * rather than by hand.
+ */
+public class MetricsProbe extends JCasAnnotator_ImplBase {
+
+	public final static String PARAM_METRICS = ConfigurationParameterFactory
+			.createConfigurationParameterName(MetricsProbe.class, "metricsName");
+	@ConfigurationParameter(mandatory = true, description = "The PipelineMetrics to report to")
+	String metricsName;
+
+	public final static String PARAM_INDEX = ConfigurationParameterFactory
+			.createConfigurationParameterName(MetricsProbe.class, "index");
+	@ConfigurationParameter(mandatory = true, description = "Position of the engine in the pipeline, or -1 for the pipeline")
+	int index;
+
+	public final static String PARAM_STAGE = ConfigurationParameterFactory
+			.createConfigurationParameterName(MetricsProbe.class, "stage");
+	@ConfigurationParameter(mandatory = true, description = "Name of the engine")
+	String stage;
+
+	public final static String PARAM_BEGIN = ConfigurationParameterFactory
+			.createConfigurationParameterName(MetricsProbe.class, "begin");
+	@ConfigurationParameter(mandatory = true, description = "Whether this probe comes before the engine")
+	boolean begin;
+
+	private PipelineMetrics metrics;
+
+	public void initialize(UimaContext context) throws ResourceInitializationException {
+		super.initialize(context);
+		this.metrics = PipelineMetrics.get(metricsName);
+	}
+
+	public void process(JCas jCas) throws AnalysisEngineProcessException {
+		if (index < 0 && begin)
+			metrics.beginDocument(jCas);
+		else if (index < 0)
+			metrics.endDocument(jCas);
+		else if (begin)
+			metrics.beginStage(index, stage, jCas);
+		else
+			metrics.endStage(index, stage, jCas);
+	}
+
+}
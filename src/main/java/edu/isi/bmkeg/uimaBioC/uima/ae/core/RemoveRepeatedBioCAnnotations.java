@@ -9,17 +9,21 @@ import org.apache.log4j.Logger;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.uimafit.component.JCasAnnotator_ImplBase;
 import org.uimafit.util.JCasUtil;
 
+import bioc.type.MapEntry;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
 import bioc.type.UimaBioCPassage;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import gnu.trove.map.hash.TLongObjectHashMap;
 
 public class RemoveRepeatedBioCAnnotations extends JCasAnnotator_ImplBase {
-	
+
 	private static Logger logger = Logger.getLogger(RemoveRepeatedBioCAnnotations.class);
 
 	public void initialize(UimaContext context) throws ResourceInitializationException {
@@ -40,21 +44,8 @@ public class RemoveRepeatedBioCAnnotations extends JCasAnnotator_ImplBase {
 
 			logger.info("Cleaning repeats for " + uiD.getId() );
 
-			Set<UimaBioCAnnotation> repeats = new HashSet<UimaBioCAnnotation>();
-			for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, docP)) {
-				String s1 = UimaBioCUtils.stringify(a);
-				for (UimaBioCAnnotation aa : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, a.getBegin(), a.getEnd())) {
-					if( repeats.contains(a) )
-						continue;
-					if( !a.equals(aa) ) {
-						String s2 = UimaBioCUtils.stringify(aa);
-						if( s1.equals(s2) ) {
-							repeats.add(aa);
-						}
-					}
-				}				
-			}
-			
+			Set<UimaBioCAnnotation> repeats = readRepeats(jCas, docP);
+
 			for (UimaBioCAnnotation a : repeats) {
 				a.removeFromIndexes();
 			}
@@ -68,5 +59,80 @@ public class RemoveRepeatedBioCAnnotations extends JCasAnnotator_ImplBase {
 		}
 
 	}
-	
+
+	/**
+	 * Finds annotations inside the span that repeat an earlier annotation
+	 * with the same offsets and the same infons. The first one in index
+	 * order is kept.
+	 *
+	 * This is a single pass over the index. Each annotation gets a 64 bit
+	 * fingerprint of its offsets and infons, and only annotations whose
+	 * fingerprints match are compared in full. Annotations come out of the
+	 * index sorted by begin offset, so the table is cleared whenever the
+	 * begin offset changes and never holds more than one position's worth
+	 * of annotations.
+	 */
+	public static Set<UimaBioCAnnotation> readRepeats(JCas jCas, Annotation span) {
+
+		Set<UimaBioCAnnotation> repeats = new HashSet<UimaBioCAnnotation>();
+		TLongObjectHashMap<List<UimaBioCAnnotation>> seen = new TLongObjectHashMap<List<UimaBioCAnnotation>>();
+
+		int begin = -1;
+		for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, span)) {
+
+			if (a.getBegin() != begin) {
+				seen.clear();
+				begin = a.getBegin();
+			}
+
+			long fp = fingerprint(a);
+			List<UimaBioCAnnotation> kept = seen.get(fp);
+			if (kept == null) {
+				kept = new ArrayList<UimaBioCAnnotation>(1);
+				kept.add(a);
+				seen.put(fp, kept);
+				continue;
+			}
+
+			boolean repeat = false;
+			for (UimaBioCAnnotation k : kept) {
+				if (k.getEnd() == a.getEnd() && UimaBioCUtils.convertInfons(k.getInfons())
+						.equals(UimaBioCUtils.convertInfons(a.getInfons()))) {
+					repeat = true;
+					break;
+				}
+			}
+			if (repeat)
+				repeats.add(a);
+			else
+				kept.add(a);
+
+		}
+
+		return repeats;
+
+	}
+
+	/**
+	 * Offsets in the high word, an order-independent hash of the infons
+	 * (the same value as the hashCode of the infon map) in the low word.
+	 */
+	private static long fingerprint(UimaBioCAnnotation a) {
+
+		int h = 0;
+		FSArray fsArray = a.getInfons();
+		if (fsArray != null) {
+			for (int i = 0; i < fsArray.size(); i++) {
+				MapEntry me = (MapEntry) fsArray.get(i);
+				String k = me.getKey();
+				String v = me.getValue();
+				h += (k == null ? 0 : k.hashCode()) ^ (v == null ? 0 : v.hashCode());
+			}
+		}
+
+		int pos = 31 * a.getBegin() + a.getEnd();
+		return ((long) pos << 32) | (h & 0xffffffffL);
+
+	}
+
 }
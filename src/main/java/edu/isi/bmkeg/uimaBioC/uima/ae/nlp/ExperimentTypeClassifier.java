@@ -30,7 +30,6 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.URI;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -53,12 +52,13 @@ import org.cleartk.ml.feature.function.LowerCaseFeatureFunction;
 import org.cleartk.token.type.Sentence;
 import org.cleartk.token.type.Token;
 import org.uimafit.descriptor.ConfigurationParameter;
+import org.uimafit.descriptor.OperationalProperties;
 import org.uimafit.factory.ConfigurationParameterFactory;
 import org.uimafit.util.JCasUtil;
 
 import bioc.type.UimaBioCDocument;
 import bioc.type.UimaBioCPassage;
-import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 
 
 /**
@@ -66,6 +66,7 @@ import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
  * 
  * @author Gully
  */
+@OperationalProperties(multipleDeploymentAllowed = false)
 public class ExperimentTypeClassifier extends JCasAnnotator_ImplBase {
 	
 	private static Logger logger = Logger.getLogger(ExperimentTypeClassifier.class);
@@ -136,15 +137,10 @@ public class ExperimentTypeClassifier extends JCasAnnotator_ImplBase {
 		if( uiD.getId().equals("skip") )
 			return;
 		
-		Map<String, String> dInf = UimaBioCUtils.convertInfons(uiD.getInfons());
-		
 		List<UimaBioCPassage> passages = JCasUtil.selectCovered(UimaBioCPassage.class, uiD);
 		for (UimaBioCPassage uiP : passages) {			
 		
-			Map<String, String> psgInf = UimaBioCUtils.convertInfons(uiP.getInfons());
-			if( psgInf.containsKey("type") 
-					&& psgInf.get("type").equals("formatting")
-					&& psgInf.get("value").equals("fig") ){
+			if( UimaBioCInfons.is(uiP.getInfons(), "formatting", "fig") ){
 				
 				Matcher m = patt.matcher(uiP.getCoveredText());
 				int figNumber = -1;
@@ -155,10 +151,7 @@ public class ExperimentTypeClassifier extends JCasAnnotator_ImplBase {
 				List<UimaBioCPassage> captions = JCasUtil.selectCovered(UimaBioCPassage.class, uiP);
 				for (UimaBioCPassage caption : captions) {			
 
-					Map<String, String> capInf = UimaBioCUtils.convertInfons(caption.getInfons());
-					if( capInf.containsKey("type") 
-							&& capInf.get("type").equals("formatting") 
-							&& capInf.get("value").equals("caption") ){
+					if( UimaBioCInfons.is(caption.getInfons(), "formatting", "caption") ){
 
 						List<Sentence> sentences = JCasUtil.selectCovered(Sentence.class, caption);
 						for (Sentence sentence : sentences) {			
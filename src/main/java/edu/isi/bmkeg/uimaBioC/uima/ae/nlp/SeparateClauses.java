@@ -15,14 +15,16 @@ import org.apache.uima.jcas.cas.FSArray;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.token.type.Sentence;
 import org.cleartk.token.type.Token;
-import org.uimafit.component.JCasAnnotator_ImplBase;
 import org.uimafit.util.JCasUtil;
 
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
 import bioc.type.UimaBioCLocation;
 import bioc.type.UimaBioCPassage;
+import edu.isi.bmkeg.uimaBioC.UimaBioCAnnotator_ImplBase;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.TokenTable;
 import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
 import edu.stanford.nlp.parser.lexparser.Options;
 import edu.stanford.nlp.parser.lexparser.ParseFiles;
@@ -31,7 +33,7 @@ import edu.stanford.nlp.trees.PennTreeReader;
 import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.TreebankLanguagePack;
 
-public class SeparateClauses extends JCasAnnotator_ImplBase {
+public class SeparateClauses extends UimaBioCAnnotator_ImplBase {
 	
 	private String[] args;
 
@@ -81,6 +83,8 @@ public class SeparateClauses extends JCasAnnotator_ImplBase {
 			
 			
 			UimaBioCPassage docP = UimaBioCUtils.readDocument(jCas);
+			TokenTable tokens = new TokenTable(jCas);
+			UimaBioCInfons.Selector clauses = new UimaBioCInfons.Selector(jCas);
 
 			List<Sentence> sentences = JCasUtil.selectCovered(Sentence.class, docP);
 			int sCount = 0;
@@ -91,10 +95,8 @@ public class SeparateClauses extends JCasAnnotator_ImplBase {
 				//
 				String p = "";
 				for (UimaBioCAnnotation uiA : JCasUtil.selectCovered(UimaBioCAnnotation.class, s)) {
-					Map<String, String> inf = UimaBioCUtils.convertInfons(uiA.getInfons());
-					if( inf.get("type") != null && 
-							inf.get("type").equals("stanford-parse") ) {
-						p = inf.get("value");
+					if( UimaBioCInfons.isType(uiA, "stanford-parse") ) {
+						p = UimaBioCInfons.getValue(uiA);
 						break;					
 					}
 				}
@@ -108,15 +110,8 @@ public class SeparateClauses extends JCasAnnotator_ImplBase {
 				// 
 				// Build tokenized, indexed version of sentence.
 				//
-				Map<Integer, Token> tokPos = new HashMap<Integer, Token>();
-				String ss = "";
-				for (Token t : JCasUtil.selectCovered(Token.class, s)) {
-					if (ss.length() > 0)
-						ss += " ";
-					tokPos.put(ss.length(), t);
-					ss += t.getCoveredText();
-					tokPos.put(ss.length(), t);
-				}
+				TokenTable.JoinedTokens tokPos = tokens.join(s, " ");
+				String ss = tokPos.getText();
 				
 				PennTreeReader ptr = new PennTreeReader(new StringReader(p));
 				Tree tree = ptr.readTree();
@@ -136,8 +131,8 @@ public class SeparateClauses extends JCasAnnotator_ImplBase {
 				}
 
 				if (satClauseStr.length() > 0) {
-					Token startTok = tokPos.get(ind);
-					Token endTok = tokPos.get(ind + satClauseStr.length());
+					Token startTok = tokPos.readTokenAt(ind);
+					Token endTok = tokPos.readTokenAt(ind + satClauseStr.length());
 
 					if( startTok == null || endTok == null )
 						continue SENTENCE_LOOP;
@@ -180,12 +175,7 @@ public class SeparateClauses extends JCasAnnotator_ImplBase {
 				//
 
 				// Check this to make sure it's working correctly. 
-				List<UimaBioCAnnotation> clauseList = new ArrayList<UimaBioCAnnotation>();
-				for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, s)) {
-					Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-					if (infons.get("type").equals("rubicon") && infons.get("value").equals("clause"))
-						clauseList.add(a);
-				}
+				List<UimaBioCAnnotation> clauseList = clauses.select("rubicon", "clause", s);
 				
 				if(clauseList.size() == 0) {
 					logger.warn("No Clauses Found in "+uiD.getId()+"("+s.getBegin() +"-"+s.getEnd()+"), adding sentence as a single clause:" + s.getCoveredText());
@@ -216,8 +206,11 @@ public class SeparateClauses extends JCasAnnotator_ImplBase {
 	 * return phrase.replace("-LRB-", "(").replace("-RRB-",
 	 * ")").replace("-LSB-", "[").replace("-RSB-", "]") else: return
 	 * get_longest_cand([extract_sat_clause(t, is_root) for t in tree])
+	 * 
+	 * Package-private, not private, so that SeparateClausesBenchmark (in
+	 * src/jmh/java) can call it.
 	 */
-	private Tree extractSatClause(Tree tree) {
+	Tree extractSatClause(Tree tree) {
 		return extractSatClause(tree, true);
 	}
 
@@ -261,7 +254,8 @@ public class SeparateClauses extends JCasAnnotator_ImplBase {
 		return bestcand;
 	}
 
-	private String treeToString(Tree tree) {
+	// package-private for SeparateClausesBenchmark, like extractSatClause
+	String treeToString(Tree tree) {
 
 		if (tree == null)
 			return "";
@@ -302,7 +296,7 @@ public class SeparateClauses extends JCasAnnotator_ImplBase {
 		infons.put("type", "rubicon");
 		infons.put("value", "clause");
 
-		uiA.setInfons(UimaBioCUtils.convertInfons(infons, jCas));
+		UimaBioCInfons.setInfons(uiA, infons, jCas);
 
 		return uiA;
 
@@ -329,7 +323,7 @@ public class SeparateClauses extends JCasAnnotator_ImplBase {
 		infons.put("type", "stanford-parse");
 		infons.put("value", parse);
 
-		uiA.setInfons(UimaBioCUtils.convertInfons(infons, jCas));
+		UimaBioCInfons.setInfons(uiA, infons, jCas);
 
 		return uiA;
 
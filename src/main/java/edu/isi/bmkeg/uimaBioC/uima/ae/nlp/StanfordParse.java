@@ -1,10 +1,16 @@
 package edu.isi.bmkeg.uimaBioC.uima.ae.nlp;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,7 +23,6 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.token.type.Sentence;
-import org.cleartk.token.type.Token;
 import org.uimafit.component.JCasAnnotator_ImplBase;
 import org.uimafit.descriptor.ConfigurationParameter;
 import org.uimafit.factory.ConfigurationParameterFactory;
@@ -27,7 +32,10 @@ import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
 import bioc.type.UimaBioCLocation;
 import bioc.type.UimaBioCPassage;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.TokenTable;
+import edu.isi.bmkeg.uimaBioC.utils.Watchdog;
 import edu.stanford.nlp.ling.HasWord;
 import edu.stanford.nlp.parser.common.ParserQuery;
 import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
@@ -37,7 +45,19 @@ import edu.stanford.nlp.process.DocumentPreprocessor;
 import edu.stanford.nlp.process.PTBEscapingProcessor;
 import edu.stanford.nlp.trees.TreebankLanguagePack;
 import edu.stanford.nlp.util.ReflectionLoading;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
 
+/**
+ * Adds a 'stanford-parse' annotation holding the Penn tree of each sentence.
+ *
+ * Parsing time is bounded per sentence (sentenceTimeout) and per document
+ * (documentTimeout), in ms, 0 meaning no limit. A sentence whose parse runs
+ * over is abandoned, as is every sentence left once the document's budget
+ * is spent; each gets a 'parse-timeout' annotation instead, whose value
+ * is 'sentence' or 'document' for the budget that ran out, and a line in
+ * the timeoutReport file if there is one. SeparateClauses treats these
+ * sentences as it does the ones over maxLength.
+ */
 public class StanfordParse extends JCasAnnotator_ImplBase {
 
 	private static Logger logger = Logger.getLogger(SeparateClauses.class);
@@ -47,7 +67,87 @@ public class StanfordParse extends JCasAnnotator_ImplBase {
 					"maxLength");
 	@ConfigurationParameter(mandatory = true, description = "Maximum Sentence Length")
 	int maxLength;
-	
+
+	public final static String PARAM_SENTENCE_TIMEOUT = ConfigurationParameterFactory
+			.createConfigurationParameterName(StanfordParse.class,
+					"sentenceTimeout");
+	@ConfigurationParameter(mandatory = false, defaultValue = "0", description = "Maximum time to parse one sentence (ms)")
+	int sentenceTimeout;
+
+	public final static String PARAM_DOCUMENT_TIMEOUT = ConfigurationParameterFactory
+			.createConfigurationParameterName(StanfordParse.class,
+					"documentTimeout");
+	@ConfigurationParameter(mandatory = false, defaultValue = "0", description = "Maximum time to parse one document (ms)")
+	int documentTimeout;
+
+	public final static String PARAM_TIMEOUT_REPORT = ConfigurationParameterFactory
+			.createConfigurationParameterName(StanfordParse.class,
+					"timeoutReport");
+	@ConfigurationParameter(mandatory = false, description = "File to list the sentences that ran out of time in")
+	String timeoutReport;
+
+	public static final String SENTENCE = "sentence";
+	public static final String DOCUMENT = "document";
+
+	/**
+	 * The tab-separated list of sentences that timed out. The instances of
+	 * the annotator in a CPE's processing threads share one per file.
+	 */
+	private static class TimeoutReport {
+
+		private static final Map<File, TimeoutReport> open = new HashMap<File, TimeoutReport>();
+
+		private File file;
+		private int references = 0;
+		private PrintWriter out;
+
+		static TimeoutReport open(File f) throws IOException {
+			File key = f.getCanonicalFile();
+			synchronized (open) {
+				TimeoutReport r = open.get(key);
+				if (r == null) {
+					r = new TimeoutReport(key);
+					open.put(key, r);
+				}
+				r.references++;
+				return r;
+			}
+		}
+
+		private TimeoutReport(File f) throws IOException {
+			this.file = f;
+			if (f.getParentFile() != null)
+				f.getParentFile().mkdirs();
+			// appended to, so that a resumed run adds to the report
+			boolean empty = f.length() == 0;
+			out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(f, true), StandardCharsets.UTF_8)));
+			if (empty)
+				out.println("id\tbegin\tend\ttokens\tbudget\tms\tsentence");
+		}
+
+		synchronized void write(String id, Sentence s, int nTokens, String budget, long ms) {
+			String text = s.getCoveredText().replaceAll("\\s+", " ");
+			out.println(id + "\t" + s.getBegin() + "\t" + s.getEnd() + "\t" + nTokens + "\t" + budget + "\t"
+					+ ms + "\t" + text);
+			out.flush();
+		}
+
+		void close() {
+			synchronized (open) {
+				if (--references > 0)
+					return;
+				open.remove(file);
+			}
+			synchronized (this) {
+				out.close();
+			}
+		}
+
+	}
+
+	private TimeoutReport report;
+
 	private PrintStream nullStream;
 
 	private LexicalizedParser lp;
@@ -73,6 +173,14 @@ public class StanfordParse extends JCasAnnotator_ImplBase {
 		lp = LexicalizedParser.loadModel("edu/stanford/nlp/models/lexparser/englishPCFG.ser.gz", op, extraArgs);
 		pf = new ParseFiles(op, lp.getTreePrint(), lp);
 
+		if (timeoutReport != null && timeoutReport.length() > 0) {
+			try {
+				report = TimeoutReport.open(new File(timeoutReport));
+			} catch (IOException e) {
+				throw new ResourceInitializationException(e);
+			}
+		}
+
 	}
 
 	@Override
@@ -85,9 +193,12 @@ public class StanfordParse extends JCasAnnotator_ImplBase {
 				return;
 			
 			UimaBioCPassage docP = UimaBioCUtils.readDocument(jCas);
+			TokenTable tokens = new TokenTable(jCas);
 
 			List<Sentence> sentences = JCasUtil.selectCovered(Sentence.class, docP);
 			int sCount = 0;
+			int nTimeouts = 0;
+			long docStart = System.currentTimeMillis();
 			SENTENCE_LOOP: for (Sentence s : sentences) {
 				
 				if( s.getEnd() - s.getBegin() > this.maxLength ) {
@@ -96,21 +207,13 @@ public class StanfordParse extends JCasAnnotator_ImplBase {
 				}
 				
 				for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, s.getBegin(), s.getEnd())) {
-					Map<String, String> inf = UimaBioCUtils.convertInfons(a.getInfons());
-					if( inf.containsKey("type") && inf.get("type").equals("stanford-parse") ) {
+					if( UimaBioCInfons.isType(a, "stanford-parse") ) {
 						logger.info("Already Parsed: " + uiD.getId() + " - '" + s.getCoveredText() + "'");
 						continue SENTENCE_LOOP;
 					}
 				}
 				
-				Map<Integer, Token> tokPos = new HashMap<Integer, Token>();
-				String ss = "";
-				for(Token t : JCasUtil.selectCovered(Token.class, s) )  {
-					if( ss.length() > 0 ) ss += " ";
-					tokPos.put(ss.length(), t);
-					ss += t.getCoveredText();
-					tokPos.put(ss.length(), t);
-				}
+				String ss = tokens.readTokenizedText(s);
 								
 				DocumentPreprocessor documentPreprocessor = new DocumentPreprocessor(new BufferedReader(new StringReader(ss)));
 				documentPreprocessor.setSentenceFinalPuncWords(
@@ -122,13 +225,48 @@ public class StanfordParse extends JCasAnnotator_ImplBase {
 			    documentPreprocessor.setElementDelimiter(null);
 			    documentPreprocessor.setTokenizerFactory(null);
 			    
+			    //
+			    // Whichever budget runs out first.
+			    //
+			    long budget = sentenceTimeout;
+			    String budgetName = SENTENCE;
+			    if (documentTimeout > 0) {
+			    	long left = documentTimeout - (System.currentTimeMillis() - docStart);
+			    	if (budget <= 0 || left < budget) {
+			    		budget = left;
+			    		budgetName = DOCUMENT;
+			    	}
+			    	if (budget <= 0) {
+			    		timedOut(jCas, uiD.getId(), s, tokens, DOCUMENT, 0);
+			    		nTimeouts++;
+			    		continue SENTENCE_LOOP;
+			    	}
+			    }
+
 			    ByteArrayOutputStream baos = new ByteArrayOutputStream();
 			    PrintWriter pwo = new PrintWriter(baos);
 		        ParserQuery pq = lp.parserQuery();
-		        for (List<HasWord> sentence : documentPreprocessor) {
-		          int len = sentence.size();
-		          pq.parseAndReport(sentence, null);
-				  pf.processResults(pq, numProcessed++, pwo);
+		        long t = System.currentTimeMillis();
+		        Watchdog.Alarm alarm = budget > 0 ? Watchdog.arm(budget) : null;
+		        boolean fired = false;
+		        try {
+		        	try {
+		        		for (List<HasWord> sentence : documentPreprocessor) {
+		        			pq.parseAndReport(sentence, null);
+		        			pf.processResults(pq, numProcessed++, pwo);
+		        		}
+		        	} finally {
+		        		if (alarm != null)
+		        			fired = alarm.disarm();
+		        	}
+		        } catch (RuntimeInterruptedException e) {
+		        	if (!fired)
+		        		throw e;
+		        }
+		        if (fired) {
+		        	timedOut(jCas, uiD.getId(), s, tokens, budgetName, System.currentTimeMillis() - t);
+		        	nTimeouts++;
+		        	continue SENTENCE_LOOP;
 		        }
 		        String p = baos.toString();
 			    				
@@ -139,6 +277,10 @@ public class StanfordParse extends JCasAnnotator_ImplBase {
 				
 			}
 
+			if (nTimeouts > 0)
+				logger.warn(uiD.getId() + ": " + nTimeouts + " of " + sentences.size()
+						+ " sentences ran out of parsing time (" + (System.currentTimeMillis() - docStart) + " ms)");
+
 		} catch (Exception e) {
 
 			throw new AnalysisEngineProcessException(e);
@@ -147,7 +289,37 @@ public class StanfordParse extends JCasAnnotator_ImplBase {
 
 	}
 	
+	private void timedOut(JCas jCas, String id, Sentence s, TokenTable tokens, String budget, long ms) {
+
+		if (budget.equals(SENTENCE))
+			logger.warn("Parse timed out after " + ms + " ms for " + id + ": '" + s.getCoveredText() + "'");
+
+		UimaBioCAnnotation uiA = createAnnotation(jCas, s.getBegin(), s.getEnd(), "parse-timeout", budget);
+		uiA.addToIndexes();
+
+		if (report != null) {
+			int[] r = tokens.readCovered(s);
+			report.write(id, s, r[1] - r[0], budget, ms);
+		}
+
+	}
+
+	@Override
+	public void collectionProcessComplete() throws AnalysisEngineProcessException {
+
+		super.collectionProcessComplete();
+		if (report != null) {
+			report.close();
+			report = null;
+		}
+
+	}
+
 	private UimaBioCAnnotation createStanfordParseAnnotation(JCas jCas, int begin, int end, String parse) {
+		return createAnnotation(jCas, begin, end, "stanford-parse", parse);
+	}
+
+	private UimaBioCAnnotation createAnnotation(JCas jCas, int begin, int end, String type, String value) {
 
 		UimaBioCAnnotation uiA = new UimaBioCAnnotation(jCas);
 
@@ -165,10 +337,10 @@ public class StanfordParse extends JCasAnnotator_ImplBase {
 		uiL.setEnd(uiL.getOffset() + uiL.getLength());
 
 		Map<String, String> infons = new HashMap<String, String>();
-		infons.put("type", "stanford-parse");
-		infons.put("value", parse);
+		infons.put("type", type);
+		infons.put("value", value);
 
-		uiA.setInfons(UimaBioCUtils.convertInfons(infons, jCas));
+		UimaBioCInfons.setInfons(uiA, infons, jCas);
 
 		return uiA;
 
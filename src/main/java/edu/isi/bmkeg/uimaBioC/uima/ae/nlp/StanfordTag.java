@@ -24,7 +24,9 @@ import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
 import bioc.type.UimaBioCLocation;
 import bioc.type.UimaBioCPassage;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.TokenTable;
 import edu.stanford.nlp.parser.lexparser.Options;
 import edu.stanford.nlp.parser.lexparser.ParseFiles;
 import edu.stanford.nlp.process.PTBEscapingProcessor;
@@ -77,32 +79,31 @@ public class StanfordTag extends JCasAnnotator_ImplBase {
 				return;
 
 			UimaBioCPassage docP = UimaBioCUtils.readDocument(jCas);
+			TokenTable tokens = new TokenTable(jCas);
 
 			List<Sentence> sentences = JCasUtil.selectCovered(Sentence.class, docP);
 			int sCount = 0;
 			for (Sentence s : sentences) {
 
-				Map<Integer, Token> tokPos = new HashMap<Integer, Token>();
-				String ss = "", ns = "";
-				for (Token t : JCasUtil.selectCovered(Token.class, s)) {
-					if (ss.length() > 0)
-						ss += " ";
+				int[] r = tokens.readCovered(s);
+				List<String> pieces = new ArrayList<String>();
+				for (int i = r[0]; i < r[1]; i++) {
 
 					//
 					// Run fixes over the sentence to ensure correct running of
 					// the MaxEntTagger, but we can't be sure that this won't 
 					// change the tokenization. Need to build an 
 					//
-					String str = t.getCoveredText().replaceAll("_", "&underscore;");
+					String str = tokens.getText(i).replaceAll("_", "&underscore;");
 					str = runFixes(str);
+					pieces.add(str);
 
-					//
-					// this is an index of the tokens in the string with no whitespace
-					tokPos.put(ns.length(), t); 
-					
-					ss += str;
-					ns += str;
 				}
+				String ss = tokens.join(r[0], pieces, " ").getText();
+
+				//
+				// this is an index of the tokens in the string with no whitespace
+				TokenTable.JoinedTokens tokPos = tokens.join(r[0], pieces, "");
 
 				//
 				// Linking the sentences in the document to the tagged sentences.
@@ -115,12 +116,12 @@ public class StanfordTag extends JCasAnnotator_ImplBase {
 					String[] tokTagTuple = tokTag.split("_");
 					String tok = tokTagTuple[0];
 					String tag = tokTagTuple[1];
-					ns += tok;
-					if( !tokPos.containsKey(ns2.length()) ) {
+					Token storedTok = tokPos.readTokenStartingAt(ns2.length());
+					ns2 += tok;
+					if( storedTok == null ) {
 						logger.warn("Stanford tag mismatch (tokenization error): " + tokTag);
 						continue;
 					}
-					Token storedTok = tokPos.get(ns2.length());
 					
 					UimaBioCAnnotation uiA = new UimaBioCAnnotation(jCas);
 					FSArray locations = new FSArray(jCas, 1);
@@ -140,7 +141,7 @@ public class StanfordTag extends JCasAnnotator_ImplBase {
 					infons.put("type", "stanford-tag");
 					infons.put("text", tok);
 					infons.put("value", tag);
-					uiA.setInfons(UimaBioCUtils.convertInfons(infons, jCas));
+					UimaBioCInfons.setInfons(uiA, infons, jCas);
 
 					uiA.addToIndexes();
 
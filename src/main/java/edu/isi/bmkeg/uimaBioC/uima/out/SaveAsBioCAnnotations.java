@@ -16,11 +16,10 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.uimafit.component.JCasAnnotator_ImplBase;
 import org.uimafit.descriptor.ConfigurationParameter;
+import org.uimafit.descriptor.OperationalProperties;
 import org.uimafit.factory.ConfigurationParameterFactory;
 import org.uimafit.util.JCasUtil;
 
-import com.google.gson.Gson;
-
 import bioc.BioCAnnotation;
 import bioc.BioCCollection;
 import bioc.BioCDocument;
@@ -32,7 +31,9 @@ import bioc.esViews.BioCAnnotation.BioCAnnotation__BioCLocation;
 import bioc.esViews.BioCAnnotation.BioCAnnotation__BioCPassage;
 import bioc.type.UimaBioCDocument;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.BioCJson;
 
+@OperationalProperties(multipleDeploymentAllowed = false)
 public class SaveAsBioCAnnotations extends JCasAnnotator_ImplBase {
 
 	public final static String PARAM_FILE_PATH = ConfigurationParameterFactory
@@ -104,8 +105,7 @@ public class SaveAsBioCAnnotations extends JCasAnnotator_ImplBase {
 						aa.setLocations(llist);
 						aa.setPassage(pp);
 
-						Gson gson = new Gson();
-						json_lines.put(d.getID(), gson.toJson(d));					
+						json_lines.put(d.getID(), BioCJson.toJson(d));					
 
 					}					
 				}
@@ -1,13 +1,11 @@
 package edu.isi.bmkeg.uimaBioC.uima.out;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 
 import javax.xml.stream.XMLStreamException;
 
+import org.apache.log4j.Logger;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
@@ -19,16 +17,18 @@ import org.uimafit.util.JCasUtil;
 
 import bioc.BioCCollection;
 import bioc.BioCDocument;
-import bioc.io.BioCDocumentWriter;
-import bioc.io.BioCFactory;
 import bioc.type.UimaBioCDocument;
 
-import com.google.gson.Gson;
-
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.AtomicFile;
+import edu.isi.bmkeg.uimaBioC.utils.BioCJson;
+import edu.isi.bmkeg.uimaBioC.utils.BioCXml;
+import edu.isi.bmkeg.uimaBioC.utils.RunManifest;
 
 public class SaveAsBioCDocuments extends JCasAnnotator_ImplBase {
 
+	private static Logger logger = Logger.getLogger(SaveAsBioCDocuments.class);
+
 	public final static String PARAM_FILE_PATH = ConfigurationParameterFactory
 			.createConfigurationParameterName(SaveAsBioCDocuments.class,
 					"outDirPath");
@@ -43,8 +43,20 @@ public class SaveAsBioCDocuments extends JCasAnnotator_ImplBase {
 	@ConfigurationParameter(mandatory = true, description = "The format of the output.")
 	String outFileFormat;
 
+	/*
+	 * If this is set, each document is recorded in this run manifest once
+	 * its file is written, under its path relative to outDirPath (see
+	 * RunManifest). Give the collection reader the same file to resume.
+	 */
+	public final static String PARAM_MANIFEST = ConfigurationParameterFactory
+			.createConfigurationParameterName(SaveAsBioCDocuments.class,
+					"manifestFile");
+	@ConfigurationParameter(mandatory = false, description = "Run manifest to record finished documents in")
+	String manifestFile;
+
 	private File outDir;
 	private BioCCollection collection;
+	private RunManifest manifest;
 
 	public void initialize(UimaContext context)
 			throws ResourceInitializationException {
@@ -57,6 +69,13 @@ public class SaveAsBioCDocuments extends JCasAnnotator_ImplBase {
 
 		this.collection = new BioCCollection();
 
+		try {
+			if( this.manifestFile != null )
+				this.manifest = RunManifest.open(new File(this.manifestFile));
+		} catch (IOException e) {
+			throw new ResourceInitializationException(e);
+		}
+
 	}
 
 	public void process(JCas jCas) throws AnalysisEngineProcessException {
@@ -71,45 +90,34 @@ public class SaveAsBioCDocuments extends JCasAnnotator_ImplBase {
 					
 				BioCCollection c = new BioCCollection();
 				BioCDocument d = UimaBioCUtils.convertUimaBioCDocument(uiD, jCas);
-				String relPath = d.getInfon("relative-source-path").replaceAll("\\.txt", "") 
-						+ outFileFormat;
+				String relPath = readOutputPath(d, outFileFormat);
 				File outFile = new File(outDirPath + "/" + relPath);
-				if( !outFile.getParentFile().exists() ) {
-					outFile.getParentFile().mkdirs();
-				}
-				
-				if( outFile.exists() )
-					outFile.delete();
 				
-				if (outFileFormat.equals(XML)) {
+				// Written to a temporary file and renamed into place, so the 
+				// output file is either complete or missing. It is only synced
+				// when the manifest is going to record it as done.
+				try (AtomicFile af = new AtomicFile(outFile, this.manifest != null)) {
+
+					if (outFileFormat.equals(XML)) {
+						
+						BioCXml.write(c, d, af.getOutputStream());
+	
+					} else if (outFileFormat.equals(JSON)) {
+	
+						BioCJson.write(d, af.getOutputStream());
+						
+					} else {
+						
+						throw new AnalysisEngineProcessException(
+								new Exception("Please write to an *.xml or a *.json file")
+								);
 					
-					BioCDocumentWriter writer = BioCFactory.newFactory(
-							BioCFactory.STANDARD).createBioCDocumentWriter(
-							new FileWriter(outFile));
-
-					writer.writeCollectionInfo(c);
-					writer.writeDocument(d);
-
-					writer.close();
-
-				} else if (outFileFormat.equals(JSON)) {
-
-					Gson gson = new Gson();
-					String json = gson.toJson(d);
-
-					PrintWriter out = new PrintWriter(new BufferedWriter(
-							new FileWriter(outFile, true)));
-
-					out.write(json);
-
-					out.close();
+					}
 					
-				} else {
+					String hash = af.commit();
+					if( this.manifest != null )
+						this.manifest.commit(relPath, d.getID(), hash);
 					
-					throw new AnalysisEngineProcessException(
-							new Exception("Please write to an *.xml or a *.json file")
-							);
-				
 				}
 
 			} catch (IOException | XMLStreamException e) {
@@ -122,4 +130,25 @@ public class SaveAsBioCDocuments extends JCasAnnotator_ImplBase {
 
 	}
 
+	/**
+	 * The document's output file relative to the output directory (its
+	 * relative-source-path without '.txt', plus the format), which is also
+	 * its key in the run manifest.
+	 */
+	public static String readOutputPath(BioCDocument d, String outFileFormat) {
+		return d.getInfon("relative-source-path").replaceAll("\\.txt", "") + outFileFormat;
+	}
+
+	@Override
+	public void destroy() {
+		try {
+			if( this.manifest != null )
+				this.manifest.close();
+		} catch (IOException e) {
+			logger.warn("Can't close the run manifest", e);
+		}
+		this.manifest = null;
+		super.destroy();
+	}
+
 }
@@ -19,7 +19,6 @@ import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.token.type.Sentence;
-import org.uimafit.component.JCasAnnotator_ImplBase;
 import org.uimafit.descriptor.ConfigurationParameter;
 import org.uimafit.factory.ConfigurationParameterFactory;
 import org.uimafit.util.JCasUtil;
@@ -27,10 +26,14 @@ import org.uimafit.util.JCasUtil;
 import bioc.BioCCollection;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
+import edu.isi.bmkeg.uimaBioC.UimaBioCAnnotator_ImplBase;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.SectionTree;
 import edu.isi.bmkeg.uimaBioC.utils.SubFigureNumberExtractor;
+import edu.isi.bmkeg.uimaBioC.utils.TokenTable;
 
-public class SaveAsClauseSpreadsheets extends JCasAnnotator_ImplBase {
+public class SaveAsClauseSpreadsheets extends UimaBioCAnnotator_ImplBase {
 
 	private static Logger logger = Logger.getLogger(SaveAsClauseSpreadsheets.class);
 
@@ -53,6 +56,10 @@ public class SaveAsClauseSpreadsheets extends JCasAnnotator_ImplBase {
 
 	private File outDir;
 	private BioCCollection collection;
+	private SectionTree sections;
+	private TokenTable tokens;
+
+	private UimaBioCInfons.Selector clauses;
 	
 	private SubFigureNumberExtractor figExtractor;
 
@@ -98,6 +105,9 @@ public class SaveAsClauseSpreadsheets extends JCasAnnotator_ImplBase {
 				return;
 
 			String id = uiD.getId();
+			this.sections = new SectionTree(jCas);
+			this.tokens = new TokenTable(jCas);
+			this.clauses = new UimaBioCInfons.Selector(jCas);
 
 			Map<String, String> infons = UimaBioCUtils.convertInfons(uiD.getInfons());
 			String pmcID = "PMC" + infons.get("pmc");
@@ -137,11 +147,9 @@ public class SaveAsClauseSpreadsheets extends JCasAnnotator_ImplBase {
 		List<UimaBioCAnnotation> floats = new ArrayList<UimaBioCAnnotation>();
 		List<UimaBioCAnnotation> parags = new ArrayList<UimaBioCAnnotation>();
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, start, end)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.containsKey("position") && infons.get("position").equals("float")) {
+			if (UimaBioCInfons.isInfon(a, "position", "float")) {
 				floats.add(a);
-			} else if (infons.containsKey("value")
-					&& (infons.get("value").equals("p") || infons.get("value").equals("title"))) {
+			} else if (UimaBioCInfons.isValue(a, "p") || UimaBioCInfons.isValue(a, "title")) {
 				parags.add(a);
 			}
 		}
@@ -203,12 +211,7 @@ public class SaveAsClauseSpreadsheets extends JCasAnnotator_ImplBase {
 	private List<UimaBioCAnnotation> printOutSentence(JCas jCas, PrintWriter out, Sentence s, boolean floater)
 			throws Exception, StackOverflowError {
 		
-		List<UimaBioCAnnotation> clauseList = new ArrayList<UimaBioCAnnotation>();
-		for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, s)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.get("type").equals("rubicon") && infons.get("value").equals("clause"))
-				clauseList.add(a);
-		}
+		List<UimaBioCAnnotation> clauseList = this.clauses.select("rubicon", "clause", s);
 
 		if (clauseList.size() == 0) {
 			throw new Exception("Can't have sentences without clauses");
@@ -220,7 +223,7 @@ public class SaveAsClauseSpreadsheets extends JCasAnnotator_ImplBase {
 
 			out.print(infons.get("scidp-sentence-number"));
 			out.print("\t");
-			out.print(UimaBioCUtils.readTokenizedText(jCas, clause));
+			out.print(UimaBioCUtils.readTokenizedText(jCas, this.tokens, clause));
 			out.print("\t");
 			out.print(infons.get("scidp-inExHeading-string"));
 			out.print("\t");
@@ -239,9 +242,9 @@ public class SaveAsClauseSpreadsheets extends JCasAnnotator_ImplBase {
 			
 			Set<String> pmidSet = new HashSet<String>();
 			for (UimaBioCAnnotation a : JCasUtil.selectCovered(UimaBioCAnnotation.class, clause)) {
-				Map<String, String> inf = UimaBioCUtils.convertInfons(a.getInfons());
-				if( inf.containsKey("pmid") ) 
-					pmidSet.add(inf.get("pmid"));
+				String pmid = UimaBioCInfons.getInfon(a, "pmid");
+				if( pmid != null ) 
+					pmidSet.add(pmid);
 			}
 			List<String> pmidList = new ArrayList<String>(pmidSet);
 			Collections.sort(pmidList);
@@ -254,7 +257,7 @@ public class SaveAsClauseSpreadsheets extends JCasAnnotator_ImplBase {
 			out.print(infons.get("scidp-paragraph-number"));
 
 			out.print("\t");
-			out.print(UimaBioCUtils.readHeadingString(jCas, clause, ""));
+			out.print(this.sections.readHeadingString(clause, ""));
 
 			out.print("\t");
 			out.print(floater);
@@ -278,24 +281,25 @@ public class SaveAsClauseSpreadsheets extends JCasAnnotator_ImplBase {
 				String friesEventText = "";
 
 				for (UimaBioCAnnotation fa : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, clause)) {
-					Map<String, String> inf = UimaBioCUtils.convertInfons(fa.getInfons());
-					if (inf.get("type").equals("FRIES_EventMention")) {
+					if (UimaBioCInfons.isType(fa, "FRIES_EventMention")) {
 
 						if (friesSentenceId.length() == 0)
-							friesSentenceId += inf.get("sentId") + ":" + inf.get("score");
+							friesSentenceId += UimaBioCInfons.getInfon(fa, "sentId") + ":" 
+									+ UimaBioCInfons.getInfon(fa, "score");
 
 						if (friesEventsIds.length() > 0)
 							friesEventsIds += ",";
-						friesEventsIds += inf.get("eventId");
+						friesEventsIds += UimaBioCInfons.getInfon(fa, "eventId");
 
 						if (friesEventsDetails.length() > 0)
 							friesEventsDetails += ",";
-						friesEventsDetails += inf.get("fType")
-								+ (inf.containsKey("fSubType") ? "." + inf.get("fSubType") : "") + inf.get("value");
+						String subType = UimaBioCInfons.getInfon(fa, "fSubType");
+						friesEventsDetails += UimaBioCInfons.getInfon(fa, "fType")
+								+ (subType != null ? "." + subType : "") + UimaBioCInfons.getValue(fa);
 
 						if (friesEventText.length() > 0)
 							friesEventText += ",";
-						friesEventText += inf.get("friesText");
+						friesEventText += UimaBioCInfons.getInfon(fa, "friesText");
 
 					}
 				}
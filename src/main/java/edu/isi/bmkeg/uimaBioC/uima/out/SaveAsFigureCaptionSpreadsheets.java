@@ -30,6 +30,7 @@ import org.uimafit.util.JCasUtil;
 import bioc.BioCCollection;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
 import edu.isi.bmkeg.uimaBioC.utils.SubFigureNumberExtractor;
 
@@ -150,8 +151,7 @@ public class SaveAsFigureCaptionSpreadsheets extends JCasAnnotator_ImplBase {
 
 		List<UimaBioCAnnotation> figs = new ArrayList<UimaBioCAnnotation>();
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, start, end)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.containsKey("value") && infons.get("value").equals("fig")) {
+			if (UimaBioCInfons.isValue(a, "fig")) {
 				figs.add(a);
 			}
 		}
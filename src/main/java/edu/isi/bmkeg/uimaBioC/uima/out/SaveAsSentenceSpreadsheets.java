@@ -48,8 +48,11 @@ import bioc.BioCCollection;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
 import bioc.type.UimaBioCSentence;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.SectionTree;
 import edu.isi.bmkeg.uimaBioC.utils.SubFigureNumberExtractor;
+import edu.isi.bmkeg.uimaBioC.utils.TokenTable;
 
 public class SaveAsSentenceSpreadsheets extends JCasAnnotator_ImplBase {
 
@@ -74,6 +77,8 @@ public class SaveAsSentenceSpreadsheets extends JCasAnnotator_ImplBase {
 	private File outDir;
 	private File friesDir;
 	private BioCCollection collection;
+	private SectionTree sections;
+	private TokenTable tokens;
 	
 	private SubFigureNumberExtractor figExtractor;
 
@@ -132,6 +137,8 @@ public class SaveAsSentenceSpreadsheets extends JCasAnnotator_ImplBase {
 				return;
 
 			String id = uiD.getId();
+			this.sections = new SectionTree(jCas);
+			this.tokens = new TokenTable(jCas);
 
 			if( this.friesDir != null ) {
 				this.loadFriesData(friesDir, uiD);
@@ -185,11 +192,9 @@ public class SaveAsSentenceSpreadsheets extends JCasAnnotator_ImplBase {
 		List<UimaBioCAnnotation> floats = new ArrayList<UimaBioCAnnotation>();
 		List<UimaBioCAnnotation> parags = new ArrayList<UimaBioCAnnotation>();
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, start, end)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.containsKey("position") && infons.get("position").equals("float")) {
+			if (UimaBioCInfons.isInfon(a, "position", "float")) {
 				floats.add(a);
-			} else if (infons.containsKey("value")
-					&& (infons.get("value").equals("p") || infons.get("value").equals("title"))) {
+			} else if (UimaBioCInfons.isValue(a, "p") || UimaBioCInfons.isValue(a, "title")) {
 				parags.add(a);
 			}
 		}
@@ -251,10 +256,9 @@ public class SaveAsSentenceSpreadsheets extends JCasAnnotator_ImplBase {
 		List<UimaBioCAnnotation> clauseList = new ArrayList<UimaBioCAnnotation>();
 		List<UimaBioCAnnotation> friesSentenceList = new ArrayList<UimaBioCAnnotation>();
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, s)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.get("type").equals("rubicon") && infons.get("value").equals("clause"))
+			if (UimaBioCInfons.is(a, "rubicon", "clause"))
 				clauseList.add(a);
-			if (infons.get("type").equals("fries_sentence") )
+			if (UimaBioCInfons.isType(a, "fries_sentence") )
 				friesSentenceList.add(a);
 		}
 
@@ -295,9 +299,9 @@ public class SaveAsSentenceSpreadsheets extends JCasAnnotator_ImplBase {
 			
 			Set<String> pmidSet = new HashSet<String>();
 			for (UimaBioCAnnotation a : JCasUtil.selectCovered(UimaBioCAnnotation.class, clause)) {
-				Map<String, String> inf = UimaBioCUtils.convertInfons(a.getInfons());
-				if( inf.containsKey("pmid") ) 
-					pmidSet.add(inf.get("pmid"));
+				String pmid = UimaBioCInfons.getInfon(a, "pmid");
+				if( pmid != null ) 
+					pmidSet.add(pmid);
 			}
 			List<String> pmidList = new ArrayList<String>(pmidSet);
 			Collections.sort(pmidList);
@@ -305,7 +309,7 @@ public class SaveAsSentenceSpreadsheets extends JCasAnnotator_ImplBase {
 				pmidStr += "["+pmid+"]";
 			}			
 			
-			heading = UimaBioCUtils.readHeadingString(jCas, clause, "");
+			heading = this.sections.readHeadingString(clause, "");
 			
 			if( discourse.length() > 0 ) 
 				discourse += "|";
@@ -324,8 +328,7 @@ public class SaveAsSentenceSpreadsheets extends JCasAnnotator_ImplBase {
 		
 		String fries_sentence = "";
 		for (UimaBioCAnnotation fs : friesSentenceList) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(fs.getInfons());
-			fries_sentence += infons.get("value");
+			fries_sentence += UimaBioCInfons.getValue(fs);
 		}
 		
 		if(inExHeading.contains("")) 
@@ -333,7 +336,7 @@ public class SaveAsSentenceSpreadsheets extends JCasAnnotator_ImplBase {
 		
 		out.print(sentenceId);
 		out.print("\t");
-		out.print(UimaBioCUtils.readTokenizedText(jCas, s));
+		out.print(this.tokens.readTokenizedText(s));
 		out.print("\t");
 		out.print(inExHeading);
 		out.print("\t");
@@ -372,8 +375,7 @@ public class SaveAsSentenceSpreadsheets extends JCasAnnotator_ImplBase {
 			out.print("\t");
 			String e = ""; 
 			for( UimaBioCAnnotation fs : friesSentenceList) {
-				Map<String, String> infons = UimaBioCUtils.convertInfons(fs.getInfons());
-				String fs_id = infons.get("value");
+				String fs_id = UimaBioCInfons.getValue(fs);
 				for( FRIES_EventMention ev : eventMap.get(fs_id) ) {
 					Set<String> pset = new HashSet<String>();
 					for( FRIES_Argument arg : ev.getArguments() ) {
@@ -29,6 +29,7 @@ import bioc.BioCCollection;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.SectionTree;
 import edu.isi.bmkeg.uimaBioC.utils.SubFigureNumberExtractor;
 
 public class SaveAsUntokenizedSentenceSpreadsheets extends JCasAnnotator_ImplBase {
@@ -42,6 +43,7 @@ public class SaveAsUntokenizedSentenceSpreadsheets extends JCasAnnotator_ImplBas
 
 	private File outDir;
 	private BioCCollection collection;
+	private SectionTree sections;
 	
 	private SubFigureNumberExtractor figExtractor;
 
@@ -76,6 +78,7 @@ public class SaveAsUntokenizedSentenceSpreadsheets extends JCasAnnotator_ImplBas
 				return;
 
 			String id = uiD.getId();
+			this.sections = new SectionTree(jCas);
 			
 			Map<String, String> inf = UimaBioCUtils.convertInfons(uiD.getInfons());
 			String pmcID = "PMC" + inf.get("pmc");
@@ -121,7 +124,6 @@ public class SaveAsUntokenizedSentenceSpreadsheets extends JCasAnnotator_ImplBas
 			int sId = 0;
 			PARAG_LOOP: for (int i=0; i<parags.size(); i++) {
 				UimaBioCAnnotation parag = parags.get(i);
-				Map<String, String> infons = UimaBioCUtils.convertInfons(parag.getInfons());
 				
 				String pString = String.format("%04d", i);
 				if( UimaBioCUtils.isAnnotationInTableOrFigure(parag, jCas) ) {
@@ -200,7 +202,7 @@ public class SaveAsUntokenizedSentenceSpreadsheets extends JCasAnnotator_ImplBas
 		out.print(cStr);
 		out.print("\t");
 		
-		out.print(UimaBioCUtils.readHeadingString(jCas, s, ""));
+		out.print(this.sections.readHeadingString(s, ""));
 		out.print("\t");
 		out.print(s.getBegin());
 		out.print("\t");
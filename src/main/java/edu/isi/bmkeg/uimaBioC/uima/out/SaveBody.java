@@ -23,7 +23,7 @@ import org.uimafit.util.JCasUtil;
 import bioc.BioCCollection;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
-import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 
 public class SaveBody extends JCasAnnotator_ImplBase {
 
@@ -63,9 +63,9 @@ public class SaveBody extends JCasAnnotator_ImplBase {
 		List<UimaBioCAnnotation> annotations = JCasUtil.selectCovered(
 				UimaBioCAnnotation.class, uiD);
 		for (UimaBioCAnnotation a : annotations) {
-			Map<String, String> inf = UimaBioCUtils.convertInfons(a.getInfons());
-			if( inf.containsKey("value") 
-					&& inf.get("value").toLowerCase().equals("body")) {
+			String value = UimaBioCInfons.getValue(a);
+			if( value != null 
+					&& value.toLowerCase().equals("body")) {
 
 				File outFile = new File(this.outDir.getPath() + "/" + 
 						id + "_body_" + a.getBegin() + 
@@ -29,7 +29,7 @@ import org.uimafit.util.JCasUtil;
 import bioc.BioCCollection;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
-import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 
 public class SaveLinksBetweenFiguresAndParagraphs extends JCasAnnotator_ImplBase {
 
@@ -157,11 +157,9 @@ public class SaveLinksBetweenFiguresAndParagraphs extends JCasAnnotator_ImplBase
 		List<UimaBioCAnnotation> floats = new ArrayList<UimaBioCAnnotation>();
 		List<UimaBioCAnnotation> parags = new ArrayList<UimaBioCAnnotation>();
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(jCas, UimaBioCAnnotation.class, start, end)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if (infons.containsKey("position") && infons.get("position").equals("float")) {
+			if (UimaBioCInfons.isInfon(a, "position", "float")) {
 				floats.add(a);
-			} else if (infons.containsKey("value")
-					&& (infons.get("value").equals("p") || infons.get("value").equals("title"))) {
+			} else if (UimaBioCInfons.isValue(a, "p") || UimaBioCInfons.isValue(a, "title")) {
 				parags.add(a);
 			}
 		}
@@ -180,8 +178,7 @@ public class SaveLinksBetweenFiguresAndParagraphs extends JCasAnnotator_ImplBase
 
 			Set<String> expts = new HashSet<String>();
 			for (UimaBioCAnnotation a : JCasUtil.selectCovered(UimaBioCAnnotation.class, parag)) {
-				Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-				if (infons.containsKey("refType") && infons.get("refType").equals("fig")) {
+				if (UimaBioCInfons.isInfon(a, "refType", "fig")) {
 					String exptCodes = readExptCodes(jCas, a);
 					expts.add(exptCodes);
 				}
@@ -230,39 +227,6 @@ public class SaveLinksBetweenFiguresAndParagraphs extends JCasAnnotator_ImplBase
 		return exptCode;
 	}
 
-	private UimaBioCAnnotation readSectionHeading(JCas jCas, UimaBioCAnnotation a) {
-
-		// Looking for section headings
-		for (UimaBioCAnnotation a1 : JCasUtil.selectCovering(jCas, UimaBioCAnnotation.class, a.getBegin(),
-				a.getEnd())) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a1.getInfons());
-			if (infons.containsKey("sectionHeading") && a1.getBegin() == a.getBegin()) {
-				return a1;
-			}
-		}
-
-		return null;
-
-	}
-
-	private int readHeadingLevel(JCas jCas, UimaBioCAnnotation a, int level) throws StackOverflowError {
-
-		// Looking for section headings
-		for (UimaBioCAnnotation a1 : JCasUtil.selectCovering(jCas, UimaBioCAnnotation.class, a.getBegin(),
-				a.getEnd())) {
-			if (a1.equals(a))
-				continue;
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a1.getInfons());
-			if (infons.containsKey("sectionHeading")) {
-				level = readHeadingLevel(jCas, a1, level + 1);
-				return level;
-			}
-		}
-
-		return level;
-
-	}
-
 	private String readTokenizedText(JCas jCas, Sentence s) {
 		String txt = "";
 		for (Token t : JCasUtil.selectCovered(jCas, Token.class, s)) {
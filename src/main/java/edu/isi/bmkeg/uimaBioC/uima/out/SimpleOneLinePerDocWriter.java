@@ -17,12 +17,14 @@ import org.cleartk.token.type.Sentence;
 import org.cleartk.token.type.Token;
 import org.uimafit.component.JCasAnnotator_ImplBase;
 import org.uimafit.descriptor.ConfigurationParameter;
+import org.uimafit.descriptor.OperationalProperties;
 import org.uimafit.factory.ConfigurationParameterFactory;
 import org.uimafit.util.JCasUtil;
 
 import bioc.type.UimaBioCDocument;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
 
+@OperationalProperties(multipleDeploymentAllowed = false)
 public class SimpleOneLinePerDocWriter extends JCasAnnotator_ImplBase {
 
 	public final static String PARAM_OUT_FILE_PATH = ConfigurationParameterFactory
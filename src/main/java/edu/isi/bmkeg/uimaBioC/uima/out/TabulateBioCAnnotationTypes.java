@@ -17,6 +17,7 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.uimafit.component.JCasAnnotator_ImplBase;
 import org.uimafit.descriptor.ConfigurationParameter;
+import org.uimafit.descriptor.OperationalProperties;
 import org.uimafit.factory.ConfigurationParameterFactory;
 import org.uimafit.util.JCasUtil;
 
@@ -27,8 +28,9 @@ import bioc.io.BioCCollectionWriter;
 import bioc.io.BioCFactory;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
-import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 
+@OperationalProperties(multipleDeploymentAllowed = false)
 public class TabulateBioCAnnotationTypes extends JCasAnnotator_ImplBase {
 
 	public final static String PARAM_TITLE = ConfigurationParameterFactory
@@ -79,17 +81,17 @@ public class TabulateBioCAnnotationTypes extends JCasAnnotator_ImplBase {
 				UimaBioCAnnotation.class, uiD);
 		for (UimaBioCAnnotation uiA1 : outerAnnotations) {
 			
-			Map<String, String> inf = UimaBioCUtils.convertInfons(uiA1.getInfons());
-			if( !inf.containsKey("type")  ) 
+			if( !UimaBioCInfons.hasInfon(uiA1, "type")  ) 
 				continue;
 
-			Integer count = row.get(inf.get("type") + "." + inf.get("value"));
+			String key = UimaBioCInfons.getType(uiA1) + "." + UimaBioCInfons.getValue(uiA1);
+			Integer count = row.get(key);
 			if( count == null )
 				count = 0;
 				
 			count++;
 				
-			row.put(inf.get("type") + "." + inf.get("value"), count);
+			row.put(key, count);
 		}
 
 		table.put(uiD.getId(), row);
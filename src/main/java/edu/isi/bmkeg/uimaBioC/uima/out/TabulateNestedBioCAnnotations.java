@@ -17,6 +17,7 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.uimafit.component.JCasAnnotator_ImplBase;
 import org.uimafit.descriptor.ConfigurationParameter;
+import org.uimafit.descriptor.OperationalProperties;
 import org.uimafit.factory.ConfigurationParameterFactory;
 import org.uimafit.util.JCasUtil;
 
@@ -27,8 +28,9 @@ import bioc.io.BioCCollectionWriter;
 import bioc.io.BioCFactory;
 import bioc.type.UimaBioCAnnotation;
 import bioc.type.UimaBioCDocument;
-import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 
+@OperationalProperties(multipleDeploymentAllowed = false)
 public class TabulateNestedBioCAnnotations extends JCasAnnotator_ImplBase {
 
 	public final static String PARAM_TITLE = ConfigurationParameterFactory
@@ -84,30 +86,30 @@ public class TabulateNestedBioCAnnotations extends JCasAnnotator_ImplBase {
 				UimaBioCAnnotation.class, uiD);
 		for (UimaBioCAnnotation uiA1 : outerAnnotations) {
 			
-			Map<String, String> inf = UimaBioCUtils.convertInfons(uiA1.getInfons());
-			if( !inf.containsKey("type") || !inf.get("type").equals(ann1Type) ) 
+			if( !UimaBioCInfons.isType(uiA1, ann1Type) ) 
 				continue;
+			String value1 = UimaBioCInfons.getValue(uiA1);
 
 			List<UimaBioCAnnotation> innerAnnotations = JCasUtil.selectCovered(
 					UimaBioCAnnotation.class, uiA1);
 			for (UimaBioCAnnotation uiA2 : innerAnnotations) {
 				
-				Map<String, String> inf2 = UimaBioCUtils.convertInfons(uiA2.getInfons());
-				if( !inf2.get("type").equals(ann2Type) ) 
+				if( !UimaBioCInfons.isType(uiA2, ann2Type) ) 
 					continue;
+				String value2 = UimaBioCInfons.getValue(uiA2);
 				
-				Map<String, Integer> row = table.get(inf.get("value"));
+				Map<String, Integer> row = table.get(value1);
 				if( row == null )
 					row = new HashMap<String, Integer>();
 				
-				Integer count = row.get(inf2.get("value"));
+				Integer count = row.get(value2);
 				if( count == null )
 					count = 0;
 				
 				count++;
 				
-				row.put(inf2.get("value"), count);
-				table.put(inf.get("value"), row);
+				row.put(value2, count);
+				table.put(value1, row);
 				
 			}
 
@@ -1,13 +1,13 @@
 package edu.isi.bmkeg.uimaBioC.uima.readers;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.apache.uima.UimaContext;
 import org.apache.uima.collection.CollectionException;
@@ -21,6 +21,11 @@ import org.uimafit.factory.ConfigurationParameterFactory;
 
 import bioc.BioCDocument;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.uima.out.SaveAsBioCDocuments;
+import edu.isi.bmkeg.uimaBioC.utils.ArchiveBundles;
+import edu.isi.bmkeg.uimaBioC.utils.CostSchedule;
+import edu.isi.bmkeg.uimaBioC.utils.FileWalker;
+import edu.isi.bmkeg.uimaBioC.utils.RunManifest;
 
 /**
  * We want to optimize this interaction for speed, so we run a
@@ -32,21 +37,40 @@ import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
  */
 public class BioCCollectionReader extends JCasCollectionReader_ImplBase {
 	
-	private Iterator<File> bioCFileIt; 
+	private FileWalker bioCFileIt; 
+	private ArchiveBundles archiveIt;
+	private ArchiveBundles.Bundle bundle;
 	private File bioCFile; 
 	private BioCDocument bioD;	
+	private long cost = -1;
 	
 	private int pos = 0;
-	private int count = 0;
 	
 	private static Logger logger = Logger.getLogger(BioCCollectionReader.class);
 	
 	public static final String INPUT_DIRECTORY = ConfigurationParameterFactory
 			.createConfigurationParameterName(BioCCollectionReader.class,
 					"inputDirectory");
-	@ConfigurationParameter(mandatory = true, description = "Input Directory for BioC Files")
+	@ConfigurationParameter(mandatory = true, description = "Input Directory (or .tar.gz/.tgz/.zip archive) for BioC Files")
 	protected String inputDirectory;
 
+	/*
+	 * Shard 'shardIndex' of 'shardCount': only documents whose path relative
+	 * to the input directory hashes to this shard are read, so that several
+	 * processes can split a corpus between them (see Shards).
+	 */
+	public static final String PARAM_SHARD_INDEX = ConfigurationParameterFactory
+			.createConfigurationParameterName(BioCCollectionReader.class,
+					"shardIndex");
+	@ConfigurationParameter(mandatory = false, description = "Index of the shard to read (0..shardCount-1)")
+	protected int shardIndex = 0;
+
+	public static final String PARAM_SHARD_COUNT = ConfigurationParameterFactory
+			.createConfigurationParameterName(BioCCollectionReader.class,
+					"shardCount");
+	@ConfigurationParameter(mandatory = false, description = "Number of shards the input is split into")
+	protected int shardCount = 1;
+
 	/*
 	 * If this is set, then we expect to output BioC files to this directory.
 	 * Also, if we detect an appropriately named file in this directory, we'll
@@ -73,16 +97,66 @@ public class BioCCollectionReader extends JCasCollectionReader_ImplBase {
 	@ConfigurationParameter(mandatory = true, description = "The format of the BioC input files.")
 	String inFileFormat;
 	
+	/*
+	 * If this is set, the document ID is taken to be the file name up to the 
+	 * first '_' or '.' when deciding whether to skip a file, so that files 
+	 * that have already been processed are never opened.
+	 */
+	public static final String PARAM_ID_FROM_FILE_NAME = ConfigurationParameterFactory
+			.createConfigurationParameterName(BioCCollectionReader.class,
+					"idFromFileName");
+	@ConfigurationParameter(mandatory = false, description = "Take document IDs from file names when checking for existing output")
+	protected boolean idFromFileName = false;
+	
 	Pattern patt = Pattern.compile("^(.*?)[_\\.]");
 	
+	// Names of the files in outputDirectory, listed once in initialize()
+	private Set<String> existingFiles = new HashSet<String>();
+	
+	/*
+	 * Optional size-aware scheduling of a directory of input files, see
+	 * CostSchedule: 'fifo' (the default), 'largestFirst' or 'interleaved',
+	 * with costs estimated from 'size', 'soSize' or 'soLines'.
+	 */
+	public static final String PARAM_SCHEDULE = ConfigurationParameterFactory
+			.createConfigurationParameterName(BioCCollectionReader.class,
+					"schedule");
+	@ConfigurationParameter(mandatory = false, description = "Order of the input files: fifo, largestFirst or interleaved")
+	protected String schedule = CostSchedule.FIFO;
+
+	public static final String PARAM_COST_ESTIMATE = ConfigurationParameterFactory
+			.createConfigurationParameterName(BioCCollectionReader.class,
+					"costEstimate");
+	@ConfigurationParameter(mandatory = false, description = "Cost estimate for scheduling: size, soSize or soLines")
+	protected String costEstimate = CostSchedule.SIZE;
+
+	public static final String PARAM_SCHEDULE_BUCKETS = ConfigurationParameterFactory
+			.createConfigurationParameterName(BioCCollectionReader.class,
+					"scheduleBuckets");
+	@ConfigurationParameter(mandatory = false, description = "Number of cost buckets for the interleaved schedule")
+	protected int scheduleBuckets = CostSchedule.DEFAULT_BUCKETS;
+
+	/*
+	 * If this is set (along with outputDirectory), documents are claimed in
+	 * this run manifest instead of by creating empty output files, and the
+	 * output directory isn't listed: the manifest says which documents are
+	 * done (see RunManifest). The writer records finished documents in the
+	 * same file.
+	 */
+	public static final String PARAM_MANIFEST = ConfigurationParameterFactory
+			.createConfigurationParameterName(BioCCollectionReader.class,
+					"manifestFile");
+	@ConfigurationParameter(mandatory = false, description = "Run manifest to resume from")
+	protected String manifestFile;
+	
+	private RunManifest manifest;
+
 	@Override
 	public void initialize(UimaContext context) throws ResourceInitializationException {
 
 		try {
 			
 			String[] fileTypes = {"xml", "txt", "json", "tsv"};
-			Collection<File> l = (Collection<File>) FileUtils.listFiles(
-					new File(inputDirectory), fileTypes, true);
 			
 			if( outputDirectory != null ) {
 				File outDir = new File(outputDirectory);
@@ -92,10 +166,28 @@ public class BioCCollectionReader extends JCasCollectionReader_ImplBase {
 					outFileFormat = inFileFormat;
 				if( !outFileFormat.startsWith(".") )
 					outFileFormat = "." + outFileFormat;
+				if( manifestFile != null ) {
+					this.manifest = RunManifest.open(new File(manifestFile));
+				} else {
+					String[] names = outDir.list();
+					if( names != null ) 
+						this.existingFiles.addAll(Arrays.asList(names));
+					logger.info(this.existingFiles.size() + " files already in " + outputDirectory);
+				}
 			}
 			
-			this.bioCFileIt = l.iterator();
-			this.count = l.size();
+			File in = new File(inputDirectory);
+			if( ArchiveBundles.isArchive(in) ) {
+				this.archiveIt = new ArchiveBundles(in, ArchiveBundles.DEFAULT_WINDOW, inFileFormat);
+				this.archiveIt.setShard(shardIndex, shardCount);
+				if( !CostSchedule.FIFO.equals(schedule) )
+					logger.warn("Can't schedule the entries of an archive, reading them in archive order");
+			} else {
+				this.bioCFileIt = new FileWalker(in, false, fileTypes);
+				this.bioCFileIt.setShard(shardIndex, shardCount);
+				this.bioCFileIt.setSchedule(CostSchedule.create(schedule, costEstimate, scheduleBuckets));
+				this.bioCFileIt.startCounting();
+			}
 			
 		} catch (Exception e) {
 
@@ -114,12 +206,16 @@ public class BioCCollectionReader extends JCasCollectionReader_ImplBase {
 		try {
 						
 			UimaBioCUtils.addBioCDocumentToUimaCas(this.bioD, jcas);
+			if( this.cost >= 0 ) {
+				String key = this.bioD.getInfon("relative-source-path");
+				CostSchedule.recordEstimate(key != null ? key : this.bioD.getID(), this.cost);
+			}
 						
 			logger.debug("Processing " + bioCFile.getName() + "." );
 		    
 		} catch (Exception e) {
 			
-			System.err.print(this.count);
+			System.err.print(this.pos + "/" + getCount());
 			throw new CollectionException(e);
 
 		}
@@ -143,57 +239,68 @@ public class BioCCollectionReader extends JCasCollectionReader_ImplBase {
 	public Progress[] getProgress() {		
 		Progress progress = new ProgressImpl(
 				this.pos, 
-				this.count, 
+				getCount(), 
 				Progress.ENTITIES);
 		
         return new Progress[] { progress };
 	}
 
+	@Override
+	public void close() throws IOException {
+		if( bioCFileIt != null )
+			bioCFileIt.close();
+		if( archiveIt != null )
+			archiveIt.close();
+		if( manifest != null ) {
+			manifest.close();
+			manifest = null;
+		}
+		super.close();
+	}
+
 	@Override
 	public boolean hasNext() throws IOException, CollectionException {
 
 		try {
 
-			if( !bioCFileIt.hasNext() )
-				return false;
+			while( moreFiles() ) {
 
-			this.bioCFile = bioCFileIt.next();
-			this.bioD = UimaBioCUtils.readBioCFile(bioCFile);
-			
-			while( this.bioD == null) {		
-				logger.debug("Bioc data corrupt for " + bioCFile.getName() + ", skipping." );
-				if( !bioCFileIt.hasNext() )
-					return false;
-				bioCFile = bioCFileIt.next();
-				bioD = UimaBioCUtils.readBioCFile(bioCFile);
-			}
-			
-			if( outputDirectory != null ) {
-				String outputFilename = this.bioD.getID() + this.outFileFormat;
-				File outFile = new File(outputDirectory + "/" + outputFilename);
-				while( outFile.exists() ) {		
-					logger.debug("output file for " + bioCFile.getName() + " exists, skipping." );
-					if( !bioCFileIt.hasNext() )
-						return false;
-					bioCFile = bioCFileIt.next();
-					bioD = UimaBioCUtils.readBioCFile(bioCFile);
-					
-					while( this.bioD == null) {		
-						logger.debug("Bioc data corrupt for " + bioCFile.getName() + ", skipping." );
-						if( !bioCFileIt.hasNext() )
-							return false;
-						bioCFile = bioCFileIt.next();
-						bioD = UimaBioCUtils.readBioCFile(bioCFile);
+				nextFile();
+				this.pos++;
+				
+				// Decide whether to skip the file before parsing it. The 
+				// manifest is keyed on the relative-source-path inside the 
+				// file, which is read along with the id and infons alone.
+				if( outputDirectory != null ) {
+					String outputFilename = readOutputFilename(bioCFile);
+					if( outputFilename != null && isDone(outputFilename) ) {
+						logger.debug("output file for " + bioCFile.getName() + " exists, skipping." );
+						continue;
+					}
+				}
+				
+				if( this.bundle != null )
+					this.bioD = UimaBioCUtils.readBioC(this.bundle.open(inFileFormat), bioCFile.getName());
+				else
+					this.bioD = UimaBioCUtils.readBioCFile(bioCFile);
+				if( this.bioD == null ) {
+					logger.debug("Bioc data corrupt for " + bioCFile.getName() + ", skipping." );
+					continue;
+				}
+				
+				if( outputDirectory != null ) {
+					String outputFilename = readOutputFilename(this.bioD);
+					if( !claim(outputFilename) ) {
+						logger.debug("output file for " + bioCFile.getName() + " exists, skipping." );
+						continue;
 					}
-					
-					outputFilename = this.bioD.getID() + this.outFileFormat;
-					outFile = new File(outputDirectory + "/" + outputFilename);
 				}
-				// 'touch' the file. 
-				new FileOutputStream(outFile).close(); 
+				
+				return true;
+				
 			}
 			
-			return true;
+			return false;
 		
 		} catch (Exception e) {
 			throw new CollectionException(e);
@@ -201,4 +308,94 @@ public class BioCCollectionReader extends JCasCollectionReader_ImplBase {
 
 	}
 
+	/**
+	 * The name SaveAsBioCDocuments will write the document's output under:
+	 * with a manifest, the document's relative-source-path (which is what
+	 * the writer commits), otherwise its ID.
+	 */
+	private String readOutputFilename(BioCDocument d) {
+		if( this.manifest != null && d.getInfon("relative-source-path") != null )
+			return SaveAsBioCDocuments.readOutputPath(d, this.outFileFormat);
+		return d.getID() + this.outFileFormat;
+	}
+
+	/**
+	 * readOutputFilename(BioCDocument) for a file that hasn't been parsed,
+	 * or null if that would cost as much as parsing it.
+	 */
+	private String readOutputFilename(File f) {
+		if( this.manifest == null ) {
+			String id = readId(f);
+			return id != null ? id + this.outFileFormat : null;
+		}
+		if( this.idFromFileName || this.bundle != null )
+			return null;
+		try {
+			BioCDocument header = UimaBioCUtils.readBioCFileHeader(f);
+			return header != null && header.getID() != null ? readOutputFilename(header) : null;
+		} catch (Exception e) {
+			// leave it to readBioCFile to decide what to do with the file
+			return null;
+		}
+	}
+
+	private boolean isDone(String outputFilename) {
+		if( this.manifest != null )
+			return this.manifest.isDone(outputFilename);
+		return this.existingFiles.contains(outputFilename);
+	}
+	
+	/**
+	 * Claims the output file for a document in the manifest or, without
+	 * one, by 'touching' the file, which fails if another process got there
+	 * first.
+	 */
+	private boolean claim(String outputFilename) throws IOException {
+		if( this.manifest != null )
+			return this.manifest.claim(outputFilename);
+		if( !this.existingFiles.add(outputFilename) )
+			return false;
+		return new File(outputDirectory + "/" + outputFilename).createNewFile();
+	}
+
+	private boolean moreFiles() {
+		return this.archiveIt != null ? this.archiveIt.hasNext() : this.bioCFileIt.hasNext();
+	}
+	
+	/**
+	 * Moves bioCFile on to the next input file. For an archive this is
+	 * where the entry would be if the archive were extracted in place, and
+	 * the entry itself is in 'bundle'.
+	 */
+	private void nextFile() {
+		if( this.archiveIt != null ) {
+			this.bundle = this.archiveIt.next();
+			this.bioCFile = new File(inputDirectory + "/" + this.bundle.getPath(inFileFormat));
+		} else {
+			this.bioCFile = this.bioCFileIt.next();
+			this.cost = this.bioCFileIt.getCost(this.bioCFile);
+		}
+	}
+	
+	private int getCount() {
+		return this.archiveIt != null ? this.archiveIt.getCount() : this.bioCFileIt.getCount();
+	}
+
+	private String readId(File f) {
+		if( this.idFromFileName ) {
+			Matcher m = patt.matcher(f.getName());
+			return m.find() ? m.group(1) : null;
+		}
+		if( this.bundle != null ) {
+			// the entry is already in memory, so there's nothing to save
+			return null;
+		}
+		try {
+			return UimaBioCUtils.readBioCFileId(f);
+		} catch (Exception e) {
+			// leave it to readBioCFile to decide what to do with the file
+			return null;
+		}
+	}
+
 }
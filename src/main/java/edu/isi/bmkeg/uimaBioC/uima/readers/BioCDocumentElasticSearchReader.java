@@ -1,7 +1,10 @@
 package edu.isi.bmkeg.uimaBioC.uima.readers;
 
 import java.io.IOException;
-import java.util.Iterator;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.apache.uima.UimaContext;
@@ -10,18 +13,46 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.util.Progress;
 import org.apache.uima.util.ProgressImpl;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
 import org.uimafit.component.JCasCollectionReader_ImplBase;
+import org.uimafit.descriptor.ConfigurationParameter;
+import org.uimafit.factory.ConfigurationParameterFactory;
 
 import bioc.BioCDocument;
 import bioc.esViews.BioCDocument.BioCDocument__BioCDocument;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
 import edu.isi.bmkeg.uimaBioC.elasticSearch.BioCDocumentRepository;
-import edu.isi.bmkeg.utils.ViewConverter;
+import edu.isi.bmkeg.uimaBioC.utils.BioCJson;
+import edu.isi.bmkeg.uimaBioC.utils.Shards;
 
 /**
- * We want to optimize this interaction for speed, so we run a
- * manual query over the underlying database involving a minimal subset of
- * tables.
+ * Reads BioC documents back out of the biocdocument-index one page at a
+ * time, so memory use doesn't depend on the size of the index.
+ * 
+ * The index is read with a scroll through the ElasticsearchTemplate bound
+ * as ES_TEMPLATE, and each hit's source is read straight into a BioCDocument.
+ * (Paging with from/size stops working past index.max_result_window, so
+ * there is no fallback to paging through the repository.)
+ * 
+ * With shardCount > 1, each reader scrolls over only its own index shards
+ * (index shard k goes to reader k % shardCount). That way parallel readers
+ * pull disjoint slices without seeing each other's documents. Elasticsearch
+ * 2.x has no sliced scroll, so this uses the shard preference instead. If
+ * there are more readers than index shards, every reader scrolls the whole
+ * index and keeps the documents whose ID hashes to its shard (see Shards).
+ * 
+ * The document count reported by getProgress() is exact when the scroll
+ * covers only this reader's index shards. When every reader scrolls the
+ * whole index it is the index total divided by shardCount, which is only
+ * approximate since the ID hash does not split the index exactly evenly.
  * 
  * @author burns
  * 
@@ -32,10 +63,51 @@ public class BioCDocumentElasticSearchReader extends JCasCollectionReader_ImplBa
 	
 	public final static String BIOC_ES_REPO = "bioCRepository";
 	
+	// not read from any more (see ES_TEMPLATE), but still bound by callers
 	@org.uimafit.descriptor.ExternalResource(key = BIOC_ES_REPO)
 	BioCDocumentRepository biocRepo;
 	
-	private Iterator<BioCDocument__BioCDocument> biocDocIt;
+	public final static String ES_TEMPLATE = "elasticsearchTemplate";
+	
+	@org.uimafit.descriptor.ExternalResource(key = ES_TEMPLATE)
+	ElasticsearchOperations esTemplate;
+	
+	public static final String PARAM_PAGE_SIZE = ConfigurationParameterFactory
+			.createConfigurationParameterName(BioCDocumentElasticSearchReader.class,
+					"pageSize");
+	@ConfigurationParameter(mandatory = false, description = "Number of documents fetched per request (per index shard when scrolling)")
+	protected int pageSize = 100;
+
+	public static final String PARAM_KEEP_ALIVE = ConfigurationParameterFactory
+			.createConfigurationParameterName(BioCDocumentElasticSearchReader.class,
+					"keepAliveSeconds");
+	@ConfigurationParameter(mandatory = false, description = "How long the scroll is kept open between pages")
+	protected int keepAliveSeconds = 300;
+	
+	private Deque<BioCDocument> page = new ArrayDeque<BioCDocument>();
+	private boolean lastPage = false;
+	
+	private Client client;
+	private String scrollId;
+	// true if the scroll only covers this reader's index shards
+	private boolean sliced = false;
+	
+	/*
+	 * Shard 'shardIndex' of 'shardCount': only documents whose ID hashes to
+	 * this shard are read, so that several processes can split an index 
+	 * between them (see Shards).
+	 */
+	public static final String PARAM_SHARD_INDEX = ConfigurationParameterFactory
+			.createConfigurationParameterName(BioCDocumentElasticSearchReader.class,
+					"shardIndex");
+	@ConfigurationParameter(mandatory = false, description = "Index of the shard to read (0..shardCount-1)")
+	protected int shardIndex = 0;
+
+	public static final String PARAM_SHARD_COUNT = ConfigurationParameterFactory
+			.createConfigurationParameterName(BioCDocumentElasticSearchReader.class,
+					"shardCount");
+	@ConfigurationParameter(mandatory = false, description = "Number of shards the index is split into")
+	protected int shardCount = 1;
 	
 	private long pos = 0;
 	private long count = 0;
@@ -45,8 +117,8 @@ public class BioCDocumentElasticSearchReader extends JCasCollectionReader_ImplBa
 
 		try {
 						
-			this.count = this.biocRepo.count();
-			Iterator<BioCDocument__BioCDocument> biocDocIt = this.biocRepo.findAll().iterator();
+			Shards.check(shardIndex, shardCount);
+			startScroll();
 			
 		} catch (Exception e) {
 
@@ -64,14 +136,10 @@ public class BioCDocumentElasticSearchReader extends JCasCollectionReader_ImplBa
 
 		try {
 			
-			if(!biocDocIt.hasNext()) 
+			if(!hasNext()) 
 				return;
 			
-			BioCDocument__BioCDocument bioCDocView = biocDocIt.next();
-			BioCDocument bioCDoc = new BioCDocument();
-			
-			ViewConverter vc = new ViewConverter(bioCDocView);
-			bioCDoc = (BioCDocument) vc.viewObjectToBase(bioCDocView, bioCDoc);
+			BioCDocument bioCDoc = this.page.poll();
 			
 			UimaBioCUtils.addBioCDocumentToUimaCas(bioCDoc, jcas);
 						
@@ -114,7 +182,88 @@ public class BioCDocumentElasticSearchReader extends JCasCollectionReader_ImplBa
 
 	@Override
 	public boolean hasNext() throws IOException, CollectionException {
-		return biocDocIt.hasNext();
+		try {
+			while( this.page.isEmpty() && !this.lastPage )
+				nextScrollPage();
+		} catch (Exception e) {
+			throw new CollectionException(e);
+		}
+		return !this.page.isEmpty();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if( this.scrollId != null ) {
+			this.client.prepareClearScroll().addScrollId(this.scrollId).execute().actionGet();
+			this.scrollId = null;
+		}
+		super.close();
+	}
+
+	private void startScroll() throws IOException {
+		
+		ElasticsearchPersistentEntity<?> entity = this.esTemplate
+				.getPersistentEntityFor(BioCDocument__BioCDocument.class);
+		String index = entity.getIndexName();
+		this.client = this.esTemplate.getClient();
+		
+		SearchRequestBuilder request = this.client.prepareSearch(index)
+				.setTypes(entity.getIndexType())
+				.setQuery(QueryBuilders.matchAllQuery())
+				.addSort("_doc", SortOrder.ASC)
+				.setSize(this.pageSize)
+				.setScroll(TimeValue.timeValueSeconds(this.keepAliveSeconds));
+		
+		if( this.shardCount > 1 ) {
+			int nIndexShards = readNumberOfShards(index);
+			if( nIndexShards >= this.shardCount ) {
+				StringBuilder pref = new StringBuilder("_shards:");
+				for( int k = this.shardIndex; k < nIndexShards; k += this.shardCount ) {
+					if( k > this.shardIndex )
+						pref.append(",");
+					pref.append(k);
+				}
+				request.setPreference(pref.toString());
+				this.sliced = true;
+			} else {
+				logger.info(index + " has " + nIndexShards + " shards for " + this.shardCount 
+						+ " readers, so each reader scrolls the whole index");
+			}
+		}
+		
+		SearchResponse response = request.execute().actionGet();
+		long total = response.getHits().getTotalHits();
+		this.count = this.sliced ? total : total / this.shardCount;
+		addHits(response);
+		
+	}
+	
+	private int readNumberOfShards(String index) {
+		Map<?,?> settings = this.esTemplate.getSetting(index);
+		Object n = settings.get("index.number_of_shards");
+		return n == null ? 1 : Integer.parseInt(n.toString());
+	}
+	
+	private void nextScrollPage() throws IOException {
+		addHits(this.client.prepareSearchScroll(this.scrollId)
+				.setScroll(TimeValue.timeValueSeconds(this.keepAliveSeconds))
+				.execute().actionGet());
+	}
+	
+	private void addHits(SearchResponse response) throws IOException {
+		this.scrollId = response.getScrollId();
+		SearchHit[] hits = response.getHits().getHits();
+		if( hits.length == 0 ) {
+			this.lastPage = true;
+			return;
+		}
+		for( SearchHit hit : hits ) {
+			BioCDocument d = BioCJson.read(new StringReader(hit.getSourceAsString()));
+			if( d.getID() == null )
+				d.setID(hit.getId());
+			if( this.sliced || Shards.isInShard(d.getID(), shardIndex, shardCount) )
+				this.page.add(d);
+		}
 	}
 
 }
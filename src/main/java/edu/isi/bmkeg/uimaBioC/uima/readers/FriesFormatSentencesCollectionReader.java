@@ -1,19 +1,20 @@
 package edu.isi.bmkeg.uimaBioC.uima.readers;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.Collection;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.xml.stream.XMLStreamException;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -36,9 +37,12 @@ import org.uimafit.factory.ConfigurationParameterFactory;
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.typeadapters.RuntimeTypeAdapterFactory;
 
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.FileWalker;
 
 /**
  * We want to optimize this interaction for speed, so we run a
@@ -50,12 +54,11 @@ import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
  */
 public class FriesFormatSentencesCollectionReader extends JCasCollectionReader_ImplBase {
 	
-	private Iterator<File> fileIt; 
+	private FileWalker fileIt; 
 	private File file; 
 	private FRIES_FrameCollection frameColl;	
 	
 	private int pos = 0;
-	private int count = 0;
 	
 	private static Logger logger = Logger.getLogger(FriesFormatSentencesCollectionReader.class);
 	
@@ -65,6 +68,23 @@ public class FriesFormatSentencesCollectionReader extends JCasCollectionReader_I
 	@ConfigurationParameter(mandatory = true, description = "Input Directory for BioC Files")
 	protected String inputDirectory;
 
+	/*
+	 * Shard 'shardIndex' of 'shardCount': only documents whose path relative
+	 * to the input directory hashes to this shard are read, so that several
+	 * processes can split a corpus between them (see Shards).
+	 */
+	public static final String PARAM_SHARD_INDEX = ConfigurationParameterFactory
+			.createConfigurationParameterName(FriesFormatSentencesCollectionReader.class,
+					"shardIndex");
+	@ConfigurationParameter(mandatory = false, description = "Index of the shard to read (0..shardCount-1)")
+	protected int shardIndex = 0;
+
+	public static final String PARAM_SHARD_COUNT = ConfigurationParameterFactory
+			.createConfigurationParameterName(FriesFormatSentencesCollectionReader.class,
+					"shardCount");
+	@ConfigurationParameter(mandatory = false, description = "Number of shards the input is split into")
+	protected int shardCount = 1;
+
 	/*
 	 * If this is set, then we expect to output BioC files to this directory.
 	 * Also, if we detect an appropriately named file in this directory, we'll
@@ -85,6 +105,16 @@ public class FriesFormatSentencesCollectionReader extends JCasCollectionReader_I
 	@ConfigurationParameter(mandatory = true, description = "The format of the BioC input files.")
 	String inFileFormat;
 	
+	/*
+	 * If this is set, the document ID is taken to be the file name up to the 
+	 * first '_' or '.' when deciding whether to skip a file.
+	 */
+	public static final String PARAM_ID_FROM_FILE_NAME = ConfigurationParameterFactory
+			.createConfigurationParameterName(FriesFormatSentencesCollectionReader.class,
+					"idFromFileName");
+	@ConfigurationParameter(mandatory = false, description = "Take document IDs from file names when checking for existing output")
+	protected boolean idFromFileName = false;
+	
 	Pattern patt = Pattern.compile("^(.*?)[_\\.]");
 	
 	@Override
@@ -93,17 +123,15 @@ public class FriesFormatSentencesCollectionReader extends JCasCollectionReader_I
 		try {
 			
 			String[] fileTypes = {"xml", "txt", "json", "tsv"};
-			Collection<File> l = (Collection<File>) FileUtils.listFiles(
-					new File(inputDirectory), fileTypes, true);
 			
 			this.existingFiles = new HashSet<String>();
 			if( outputDirectory != null ) {
 				File outDir = new File(outputDirectory);
 				if(!outDir.exists())
 					outDir.mkdirs();
-				for(Object o : FileUtils.listFiles(
-						new File(outputDirectory), fileTypes, true)) {
-					String fName = ((File) o).getName();
+				FileWalker outFiles = new FileWalker(outDir, false, fileTypes);
+				while( outFiles.hasNext() ) {
+					String fName = outFiles.next().getName();
 					Matcher m = patt.matcher(fName);
 					if( m.find() ) {
 						this.existingFiles.add(m.group(1));
@@ -111,8 +139,9 @@ public class FriesFormatSentencesCollectionReader extends JCasCollectionReader_I
 				}
 			}
 			
-			this.fileIt = l.iterator();
-			this.count = l.size();
+			this.fileIt = new FileWalker(new File(inputDirectory), false, fileTypes);
+			this.fileIt.setShard(shardIndex, shardCount);
+			this.fileIt.startCounting();
 			
 		} catch (Exception e) {
 
@@ -136,7 +165,7 @@ public class FriesFormatSentencesCollectionReader extends JCasCollectionReader_I
 		    
 		} catch (Exception e) {
 			
-			System.err.print(this.count);
+			System.err.print(this.pos + "/" + fileIt.getCount());
 			throw new CollectionException(e);
 
 		}
@@ -154,12 +183,52 @@ public class FriesFormatSentencesCollectionReader extends JCasCollectionReader_I
 		Gson gson = new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_DASHES)
 				.registerTypeAdapterFactory(typeFactory).create();
 
-		frameColl = gson.fromJson(new FileReader(bioCFile), FRIES_FrameCollection.class);
+		try (Reader r = openJson(bioCFile)) {
+			frameColl = gson.fromJson(r, FRIES_FrameCollection.class);
+		}
 		
 		return frameColl;
 	
 	}
 		
+	// the FRIES files are JSON, so UTF-8
+	private static Reader openJson(File f) throws FileNotFoundException {
+		return new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Reads "object-meta"/"doc-id" from the file without building any of
+	 * the frames (or takes it from the file name), or returns null.
+	 */
+	private String readDocId(File f) {
+		
+		if( this.idFromFileName ) {
+			Matcher m = patt.matcher(f.getName());
+			return m.find() ? m.group(1) : null;
+		}
+		
+		try (JsonReader json = new JsonReader(openJson(f))) {
+			json.beginObject();
+			while( json.hasNext() ) {
+				if( !json.nextName().equals("object-meta") ) {
+					json.skipValue();
+					continue;
+				}
+				json.beginObject();
+				while( json.hasNext() ) {
+					if( json.nextName().equals("doc-id") && json.peek() == JsonToken.STRING )
+						return json.nextString();
+					json.skipValue();
+				}
+				return null;
+			}
+		} catch (Exception e) {
+			// leave it to readFriesSentenceFrames to report the problem
+		}
+		return null;
+	
+	}
+		
 	protected void error(String message) {
 		logger.error(message);
 	}
@@ -177,34 +246,46 @@ public class FriesFormatSentencesCollectionReader extends JCasCollectionReader_I
 	public Progress[] getProgress() {		
 		Progress progress = new ProgressImpl(
 				this.pos, 
-				this.count, 
+				fileIt.getCount(), 
 				Progress.ENTITIES);
 		
         return new Progress[] { progress };
 	}
 
+	@Override
+	public void close() throws IOException {
+		fileIt.close();
+		super.close();
+	}
+
 	@Override
 	public boolean hasNext() throws IOException, CollectionException {
 
 		try {
 
-			if( !fileIt.hasNext() )
-				return false;
+			while( fileIt.hasNext() ) {
 
-			this.file = fileIt.next();
-			this.frameColl = readFriesSentenceFrames(file);
-			
-			while( this.existingFiles.contains(frameColl.getObjectMeta().getDocId())) {
-				logger.debug("output file for " + file.getName() + " exists, skipping." );
+				this.file = fileIt.next();
+				this.pos++;
+				
+				// Only parse the whole file once we know we need it.
+				String docId = readDocId(file);
+				if( docId != null && this.existingFiles.contains(docId) ) {
+					logger.debug("output file for " + file.getName() + " exists, skipping." );
+					continue;
+				}
+				
+				this.frameColl = readFriesSentenceFrames(file);
+				if( docId == null && this.existingFiles.contains(frameColl.getObjectMeta().getDocId()) ) {
+					logger.debug("output file for " + file.getName() + " exists, skipping." );
+					continue;
+				}
 				
-				if( !fileIt.hasNext() )
-					return false;
+				return true;
 				
-				file = fileIt.next();
-				frameColl = readFriesSentenceFrames(file);
 			}
 			
-			return true;
+			return false;
 		
 		} catch (Exception e) {
 			throw new CollectionException(e);
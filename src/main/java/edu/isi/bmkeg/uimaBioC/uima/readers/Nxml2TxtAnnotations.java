@@ -0,0 +1,289 @@
+package edu.isi.bmkeg.uimaBioC.uima.readers;
+
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSArray;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import bioc.type.UimaBioCAnnotation;
+import bioc.type.UimaBioCDocument;
+import bioc.type.UimaBioCLocation;
+import bioc.type.UimaBioCPassage;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
+import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.SoFileParser;
+
+/**
+ * Builds the UimaBioCDocument, its single 'document' passage and the
+ * formatting annotations for an nxml2txt article, from its text and its
+ * stand-off lines. Shared by Nxml2TxtFilesCollectionReader, which reads
+ * the .txt and .so files, and NxmlFilesCollectionReader, which makes them
+ * from the .nxml file in memory.
+ *
+ * @author burns
+ *
+ */
+class Nxml2TxtAnnotations {
+
+	/**
+	 * One record of a .refs.json file.
+	 */
+	static class Ref {
+		private String author;
+		private String pmid;
+		private String ref;
+		private String source;
+		private String title;
+	}
+
+	private static final Type REF_MAP_TYPE = new TypeToken<Map<String,Ref>>(){}.getType();
+
+	private static final Pattern FIRST_LINE_PATT = Pattern.compile("^(.*)\\n");
+
+	/**
+	 * Reads a .refs.json file written by the robot_biocurator python library.
+	 */
+	static Map<String,Ref> readRefs(Reader r) {
+		return new Gson().fromJson(r, REF_MAP_TYPE);
+	}
+
+	/**
+	 * @param relativePath
+	 *            the 'relative-source-path' infon, i.e. the .txt file's path
+	 *            relative to the input directory
+	 * @param id
+	 *            the document ID if the article has no pmid article-id, or null
+	 * @param refLookup
+	 *            the article's .refs.json records, or null
+	 */
+	static void fillJCas(JCas jcas, String txt, String relativePath, String id,
+			SoFileParser.Standoffs so, Map<String,Ref> refLookup) {
+
+		UimaBioCAnnotation articleTitle = null;
+
+		jcas.setDocumentText( txt );
+
+		//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+		UimaBioCDocument uiD = new UimaBioCDocument(jcas);
+
+		Map<String,String> infons = new HashMap<String,String>();
+		infons.put("relative-source-path", relativePath);
+		uiD.setInfons(UimaBioCUtils.convertInfons(infons, jcas));
+
+		uiD.setBegin(0);
+		uiD.setEnd(txt.length());
+
+		if( id != null )
+			uiD.setId(id);
+
+		//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+		// Note that in these systems, we will create a single passage of the
+		// entire document and then create general annotations for formatting
+		// on top of that, other sections such as introduction, abstract, etc.
+		// will be placed into other passages but no annotations directly
+		// placed on them except for purposes of delineating the sections.
+		//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+		UimaBioCPassage uiP = new UimaBioCPassage(jcas);
+		uiP.setBegin(0);
+		uiP.setEnd(txt.length());
+		uiP.setOffset(0);
+
+		infons = new HashMap<String, String>();
+		infons.put("type", "document");
+		uiP.setInfons(UimaBioCUtils.convertInfons(infons, jcas));
+		uiP.addToIndexes();
+		//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		for (int i = 0; i < so.size(); i++) {
+
+			SoFileParser.Tag tag = so.getTag(i);
+			if( tag == null )
+				continue;
+			int begin = so.getBegin(i);
+			int end = so.getEnd(i);
+			String type = tag.getName();
+
+			// Just run through the data and assert the pieces to the jcas
+			switch( tag ) {
+
+			// High level sections, none of these have types of extra data.
+			case FRONT:
+			case ABSTRACT:
+			case BODY:
+			case REF_LIST:
+			// Paragraphs, titles, article-titles, abstracts, figure labels and captions.
+			case P:
+			case TITLE:
+			case LABEL:
+			case CAPTION:
+			// Formatting annotations.
+			case BOLD:
+			case ITALIC:
+			case SUB:
+			case SUP: {
+				Map<String,String> infons2 = new HashMap<String, String>();
+				infons2.put("type", "formatting");
+				infons2.put("value", type);
+				addAnnotation(jcas, begin, end, infons2);
+				break;
+			}
+
+			// Only accept the first article title text
+			case ARTICLE_TITLE: {
+				if( articleTitle != null )
+					break;
+				Map<String,String> infons2 = new HashMap<String, String>();
+				infons2.put("type", "formatting");
+				infons2.put("value", type);
+				articleTitle = addAnnotation(jcas, begin, end, infons2);
+				break;
+			}
+
+			//
+			// Detecting and preserving floating boxes from the text but only read text from
+			// labels and captions from within them.
+			//
+			case FIG:
+			case SUPPLEMENTARY_MATERIAL:
+			case TABLE_WRAP: {
+				Map<String,String> infons2 = new HashMap<String, String>();
+				infons2.put("type", "formatting");
+				infons2.put("value", type);
+
+				// Check for floating figure legends
+				if( so.hasCodes(i) ) {
+					String[] subfields = so.getCodes(i).split("\\s+");
+					for( String s : subfields ){
+						if( s.equals("position=\"float\"") ) {
+							infons2.put("position", "float");
+						}
+					}
+				}
+				addAnnotation(jcas, begin, end, infons2);
+				break;
+			}
+
+			// Section Headings
+			case SEC: {
+				String subText = txt.substring(begin, end);
+				Matcher firstLineMatch = FIRST_LINE_PATT.matcher(subText);
+				if( !firstLineMatch.find() )
+					break;
+				String sectionHeading = firstLineMatch.group(1);
+
+				Map<String,String> infons2 = new HashMap<String, String>();
+				infons2.put("type", "formatting");
+				infons2.put("value", "sec");
+				infons2.put("sectionHeading", sectionHeading);
+				addAnnotation(jcas, begin, end, infons2);
+				break;
+			}
+
+			// Id values for the BioCDocument.
+			case ARTICLE_ID: {
+
+				String str = so.getStr(i);
+				infons = UimaBioCUtils.convertInfons(uiD.getInfons());
+
+				// strip all 'quotes' from id values.
+				String codes = so.getCodes(i).replaceAll("\"", "");
+
+				String[] keyValue = codes.split("=");
+				if( keyValue.length < 2)
+					break;
+
+				infons.put(keyValue[1], str);
+				infons.put("type", "formatting");
+				infons.put("value", "article-id");
+				uiD.setInfons(
+						UimaBioCUtils.convertInfons(infons, jcas)
+						);
+				if( keyValue[1].contains("pmid")){
+					uiD.setId(str);
+				}
+				break;
+
+			}
+
+			// X-REF Columns
+			// format: ref-type="bibr" rid="B7"
+			case XREF: {
+
+				String codes = so.getCodes(i);
+				String refType = "";
+				String refId = "";
+				try {
+					String[] lc = codes.split(" ");
+					refType = lc[0].substring(lc[0].indexOf("=")+2, lc[0].length()-1);
+					if( lc.length > 1 )
+						refId = lc[1].substring(lc[1].indexOf("=")+2, lc[1].length()-1);
+				} catch (ArrayIndexOutOfBoundsException e) {
+					System.err.println("XREF not formatted correctly (" + codes + "), skipping XREF annotation");
+				} catch (java.lang.StringIndexOutOfBoundsException e) {
+					System.err.println("XREF not formatted correctly (" + codes + "), skipping XREF annotation");
+				}
+
+				if( refType.length() > 0 && refId.length() > 0 &&
+						( refType.startsWith("bib") || refType.equals("fig") ||
+							refType.equals("supplementary-material") )
+						) {
+					Map<String,String> infons2 = new HashMap<String, String>();
+					infons2.put("type", "formatting");
+					infons2.put("value", type);
+					infons2.put("refType", refType);
+					infons2.put("refId", refId);
+
+					if(refLookup!= null && refLookup.containsKey(refId)) {
+						Ref ref = refLookup.get(refId);
+						infons2.put("pmid", ref.pmid);
+					}
+
+					addAnnotation(jcas, begin, end, infons2);
+				}
+				break;
+
+			}
+
+			default:
+				break;
+
+			}
+
+		}
+
+		// At present, if a paper is not provided with a PubMed ID, then we skip it.
+		if( uiD.getId() == null )
+			uiD.setId("skip");
+
+		uiD.addToIndexes();
+
+	}
+
+	/**
+	 * Adds a formatting annotation with a single location spanning it.
+	 */
+	private static UimaBioCAnnotation addAnnotation(JCas jcas, int begin, int end, Map<String,String> infons) {
+		UimaBioCAnnotation uiA = new UimaBioCAnnotation(jcas);
+		uiA.setBegin(begin);
+		uiA.setEnd(end);
+		UimaBioCInfons.setInfons(uiA, infons, jcas);
+		uiA.addToIndexes();
+
+		FSArray locations = new FSArray(jcas, 1);
+		uiA.setLocations(locations);
+		UimaBioCLocation uiL = new UimaBioCLocation(jcas);
+		locations.set(0, uiL);
+		uiL.setOffset(begin);
+		uiL.setLength(end - begin);
+		return uiA;
+	}
+
+}
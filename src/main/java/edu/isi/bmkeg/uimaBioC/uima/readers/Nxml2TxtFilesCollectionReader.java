@@ -2,27 +2,29 @@ package edu.isi.bmkeg.uimaBioC.uima.readers;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.apache.uima.UimaContext;
 import org.apache.uima.collection.CollectionException;
 import org.apache.uima.jcas.JCas;
-import org.apache.uima.jcas.cas.FSArray;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.util.Progress;
 import org.apache.uima.util.ProgressImpl;
@@ -30,14 +32,11 @@ import org.uimafit.component.JCasCollectionReader_ImplBase;
 import org.uimafit.descriptor.ConfigurationParameter;
 import org.uimafit.factory.ConfigurationParameterFactory;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
-import bioc.type.UimaBioCAnnotation;
-import bioc.type.UimaBioCDocument;
-import bioc.type.UimaBioCLocation;
-import bioc.type.UimaBioCPassage;
-import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.ArchiveBundles;
+import edu.isi.bmkeg.uimaBioC.utils.CostSchedule;
+import edu.isi.bmkeg.uimaBioC.utils.FileWalker;
+import edu.isi.bmkeg.uimaBioC.utils.RunManifest;
+import edu.isi.bmkeg.uimaBioC.utils.SoFileParser;
 
 /**
  * We want to optimize this interaction for speed, so we run a
@@ -49,30 +48,66 @@ import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
  */
 public class Nxml2TxtFilesCollectionReader extends JCasCollectionReader_ImplBase {
 	
-	private class Ref {
-		private String author;
-		private String pmid;
-		private String ref;
-		private String source;
-		private String title;
-	}
-	
-	private Iterator<Path> txtFileIt; 
+	private FileWalker txtFileIt; 
+	private ArchiveBundles archiveIt;
 	private Path txtFileP;
 	private Path soFileP;
+	private long cost = -1;
+	private ArchiveBundles.Bundle bundle;
 	private Pattern patt;
 	
-	private int pos = 0;
-	private int count = 0;
+	private volatile int pos = 0;
+	
+	/**
+	 * Everything read from disk for one document, ready to be turned into
+	 * annotations on the CAS.
+	 */
+	private static class NxmlRecord {
+		private Path txtFileP;
+		private String txt;
+		private SoFileParser.Records so;
+		private Map<String,Nxml2TxtAnnotations.Ref> refLookup;
+		private long cost = -1;
+	}
+	
+	private static final Future<NxmlRecord> END = new FutureTask<NxmlRecord>(() -> null);
+
+	private BlockingQueue<Future<NxmlRecord>> queue;
+	private ExecutorService ioPool;
+	private Thread walker;
+	private volatile Exception walkerError;
+	private Future<NxmlRecord> nextRecord;
+	private long stallNanos = 0;
+	
+	// .so parse buffers, handed back after each document has been added to its CAS
+	private final Queue<SoFileParser.Records> recordsPool = new ConcurrentLinkedQueue<SoFileParser.Records>();
+	private volatile int nDelivered = 0;
 	
 	private static Logger logger = Logger.getLogger(Nxml2TxtFilesCollectionReader.class);
 	
 	public static final String PARAM_INPUT_DIRECTORY = ConfigurationParameterFactory
 			.createConfigurationParameterName(Nxml2TxtFilesCollectionReader.class,
 					"inputDirectory");
-	@ConfigurationParameter(mandatory = true, description = "Input Directory for Nxml2Txt Files")
+	@ConfigurationParameter(mandatory = true, description = "Input Directory (or .tar.gz/.tgz/.zip archive) for Nxml2Txt Files")
 	protected String inputDirectory;
 
+	/*
+	 * Shard 'shardIndex' of 'shardCount': only documents whose path relative
+	 * to the input directory hashes to this shard are read, so that several
+	 * processes can split a corpus between them (see Shards).
+	 */
+	public static final String PARAM_SHARD_INDEX = ConfigurationParameterFactory
+			.createConfigurationParameterName(Nxml2TxtFilesCollectionReader.class,
+					"shardIndex");
+	@ConfigurationParameter(mandatory = false, description = "Index of the shard to read (0..shardCount-1)")
+	protected int shardIndex = 0;
+
+	public static final String PARAM_SHARD_COUNT = ConfigurationParameterFactory
+			.createConfigurationParameterName(Nxml2TxtFilesCollectionReader.class,
+					"shardCount");
+	@ConfigurationParameter(mandatory = false, description = "Number of shards the input is split into")
+	protected int shardCount = 1;
+
 	public static final String PARAM_OUTPUT_DIRECTORY = ConfigurationParameterFactory
 			.createConfigurationParameterName(Nxml2TxtFilesCollectionReader.class,
 					"outputDirectory");
@@ -103,18 +138,81 @@ public class Nxml2TxtFilesCollectionReader extends JCasCollectionReader_ImplBase
 	@ConfigurationParameter(mandatory = false, description = "Input Directory for .ref.json Files")
 	protected String referenceFileDirectory = "";
 
-	private Pattern firstLinePatt = Pattern.compile("^(.*)\\n");
+	public static final String PARAM_PREFETCH_QUEUE_SIZE = ConfigurationParameterFactory
+			.createConfigurationParameterName(Nxml2TxtFilesCollectionReader.class,
+					"prefetchQueueSize");
+	@ConfigurationParameter(mandatory = false, description = "Number of documents to read ahead on background threads (0 reads each document in getNext)")
+	protected int prefetchQueueSize = 0;
+
+	public static final String PARAM_IO_THREADS = ConfigurationParameterFactory
+			.createConfigurationParameterName(Nxml2TxtFilesCollectionReader.class,
+					"ioThreads");
+	@ConfigurationParameter(mandatory = false, description = "Number of threads reading documents in prefetch mode")
+	protected int ioThreads = 4;
+
+	/*
+	 * Optional size-aware scheduling of a directory of input files, see
+	 * CostSchedule: 'fifo' (the default), 'largestFirst' or 'interleaved',
+	 * with costs estimated from 'size', 'soSize' or 'soLines'.
+	 */
+	public static final String PARAM_SCHEDULE = ConfigurationParameterFactory
+			.createConfigurationParameterName(Nxml2TxtFilesCollectionReader.class,
+					"schedule");
+	@ConfigurationParameter(mandatory = false, description = "Order of the input files: fifo, largestFirst or interleaved")
+	protected String schedule = CostSchedule.FIFO;
+
+	public static final String PARAM_COST_ESTIMATE = ConfigurationParameterFactory
+			.createConfigurationParameterName(Nxml2TxtFilesCollectionReader.class,
+					"costEstimate");
+	@ConfigurationParameter(mandatory = false, description = "Cost estimate for scheduling: size, soSize or soLines")
+	protected String costEstimate = CostSchedule.SIZE;
+
+	public static final String PARAM_SCHEDULE_BUCKETS = ConfigurationParameterFactory
+			.createConfigurationParameterName(Nxml2TxtFilesCollectionReader.class,
+					"scheduleBuckets");
+	@ConfigurationParameter(mandatory = false, description = "Number of cost buckets for the interleaved schedule")
+	protected int scheduleBuckets = CostSchedule.DEFAULT_BUCKETS;
+
+	/*
+	 * If this is set (along with outputDirectory and outputType), documents
+	 * are claimed in this run manifest instead of by creating empty output
+	 * files, and those it lists as done are skipped without looking at the
+	 * output directory (see RunManifest). The writer records finished
+	 * documents in the same file.
+	 */
+	public static final String PARAM_MANIFEST = ConfigurationParameterFactory
+			.createConfigurationParameterName(Nxml2TxtFilesCollectionReader.class,
+					"manifestFile");
+	@ConfigurationParameter(mandatory = false, description = "Run manifest to resume from")
+	protected String manifestFile;
 	
+	private RunManifest manifest;
+
 	@Override
 	public void initialize(UimaContext context) throws ResourceInitializationException {
 
 		try {
-			Path inputDirectoryP = Paths.get(inputDirectory);
-			Stream<Path> stream = Files.walk(inputDirectoryP).filter(p -> p.toString().endsWith(".txt"));
-			txtFileIt = stream.iterator();
+			if( this.manifestFile != null )
+				this.manifest = RunManifest.open(new File(this.manifestFile));
+			
+			File in = new File(inputDirectory);
+			if( ArchiveBundles.isArchive(in) ) {
+				archiveIt = new ArchiveBundles(in, ArchiveBundles.DEFAULT_WINDOW, "txt", "so", "refs.json");
+				archiveIt.setShard(shardIndex, shardCount);
+				if( !CostSchedule.FIFO.equals(schedule) )
+					logger.warn("Can't schedule the entries of an archive, reading them in archive order");
+			} else {
+				txtFileIt = new FileWalker(in, false, "txt");
+				txtFileIt.setShard(shardIndex, shardCount);
+				txtFileIt.setSchedule(CostSchedule.create(schedule, costEstimate, scheduleBuckets));
+				txtFileIt.startCounting();
+			}
 		    
 			this.patt = Pattern.compile("(\\d+)\\.txt");
 			
+			if( this.prefetchQueueSize > 0 )
+				startPrefetching();
+			
 		} catch (Exception e) {
 
 			throw new ResourceInitializationException(e);
@@ -128,337 +226,92 @@ public class Nxml2TxtFilesCollectionReader extends JCasCollectionReader_ImplBase
 	 */
 	public void getNext(JCas jcas) throws IOException, CollectionException {
 
+		NxmlRecord record;
+		if( this.prefetchQueueSize > 0 ) {
+			record = takePrefetched();
+		} else {
+			try {
+				record = readRecord(this.txtFileP, this.soFileP, this.bundle, this.cost);
+			} catch (Exception e) {
+				throw new CollectionException(e);
+			}
+		}
+		
 		try {
-			
-			UimaBioCAnnotation articleTitle = null;
+			fillJCas(jcas, record);
+		} finally {
+			this.recordsPool.offer(record.so);
+			record.so = null;
+		}
+		
+	}
+	
+	/**
+	 * Reads the .txt file, the .so stand-off file and (if there is one) the
+	 * .refs.json file for a document. This does all the file I/O and parsing
+	 * for a document and never touches a CAS, so in prefetch mode it runs on
+	 * the I/O threads.
+	 * 
+	 * When reading from an archive, the files come from 'bundle' instead,
+	 * and a .refs.json entry in the archive takes the place of the one in
+	 * referenceFileDirectory.
+	 */
+	private NxmlRecord readRecord(Path txtFileP, Path soFileP, ArchiveBundles.Bundle bundle, long cost) throws IOException {
+		
+		NxmlRecord record = new NxmlRecord();
+		record.txtFileP = txtFileP;
+		record.cost = cost;
+		if( bundle != null )
+			record.txt = new String(bundle.get("txt"), StandardCharsets.UTF_8);
+		else 
+			record.txt = new String(Files.readAllBytes(txtFileP), StandardCharsets.UTF_8);
 
-			String txt = FileUtils.readFileToString(txtFileP.toFile());
-			jcas.setDocumentText( txt );
+		String fileStem = txtFileP.toFile().getName().substring(0,txtFileP.toFile().getName().lastIndexOf("."));
 
-			//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-			UimaBioCDocument uiD = new UimaBioCDocument(jcas);
+		if( bundle != null && bundle.has("refs.json") ) {
+			record.refLookup = Nxml2TxtAnnotations.readRefs(
+					new InputStreamReader(bundle.open("refs.json"), StandardCharsets.UTF_8));
+		} else if( this.referenceFileDirectory.length() > 0 ) {
+			File referenceFile = new File(this.referenceFileDirectory + "/" + fileStem + ".refs.json");
+			if( referenceFile.exists() ) {
+				try (BufferedReader r = Files.newBufferedReader(referenceFile.toPath(), StandardCharsets.UTF_8)) {
+					record.refLookup = Nxml2TxtAnnotations.readRefs(r);
+				}
+			} 
+		}
+		
+		SoFileParser.Records so = this.recordsPool.poll();
+		if( so == null )
+			so = new SoFileParser.Records();
+		if( bundle != null )
+			SoFileParser.parse(bundle.open("so"), so);
+		else
+			SoFileParser.parse(soFileP, so);
+		record.so = so;
+		
+		return record;
+		
+	}
 
-			String fileStem = txtFileP.toFile().getName().substring(0,txtFileP.toFile().getName().lastIndexOf("."));
+	private void fillJCas(JCas jcas, NxmlRecord record) throws CollectionException {
 
-			Map<String,Ref> refLookup = null;
-			if( this.referenceFileDirectory.length() > 0 ) {
-				File referenceFile = new File(this.referenceFileDirectory + "/" + fileStem + ".refs.json");
-				if( referenceFile.exists() ) {
-					Gson gson = new Gson();
-					Type collectionType = new TypeToken<Map<String,Ref>>(){}.getType();
-					refLookup = gson.fromJson(new FileReader(referenceFile), collectionType);
-				} 
-			}
-			
-			Map<String,String> infons = new HashMap<String,String>();
-			infons.put("relative-source-path", txtFileP.toString().replaceAll(inputDirectory + "/", ""));
-			uiD.setInfons(UimaBioCUtils.convertInfons(infons, jcas));
-			
-			uiD.setBegin(0);
-			uiD.setEnd(txt.length());
-						
+		try {
 			
+			Path txtFileP = record.txtFileP;
+			String id = null;
 			Matcher m = this.patt.matcher(txtFileP.toFile().getName());
 			if(m.find()) {
-				uiD.setId(m.group(1));
-				System.err.println(uiD.getId());
-			}
-			int passageCount = 0;
-			int nSkip = 0;
-			
-			//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-			// Note that in these systems, we will create a single passage of the
-			// entire document and then create general annotations for formatting 
-			// on top of that, other sections such as introduction, abstract, etc.
-			// will be placed into other passages but no annotations directly 
-			// placed on them except for purposes of delineating the sections. 
-			//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-			UimaBioCPassage uiP = new UimaBioCPassage(jcas);
-			int annotationCount = 0;
-			uiP.setBegin(0);
-			uiP.setEnd(txt.length());
-			uiP.setOffset(0);
-			passageCount++;
-			
-			infons = new HashMap<String, String>();
-			infons.put("type", "document");
-			uiP.setInfons(UimaBioCUtils.convertInfons(infons, jcas));
-			uiP.addToIndexes();
-			//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-			
-			BufferedReader in = new BufferedReader(new InputStreamReader(
-					new FileInputStream(soFileP.toFile())));
-			String line;
-			while ((line = in.readLine()) != null) {
-			
-				String[] fields = line.split("\t");
-				
-				if( fields.length < 3 ) {
-					continue;		
-				}
-				
-				String id = fields[0];
-
-				String typeOffsetStr = fields[1];
-				String[] typeOffsetArray = typeOffsetStr.split(" ");
-				String type = typeOffsetArray[0];
-				int begin = new Integer(typeOffsetArray[1]);
-				int end = new Integer(typeOffsetArray[2]);
-								
-				String str = "";
-				if( fields.length > 2 ) 
-					str = fields[2];
-				
-				String codes = "";
-				if( fields.length > 3 ) 
-					codes = fields[3];
-				
-				// Just run through the data and assert the pieces to the jcas
-
-				// High level sections, none of these have types of extra data.
-				if( type.equals("front") || 
-						type.equals("abstract") ||  
-						type.equals("body") ||  
-						type.equals("ref-list")){					
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-					UimaBioCAnnotation uiA = new UimaBioCAnnotation(jcas);
-					uiA.setBegin(begin);
-					uiA.setEnd(end);
-					Map<String,String> infons2 = new HashMap<String, String>();
-					infons2.put("type", "formatting");
-					infons2.put("value", type);
-					uiA.setInfons(UimaBioCUtils.convertInfons(infons2, jcas));
-					uiA.addToIndexes();
-					
-					FSArray locations = new FSArray(jcas, 1);
-					uiA.setLocations(locations);
-					UimaBioCLocation uiL = new UimaBioCLocation(jcas);
-					locations.set(0, uiL);
-					uiL.setOffset(begin);
-					uiL.setLength(end - begin);
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-				}
-				
-				// Paragraphs, titles, article-titles, abstracts, figure labels and captions. 
-				if( type.equals("p") || 
-						type.equals("title") || 
-						type.equals("label") || 
-						type.equals("caption") ){					
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-					UimaBioCAnnotation uiA = new UimaBioCAnnotation(jcas);
-					uiA.setBegin(begin);
-					uiA.setEnd(end);
-					Map<String,String> infons2 = new HashMap<String, String>();
-					infons2.put("type", "formatting");
-					infons2.put("value", type);
-					uiA.setInfons(UimaBioCUtils.convertInfons(infons2, jcas));
-					uiA.addToIndexes();
-					
-					FSArray locations = new FSArray(jcas, 1);
-					uiA.setLocations(locations);
-					UimaBioCLocation uiL = new UimaBioCLocation(jcas);
-					locations.set(0, uiL);
-					uiL.setOffset(begin);
-					uiL.setLength(end - begin);
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-				}
-				
-				// Only accept the first article title text
-				if( type.equals("article-title") && articleTitle  == null ){					
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-					UimaBioCAnnotation uiA = new UimaBioCAnnotation(jcas);
-					uiA.setBegin(begin);
-					uiA.setEnd(end);
-					Map<String,String> infons2 = new HashMap<String, String>();
-					infons2.put("type", "formatting");
-					infons2.put("value", type);
-					uiA.setInfons(UimaBioCUtils.convertInfons(infons2, jcas));
-					uiA.addToIndexes();
-					
-					FSArray locations = new FSArray(jcas, 1);
-					uiA.setLocations(locations);
-					UimaBioCLocation uiL = new UimaBioCLocation(jcas);
-					locations.set(0, uiL);
-					uiL.setOffset(begin);
-					uiL.setLength(end - begin);
-					articleTitle = uiA;
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-				}
-
-				//
-				// Detecting and preserving floating boxes from the text but only read text from 
-				// labels and captions from within them.
-				//
-				if( type.equals("fig") ||
-						type.equals("supplementary-material") || 
-						type.equals("table-wrap") ){					
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-					UimaBioCAnnotation uiA = new UimaBioCAnnotation(jcas);
-					uiA.setBegin(begin);
-					uiA.setEnd(end);
-					Map<String,String> infons2 = new HashMap<String, String>();
-					infons2.put("type", "formatting");
-					infons2.put("value", type);
-					
-					// Check for floating figure legends
-					if( fields.length > 3 ) {
-						String[] subfields = fields[3].split("\\s+");
-						for( String s : subfields ){
-							if( s.equals("position=\"float\"") ) {
-								infons2.put("position", "float");			
-							}
-						}
-					}
-					uiA.setInfons(UimaBioCUtils.convertInfons(infons2, jcas));
-					uiA.addToIndexes();
-					
-					FSArray locations = new FSArray(jcas, 1);
-					uiA.setLocations(locations);
-					UimaBioCLocation uiL = new UimaBioCLocation(jcas);
-					locations.set(0, uiL);
-					uiL.setOffset(begin);
-					uiL.setLength(end - begin);
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-				}
-
-				// Section Headings
-				if( type.equals("sec") ){					
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-					String subText = txt.substring(begin, end);
-					Matcher firstLineMatch = firstLinePatt.matcher(subText);
-					if( !firstLineMatch.find() ) 
-						continue;
-					String sectionHeading = firstLineMatch.group(1);
-					
-					UimaBioCAnnotation uiA = new UimaBioCAnnotation(jcas);
-					uiA.setBegin(begin);
-					uiA.setEnd(end);
-					Map<String,String> infons2 = new HashMap<String, String>();
-					infons2.put("type", "formatting");
-					infons2.put("value", "sec");
-					infons2.put("sectionHeading", sectionHeading);
-					uiA.setInfons(UimaBioCUtils.convertInfons(infons2, jcas));
-					uiA.addToIndexes();
-					
-					FSArray locations = new FSArray(jcas, 1);
-					uiA.setLocations(locations);
-					UimaBioCLocation uiL = new UimaBioCLocation(jcas);
-					locations.set(0, uiL);
-					uiL.setOffset(begin);
-					uiL.setLength(end - begin);
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-				}
-				
-				// Formatting annotations.
-				if( type.equals("bold") || 
-						type.equals("italic") ||  
-						type.equals("sub") ||  
-						type.equals("sup") ){					
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-					UimaBioCAnnotation uiA = new UimaBioCAnnotation(jcas);
-					uiA.setBegin(begin);
-					uiA.setEnd(end);
-					Map<String,String> infons2 = new HashMap<String, String>();
-					infons2.put("type", "formatting");
-					infons2.put("value", type);
-					uiA.setInfons(UimaBioCUtils.convertInfons(infons2, jcas));
-					uiA.addToIndexes();
-					
-					FSArray locations = new FSArray(jcas, 1);
-					uiA.setLocations(locations);
-					UimaBioCLocation uiL = new UimaBioCLocation(jcas);
-					locations.set(0, uiL);
-					uiL.setOffset(begin);
-					uiL.setLength(end - begin);
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-				}
-				
-				// Id values for the BioCDocument.
-				if( type.equals("article-id") ){					
-					
-					infons = UimaBioCUtils.convertInfons(uiD.getInfons());
-		
-					// strip all 'quotes' from id values.
-					codes = codes.replaceAll("\"", "");
-		
-					String[] keyValue = codes.split("=");
-					if( keyValue.length < 2)
-						continue;
-					
-					infons.put(keyValue[1], str);
-					infons.put("type", "formatting");
-					infons.put("value", "article-id");
-					uiD.setInfons(
-							UimaBioCUtils.convertInfons(infons, jcas)
-							);
-					if( keyValue[1].contains("pmid")){
-						uiD.setId(str);
-					}
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-				
-				}
-				 
-				// X-REF Columns
-				// format: ref-type="bibr" rid="B7"
-				if( type.equals("xref") ){		
-										
-					String refType = "";
-					String refId = "";
-					try {
-						String[] lc = codes.split(" ");
-						refType = lc[0].substring(lc[0].indexOf("=")+2, lc[0].length()-1);
-						if( lc.length > 1 )
-							refId = lc[1].substring(lc[1].indexOf("=")+2, lc[1].length()-1);					
-					} catch (ArrayIndexOutOfBoundsException e) {
-						System.err.println("XREF not formatted correctly (" + codes + "), skipping XREF annotation");
-					} catch (java.lang.StringIndexOutOfBoundsException e) {
-						System.err.println("XREF not formatted correctly (" + codes + "), skipping XREF annotation");
-					}
-					
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-					if( refType.length() > 0 && refId.length() > 0 && 
-							( refType.startsWith("bib") || refType.equals("fig") || 
-								refType.equals("supplementary-material") ) 
-							) {
-						UimaBioCAnnotation uiA = new UimaBioCAnnotation(jcas);
-						uiA.setBegin(begin);
-						uiA.setEnd(end);
-						Map<String,String> infons2 = new HashMap<String, String>();
-						infons2.put("type", "formatting");
-						infons2.put("value", type);
-						infons2.put("refType", refType);
-						infons2.put("refId", refId);
-						
-						if(refLookup!= null && refLookup.containsKey(refId)) {
-							Ref ref = refLookup.get(refId);
-							infons2.put("pmid", ref.pmid);							
-						} 
-						
-						uiA.setInfons(UimaBioCUtils.convertInfons(infons2, jcas));
-						uiA.addToIndexes();
-						
-						FSArray locations = new FSArray(jcas, 1);
-						uiA.setLocations(locations);
-						UimaBioCLocation uiL = new UimaBioCLocation(jcas);
-						locations.set(0, uiL);
-						uiL.setOffset(begin);
-						uiL.setLength(end - begin);					
-					}
-					//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-				
-				}
-				
+				id = m.group(1);
+				logger.debug(id);
 			}
-				
-			// At present, if a paper is not provided with a PubMed ID, then we skip it. 
-			if( uiD.getId() == null )
-				uiD.setId("skip");
 			
-			uiD.addToIndexes();
+			String relativePath = txtFileP.toString().replaceAll(inputDirectory + "/", "");
+			Nxml2TxtAnnotations.fillJCas(jcas, record.txt, relativePath, id, record.so, record.refLookup);
+			CostSchedule.recordEstimate(relativePath, record.cost);
 					    
 		} catch (Exception e) {
 			
-			System.err.print(this.pos + "/" + this.count);
+			System.err.print(this.pos + "/" + getCount());
 			throw new CollectionException(e);
 
 		}
@@ -480,9 +333,10 @@ public class Nxml2TxtFilesCollectionReader extends JCasCollectionReader_ImplBase
 	}
 
 	public Progress[] getProgress() {		
+		// in prefetch mode pos runs ahead with the walker thread
 		Progress progress = new ProgressImpl(
-				this.pos, 
-				this.count, 
+				this.prefetchQueueSize > 0 ? this.nDelivered : this.pos, 
+				getCount(), 
 				Progress.ENTITIES);
 		
         return new Progress[] { progress };
@@ -491,52 +345,236 @@ public class Nxml2TxtFilesCollectionReader extends JCasCollectionReader_ImplBase
 	@Override
 	public boolean hasNext() throws IOException, CollectionException {
 		
-		if( !txtFileIt.hasNext() )
-			return false;
+		if( this.prefetchQueueSize > 0 ) {
+			if( this.nextRecord == null ) {
+				long t = System.nanoTime();
+				try {
+					this.nextRecord = this.queue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CollectionException(e);
+				}
+				this.stallNanos += System.nanoTime() - t;
+			}
+			if( this.nextRecord == END ) {
+				if( this.walkerError != null )
+					throw new CollectionException(this.walkerError);
+				return false;
+			}
+			return true;
+		}
 		
-		this.txtFileP = moveFileIteratorForwardOneStep();
-		this.soFileP = Paths.get(txtFileP.toString().replaceAll("\\.txt$", ".so"));
-		File targetFile = null;
+		return selectNextFile();
 		
-		if( this.outputDirectory != null && this.outputType != null ){	
-			String newPath = soFileP.toString().replaceAll(
-					this.inputDirectory,
-					this.outputDirectory);
-			targetFile = new File(newPath.replaceAll("\\.so$",  "."+this.outputType));
-			while( targetFile.exists()  ) {
-				if(!txtFileIt.hasNext()) 
-					return false;
-				txtFileP = moveFileIteratorForwardOneStep();
-				soFileP = Paths.get(txtFileP.toString().replaceAll("\\.txt$", ".so"));
-				newPath = soFileP.toString().replaceAll(this.inputDirectory, this.outputDirectory);
-				targetFile = new File(newPath.replaceAll("\\.so$",  "."+this.outputType));
-			}
+	}
+	
+	/**
+	 * Moves txtFileP/soFileP on to the next document that has both files and
+	 * has not already been written to the output directory.
+	 */
+	private boolean selectNextFile() throws IOException {
 
-		}			
+		if( this.archiveIt != null )
+			return selectNextBundle();
+		
+		while( txtFileIt.hasNext() ) {
+			
+			this.txtFileP = moveFileIteratorForwardOneStep();
+			this.soFileP = Paths.get(txtFileP.toString().replaceAll("\\.txt$", ".so"));
+			if( !soFileP.toFile().exists() )
+				continue;
+			
+			String relativeStem = txtFileP.toString().replaceAll(inputDirectory + "/", "")
+					.replaceAll("\\.txt$", "");
+			if( !claim(relativeStem) )
+				continue;
+			
+			return true;
+			
+		}
+		
+		return false;
 				
-		while( !txtFileP.toFile().exists() || !soFileP.toFile().exists() ) {
-			if(!txtFileIt.hasNext()) 
-				return false;
-			txtFileP = moveFileIteratorForwardOneStep();
-			soFileP = Paths.get(txtFileP.toString().replaceAll("\\.txt$", ".so"));
-			String newPath = soFileP.toString().replaceAll(this.inputDirectory, this.outputDirectory);
-			targetFile = new File(newPath.replaceAll("\\.so$",  "."+this.outputType));			
+	}
+
+	/**
+	 * The archive version of selectNextFile(): moves on to the next bundle
+	 * with both a .txt and a .so entry whose output file doesn't exist yet.
+	 * txtFileP and soFileP are set to where the files would be if the
+	 * archive were extracted in place, which is what the relative source
+	 * path and the output file name are worked out from.
+	 */
+	private boolean selectNextBundle() throws IOException {
+		
+		while( archiveIt.hasNext() ) {
+			
+			ArchiveBundles.Bundle b = archiveIt.next();
+			countDocument();
+			if( !b.has("txt") || !b.has("so") )
+				continue;
+			
+			if( !claim(b.getStem()) )
+				continue;
+			
+			this.txtFileP = Paths.get(this.inputDirectory + "/" + b.getPath("txt"));
+			this.soFileP = Paths.get(this.inputDirectory + "/" + b.getPath("so"));
+			this.bundle = b;
+			return true;
+			
 		}
 		
+		this.bundle = null;
+		return false;
+		
+	}
+	
+	/**
+	 * Claims the output file for a document, so that nobody else works on
+	 * it. With a manifest this is an entry in the manifest; otherwise it is
+	 * an empty output file, which fails if another process got there first.
+	 * 
+	 * @return false if the document has already been done or claimed
+	 */
+	private boolean claim(String relativeStem) throws IOException {
+		
+		if( this.outputDirectory == null || this.outputType == null )
+			return true;
+		
+		String relativeOutput = relativeStem + "." + this.outputType;
+		if( this.manifest != null )
+			return this.manifest.claim(relativeOutput);
+		
+		File targetFile = new File(this.outputDirectory + "/" + relativeOutput);
+		if( targetFile.exists() )
+			return false;
+		targetFile.getParentFile().mkdirs();
 		// Write an empty file to the target to prevent anyone else from writing to that file. 
-		boolean blnCreated = targetFile.createNewFile();
+		return targetFile.createNewFile();
 		
-		return true;
-				
+	}
+	
+	/**
+	 * One thread walks the input directory, makes the same skip decisions as
+	 * selectNextFile() and hands each document to the I/O pool. The futures
+	 * go into the queue in walk order, so documents come out of getNext() in
+	 * the same order as without prefetching, and the bounded queue keeps the
+	 * walker at most prefetchQueueSize documents ahead of the pipeline.
+	 */
+	private void startPrefetching() {
+		
+		this.queue = new ArrayBlockingQueue<Future<NxmlRecord>>(this.prefetchQueueSize);
+		this.ioPool = Executors.newFixedThreadPool(Math.max(1, this.ioThreads), r -> {
+			Thread t = new Thread(r, "nxml2txt-io");
+			t.setDaemon(true);
+			return t;
+		});
+		
+		this.walker = new Thread(() -> {
+			try {
+				while( selectNextFile() ) {
+					final Path txt = this.txtFileP;
+					final Path so = this.soFileP;
+					final ArchiveBundles.Bundle b = this.bundle;
+					final long c = this.cost;
+					this.queue.put(this.ioPool.submit(() -> readRecord(txt, so, b, c)));
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				this.walkerError = e;
+			}
+			try {
+				this.queue.put(END);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}, "nxml2txt-walker");
+		this.walker.setDaemon(true);
+		this.walker.start();
+		
+	}
+	
+	private NxmlRecord takePrefetched() throws IOException, CollectionException {
+		
+		if( !hasNext() ) 
+			throw new CollectionException(new IllegalStateException("No more documents"));
+		Future<NxmlRecord> f = this.nextRecord;
+		this.nextRecord = null;
+
+		long t = System.nanoTime();
+		NxmlRecord record;
+		try {
+			record = f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CollectionException(e);
+		} catch (ExecutionException e) {
+			throw new CollectionException(e.getCause());
+		}
+		this.stallNanos += System.nanoTime() - t;
+		
+		this.nDelivered++;
+		if( (this.nDelivered % 1000) == 0 )
+			logPrefetchMetrics();
+		
+		return record;
+		
+	}
+	
+	private void logPrefetchMetrics() {
+		logger.info("Prefetch: " + this.nDelivered + " documents delivered, queue depth " 
+				+ this.queue.size() + "/" + this.prefetchQueueSize + ", reader stalled for " 
+				+ (this.stallNanos / 1000000) + " ms");
+	}
+	
+	/**
+	 * Documents currently read ahead and waiting in the prefetch queue.
+	 */
+	public int getPrefetchQueueDepth() {
+		return this.queue == null ? 0 : this.queue.size();
+	}
+	
+	/**
+	 * Total time getNext()/hasNext() have spent waiting on the I/O threads.
+	 */
+	public long getStallMillis() {
+		return this.stallNanos / 1000000;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if( this.txtFileIt != null )
+			this.txtFileIt.close();
+		if( this.archiveIt != null )
+			this.archiveIt.close();
+		if( this.walker != null ) {
+			logPrefetchMetrics();
+			this.walker.interrupt();
+			this.ioPool.shutdownNow();
+		}
+		if( this.manifest != null ) {
+			this.manifest.close();
+			this.manifest = null;
+		}
+		super.close();
 	}
 
 	private Path moveFileIteratorForwardOneStep() {
+		countDocument();
+		File f = txtFileIt.next();
+		this.cost = txtFileIt.getCost(f);
+		return f.toPath();
+	}
+	
+	private void countDocument() {
 		pos++;
 		if( (pos % 1000) == 0) {
 			System.out.println("\nProcessing " + pos + "th document.\n");
 	    }
-		Path p = txtFileIt.next();
-		return p;
+	}
+	
+	private int getCount() {
+		return this.archiveIt != null ? this.archiveIt.getCount() : this.txtFileIt.getCount();
 	}
 
 }
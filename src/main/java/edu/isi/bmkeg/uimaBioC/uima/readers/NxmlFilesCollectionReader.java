@@ -0,0 +1,342 @@
+package edu.isi.bmkeg.uimaBioC.uima.readers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+import org.apache.uima.UimaContext;
+import org.apache.uima.collection.CollectionException;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.Progress;
+import org.apache.uima.util.ProgressImpl;
+import org.uimafit.component.JCasCollectionReader_ImplBase;
+import org.uimafit.descriptor.ConfigurationParameter;
+import org.uimafit.factory.ConfigurationParameterFactory;
+
+import edu.isi.bmkeg.uimaBioC.utils.ArchiveBundles;
+import edu.isi.bmkeg.uimaBioC.utils.CostSchedule;
+import edu.isi.bmkeg.uimaBioC.utils.FileWalker;
+import edu.isi.bmkeg.uimaBioC.utils.Nxml2Txt;
+import edu.isi.bmkeg.uimaBioC.utils.RunManifest;
+
+/**
+ * Reads PMC .nxml files straight into the CAS. The text and stand-off
+ * lines that nxml2txt would write are made in memory by Nxml2Txt and turned
+ * into the same document, passage and formatting annotations (with the
+ * same .refs.json enrichment) as Nxml2TxtFilesCollectionReader makes from
+ * the .txt and .so files, without writing and re-reading them.
+ *
+ * The relative-source-path infon is the path the .txt file would have, so
+ * output file names are the same as with Nxml2TxtFilesCollectionReader.
+ * If teeDirectory is set, the .txt and .so files are written there too.
+ *
+ * @author burns
+ *
+ */
+public class NxmlFilesCollectionReader extends JCasCollectionReader_ImplBase {
+
+	private FileWalker nxmlFileIt;
+	private ArchiveBundles archiveIt;
+	private File nxmlFile;
+	private ArchiveBundles.Bundle bundle;
+	private String relativeStem;
+	private long cost = -1;
+	private boolean selected = false;
+	private Pattern patt = Pattern.compile("(\\d+)$");
+
+	private int pos = 0;
+
+	private static Logger logger = Logger.getLogger(NxmlFilesCollectionReader.class);
+
+	public static final String PARAM_INPUT_DIRECTORY = ConfigurationParameterFactory
+			.createConfigurationParameterName(NxmlFilesCollectionReader.class,
+					"inputDirectory");
+	@ConfigurationParameter(mandatory = true, description = "Input Directory (or .tar.gz/.tgz/.zip archive) of .nxml Files")
+	protected String inputDirectory;
+
+	public static final String PARAM_SHARD_INDEX = ConfigurationParameterFactory
+			.createConfigurationParameterName(NxmlFilesCollectionReader.class,
+					"shardIndex");
+	@ConfigurationParameter(mandatory = false, description = "Index of the shard to read (0..shardCount-1)")
+	protected int shardIndex = 0;
+
+	public static final String PARAM_SHARD_COUNT = ConfigurationParameterFactory
+			.createConfigurationParameterName(NxmlFilesCollectionReader.class,
+					"shardCount");
+	@ConfigurationParameter(mandatory = false, description = "Number of shards the input is split into")
+	protected int shardCount = 1;
+
+	public static final String PARAM_OUTPUT_DIRECTORY = ConfigurationParameterFactory
+			.createConfigurationParameterName(NxmlFilesCollectionReader.class,
+					"outputDirectory");
+	@ConfigurationParameter(mandatory = false, description = "Output Directory, to skip documents already written there")
+	protected String outputDirectory;
+
+	public static final String PARAM_OUTPUT_TYPE = ConfigurationParameterFactory
+			.createConfigurationParameterName(NxmlFilesCollectionReader.class,
+					"outputType");
+	@ConfigurationParameter(mandatory = false, description = "Output File Suffix")
+	protected String outputType;
+
+	/**
+	 * See Nxml2TxtFilesCollectionReader.PARAM_REF_DIRECTORY. An archive's own
+	 * .refs.json entries take precedence.
+	 */
+	public static final String PARAM_REF_DIRECTORY = ConfigurationParameterFactory
+			.createConfigurationParameterName(NxmlFilesCollectionReader.class,
+					"referenceFileDirectory");
+	@ConfigurationParameter(mandatory = false, description = "Input Directory for .ref.json Files")
+	protected String referenceFileDirectory = "";
+
+	public static final String PARAM_TEE_DIRECTORY = ConfigurationParameterFactory
+			.createConfigurationParameterName(NxmlFilesCollectionReader.class,
+					"teeDirectory");
+	@ConfigurationParameter(mandatory = false, description = "If set, also write the nxml2txt .txt and .so files here")
+	protected String teeDirectory;
+
+	/*
+	 * Optional size-aware scheduling of a directory of input files, see
+	 * CostSchedule: 'fifo' (the default), 'largestFirst' or 'interleaved',
+	 * with costs estimated from 'size', 'soSize' or 'soLines'.
+	 */
+	public static final String PARAM_SCHEDULE = ConfigurationParameterFactory
+			.createConfigurationParameterName(NxmlFilesCollectionReader.class,
+					"schedule");
+	@ConfigurationParameter(mandatory = false, description = "Order of the input files: fifo, largestFirst or interleaved")
+	protected String schedule = CostSchedule.FIFO;
+
+	public static final String PARAM_COST_ESTIMATE = ConfigurationParameterFactory
+			.createConfigurationParameterName(NxmlFilesCollectionReader.class,
+					"costEstimate");
+	@ConfigurationParameter(mandatory = false, description = "Cost estimate for scheduling: size, soSize or soLines")
+	protected String costEstimate = CostSchedule.SIZE;
+
+	public static final String PARAM_SCHEDULE_BUCKETS = ConfigurationParameterFactory
+			.createConfigurationParameterName(NxmlFilesCollectionReader.class,
+					"scheduleBuckets");
+	@ConfigurationParameter(mandatory = false, description = "Number of cost buckets for the interleaved schedule")
+	protected int scheduleBuckets = CostSchedule.DEFAULT_BUCKETS;
+
+	/**
+	 * See Nxml2TxtFilesCollectionReader.PARAM_MANIFEST.
+	 */
+	public static final String PARAM_MANIFEST = ConfigurationParameterFactory
+			.createConfigurationParameterName(NxmlFilesCollectionReader.class,
+					"manifestFile");
+	@ConfigurationParameter(mandatory = false, description = "Run manifest to resume from")
+	protected String manifestFile;
+
+	private RunManifest manifest;
+
+	@Override
+	public void initialize(UimaContext context) throws ResourceInitializationException {
+
+		try {
+			if( this.manifestFile != null )
+				this.manifest = RunManifest.open(new File(this.manifestFile));
+
+			File in = new File(inputDirectory);
+			if( ArchiveBundles.isArchive(in) ) {
+				archiveIt = new ArchiveBundles(in, ArchiveBundles.DEFAULT_WINDOW, "nxml", "refs.json");
+				archiveIt.setShard(shardIndex, shardCount);
+				if( !CostSchedule.FIFO.equals(schedule) )
+					logger.warn("Can't schedule the entries of an archive, reading them in archive order");
+			} else {
+				nxmlFileIt = new FileWalker(in, false, "nxml");
+				nxmlFileIt.setShard(shardIndex, shardCount);
+				nxmlFileIt.setSchedule(CostSchedule.create(schedule, costEstimate, scheduleBuckets));
+				nxmlFileIt.startCounting();
+			}
+
+		} catch (Exception e) {
+
+			throw new ResourceInitializationException(e);
+
+		}
+
+	}
+
+	/**
+	 * @see com.ibm.uima.collection.CollectionReader#getNext(com.ibm.uima.cas.CAS)
+	 */
+	public void getNext(JCas jcas) throws IOException, CollectionException {
+
+		if( !hasNext() )
+			throw new CollectionException(new IllegalStateException("No more documents"));
+		this.selected = false;
+
+		try {
+
+			Nxml2Txt.Result r;
+			Map<String,Nxml2TxtAnnotations.Ref> refLookup = null;
+			if( this.bundle != null ) {
+				r = Nxml2Txt.convert(new ByteArrayInputStream(this.bundle.get("nxml")));
+				if( this.bundle.has("refs.json") )
+					refLookup = Nxml2TxtAnnotations.readRefs(
+							new InputStreamReader(this.bundle.open("refs.json"), StandardCharsets.UTF_8));
+			} else {
+				try (InputStream in = new BufferedInputStream(new FileInputStream(this.nxmlFile), 1 << 16)) {
+					r = Nxml2Txt.convert(in);
+				}
+			}
+
+			String fileStem = new File(this.relativeStem).getName();
+			if( refLookup == null && this.referenceFileDirectory.length() > 0 ) {
+				File referenceFile = new File(this.referenceFileDirectory + "/" + fileStem + ".refs.json");
+				if( referenceFile.exists() ) {
+					try (Reader in = new InputStreamReader(new FileInputStream(referenceFile), StandardCharsets.UTF_8)) {
+						refLookup = Nxml2TxtAnnotations.readRefs(in);
+					}
+				}
+			}
+
+			if( this.teeDirectory != null )
+				tee(r);
+
+			String id = null;
+			Matcher m = this.patt.matcher(fileStem);
+			if( m.find() )
+				id = m.group(1);
+
+			Nxml2TxtAnnotations.fillJCas(jcas, r.getText(), this.relativeStem + ".txt", id, r, refLookup);
+			if( this.bundle == null )
+				CostSchedule.recordEstimate(this.relativeStem + ".txt", this.cost);
+
+		} catch (Exception e) {
+
+			logger.error("Can't read " + this.relativeStem + ".nxml (document " + this.pos + "/" + getCount() + ")", e);
+			throw new CollectionException(e);
+
+		}
+
+	}
+
+	private void tee(Nxml2Txt.Result r) throws IOException {
+
+		File txtFile = new File(this.teeDirectory + "/" + this.relativeStem + ".txt");
+		File soFile = new File(this.teeDirectory + "/" + this.relativeStem + ".so");
+		txtFile.getParentFile().mkdirs();
+		try (Writer out = newWriter(soFile)) {
+			r.writeStandoffs(out);
+		}
+		try (Writer out = newWriter(txtFile)) {
+			r.writeText(out);
+		}
+
+	}
+
+	private static Writer newWriter(File f) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8));
+	}
+
+	protected void error(String message) {
+		logger.error(message);
+	}
+
+	@SuppressWarnings("unused")
+	protected void warn(String message) {
+		logger.warn(message);
+	}
+
+	@SuppressWarnings("unused")
+	protected void debug(String message) {
+		logger.debug(message);
+	}
+
+	public Progress[] getProgress() {
+		Progress progress = new ProgressImpl(
+				this.pos,
+				getCount(),
+				Progress.ENTITIES);
+
+        return new Progress[] { progress };
+	}
+
+	/**
+	 * Moves on to the next .nxml file whose output file doesn't exist yet,
+	 * claiming the output file with an empty placeholder (or in the run
+	 * manifest, if there is one).
+	 */
+	@Override
+	public boolean hasNext() throws IOException, CollectionException {
+
+		while( !this.selected ) {
+
+			if( this.archiveIt != null ) {
+				if( !this.archiveIt.hasNext() )
+					return false;
+				this.bundle = this.archiveIt.next();
+				if( !this.bundle.has("nxml") )
+					continue;
+				this.relativeStem = this.bundle.getStem();
+			} else {
+				if( !this.nxmlFileIt.hasNext() )
+					return false;
+				this.nxmlFile = this.nxmlFileIt.next();
+				this.cost = this.nxmlFileIt.getCost(this.nxmlFile);
+				String path = this.nxmlFile.getPath();
+				this.relativeStem = path.substring(0, path.length() - ".nxml".length())
+						.replaceAll(inputDirectory + "/", "");
+			}
+			countDocument();
+
+			if( this.outputDirectory != null && this.outputType != null && this.manifest != null ){
+				if( !this.manifest.claim(this.relativeStem + "." + this.outputType) )
+					continue;
+			} else if( this.outputDirectory != null && this.outputType != null ){
+				File targetFile = new File(this.outputDirectory + "/" + this.relativeStem + "." + this.outputType);
+				if( targetFile.exists() )
+					continue;
+				targetFile.getParentFile().mkdirs();
+				// Write an empty file to the target to prevent anyone else from writing to that file.
+				if( !targetFile.createNewFile() )
+					continue;
+			}
+
+			this.selected = true;
+
+		}
+		return true;
+
+	}
+
+	@Override
+	public void close() throws IOException {
+		if( this.nxmlFileIt != null )
+			this.nxmlFileIt.close();
+		if( this.archiveIt != null )
+			this.archiveIt.close();
+		if( this.manifest != null ) {
+			this.manifest.close();
+			this.manifest = null;
+		}
+		super.close();
+	}
+
+	private void countDocument() {
+		pos++;
+		if( (pos % 1000) == 0) {
+			System.out.println("\nProcessing " + pos + "th document.\n");
+	    }
+	}
+
+	private int getCount() {
+		return this.archiveIt != null ? this.archiveIt.getCount() : this.nxmlFileIt.getCount();
+	}
+
+}
@@ -5,9 +5,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,6 +29,8 @@ import bioc.type.UimaBioCDocument;
 import bioc.type.UimaBioCLocation;
 import bioc.type.UimaBioCPassage;
 import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.ArchiveBundles;
+import edu.isi.bmkeg.uimaBioC.utils.FileWalker;
 
 /**
  * We want to optimize this interaction for speed, so we run a
@@ -42,18 +42,35 @@ import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
  */
 public class TxtFilesCollectionReader extends JCasCollectionReader_ImplBase {
 	
-	private Iterator<File> txtFileIt; 
+	private FileWalker txtFileIt; 
+	private ArchiveBundles archiveIt;
 	
 	private int pos = 0;
-	private int count = 0;
 	
 	private static Logger logger = Logger.getLogger(TxtFilesCollectionReader.class);
 	
 	public static final String PARAM_INPUT_DIRECTORY = ConfigurationParameterFactory
 			.createConfigurationParameterName(TxtFilesCollectionReader.class,
 					"inputDirectory");
-	@ConfigurationParameter(mandatory = true, description = "Input Directory for Txt Files")
+	@ConfigurationParameter(mandatory = true, description = "Input Directory (or .tar.gz/.tgz/.zip archive) for Txt Files")
 	protected String inputDirectory;
+
+	/*
+	 * Shard 'shardIndex' of 'shardCount': only documents whose path relative
+	 * to the input directory hashes to this shard are read, so that several
+	 * processes can split a corpus between them (see Shards).
+	 */
+	public static final String PARAM_SHARD_INDEX = ConfigurationParameterFactory
+			.createConfigurationParameterName(TxtFilesCollectionReader.class,
+					"shardIndex");
+	@ConfigurationParameter(mandatory = false, description = "Index of the shard to read (0..shardCount-1)")
+	protected int shardIndex = 0;
+
+	public static final String PARAM_SHARD_COUNT = ConfigurationParameterFactory
+			.createConfigurationParameterName(TxtFilesCollectionReader.class,
+					"shardCount");
+	@ConfigurationParameter(mandatory = false, description = "Number of shards the input is split into")
+	protected int shardCount = 1;
 	
 	@Override
 	public void initialize(UimaContext context) throws ResourceInitializationException {
@@ -62,9 +79,15 @@ public class TxtFilesCollectionReader extends JCasCollectionReader_ImplBase {
 
 			String[] fileTypes = {"txt"};
 			
-			Collection<File> l = (Collection<File>) FileUtils.listFiles(new File(inputDirectory), fileTypes, true);
-			this.txtFileIt = l.iterator();
-			this.count = l.size();
+			File in = new File(inputDirectory);
+			if( ArchiveBundles.isArchive(in) ) {
+				this.archiveIt = new ArchiveBundles(in, ArchiveBundles.DEFAULT_WINDOW, fileTypes);
+				this.archiveIt.setShard(shardIndex, shardCount);
+			} else {
+				this.txtFileIt = new FileWalker(in, false, fileTypes);
+				this.txtFileIt.setShard(shardIndex, shardCount);
+				this.txtFileIt.startCounting();
+			}
 			
 		} catch (Exception e) {
 
@@ -81,12 +104,19 @@ public class TxtFilesCollectionReader extends JCasCollectionReader_ImplBase {
 
 		try {
 			
-			if(!txtFileIt.hasNext()) 
+			if(!hasNext()) 
 				return;
 			
-			File txtFile = txtFileIt.next();
-
-			String txt = FileUtils.readFileToString(txtFile);
+			File txtFile;
+			String txt;
+			if( archiveIt != null ) {
+				ArchiveBundles.Bundle b = archiveIt.next();
+				txtFile = new File(inputDirectory + "/" + b.getPath("txt"));
+				txt = new String(b.get("txt"));
+			} else {
+				txtFile = txtFileIt.next();
+				txt = FileUtils.readFileToString(txtFile);
+			}
 			jcas.setDocumentText( txt );
 
 			//~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
@@ -115,7 +145,7 @@ public class TxtFilesCollectionReader extends JCasCollectionReader_ImplBase {
 		    
 		} catch (Exception e) {
 			
-			System.err.print(this.pos + "/" + this.count);
+			System.err.print(this.pos + "/" + getCount());
 			throw new CollectionException(e);
 
 		}
@@ -139,15 +169,28 @@ public class TxtFilesCollectionReader extends JCasCollectionReader_ImplBase {
 	public Progress[] getProgress() {		
 		Progress progress = new ProgressImpl(
 				this.pos, 
-				this.count, 
+				getCount(), 
 				Progress.ENTITIES);
 		
         return new Progress[] { progress };
 	}
 
+	@Override
+	public void close() throws IOException {
+		if( txtFileIt != null )
+			txtFileIt.close();
+		if( archiveIt != null )
+			archiveIt.close();
+		super.close();
+	}
+
 	@Override
 	public boolean hasNext() throws IOException, CollectionException {
-		return txtFileIt.hasNext();
+		return archiveIt != null ? archiveIt.hasNext() : txtFileIt.hasNext();
+	}
+	
+	private int getCount() {
+		return archiveIt != null ? archiveIt.getCount() : txtFileIt.getCount();
 	}
 
 }
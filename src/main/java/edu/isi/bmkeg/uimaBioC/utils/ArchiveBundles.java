@@ -0,0 +1,260 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.utils.IOUtils;
+
+/**
+ * Streams files out of a .tar.gz, .tgz, .tar or .zip archive without
+ * extracting it, grouping entries that share a stem: with extensions
+ * "txt", "so" and "refs.json", the entries a/123.txt, a/123.so and
+ * a/123.refs.json come out together as the Bundle for "a/123".
+ *
+ * The archive is read once, front to back. Entries are held in memory
+ * until their bundle has one entry for every extension, or until more
+ * than 'window' bundles are waiting, in which case the oldest goes out
+ * with whatever it has. Archives written from a directory keep a
+ * document's files next to each other, so a small window is enough.
+ *
+ * setShard() works as in FileWalker, on the path of the bundle's entry
+ * for the first extension.
+ */
+public class ArchiveBundles implements Iterator<ArchiveBundles.Bundle>, Closeable {
+
+	public static final int DEFAULT_WINDOW = 256;
+
+	private static final String[] ARCHIVE_SUFFIXES = { ".tar.gz", ".tgz", ".tar", ".zip" };
+
+	/**
+	 * The entries of one stem, by extension.
+	 */
+	public static class Bundle {
+
+		private String stem;
+		private Map<String, byte[]> entries = new HashMap<String, byte[]>();
+
+		private Bundle(String stem) {
+			this.stem = stem;
+		}
+
+		/**
+		 * The path of the entries inside the archive, without extension.
+		 */
+		public String getStem() {
+			return stem;
+		}
+
+		/**
+		 * The path inside the archive of the entry with this extension.
+		 */
+		public String getPath(String extension) {
+			return stem + "." + extension;
+		}
+
+		public boolean has(String extension) {
+			return entries.containsKey(extension);
+		}
+
+		/**
+		 * The contents of the entry, or null if the archive has none.
+		 */
+		public byte[] get(String extension) {
+			return entries.get(extension);
+		}
+
+		public InputStream open(String extension) {
+			byte[] b = entries.get(extension);
+			return b == null ? null : new ByteArrayInputStream(b);
+		}
+
+	}
+
+	private File archive;
+	private ArchiveInputStream in;
+	private String[] extensions;
+	private String[] suffixes;
+	private int window;
+	private int shardIndex = 0;
+	private int shardCount = 1;
+
+	private LinkedHashMap<String, Bundle> pending = new LinkedHashMap<String, Bundle>();
+	private Deque<Bundle> ready = new ArrayDeque<Bundle>();
+	private boolean exhausted = false;
+	private int delivered = 0;
+
+	/**
+	 * @param extensions
+	 *            entry extensions without the '.'
+	 */
+	public ArchiveBundles(File archive, int window, String... extensions) throws IOException {
+
+		this.archive = archive;
+		this.window = Math.max(1, window);
+		this.extensions = extensions;
+
+		// try longer extensions first, so 'refs.json' wins over 'json'
+		this.suffixes = new String[extensions.length];
+		for (int i = 0; i < extensions.length; i++)
+			suffixes[i] = "." + extensions[i];
+		Arrays.sort(suffixes, (a, b) -> b.length() - a.length());
+
+		this.in = open(archive);
+
+	}
+
+	/**
+	 * True if the file's name marks it as an archive this class can read.
+	 */
+	public static boolean isArchive(File f) {
+		if (!f.isFile())
+			return false;
+		String name = f.getName().toLowerCase();
+		for (String s : ARCHIVE_SUFFIXES) {
+			if (name.endsWith(s))
+				return true;
+		}
+		return false;
+	}
+
+	private static ArchiveInputStream open(File f) throws IOException {
+		InputStream raw = new BufferedInputStream(new FileInputStream(f), 1 << 16);
+		String name = f.getName().toLowerCase();
+		try {
+			if (name.endsWith(".tar.gz") || name.endsWith(".tgz"))
+				return new TarArchiveInputStream(new GzipCompressorInputStream(raw, true));
+			if (name.endsWith(".tar"))
+				return new TarArchiveInputStream(raw);
+			if (name.endsWith(".zip"))
+				return new ZipArchiveInputStream(raw);
+		} catch (IOException e) {
+			raw.close();
+			throw e;
+		}
+		raw.close();
+		throw new IOException("Not a .tar.gz, .tgz, .tar or .zip archive: " + f.getPath());
+	}
+
+	/**
+	 * Only return bundles in shard 'shardIndex' of 'shardCount' (see Shards).
+	 */
+	public void setShard(int shardIndex, int shardCount) {
+		Shards.check(shardIndex, shardCount);
+		this.shardIndex = shardIndex;
+		this.shardCount = shardCount;
+	}
+
+	@Override
+	public boolean hasNext() {
+		try {
+			fill();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can't read " + archive.getPath(), e);
+		}
+		return !ready.isEmpty();
+	}
+
+	@Override
+	public Bundle next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		delivered++;
+		return ready.poll();
+	}
+
+	/**
+	 * Number of bundles returned by next() so far.
+	 */
+	public int getDelivered() {
+		return delivered;
+	}
+
+	/**
+	 * The number of bundles seen so far. The archive has to be read to the
+	 * end to know the total, so this only grows as the archive is read.
+	 */
+	public int getCount() {
+		return delivered + ready.size() + pending.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		exhausted = true;
+		pending.clear();
+		ready.clear();
+		in.close();
+	}
+
+	private void fill() throws IOException {
+
+		while (ready.isEmpty() && !exhausted) {
+
+			ArchiveEntry entry = in.getNextEntry();
+			if (entry == null) {
+				exhausted = true;
+				ready.addAll(pending.values());
+				pending.clear();
+				in.close();
+				break;
+			}
+			if (entry.isDirectory() || !in.canReadEntryData(entry))
+				continue;
+
+			String name = entry.getName();
+			if (name.startsWith("./"))
+				name = name.substring(2);
+			String suffix = matchSuffix(name);
+			if (suffix == null)
+				continue;
+			String stem = name.substring(0, name.length() - suffix.length());
+			if (shardCount > 1 && !Shards.isInShard(stem + "." + extensions[0], shardIndex, shardCount))
+				continue;
+
+			Bundle b = pending.get(stem);
+			if (b == null) {
+				b = new Bundle(stem);
+				pending.put(stem, b);
+			}
+			b.entries.put(suffix.substring(1), IOUtils.toByteArray(in));
+
+			if (b.entries.size() == extensions.length) {
+				pending.remove(stem);
+				ready.add(b);
+			} else if (pending.size() > window) {
+				Iterator<Bundle> it = pending.values().iterator();
+				ready.add(it.next());
+				it.remove();
+			}
+
+		}
+
+	}
+
+	private String matchSuffix(String name) {
+		for (String s : suffixes) {
+			if (name.endsWith(s) && name.length() > s.length())
+				return s;
+		}
+		return null;
+	}
+
+}
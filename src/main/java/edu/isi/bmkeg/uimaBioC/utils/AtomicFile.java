@@ -0,0 +1,108 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes a file under a temporary name in the same directory and renames
+ * it into place on commit(), so the file either isn't there or is
+ * complete: a run that dies part way through a document leaves a hidden
+ * '.name.tmp' file behind rather than a truncated output. Unless 'sync'
+ * is turned off, the data is synced to disk before the rename, so the
+ * file survives a crash of the machine as well: that costs an fsync per
+ * file, which is only worth paying when something (a RunManifest) records
+ * the file as done.
+ *
+ * close() without commit() deletes the temporary file, so use it in a
+ * try-with-resources block.
+ */
+public class AtomicFile implements Closeable {
+
+	private File target;
+	private File tmp;
+	private FileOutputStream fos;
+	private CheckedOutputStream out;
+	private boolean sync;
+	private boolean done = false;
+
+	public AtomicFile(File target) throws IOException {
+		this(target, true);
+	}
+
+	public AtomicFile(File target, boolean sync) throws IOException {
+		this.target = target;
+		this.sync = sync;
+		File dir = target.getAbsoluteFile().getParentFile();
+		if (!dir.exists())
+			dir.mkdirs();
+		this.tmp = new File(dir, "." + target.getName() + ".tmp");
+		this.fos = new FileOutputStream(tmp);
+		this.out = new CheckedOutputStream(new BufferedOutputStream(fos, 1 << 16), new CRC32());
+	}
+
+	/**
+	 * The stream to write the file to. Closing it only flushes it, so it can
+	 * be handed to writers that close their streams.
+	 */
+	public OutputStream getOutputStream() {
+		return new FilterOutputStream(out) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+	}
+
+	/**
+	 * Syncs the file (if 'sync' is set) and renames it into place, replacing any file already
+	 * there.
+	 *
+	 * @return the CRC32 of the file, in hex
+	 */
+	public String commit() throws IOException {
+		out.flush();
+		if (sync)
+			fos.getFD().sync();
+		out.close();
+		done = true;
+		try {
+			Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		return Long.toHexString(out.getChecksum().getValue());
+	}
+
+	public File getFile() {
+		return target;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (done)
+			return;
+		done = true;
+		try {
+			out.close();
+		} finally {
+			tmp.delete();
+		}
+	}
+
+}
@@ -0,0 +1,525 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import bioc.BioCAnnotation;
+import bioc.BioCDocument;
+import bioc.BioCLocation;
+import bioc.BioCNode;
+import bioc.BioCPassage;
+import bioc.BioCRelation;
+import bioc.BioCSentence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming JSON codec for BioC documents.
+ *
+ * Reads and writes the same JSON as new Gson().fromJson(.., BioCDocument.class)
+ * and new Gson().toJson(d), but goes straight between the BioC objects and a
+ * JsonReader/JsonWriter instead of through reflection, and never holds the
+ * whole document as a String. Output is byte-for-byte what Gson writes: the
+ * fields in the order they are declared in the BioC classes, nulls left
+ * out, no whitespace and HTML characters escaped.
+ *
+ * The adapter has no state, so the one instance (ADAPTER) can be shared by
+ * any number of threads, or registered with a GsonBuilder for
+ * BioCDocument.class.
+ */
+public class BioCJson {
+
+	public static final TypeAdapter<BioCDocument> ADAPTER = new TypeAdapter<BioCDocument>() {
+
+		@Override
+		public void write(JsonWriter out, BioCDocument d) throws IOException {
+			writeDocument(out, d);
+		}
+
+		@Override
+		public BioCDocument read(JsonReader in) throws IOException {
+			return readDocument(in);
+		}
+
+	};
+
+	public static BioCDocument read(File f) throws IOException {
+		try (Reader r = new BufferedReader(
+				new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8), 1 << 16)) {
+			return read(r);
+		}
+	}
+
+	public static BioCDocument read(Reader r) throws IOException {
+		JsonReader in = new JsonReader(r);
+		in.setLenient(true);
+		return readDocument(in);
+	}
+
+	public static void write(BioCDocument d, File f) throws IOException {
+		write(d, new FileOutputStream(f));
+	}
+
+	/**
+	 * Writes the document to 'os' and closes it.
+	 */
+	public static void write(BioCDocument d, OutputStream os) throws IOException {
+		try (Writer w = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 1 << 16)) {
+			write(d, w);
+		}
+	}
+
+	/**
+	 * Writes the document to 'w' and flushes it, without closing it.
+	 */
+	public static void write(BioCDocument d, Writer w) throws IOException {
+		JsonWriter out = newWriter(w);
+		writeDocument(out, d);
+		out.flush();
+	}
+
+	public static String toJson(BioCDocument d) {
+		StringWriter w = new StringWriter();
+		try {
+			write(d, w);
+		} catch (IOException e) {
+			// StringWriter doesn't throw
+			throw new IllegalStateException(e);
+		}
+		return w.toString();
+	}
+
+	/**
+	 * A JsonWriter set up the way Gson.toJson() sets up its own.
+	 */
+	private static JsonWriter newWriter(Writer w) {
+		JsonWriter out = new JsonWriter(w);
+		out.setHtmlSafe(true);
+		out.setSerializeNulls(false);
+		out.setLenient(true);
+		return out;
+	}
+
+	//
+	// Writing. Every object is written field by field in declaration order,
+	// skipping null fields, as Gson's ReflectiveTypeAdapterFactory does.
+	//
+
+	private static void writeDocument(JsonWriter out, BioCDocument d) throws IOException {
+		if (d == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		writeString(out, "id", d.getID());
+		writeInfons(out, d.getInfons());
+		if (d.getPassages() != null) {
+			out.name("passages").beginArray();
+			for (BioCPassage p : d.getPassages())
+				writePassage(out, p);
+			out.endArray();
+		}
+		writeRelations(out, d.getRelations());
+		out.endObject();
+	}
+
+	private static void writePassage(JsonWriter out, BioCPassage p) throws IOException {
+		if (p == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		out.name("offset").value(p.getOffset());
+		writeString(out, "text", p.getText());
+		writeInfons(out, p.getInfons());
+		if (p.getSentences() != null) {
+			out.name("sentences").beginArray();
+			for (BioCSentence s : p.getSentences())
+				writeSentence(out, s);
+			out.endArray();
+		}
+		writeAnnotations(out, p.getAnnotations());
+		writeRelations(out, p.getRelations());
+		out.endObject();
+	}
+
+	private static void writeSentence(JsonWriter out, BioCSentence s) throws IOException {
+		if (s == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		out.name("offset").value(s.getOffset());
+		writeString(out, "text", s.getText());
+		writeInfons(out, s.getInfons());
+		writeAnnotations(out, s.getAnnotations());
+		writeRelations(out, s.getRelations());
+		out.endObject();
+	}
+
+	private static void writeAnnotations(JsonWriter out, List<BioCAnnotation> annotations) throws IOException {
+		if (annotations == null)
+			return;
+		out.name("annotations").beginArray();
+		for (BioCAnnotation a : annotations) {
+			if (a == null) {
+				out.nullValue();
+				continue;
+			}
+			out.beginObject();
+			writeString(out, "id", a.getID());
+			writeInfons(out, a.getInfons());
+			if (a.getLocations() != null) {
+				out.name("locations").beginArray();
+				for (BioCLocation l : a.getLocations()) {
+					if (l == null) {
+						out.nullValue();
+						continue;
+					}
+					out.beginObject();
+					out.name("offset").value(l.getOffset());
+					out.name("length").value(l.getLength());
+					out.endObject();
+				}
+				out.endArray();
+			}
+			writeString(out, "text", a.getText());
+			out.endObject();
+		}
+		out.endArray();
+	}
+
+	private static void writeRelations(JsonWriter out, List<BioCRelation> relations) throws IOException {
+		if (relations == null)
+			return;
+		out.name("relations").beginArray();
+		for (BioCRelation r : relations) {
+			if (r == null) {
+				out.nullValue();
+				continue;
+			}
+			out.beginObject();
+			writeString(out, "id", r.getID());
+			writeInfons(out, r.getInfons());
+			if (r.getNodes() != null) {
+				out.name("nodes").beginArray();
+				for (BioCNode n : r.getNodes()) {
+					if (n == null) {
+						out.nullValue();
+						continue;
+					}
+					out.beginObject();
+					writeString(out, "refid", n.getRefid());
+					writeString(out, "role", n.getRole());
+					out.endObject();
+				}
+				out.endArray();
+			}
+			out.endObject();
+		}
+		out.endArray();
+	}
+
+	private static void writeInfons(JsonWriter out, Map<String, String> infons) throws IOException {
+		if (infons == null)
+			return;
+		out.name("infons").beginObject();
+		for (Map.Entry<String, String> e : infons.entrySet()) {
+			// Gson drops map entries with null values too
+			if (e.getValue() != null)
+				out.name(String.valueOf(e.getKey())).value(e.getValue());
+		}
+		out.endObject();
+	}
+
+	private static void writeString(JsonWriter out, String name, String value) throws IOException {
+		if (value != null)
+			out.name(name).value(value);
+	}
+
+	//
+	// Reading. Unknown fields are skipped and null values leave the field as
+	// the BioC constructor set it. Infons are put into the object's own map in
+	// the order they appear, so they come back out in the same order.
+	//
+
+	private static BioCDocument readDocument(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		BioCDocument d = new BioCDocument();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if (name.equals("id")) {
+				d.setID(readString(in));
+			} else if (name.equals("infons")) {
+				readInfons(in, d.getInfons());
+			} else if (name.equals("passages")) {
+				in.beginArray();
+				while (in.hasNext()) {
+					BioCPassage p = readPassage(in);
+					if (p != null)
+						d.addPassage(p);
+				}
+				in.endArray();
+			} else if (name.equals("relations")) {
+				in.beginArray();
+				while (in.hasNext()) {
+					BioCRelation r = readRelation(in);
+					if (r != null)
+						d.addRelation(r);
+				}
+				in.endArray();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return d;
+	}
+
+	private static BioCPassage readPassage(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		BioCPassage p = new BioCPassage();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if (name.equals("offset")) {
+				p.setOffset(in.nextInt());
+			} else if (name.equals("text")) {
+				p.setText(readString(in));
+			} else if (name.equals("infons")) {
+				readInfons(in, p.getInfons());
+			} else if (name.equals("sentences")) {
+				in.beginArray();
+				while (in.hasNext()) {
+					BioCSentence s = readSentence(in);
+					if (s != null)
+						p.addSentence(s);
+				}
+				in.endArray();
+			} else if (name.equals("annotations")) {
+				in.beginArray();
+				while (in.hasNext()) {
+					BioCAnnotation a = readAnnotation(in);
+					if (a != null)
+						p.addAnnotation(a);
+				}
+				in.endArray();
+			} else if (name.equals("relations")) {
+				in.beginArray();
+				while (in.hasNext()) {
+					BioCRelation r = readRelation(in);
+					if (r != null)
+						p.addRelation(r);
+				}
+				in.endArray();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return p;
+	}
+
+	private static BioCSentence readSentence(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		BioCSentence s = new BioCSentence();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if (name.equals("offset")) {
+				s.setOffset(in.nextInt());
+			} else if (name.equals("text")) {
+				s.setText(readString(in));
+			} else if (name.equals("infons")) {
+				readInfons(in, s.getInfons());
+			} else if (name.equals("annotations")) {
+				in.beginArray();
+				while (in.hasNext()) {
+					BioCAnnotation a = readAnnotation(in);
+					if (a != null)
+						s.addAnnotation(a);
+				}
+				in.endArray();
+			} else if (name.equals("relations")) {
+				in.beginArray();
+				while (in.hasNext()) {
+					BioCRelation r = readRelation(in);
+					if (r != null)
+						s.addRelation(r);
+				}
+				in.endArray();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return s;
+	}
+
+	private static BioCAnnotation readAnnotation(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		BioCAnnotation a = new BioCAnnotation();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if (name.equals("id")) {
+				a.setID(readString(in));
+			} else if (name.equals("infons")) {
+				readInfons(in, a.getInfons());
+			} else if (name.equals("locations")) {
+				in.beginArray();
+				while (in.hasNext()) {
+					BioCLocation l = readLocation(in);
+					if (l != null)
+						a.addLocation(l);
+				}
+				in.endArray();
+			} else if (name.equals("text")) {
+				a.setText(readString(in));
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return a;
+	}
+
+	private static BioCLocation readLocation(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		BioCLocation l = new BioCLocation();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if (name.equals("offset")) {
+				l.setOffset(in.nextInt());
+			} else if (name.equals("length")) {
+				l.setLength(in.nextInt());
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return l;
+	}
+
+	private static BioCRelation readRelation(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		BioCRelation r = new BioCRelation();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if (name.equals("id")) {
+				r.setID(readString(in));
+			} else if (name.equals("infons")) {
+				readInfons(in, r.getInfons());
+			} else if (name.equals("nodes")) {
+				in.beginArray();
+				while (in.hasNext()) {
+					BioCNode n = readNode(in);
+					if (n != null)
+						r.addNode(n);
+				}
+				in.endArray();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return r;
+	}
+
+	private static BioCNode readNode(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		BioCNode n = new BioCNode();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if (name.equals("refid")) {
+				n.setRefid(readString(in));
+			} else if (name.equals("role")) {
+				n.setRole(readString(in));
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return n;
+	}
+
+	private static void readInfons(JsonReader in, Map<String, String> infons) throws IOException {
+		in.beginObject();
+		while (in.hasNext()) {
+			String key = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				infons.put(key, null);
+			} else {
+				infons.put(key, readString(in));
+			}
+		}
+		in.endObject();
+	}
+
+	/**
+	 * Same leniency as Gson's String adapter: numbers and booleans are read
+	 * as their text.
+	 */
+	private static String readString(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.BOOLEAN)
+			return Boolean.toString(in.nextBoolean());
+		return in.nextString();
+	}
+
+}
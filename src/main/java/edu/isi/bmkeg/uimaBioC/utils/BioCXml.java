@@ -0,0 +1,558 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import bioc.BioCAnnotation;
+import bioc.BioCCollection;
+import bioc.BioCDocument;
+import bioc.BioCLocation;
+import bioc.BioCNode;
+import bioc.BioCPassage;
+import bioc.BioCRelation;
+import bioc.BioCSentence;
+
+/**
+ * StAX reader and writer for BioC XML.
+ *
+ * The StAX factories are made once per thread (XMLInputFactory.newInstance()
+ * picks up Woodstox when it is on the classpath, as it is with BioC_Java)
+ * and files are read and written through buffered streams.
+ *
+ * DocumentReader hands out a document's id and infons first and then its
+ * passages one at a time, so a caller can stop as soon as it has what it
+ * needs: readId() never looks past the start of the first document.
+ * DocumentWriter can likewise write a document a passage at a time.
+ */
+public class BioCXml {
+
+	private static final ThreadLocal<XMLInputFactory> inputFactory = new ThreadLocal<XMLInputFactory>() {
+		@Override
+		protected XMLInputFactory initialValue() {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+			factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+			return factory;
+		}
+	};
+
+	private static final ThreadLocal<XMLOutputFactory> outputFactory = new ThreadLocal<XMLOutputFactory>() {
+		@Override
+		protected XMLOutputFactory initialValue() {
+			return XMLOutputFactory.newInstance();
+		}
+	};
+
+	/**
+	 * The first document in the file.
+	 */
+	public static BioCDocument read(File f) throws IOException, XMLStreamException {
+		try (DocumentReader reader = new DocumentReader(f)) {
+			return reader.readDocument();
+		}
+	}
+
+	/**
+	 * The first document in the stream. The stream is closed.
+	 */
+	public static BioCDocument read(InputStream in) throws IOException, XMLStreamException {
+		try (DocumentReader reader = new DocumentReader(in)) {
+			return reader.readDocument();
+		}
+	}
+
+	/**
+	 * The id of the first document in the file, trimmed, or null if there
+	 * is none.
+	 */
+	public static String readId(File f) throws IOException, XMLStreamException {
+		try (DocumentReader reader = new DocumentReader(f)) {
+			BioCDocument d = reader.readDocumentHeader();
+			return d == null || d.getID() == null ? null : d.getID().trim();
+		}
+	}
+
+	/**
+	 * Writes the document to 'f' inside a collection with the given
+	 * source, date, key and infons.
+	 */
+	public static void write(BioCCollection info, BioCDocument d, File f) throws IOException, XMLStreamException {
+		try (DocumentWriter writer = new DocumentWriter(f, info)) {
+			writer.writeDocument(d);
+		}
+	}
+
+	public static void write(BioCCollection info, BioCDocument d, OutputStream os) throws IOException, XMLStreamException {
+		try (DocumentWriter writer = new DocumentWriter(os, info)) {
+			writer.writeDocument(d);
+		}
+	}
+
+	/**
+	 * Reads the documents of a BioC collection one after the other.
+	 * readDocumentHeader() moves on to the next document and returns it
+	 * with just its id and infons; nextPassage() then returns its passages
+	 * in order. Relations on the document are added to it as they are
+	 * passed.
+	 */
+	public static class DocumentReader implements Closeable {
+
+		private InputStream in;
+		private XMLStreamReader xml;
+
+		private BioCDocument document;
+		private boolean inDocument = false;
+		private boolean atPassage = false;
+
+		public DocumentReader(File f) throws IOException, XMLStreamException {
+			this(new BufferedInputStream(new FileInputStream(f), 1 << 16));
+		}
+
+		/**
+		 * Reads from 'in', which is closed along with the reader.
+		 */
+		public DocumentReader(InputStream in) throws IOException, XMLStreamException {
+			this.in = in;
+			try {
+				this.xml = inputFactory.get().createXMLStreamReader(in);
+			} catch (XMLStreamException e) {
+				in.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Skips whatever is left of the current document and returns the
+		 * next one, holding only its id and infons, or null at the end of
+		 * the collection.
+		 */
+		public BioCDocument readDocumentHeader() throws XMLStreamException {
+
+			if (inDocument) {
+				if (atPassage)
+					skipElement();
+				while (nextTag() == XMLStreamConstants.START_ELEMENT)
+					skipElement();
+			}
+
+			document = null;
+			while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+				if (xml.getLocalName().equals("document"))
+					break;
+				// collection, or its source, date, key and infons
+				if (!xml.getLocalName().equals("collection"))
+					skipElement();
+			}
+			if (xml.getEventType() != XMLStreamConstants.START_ELEMENT)
+				return null;
+
+			document = new BioCDocument();
+			inDocument = true;
+			atPassage = false;
+			while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = xml.getLocalName();
+				if (name.equals("id")) {
+					document.setID(xml.getElementText());
+				} else if (name.equals("infon")) {
+					readInfon(document.getInfons());
+				} else if (name.equals("passage")) {
+					atPassage = true;
+					break;
+				} else if (name.equals("relation")) {
+					document.addRelation(readRelation());
+				} else {
+					skipElement();
+				}
+			}
+			if (!atPassage)
+				inDocument = false;
+			return document;
+
+		}
+
+		/**
+		 * The next passage of the current document, or null when there are
+		 * no more.
+		 */
+		public BioCPassage nextPassage() throws XMLStreamException {
+
+			if (!inDocument)
+				return null;
+
+			if (atPassage) {
+				atPassage = false;
+				return readPassage();
+			}
+
+			while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = xml.getLocalName();
+				if (name.equals("passage")) {
+					return readPassage();
+				} else if (name.equals("relation")) {
+					document.addRelation(readRelation());
+				} else {
+					skipElement();
+				}
+			}
+			inDocument = false;
+			return null;
+
+		}
+
+		/**
+		 * The next document with all of its passages, or null at the end of
+		 * the collection.
+		 */
+		public BioCDocument readDocument() throws XMLStreamException {
+			BioCDocument d = readDocumentHeader();
+			if (d == null)
+				return null;
+			BioCPassage p;
+			while ((p = nextPassage()) != null)
+				d.addPassage(p);
+			return d;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				xml.close();
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			} finally {
+				in.close();
+			}
+		}
+
+		/**
+		 * Moves to the next start or end tag and returns its event type, or
+		 * END_DOCUMENT.
+		 */
+		private int nextTag() throws XMLStreamException {
+			while (xml.hasNext()) {
+				int event = xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_ELEMENT)
+					return event;
+			}
+			return XMLStreamConstants.END_DOCUMENT;
+		}
+
+		/**
+		 * From a start tag, moves to its end tag.
+		 */
+		private void skipElement() throws XMLStreamException {
+			int depth = 1;
+			while (depth > 0) {
+				int event = nextTag();
+				if (event == XMLStreamConstants.START_ELEMENT)
+					depth++;
+				else if (event == XMLStreamConstants.END_ELEMENT)
+					depth--;
+				else
+					throw new XMLStreamException("Unexpected end of file", xml.getLocation());
+			}
+		}
+
+		private int readInt() throws XMLStreamException {
+			String s = xml.getElementText().trim();
+			try {
+				return Integer.parseInt(s);
+			} catch (NumberFormatException e) {
+				throw new XMLStreamException("Not a number: " + s, xml.getLocation());
+			}
+		}
+
+		private int readIntAttribute(String name) throws XMLStreamException {
+			String s = xml.getAttributeValue(null, name);
+			if (s == null)
+				return 0;
+			try {
+				return Integer.parseInt(s.trim());
+			} catch (NumberFormatException e) {
+				throw new XMLStreamException("Not a number: " + s, xml.getLocation());
+			}
+		}
+
+		private void readInfon(Map<String, String> infons) throws XMLStreamException {
+			String key = xml.getAttributeValue(null, "key");
+			infons.put(key, xml.getElementText());
+		}
+
+		private BioCPassage readPassage() throws XMLStreamException {
+			BioCPassage p = new BioCPassage();
+			while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = xml.getLocalName();
+				if (name.equals("infon")) {
+					readInfon(p.getInfons());
+				} else if (name.equals("offset")) {
+					p.setOffset(readInt());
+				} else if (name.equals("text")) {
+					p.setText(xml.getElementText());
+				} else if (name.equals("sentence")) {
+					p.addSentence(readSentence());
+				} else if (name.equals("annotation")) {
+					p.addAnnotation(readAnnotation());
+				} else if (name.equals("relation")) {
+					p.addRelation(readRelation());
+				} else {
+					skipElement();
+				}
+			}
+			return p;
+		}
+
+		private BioCSentence readSentence() throws XMLStreamException {
+			BioCSentence s = new BioCSentence();
+			while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = xml.getLocalName();
+				if (name.equals("infon")) {
+					readInfon(s.getInfons());
+				} else if (name.equals("offset")) {
+					s.setOffset(readInt());
+				} else if (name.equals("text")) {
+					s.setText(xml.getElementText());
+				} else if (name.equals("annotation")) {
+					s.addAnnotation(readAnnotation());
+				} else if (name.equals("relation")) {
+					s.addRelation(readRelation());
+				} else {
+					skipElement();
+				}
+			}
+			return s;
+		}
+
+		private BioCAnnotation readAnnotation() throws XMLStreamException {
+			BioCAnnotation a = new BioCAnnotation();
+			String id = xml.getAttributeValue(null, "id");
+			if (id != null)
+				a.setID(id);
+			while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = xml.getLocalName();
+				if (name.equals("infon")) {
+					readInfon(a.getInfons());
+				} else if (name.equals("location")) {
+					BioCLocation l = new BioCLocation();
+					l.setOffset(readIntAttribute("offset"));
+					l.setLength(readIntAttribute("length"));
+					a.addLocation(l);
+					skipElement();
+				} else if (name.equals("text")) {
+					a.setText(xml.getElementText());
+				} else {
+					skipElement();
+				}
+			}
+			return a;
+		}
+
+		private BioCRelation readRelation() throws XMLStreamException {
+			BioCRelation r = new BioCRelation();
+			String id = xml.getAttributeValue(null, "id");
+			if (id != null)
+				r.setID(id);
+			while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = xml.getLocalName();
+				if (name.equals("infon")) {
+					readInfon(r.getInfons());
+				} else if (name.equals("node")) {
+					BioCNode n = new BioCNode();
+					n.setRefid(xml.getAttributeValue(null, "refid"));
+					n.setRole(xml.getAttributeValue(null, "role"));
+					r.addNode(n);
+					skipElement();
+				} else {
+					skipElement();
+				}
+			}
+			return r;
+		}
+
+	}
+
+	/**
+	 * Writes a BioC collection. Either hand writeDocument() whole documents,
+	 * or write each one as startDocument(), writePassage() for each passage
+	 * and endDocument().
+	 */
+	public static class DocumentWriter implements Closeable {
+
+		private Writer out;
+		private XMLStreamWriter xml;
+		private BioCDocument document;
+
+		public DocumentWriter(File f, BioCCollection info) throws IOException, XMLStreamException {
+			this(new FileOutputStream(f), info);
+		}
+
+		/**
+		 * Writes to 'os', which is closed along with the writer.
+		 */
+		public DocumentWriter(OutputStream os, BioCCollection info) throws IOException, XMLStreamException {
+			this.out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 1 << 16);
+			try {
+				this.xml = outputFactory.get().createXMLStreamWriter(out);
+				xml.writeStartDocument("UTF-8", "1.0");
+				xml.writeDTD("<!DOCTYPE collection SYSTEM \"BioC.dtd\">");
+				xml.writeStartElement("collection");
+				writeText("source", info == null ? null : info.getSource());
+				writeText("date", info == null ? null : info.getDate());
+				writeText("key", info == null ? null : info.getKey());
+				if (info != null)
+					writeInfons(info.getInfons());
+			} catch (XMLStreamException e) {
+				out.close();
+				throw e;
+			}
+		}
+
+		public void writeDocument(BioCDocument d) throws XMLStreamException {
+			startDocument(d);
+			if (d.getPassages() != null) {
+				for (BioCPassage p : d.getPassages())
+					writePassage(p);
+			}
+			endDocument();
+		}
+
+		/**
+		 * Writes the document's id and infons. Its relations are written by
+		 * endDocument().
+		 */
+		public void startDocument(BioCDocument d) throws XMLStreamException {
+			if (document != null)
+				throw new IllegalStateException("endDocument() was not called for " + document.getID());
+			document = d;
+			xml.writeStartElement("document");
+			writeText("id", d.getID());
+			writeInfons(d.getInfons());
+		}
+
+		public void writePassage(BioCPassage p) throws XMLStreamException {
+			xml.writeStartElement("passage");
+			writeInfons(p.getInfons());
+			writeText("offset", Integer.toString(p.getOffset()));
+			if (p.getText() != null)
+				writeText("text", p.getText());
+			if (p.getSentences() != null) {
+				for (BioCSentence s : p.getSentences())
+					writeSentence(s);
+			}
+			writeAnnotations(p.getAnnotations());
+			writeRelations(p.getRelations());
+			xml.writeEndElement();
+		}
+
+		public void endDocument() throws XMLStreamException {
+			if (document == null)
+				throw new IllegalStateException("startDocument() was not called");
+			writeRelations(document.getRelations());
+			xml.writeEndElement();
+			document = null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				xml.writeEndElement();
+				xml.writeEndDocument();
+				xml.close();
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			} finally {
+				out.close();
+			}
+		}
+
+		private void writeSentence(BioCSentence s) throws XMLStreamException {
+			xml.writeStartElement("sentence");
+			writeInfons(s.getInfons());
+			writeText("offset", Integer.toString(s.getOffset()));
+			if (s.getText() != null)
+				writeText("text", s.getText());
+			writeAnnotations(s.getAnnotations());
+			writeRelations(s.getRelations());
+			xml.writeEndElement();
+		}
+
+		private void writeAnnotations(List<BioCAnnotation> annotations) throws XMLStreamException {
+			if (annotations == null)
+				return;
+			for (BioCAnnotation a : annotations) {
+				xml.writeStartElement("annotation");
+				if (a.getID() != null)
+					xml.writeAttribute("id", a.getID());
+				writeInfons(a.getInfons());
+				if (a.getLocations() != null) {
+					for (BioCLocation l : a.getLocations()) {
+						xml.writeEmptyElement("location");
+						xml.writeAttribute("offset", Integer.toString(l.getOffset()));
+						xml.writeAttribute("length", Integer.toString(l.getLength()));
+					}
+				}
+				writeText("text", a.getText());
+				xml.writeEndElement();
+			}
+		}
+
+		private void writeRelations(List<BioCRelation> relations) throws XMLStreamException {
+			if (relations == null)
+				return;
+			for (BioCRelation r : relations) {
+				xml.writeStartElement("relation");
+				if (r.getID() != null)
+					xml.writeAttribute("id", r.getID());
+				writeInfons(r.getInfons());
+				if (r.getNodes() != null) {
+					for (BioCNode n : r.getNodes()) {
+						xml.writeEmptyElement("node");
+						xml.writeAttribute("refid", n.getRefid() == null ? "" : n.getRefid());
+						xml.writeAttribute("role", n.getRole() == null ? "" : n.getRole());
+					}
+				}
+				xml.writeEndElement();
+			}
+		}
+
+		private void writeInfons(Map<String, String> infons) throws XMLStreamException {
+			if (infons == null)
+				return;
+			for (Map.Entry<String, String> e : infons.entrySet()) {
+				xml.writeStartElement("infon");
+				xml.writeAttribute("key", String.valueOf(e.getKey()));
+				if (e.getValue() != null)
+					xml.writeCharacters(e.getValue());
+				xml.writeEndElement();
+			}
+		}
+
+		private void writeText(String name, String text) throws XMLStreamException {
+			xml.writeStartElement(name);
+			if (text != null)
+				xml.writeCharacters(text);
+			xml.writeEndElement();
+		}
+
+	}
+
+}
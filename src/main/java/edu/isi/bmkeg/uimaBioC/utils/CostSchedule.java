@@ -0,0 +1,243 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+import org.apache.uima.jcas.JCas;
+import org.uimafit.util.JCasUtil;
+
+import bioc.type.UimaBioCDocument;
+import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+
+/**
+ * Orders input files by an estimate of how long each document will take
+ * to process, so that a multi-threaded run doesn't end with one thread
+ * working through the biggest article long after the others have
+ * finished. See FileWalker.setSchedule().
+ *
+ * Orders:
+ * <ul>
+ * <li>fifo: walk order (no scheduling)</li>
+ * <li>largestFirst: most expensive first</li>
+ * <li>interleaved: the files are sorted by cost and split into 'buckets'
+ * equal groups, and each round takes the next file from every group, so
+ * the expensive documents are spread over the run rather than all held in
+ * memory at the start</li>
+ * </ul>
+ *
+ * Estimates:
+ * <ul>
+ * <li>size: the size of the file itself (.txt, .nxml or BioC file)</li>
+ * <li>soSize: the size of the .so file next to it</li>
+ * <li>soLines: the number of lines in the .so file next to it (reads every
+ * .so file once before the run starts)</li>
+ * </ul>
+ *
+ * To calibrate the estimates, the drivers put a CostProbe at each end of
+ * the pipeline when a schedule is used. The readers record each document's
+ * estimate under its relative-source-path (or ID) with recordEstimate() as
+ * they hand it out, the first probe starts its clock, and the last one logs
+ * the estimate next to the time the pipeline took over the document, as
+ * 'cost&lt;TAB&gt;key&lt;TAB&gt;estimate&lt;TAB&gt;millis' lines on this class's logger.
+ * StatusCallbackListenerImpl does the same for documents that fail in a
+ * CPE, which never reach the last probe. Without a CostProbe nothing is
+ * recorded.
+ */
+public class CostSchedule {
+
+	private static Logger logger = Logger.getLogger(CostSchedule.class);
+
+	public static final String FIFO = "fifo";
+	public static final String LARGEST_FIRST = "largestFirst";
+	public static final String INTERLEAVED = "interleaved";
+
+	public static final String SIZE = "size";
+	public static final String SO_SIZE = "soSize";
+	public static final String SO_LINES = "soLines";
+
+	public static final int DEFAULT_BUCKETS = 4;
+
+	// key -> { estimate, System.nanoTime() when the pipeline started on it }
+	private static final Map<String, long[]> estimates = new ConcurrentHashMap<String, long[]>();
+
+	private static volatile boolean timing = false;
+
+	private String order;
+	private String estimate;
+	private int buckets;
+
+	private Map<File, Long> costs = new HashMap<File, Long>();
+
+	/**
+	 * @return a schedule, or null if order is null or 'fifo'
+	 */
+	public static CostSchedule create(String order, String estimate, int buckets) {
+		if (order == null || order.equals(FIFO))
+			return null;
+		if (!order.equals(LARGEST_FIRST) && !order.equals(INTERLEAVED))
+			throw new IllegalArgumentException("Unknown schedule '" + order + "', expected " + FIFO + ", "
+					+ LARGEST_FIRST + " or " + INTERLEAVED);
+		if (estimate == null)
+			estimate = SIZE;
+		if (!estimate.equals(SIZE) && !estimate.equals(SO_SIZE) && !estimate.equals(SO_LINES))
+			throw new IllegalArgumentException("Unknown cost estimate '" + estimate + "', expected " + SIZE
+					+ ", " + SO_SIZE + " or " + SO_LINES);
+		return new CostSchedule(order, estimate, buckets);
+	}
+
+	private CostSchedule(String order, String estimate, int buckets) {
+		this.order = order;
+		this.estimate = estimate;
+		this.buckets = Math.max(1, buckets);
+	}
+
+	/**
+	 * Returns the files in scheduled order.
+	 */
+	public List<File> order(List<File> files) throws IOException {
+
+		long t = System.currentTimeMillis();
+		for (File f : files)
+			costs.put(f, estimate(f));
+
+		List<File> sorted = new ArrayList<File>(files);
+		Collections.sort(sorted, new Comparator<File>() {
+			public int compare(File a, File b) {
+				return Long.compare(costs.get(b), costs.get(a));
+			}
+		});
+
+		List<File> scheduled = sorted;
+		if (order.equals(INTERLEAVED) && sorted.size() > buckets) {
+			scheduled = new ArrayList<File>(sorted.size());
+			int size = (sorted.size() + buckets - 1) / buckets;
+			for (int i = 0; i < size; i++) {
+				for (int b = 0; b < buckets; b++) {
+					int j = b * size + i;
+					if (j < sorted.size())
+						scheduled.add(sorted.get(j));
+				}
+			}
+		}
+
+		if (!sorted.isEmpty())
+			logger.info("Scheduled " + sorted.size() + " files " + order + " by " + estimate + " in "
+					+ (System.currentTimeMillis() - t) + " ms (largest " + costs.get(sorted.get(0))
+					+ ", median " + costs.get(sorted.get(sorted.size() / 2)) + ", smallest "
+					+ costs.get(sorted.get(sorted.size() - 1)) + ")");
+		return scheduled;
+
+	}
+
+	/**
+	 * The estimate for a file returned by order(), or -1.
+	 */
+	public long getCost(File f) {
+		Long c = costs.remove(f);
+		return c == null ? -1 : c;
+	}
+
+	private long estimate(File f) throws IOException {
+		if (estimate.equals(SIZE))
+			return f.length();
+		File so = soFile(f);
+		if (!so.exists())
+			return f.length();
+		if (estimate.equals(SO_SIZE))
+			return so.length();
+		return countLines(so);
+	}
+
+	private static File soFile(File f) {
+		String name = f.getName();
+		int dot = name.lastIndexOf('.');
+		return new File(f.getParentFile(), (dot < 0 ? name : name.substring(0, dot)) + ".so");
+	}
+
+	private static long countLines(File f) throws IOException {
+		long n = 0;
+		byte[] buf = new byte[1 << 16];
+		try (InputStream in = new BufferedInputStream(new FileInputStream(f), 1 << 16)) {
+			int r;
+			while ((r = in.read(buf)) != -1) {
+				for (int i = 0; i < r; i++) {
+					if (buf[i] == '\n')
+						n++;
+				}
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Called by CostProbe when it is deployed; until then recordEstimate()
+	 * does nothing.
+	 */
+	public static void startTiming() {
+		timing = true;
+	}
+
+	/**
+	 * Called by the readers as they hand out a scheduled document.
+	 */
+	public static void recordEstimate(String key, long cost) {
+		if (timing && key != null && cost >= 0)
+			estimates.put(key, new long[] { cost, System.nanoTime() });
+	}
+
+	/**
+	 * Restarts the document's clock when the pipeline starts on it, so that
+	 * the time logged leaves out any wait in the CPE's CAS queue.
+	 */
+	public static void startClock(String key) {
+		if (key == null)
+			return;
+		long[] e = estimates.get(key);
+		if (e != null)
+			e[1] = System.nanoTime();
+	}
+
+	/**
+	 * Whether any documents are waiting for logActual().
+	 */
+	public static boolean hasEstimates() {
+		return !estimates.isEmpty();
+	}
+
+	/**
+	 * Logs the estimate recorded for the document (if any) along with the
+	 * time since it was recorded.
+	 */
+	public static void logActual(String key) {
+		if (key == null)
+			return;
+		long[] e = estimates.remove(key);
+		if (e != null)
+			logger.info("cost\t" + key + "\t" + e[0] + "\t" + (System.nanoTime() - e[1]) / 1000000);
+	}
+
+	/**
+	 * The relative-source-path or ID the readers record estimates under.
+	 */
+	public static String readDocumentKey(JCas jCas) {
+		Collection<UimaBioCDocument> docs = JCasUtil.select(jCas, UimaBioCDocument.class);
+		if (docs.isEmpty())
+			return null;
+		UimaBioCDocument uiD = docs.iterator().next();
+		String path = UimaBioCUtils.readInfons(uiD.getInfons(), "relative-source-path");
+		return path != null ? path : uiD.getId();
+	}
+
+}
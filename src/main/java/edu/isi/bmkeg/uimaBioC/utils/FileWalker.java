@@ -0,0 +1,255 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks a directory tree one directory at a time, returning the files
+ * whose names end in one of the given extensions.
+ *
+ * Unlike FileUtils.listFiles(), nothing is listed ahead of time: memory
+ * is bounded by the directories on the current path, and the first file
+ * is available as soon as the first directory has been read. If 'sorted'
+ * is set, the entries of each directory are visited in name order, so
+ * the walk order is the same from run to run.
+ *
+ * Since the total is not known up front, startCounting() runs a second
+ * walk on a background thread. getCount() is the number of files it has
+ * seen so far (and never less than the number already returned), which
+ * is exact once isCountComplete() is true.
+ *
+ * setShard() restricts the walk (and the count) to one shard of the
+ * files, see Shards.
+ *
+ * setSchedule() is the exception to walking lazily: the first hasNext()
+ * walks the whole tree (or shard) and the files are then returned in the
+ * schedule's order, see CostSchedule.
+ */
+public class FileWalker implements Iterator<File> {
+
+	private File root;
+	private String[] suffixes;
+	private boolean sorted;
+	private int rootLength;
+	private int shardIndex = 0;
+	private int shardCount = 1;
+
+	private Deque<Iterator<File>> stack = new ArrayDeque<Iterator<File>>();
+	private File next;
+	private int delivered = 0;
+
+	private CostSchedule schedule;
+	private Iterator<File> scheduled;
+
+	private Thread counter;
+	private volatile int counted = 0;
+	private volatile boolean countComplete = false;
+
+	/**
+	 * @param extensions
+	 *            file extensions without the '.', or none for all files
+	 */
+	public FileWalker(File root, boolean sorted, String... extensions) {
+		this.root = root;
+		this.rootLength = root.getPath().length();
+		this.sorted = sorted;
+		this.suffixes = new String[extensions.length];
+		for (int i = 0; i < extensions.length; i++)
+			suffixes[i] = "." + extensions[i];
+		stack.push(list(root));
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null && schedule != null) {
+			if (scheduled == null)
+				scheduled = walkAndSchedule();
+			if (scheduled.hasNext())
+				next = scheduled.next();
+		}
+		if (next == null && schedule == null)
+			next = walk();
+		return next != null;
+	}
+
+	private File walk() {
+		while (!stack.isEmpty()) {
+			Iterator<File> it = stack.peek();
+			if (!it.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			File f = it.next();
+			if (f.isDirectory())
+				stack.push(list(f));
+			else if (matches(f.getName()) && inShard(f))
+				return f;
+		}
+		return null;
+	}
+
+	private Iterator<File> walkAndSchedule() {
+		List<File> files = new ArrayList<File>();
+		for (File f = walk(); f != null; f = walk())
+			files.add(f);
+		// the background count isn't needed any more
+		close();
+		if (counter != null) {
+			try {
+				counter.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		counted = files.size();
+		countComplete = true;
+		try {
+			return schedule.order(files).iterator();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public File next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		File f = next;
+		next = null;
+		delivered++;
+		return f;
+	}
+
+	/**
+	 * Only return files in shard 'shardIndex' of 'shardCount', going by
+	 * their path relative to the root (see Shards).
+	 */
+	public void setShard(int shardIndex, int shardCount) {
+		Shards.check(shardIndex, shardCount);
+		this.shardIndex = shardIndex;
+		this.shardCount = shardCount;
+	}
+
+	/**
+	 * Return the files in the schedule's order instead of walk order. Must
+	 * be called before the first hasNext().
+	 */
+	public void setSchedule(CostSchedule schedule) {
+		this.schedule = schedule;
+	}
+
+	/**
+	 * The schedule's cost estimate for a file returned by next(), or -1.
+	 */
+	public long getCost(File f) {
+		return schedule == null ? -1 : schedule.getCost(f);
+	}
+
+	/**
+	 * Number of files returned by next() so far.
+	 */
+	public int getDelivered() {
+		return delivered;
+	}
+
+	/**
+	 * Starts counting the matching files on a background thread.
+	 */
+	public void startCounting() {
+		if (counter != null)
+			return;
+		counter = new Thread(new Runnable() {
+			public void run() {
+				FileWalker w = new FileWalker(root, false, extensions());
+				w.shardIndex = shardIndex;
+				w.shardCount = shardCount;
+				while (w.hasNext()) {
+					if (Thread.currentThread().isInterrupted())
+						return;
+					w.next();
+					counted++;
+				}
+				countComplete = true;
+			}
+		}, "file-walker-count");
+		counter.setDaemon(true);
+		counter.start();
+	}
+
+	/**
+	 * Best estimate of the total number of matching files.
+	 */
+	public int getCount() {
+		if (countComplete)
+			return counted;
+		return Math.max(counted, delivered + (next != null ? 1 : 0));
+	}
+
+	public boolean isCountComplete() {
+		return countComplete;
+	}
+
+	/**
+	 * Stops the background count, if there is one.
+	 */
+	public void close() {
+		if (counter != null)
+			counter.interrupt();
+	}
+
+	private boolean matches(String name) {
+		if (suffixes.length == 0)
+			return true;
+		for (String s : suffixes) {
+			if (name.endsWith(s))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean inShard(File f) {
+		if (shardCount <= 1)
+			return true;
+		String rel = f.getPath().substring(rootLength);
+		if (rel.startsWith(File.separator))
+			rel = rel.substring(1);
+		if (File.separatorChar != '/')
+			rel = rel.replace(File.separatorChar, '/');
+		return Shards.isInShard(rel, shardIndex, shardCount);
+	}
+
+	private String[] extensions() {
+		String[] extensions = new String[suffixes.length];
+		for (int i = 0; i < suffixes.length; i++)
+			extensions[i] = suffixes[i].substring(1);
+		return extensions;
+	}
+
+	private Iterator<File> list(final File dir) {
+		final String[] names = dir.list();
+		if (names == null)
+			return new ArrayDeque<File>().iterator();
+		if (sorted)
+			Arrays.sort(names);
+		return new Iterator<File>() {
+			private int i = 0;
+
+			public boolean hasNext() {
+				return i < names.length;
+			}
+
+			public File next() {
+				return new File(dir, names[i++]);
+			}
+		};
+	}
+
+}
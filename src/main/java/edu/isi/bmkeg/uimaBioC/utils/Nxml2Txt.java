@@ -0,0 +1,599 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Converts PMC .nxml articles to the .txt and .so files that nxml2txt
+ * writes, without starting a python process. The .txt output is the same,
+ * char for char, as nxml2txt's (see Nxml2TxtTest).
+ *
+ * Like nxml2txt, the article is read into a tree first, since whether the
+ * whitespace between two elements counts depends on whether their parent
+ * has any text of its own. Then:
+ *
+ *  - whitespace that only indents the markup (between the children of an
+ *    element without text, and containing a line break) is dropped, and
+ *    any other run of whitespace becomes one space;
+ *  - NEWLINE elements (sections, paragraphs, titles, ...) start on a new
+ *    line and are followed by one, and spaces at the end of a line are
+ *    dropped - except before an article-title, which keeps the space
+ *    before it, e.g. in the reference list: '( 2003 ) \n';
+ *  - SPACE elements (names, dates, page numbers, table cells, ...) are set
+ *    off from the text around them by a space, unless there is whitespace
+ *    there already;
+ *  - non-ASCII characters are replaced by the ASCII that nxml2txt uses,
+ *    e.g. 'alpha' for U+03B1 and '-' for an en dash (see U2A).
+ *
+ * Every element gets a line in the .so file, in the order the elements
+ * start:
+ *
+ *    T12	xref 1043 1045	12	ref-type="bibr" rid="B7"
+ *
+ * i.e. id, 'tag begin end', the covered text with tabs and newlines
+ * replaced by spaces, and the element's attributes sorted by name, so
+ * that ref-type comes before rid (see SoFileParser). Offsets are in chars of the .txt text.
+ */
+public class Nxml2Txt {
+
+	private static final Set<String> NEWLINE = new HashSet<String>(Arrays.asList(
+			"article-title", "abstract", "title", "sec", "p", "contrib", "aff", "pub-date",
+			"copyright-statement", "table", "table-wrap", "fig", "tr", "kwd-group"));
+
+	private static final Set<String> SPACE = new HashSet<String>(Arrays.asList(
+			"name", "surname", "given-names", "suffix", "label", "fpage", "lpage", "volume",
+			"issue", "elocation-id", "pub-id", "object-id", "issn", "journal-id",
+			"journal-title", "article-id", "publisher-name", "publisher-loc", "day", "month",
+			"year", "date", "copyright-year", "td", "th", "email", "kwd"));
+
+	// Inline formatting keeps its whitespace even if it holds no text of its
+	// own, e.g. '<italic>\n<bold>&#x3B1;</bold>\n</italic>'.
+	private static final Set<String> INLINE = new HashSet<String>(Arrays.asList(
+			"italic", "bold", "sub", "sup", "sc", "underline", "monospace"));
+
+	/**
+	 * nxml2txt's replacements for non-ASCII characters. Accented letters not
+	 * listed here lose their accents; anything else is kept as it is.
+	 */
+	private static final String[][] U2A = {
+			{ "\u00a0", " " }, { "\u00a4", "currency" }, { "\u00a7", "S" }, { "\u00a9", "(c)" },
+			{ "\u00ae", "(R)" }, { "\u00b0", "degrees" }, { "\u00b1", "+/-" }, { "\u00b5", "micro" },
+			{ "\u00c6", "AE" }, { "\u00d0", "D" }, { "\u00d7", "x" }, { "\u00d8", "O" },
+			{ "\u00de", "Th" }, { "\u00df", "beta" }, { "\u00e6", "ae" }, { "\u00f0", "d" },
+			{ "\u00f8", "o" }, { "\u00fe", "th" }, { "\u0131", "i" }, { "\u0141", "L" },
+			{ "\u0142", "l" }, { "\u025b", "epsilon" }, { "\u0306", "" },
+			{ "\u0391", "Alpha" }, { "\u0392", "Beta" }, { "\u0393", "Gamma" }, { "\u0394", "Delta" },
+			{ "\u0395", "Epsilon" }, { "\u0396", "Zeta" }, { "\u0397", "Eta" }, { "\u0398", "Theta" },
+			{ "\u0399", "Iota" }, { "\u039a", "Kappa" }, { "\u039b", "Lambda" }, { "\u039c", "Mu" },
+			{ "\u039d", "Nu" }, { "\u039e", "Xi" }, { "\u039f", "Omicron" }, { "\u03a0", "Pi" },
+			{ "\u03a1", "Rho" }, { "\u03a3", "Sigma" }, { "\u03a4", "Tau" }, { "\u03a5", "Upsilon" },
+			{ "\u03a6", "Phi" }, { "\u03a7", "Chi" }, { "\u03a8", "Psi" }, { "\u03a9", "Omega" },
+			{ "\u03b1", "alpha" }, { "\u03b2", "beta" }, { "\u03b3", "gamma" }, { "\u03b4", "delta" },
+			{ "\u03b5", "epsilon" }, { "\u03b6", "zeta" }, { "\u03b7", "eta" }, { "\u03b8", "theta" },
+			{ "\u03b9", "iota" }, { "\u03ba", "kappa" }, { "\u03bb", "lambda" }, { "\u03bc", "mu" },
+			{ "\u03bd", "nu" }, { "\u03be", "xi" }, { "\u03bf", "omicron" }, { "\u03c0", "pi" },
+			{ "\u03c1", "rho" }, { "\u03c2", "sigma" }, { "\u03c3", "sigma" }, { "\u03c4", "tau" },
+			{ "\u03c5", "upsilon" }, { "\u03c6", "phi" }, { "\u03c7", "chi" }, { "\u03c8", "psi" },
+			{ "\u03c9", "omega" }, { "\u2002", " " }, { "\u2003", " " }, { "\u2009", " " },
+			{ "\u200a", " " }, { "\u2010", "-" }, { "\u2011", "-" }, { "\u2013", "-" },
+			{ "\u2014", "--" }, { "\u2018", "'" }, { "\u2019", "'" }, { "\u201c", "\"" },
+			{ "\u201d", "\"" }, { "\u2020", "+" }, { "\u2021", "++" }, { "\u2022", "*" },
+			{ "\u2026", "..." }, { "\u2032", "'" }, { "\u2112", "L" }, { "\u2122", "(TM)" },
+			{ "\u2192", "-->" }, { "\u2208", "in" }, { "\u2212", "-" }, { "\u2236", ":" },
+			{ "\u223c", "~" }, { "\u2264", "<=" }, { "\u2265", ">=" }, { "\u25a1", "*" },
+			{ "\u25aa", "*" }, { "\u25cb", "o" } };
+
+	private static final Map<Character, String> u2a = new HashMap<Character, String>();
+	static {
+		for (String[] r : U2A)
+			u2a.put(r[0].charAt(0), r[1]);
+	}
+
+	// entities that turn up without their DTD
+	private static final Map<String, Character> ENTITIES = new HashMap<String, Character>();
+	static {
+		ENTITIES.put("nbsp", '\u00a0');
+		ENTITIES.put("ensp", '\u2002');
+		ENTITIES.put("emsp", '\u2003');
+		ENTITIES.put("thinsp", '\u2009');
+		ENTITIES.put("ndash", '\u2013');
+		ENTITIES.put("mdash", '\u2014');
+	}
+
+	private static final ThreadLocal<XMLInputFactory> inputFactory = new ThreadLocal<XMLInputFactory>() {
+		@Override
+		protected XMLInputFactory initialValue() {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+			factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+			factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+			return factory;
+		}
+	};
+
+	/**
+	 * One element of the article and the span of text it covers.
+	 */
+	public static class Standoff {
+
+		private String tag;
+		private int begin;
+		private int end;
+		private String codes;
+
+		private Standoff(String tag, int begin, String codes) {
+			this.tag = tag;
+			this.begin = begin;
+			this.codes = codes;
+		}
+
+		public String getTag() {
+			return tag;
+		}
+
+		public int getBegin() {
+			return begin;
+		}
+
+		public int getEnd() {
+			return end;
+		}
+
+		/**
+		 * The element's attributes, as 'name="value"' separated by spaces.
+		 */
+		public String getCodes() {
+			return codes;
+		}
+
+	}
+
+	/**
+	 * The text and standoffs of one article. As SoFileParser.Standoffs, it
+	 * reads the same as the .so file it would write.
+	 */
+	public static class Result implements SoFileParser.Standoffs {
+
+		private String text;
+		private List<Standoff> standoffs;
+		private SoFileParser.Tag[] tags;
+
+		private Result(String text, List<Standoff> standoffs) {
+			this.text = text;
+			this.standoffs = standoffs;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		public List<Standoff> getStandoffs() {
+			return standoffs;
+		}
+
+		@Override
+		public int size() {
+			return standoffs.size();
+		}
+
+		@Override
+		public SoFileParser.Tag getTag(int i) {
+			if (tags == null) {
+				tags = new SoFileParser.Tag[standoffs.size()];
+				for (int j = 0; j < tags.length; j++) {
+					Standoff so = standoffs.get(j);
+					// SoFileParser drops the .so lines of empty elements
+					// without attributes, since they have no third field
+					if (so.begin < so.end || so.codes.length() > 0)
+						tags[j] = SoFileParser.readTag(so.tag);
+				}
+			}
+			return tags[i];
+		}
+
+		@Override
+		public int getBegin(int i) {
+			return standoffs.get(i).begin;
+		}
+
+		@Override
+		public int getEnd(int i) {
+			return standoffs.get(i).end;
+		}
+
+		@Override
+		public String getStr(int i) {
+			Standoff so = standoffs.get(i);
+			StringBuilder str = new StringBuilder(so.end - so.begin);
+			appendStr(str, so);
+			return str.toString();
+		}
+
+		@Override
+		public String getCodes(int i) {
+			return standoffs.get(i).codes;
+		}
+
+		@Override
+		public boolean hasCodes(int i) {
+			return standoffs.get(i).codes.length() > 0;
+		}
+
+		private void appendStr(StringBuilder line, Standoff so) {
+			for (int j = so.begin; j < so.end; j++) {
+				char c = text.charAt(j);
+				line.append(c == '\n' || c == '\t' || c == '\r' ? ' ' : c);
+			}
+		}
+
+		public void writeText(Writer out) throws IOException {
+			out.write(text);
+		}
+
+		public void writeStandoffs(Writer out) throws IOException {
+			StringBuilder line = new StringBuilder();
+			for (int i = 0; i < standoffs.size(); i++) {
+				Standoff so = standoffs.get(i);
+				line.setLength(0);
+				line.append('T').append(i + 1).append('\t');
+				line.append(so.tag).append(' ').append(so.begin).append(' ').append(so.end).append('\t');
+				appendStr(line, so);
+				if (so.codes.length() > 0)
+					line.append('\t').append(so.codes);
+				line.append('\n');
+				out.write(line.toString());
+			}
+		}
+
+	}
+
+	/**
+	 * Converts nxmlFile and writes the results to txtFile and soFile.
+	 */
+	public static void convert(File nxmlFile, File txtFile, File soFile) throws IOException, XMLStreamException {
+
+		Result r;
+		try (InputStream in = new BufferedInputStream(new FileInputStream(nxmlFile), 1 << 16)) {
+			r = convert(in);
+		}
+
+		try (Writer out = newWriter(txtFile)) {
+			r.writeText(out);
+		}
+		try (Writer out = newWriter(soFile)) {
+			r.writeStandoffs(out);
+		}
+
+	}
+
+	private static Writer newWriter(File f) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8), 1 << 16);
+	}
+
+	/**
+	 * Converts the article in the stream, which is not closed.
+	 */
+	public static Result convert(InputStream in) throws XMLStreamException {
+
+		XMLStreamReader xml = inputFactory.get().createXMLStreamReader(in);
+		Element root;
+		try {
+			root = read(xml);
+		} finally {
+			xml.close();
+		}
+		return new Converter().run(root);
+
+	}
+
+	/**
+	 * An element, with its text and the text that follows it up to the
+	 * next tag (its tail), as in python's ElementTree.
+	 */
+	private static class Element {
+
+		private String tag;
+		private String codes;
+		private StringBuilder text;
+		private StringBuilder tail;
+		private List<Element> children = new ArrayList<Element>(4);
+
+		private Element(String tag, String codes) {
+			this.tag = tag;
+			this.codes = codes;
+		}
+
+		// whether the element has text of its own, rather than only markup
+		private boolean isMixed() {
+			if (INLINE.contains(tag) || !isWhitespace(text))
+				return true;
+			for (Element c : children) {
+				if (!isWhitespace(c.tail))
+					return true;
+			}
+			return false;
+		}
+
+	}
+
+	private static Element read(XMLStreamReader xml) throws XMLStreamException {
+
+		List<Element> open = new ArrayList<Element>();
+		Element root = null;
+		Element last = null;
+		while (xml.hasNext()) {
+			switch (xml.next()) {
+
+			case XMLStreamConstants.START_ELEMENT:
+				Element e = new Element(xml.getLocalName(), readCodes(xml));
+				if (open.isEmpty())
+					root = e;
+				else
+					open.get(open.size() - 1).children.add(e);
+				open.add(e);
+				last = null;
+				break;
+
+			case XMLStreamConstants.END_ELEMENT:
+				last = open.remove(open.size() - 1);
+				break;
+
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				if (!open.isEmpty())
+					target(open, last).append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+				break;
+
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				// undeclared entities, since the DTD isn't read
+				Character c = ENTITIES.get(xml.getLocalName());
+				if (c != null && !open.isEmpty())
+					target(open, last).append(c.charValue());
+				break;
+
+			}
+		}
+		return root;
+
+	}
+
+	// Text goes to the tail of the element that just closed, if any, or
+	// else to the text of the element that is open.
+	private static StringBuilder target(List<Element> open, Element last) {
+		if (last != null) {
+			if (last.tail == null)
+				last.tail = new StringBuilder();
+			return last.tail;
+		}
+		Element e = open.get(open.size() - 1);
+		if (e.text == null)
+			e.text = new StringBuilder();
+		return e.text;
+	}
+
+	private static String readCodes(XMLStreamReader xml) {
+
+		String[] attributes = new String[xml.getAttributeCount()];
+		for (int i = 0; i < attributes.length; i++) {
+			String v = xml.getAttributeValue(i);
+			StringBuilder a = new StringBuilder(xml.getAttributeLocalName(i)).append("=\"");
+			for (int j = 0; j < v.length(); j++) {
+				char c = v.charAt(j);
+				a.append(Character.isWhitespace(c) ? ' ' : c);
+			}
+			attributes[i] = a.append('"').toString();
+		}
+		Arrays.sort(attributes);
+		StringBuilder codes = new StringBuilder();
+		for (String a : attributes) {
+			if (codes.length() > 0)
+				codes.append(' ');
+			codes.append(a);
+		}
+		return codes.toString();
+
+	}
+
+	// python's \s, which leaves out no-break and other unicode spaces
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000b';
+	}
+
+	private static boolean isWhitespace(CharSequence s) {
+		if (s == null)
+			return true;
+		for (int i = 0; i < s.length(); i++) {
+			if (!isSpace(s.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isIndent(CharSequence s) {
+		if (s == null || !isWhitespace(s))
+			return false;
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) == '\n')
+				return true;
+		}
+		return false;
+	}
+
+	private static class Converter {
+
+		private StringBuilder text = new StringBuilder(1 << 16);
+		private List<Standoff> standoffs = new ArrayList<Standoff>();
+		// elements that have started but have no text yet
+		private List<Standoff> unstarted = new ArrayList<Standoff>();
+		// elements that ended since the last text, whose end may move back
+		// if spaces at the end of a line are dropped
+		private List<Standoff> ended = new ArrayList<Standoff>();
+		private boolean pendingSpace = false;
+		private StringBuilder chunk = new StringBuilder();
+
+		Result run(Element root) {
+
+			if (root != null)
+				element(root, false);
+
+			int n = text.length();
+			while (n > 0 && isSpace(text.charAt(n - 1)))
+				n--;
+			text.setLength(n);
+			for (Standoff so : standoffs) {
+				so.begin = Math.min(so.begin, n);
+				so.end = Math.min(so.end, n);
+			}
+			return new Result(text.toString(), standoffs);
+
+		}
+
+		private void element(Element e, boolean parentMixed) {
+
+			Standoff so = new Standoff(e.tag, -1, e.codes);
+			standoffs.add(so);
+			unstarted.add(so);
+
+			boolean newline = NEWLINE.contains(e.tag);
+			boolean space = SPACE.contains(e.tag);
+			if (newline)
+				newline(!e.tag.equals("article-title"));
+			if (space)
+				pendingSpace = true;
+
+			boolean mixed = e.isMixed();
+			if (mixed || !isIndent(e.text))
+				characters(e.text);
+			for (Element c : e.children)
+				element(c, mixed);
+
+			if (space)
+				pendingSpace = true;
+			if (newline)
+				newline(true);
+
+			if (so.begin < 0) {
+				unstarted.remove(so);
+				so.begin = text.length();
+			}
+			so.end = text.length();
+			ended.add(so);
+
+			if (parentMixed || !isIndent(e.tail))
+				characters(e.tail);
+
+		}
+
+		private void characters(CharSequence s) {
+
+			if (s == null || s.length() == 0)
+				return;
+
+			// collapse whitespace, then replace non-ASCII characters
+			chunk.setLength(0);
+			boolean ws = false;
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (isSpace(c)) {
+					ws = true;
+					continue;
+				}
+				if (ws)
+					chunk.append(' ');
+				ws = false;
+				if (c < 128)
+					chunk.append(c);
+				else
+					chunk.append(toAscii(c));
+			}
+			if (ws)
+				chunk.append(' ');
+
+			// no space at the start of a line or after another one
+			int from = 0;
+			if (text.length() == 0 || lastChar() == ' ' || lastChar() == '\n') {
+				while (from < chunk.length() && chunk.charAt(from) == ' ')
+					from++;
+			}
+			if (from == chunk.length())
+				return;
+
+			if (pendingSpace && text.length() > 0 && lastChar() != ' ' && lastChar() != '\n'
+					&& chunk.charAt(from) != ' ')
+				text.append(' ');
+			pendingSpace = false;
+
+			for (Standoff so : unstarted)
+				so.begin = text.length();
+			unstarted.clear();
+			text.append(chunk, from, chunk.length());
+			ended.clear();
+
+		}
+
+		private char lastChar() {
+			return text.charAt(text.length() - 1);
+		}
+
+		private void newline(boolean strip) {
+
+			if (strip) {
+				int n = text.length();
+				while (n > 0 && text.charAt(n - 1) == ' ')
+					n--;
+				if (n < text.length()) {
+					text.setLength(n);
+					for (Standoff so : ended)
+						so.end = Math.min(so.end, n);
+				}
+			}
+			pendingSpace = false;
+			if (text.length() > 0 && lastChar() != '\n')
+				text.append('\n');
+
+		}
+
+	}
+
+	private static String toAscii(char c) {
+
+		String a = u2a.get(c);
+		if (a != null)
+			return a;
+
+		// accented letters lose their accents
+		String d = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+		StringBuilder b = new StringBuilder(d.length());
+		for (int i = 0; i < d.length(); i++) {
+			char x = d.charAt(i);
+			if (x < 128)
+				b.append(x);
+		}
+		return b.length() > 0 ? b.toString() : String.valueOf(c);
+
+	}
+
+}
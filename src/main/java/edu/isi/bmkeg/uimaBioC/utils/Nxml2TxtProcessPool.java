@@ -0,0 +1,369 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Runs the python nxml2txt script on up to nProcesses files at a time.
+ *
+ * Each run gets the script and file names as separate arguments, so paths
+ * with spaces need no quoting. The script's stdout and stderr are drained
+ * on a separate thread (keeping the last few KB for the log), so a chatty
+ * run can't block on a full pipe. A run that takes longer than the timeout
+ * is killed. Failed runs are retried up to maxRetries times; after that
+ * any partial output is deleted and, if quarantineDir is set, the .nxml
+ * file and the script's output are copied there, under the file's path
+ * relative to the input, to be looked at later.
+ *
+ * submit() blocks once a few files per process are waiting, so the caller
+ * can't get far ahead of the processes, and no more than nProcesses runs
+ * are ever going at once. close() waits for everything submitted and logs
+ * the number of files converted, failed and timed out, and the run times.
+ */
+public class Nxml2TxtProcessPool implements Closeable {
+
+	private static Logger logger = Logger.getLogger(Nxml2TxtProcessPool.class);
+
+	private static final int OUTPUT_LIMIT = 8192;
+
+	public static final String PYTHONPATH = "/usr/local/lib/python2.7/site-packages";
+
+	/**
+	 * The outcome of one run of the script.
+	 */
+	public static class Attempt {
+
+		private boolean timedOut;
+		private int exitValue = -1;
+		private String output = "";
+
+		public boolean isTimedOut() {
+			return timedOut;
+		}
+
+		public int getExitValue() {
+			return exitValue;
+		}
+
+		/**
+		 * The end of what the script wrote to stdout and stderr.
+		 */
+		public String getOutput() {
+			return output;
+		}
+
+		public boolean succeeded() {
+			return !timedOut && exitValue == 0;
+		}
+
+	}
+
+	private static class Timing implements Comparable<Timing> {
+
+		private String name;
+		private long millis;
+
+		private Timing(String name, long millis) {
+			this.name = name;
+			this.millis = millis;
+		}
+
+		@Override
+		public int compareTo(Timing o) {
+			return Long.compare(millis, o.millis);
+		}
+
+	}
+
+	private File execPath;
+	private long timeoutSeconds;
+	private int maxRetries;
+	private File quarantineDir;
+
+	private ExecutorService pool;
+	// submitted files that may not have finished yet
+	private List<Future<?>> jobs = new ArrayList<Future<?>>();
+	private Exception error;
+
+	private AtomicInteger nSucceeded = new AtomicInteger();
+	private AtomicInteger nFailed = new AtomicInteger();
+	private AtomicInteger nTimedOut = new AtomicInteger();
+	private AtomicInteger nRetries = new AtomicInteger();
+	private List<Timing> timings = Collections.synchronizedList(new ArrayList<Timing>());
+
+	/**
+	 * Waits for room in the queue, rather than running the file on the
+	 * calling thread as CallerRunsPolicy would (one process too many).
+	 */
+	private static class BlockWhenFull implements RejectedExecutionHandler {
+
+		@Override
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			if (executor.isShutdown())
+				throw new RejectedExecutionException("nxml2txt process pool is closed");
+			try {
+				executor.getQueue().put(r);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException(e);
+			}
+		}
+
+	}
+
+	private static final ExecutorService drainers = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "nxml2txt-output");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * @param timeoutSeconds
+	 *            longest a single run may take, or 0 for no limit
+	 * @param quarantineDir
+	 *            where files that can't be converted are copied, or null
+	 */
+	public Nxml2TxtProcessPool(File execPath, int nProcesses, long timeoutSeconds,
+			int maxRetries, File quarantineDir) {
+
+		this.execPath = execPath;
+		this.timeoutSeconds = timeoutSeconds;
+		this.maxRetries = Math.max(0, maxRetries);
+		this.quarantineDir = quarantineDir;
+
+		int n = Math.max(1, nProcesses);
+		this.pool = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(4 * n), new BlockWhenFull());
+
+	}
+
+	/**
+	 * Converts nxmlFile to txtFile and soFile.
+	 * 
+	 * @param name
+	 *            the file's path relative to the input directory, used in the
+	 *            log and in quarantineDir
+	 */
+	public void submit(final File nxmlFile, final String name, final File txtFile, final File soFile) {
+		removeFinished();
+		jobs.add(pool.submit(() -> {
+			convert(nxmlFile, name, txtFile, soFile);
+			return null;
+		}));
+	}
+
+	/**
+	 * Converts an .nxml file that is in memory, e.g. an archive entry. The
+	 * script needs a file to read, so it goes to a temporary file first.
+	 */
+	public void submit(final byte[] nxml, final String name, final File txtFile, final File soFile) {
+		removeFinished();
+		jobs.add(pool.submit(() -> {
+			File nxmlFile = File.createTempFile("nxml2txt", ".nxml");
+			try {
+				FileUtils.writeByteArrayToFile(nxmlFile, nxml);
+				convert(nxmlFile, name, txtFile, soFile);
+			} finally {
+				nxmlFile.delete();
+			}
+			return null;
+		}));
+	}
+
+	/**
+	 * Forgets the jobs that are done, keeping the first failure for close().
+	 */
+	private void removeFinished() {
+		Iterator<Future<?>> it = jobs.iterator();
+		while (it.hasNext()) {
+			Future<?> job = it.next();
+			if (!job.isDone())
+				continue;
+			it.remove();
+			try {
+				job.get();
+			} catch (Exception e) {
+				if (error == null)
+					error = e;
+			}
+		}
+	}
+
+	private void convert(File nxmlFile, String name, File txtFile, File soFile) throws Exception {
+
+		long t = System.nanoTime();
+		Attempt a = null;
+		for (int i = 0; i <= maxRetries; i++) {
+			if (i > 0) {
+				nRetries.incrementAndGet();
+				logger.warn("Retrying " + name);
+			}
+			a = run(execPath, nxmlFile, txtFile, soFile, timeoutSeconds);
+			if (a.isTimedOut())
+				nTimedOut.incrementAndGet();
+			if (a.succeeded() && txtFile.exists())
+				break;
+		}
+		timings.add(new Timing(name, (System.nanoTime() - t) / 1000000));
+
+		if (a.succeeded() && txtFile.exists()) {
+			nSucceeded.incrementAndGet();
+			return;
+		}
+
+		nFailed.incrementAndGet();
+		logger.error("Can't convert " + name + (a.isTimedOut() ? ": timed out" : ": exit value " + a.getExitValue())
+				+ "\n" + a.getOutput());
+		txtFile.delete();
+		soFile.delete();
+		if (quarantineDir != null)
+			quarantine(nxmlFile, name, a);
+
+	}
+
+	private void quarantine(File nxmlFile, String name, Attempt a) throws IOException {
+		String path = name.replaceAll("^/+", "");
+		FileUtils.copyFile(nxmlFile, new File(quarantineDir, path));
+		FileUtils.writeStringToFile(new File(quarantineDir, path + ".log"), a.getOutput(), "UTF-8");
+	}
+
+	/**
+	 * Runs the script once on one file.
+	 *
+	 * @param timeoutSeconds
+	 *            longest the run may take, or 0 for no limit
+	 */
+	public static Attempt run(File execPath, File nxmlFile, File txtFile, File soFile, long timeoutSeconds)
+			throws IOException, InterruptedException {
+
+		ProcessBuilder pb = new ProcessBuilder(Arrays.asList("python", execPath.getPath(),
+				nxmlFile.getPath(), txtFile.getPath(), soFile.getPath()));
+		pb.environment().put("PYTHONPATH", PYTHONPATH);
+		pb.redirectErrorStream(true);
+		Process p = pb.start();
+		p.getOutputStream().close();
+
+		Future<String> output = drainers.submit(() -> drain(p.getInputStream()));
+
+		Attempt a = new Attempt();
+		if (timeoutSeconds > 0 && !p.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+			a.timedOut = true;
+			p.destroyForcibly();
+		}
+		a.exitValue = p.waitFor();
+		try {
+			a.output = output.get(10, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			// the script left a child process holding the pipe open
+			output.cancel(true);
+		}
+		return a;
+
+	}
+
+	/**
+	 * Reads the stream to the end, keeping the last OUTPUT_LIMIT chars.
+	 */
+	private static String drain(InputStream in) throws IOException {
+		StringBuilder out = new StringBuilder();
+		char[] buf = new char[4096];
+		try (Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+			int n;
+			while ((n = r.read(buf)) != -1) {
+				out.append(buf, 0, n);
+				if (out.length() > 2 * OUTPUT_LIMIT)
+					out.delete(0, out.length() - OUTPUT_LIMIT);
+			}
+		}
+		if (out.length() > OUTPUT_LIMIT)
+			out.delete(0, out.length() - OUTPUT_LIMIT);
+		return out.toString();
+	}
+
+	public int getSucceeded() {
+		return nSucceeded.get();
+	}
+
+	public int getFailed() {
+		return nFailed.get();
+	}
+
+	public int getTimedOut() {
+		return nTimedOut.get();
+	}
+
+	/**
+	 * Waits for all submitted files and logs a report.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		pool.shutdown();
+		try {
+			for (Future<?> job : jobs)
+				job.get();
+			jobs.clear();
+			if (error != null)
+				throw error;
+		} catch (Exception e) {
+			throw new IOException(e);
+		} finally {
+			report();
+		}
+
+	}
+
+	private void report() {
+
+		List<Timing> sorted;
+		synchronized (timings) {
+			sorted = new ArrayList<Timing>(timings);
+		}
+		Collections.sort(sorted);
+
+		logger.info("nxml2txt: " + nSucceeded + " files converted, " + nFailed + " failed, "
+				+ nTimedOut + " runs timed out, " + nRetries + " retries");
+		if (sorted.isEmpty())
+			return;
+
+		long total = 0;
+		for (Timing t : sorted)
+			total += t.millis;
+		logger.info("nxml2txt run time per file: mean " + (total / sorted.size()) + " ms, median "
+				+ percentile(sorted, 50) + " ms, 95th percentile " + percentile(sorted, 95) + " ms, max "
+				+ sorted.get(sorted.size() - 1).millis + " ms");
+		StringBuilder slowest = new StringBuilder("nxml2txt slowest files:");
+		for (int i = sorted.size() - 1; i >= Math.max(0, sorted.size() - 5); i--)
+			slowest.append("\n  ").append(sorted.get(i).millis).append(" ms ").append(sorted.get(i).name);
+		logger.info(slowest);
+
+	}
+
+	private static long percentile(List<Timing> sorted, int p) {
+		int i = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+		return sorted.get(Math.max(0, Math.min(sorted.size() - 1, i))).millis;
+	}
+
+}
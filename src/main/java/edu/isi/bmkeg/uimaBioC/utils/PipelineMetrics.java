@@ -0,0 +1,607 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.metadata.FixedFlow;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.uimafit.factory.AggregateBuilder;
+import org.uimafit.factory.AnalysisEngineFactory;
+
+import com.google.gson.stream.JsonWriter;
+
+import edu.isi.bmkeg.uimaBioC.uima.ae.core.MetricsProbe;
+
+/**
+ * Per-annotator metrics for a running pipeline: a latency histogram and
+ * the number of annotations added for every analysis engine, and the
+ * number of documents and sentences, document latency and CAS heap size
+ * for the pipeline as a whole.
+ *
+ * instrument() returns a copy of an aggregate with a MetricsProbe before
+ * and after each delegate, and one at each end for the whole document. The
+ * probes around a delegate that doesn't allow multiple deployment are
+ * marked the same way, so that the CPE runs them on the same thread as the
+ * delegate. Nothing is added unless a pipeline is instrumented, so the
+ * metrics cost nothing when they're off.
+ *
+ * start() exports a snapshot every few seconds, either as a line of JSON
+ * appended to a file or as a Prometheus text file (rewritten in place, for
+ * node_exporter's textfile collector), and/or as a one-line summary on the
+ * log. stop() exports a final snapshot.
+ */
+public class PipelineMetrics {
+
+	private static Logger logger = Logger.getLogger(PipelineMetrics.class);
+
+	public static final String JSON = "json";
+	public static final String PROMETHEUS = "prometheus";
+
+	private static final Map<String, PipelineMetrics> registry = new ConcurrentHashMap<String, PipelineMetrics>();
+	private static final AtomicInteger nInstrumented = new AtomicInteger();
+
+	/**
+	 * A histogram of latencies over fixed buckets, from 1 ms to 10 minutes.
+	 */
+	public static class Histogram {
+
+		static final long[] BOUNDS_MS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000,
+				60000, 120000, 300000, 600000 };
+
+		private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_MS.length + 1);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sumNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		public void record(long nanos) {
+			long ms = nanos / 1000000;
+			int i = 0;
+			while (i < BOUNDS_MS.length && ms >= BOUNDS_MS[i])
+				i++;
+			counts.incrementAndGet(i);
+			count.increment();
+			sumNanos.add(nanos);
+			maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public double getSumSeconds() {
+			return sumNanos.sum() / 1e9;
+		}
+
+		public double getMeanMillis() {
+			long n = count.sum();
+			return n == 0 ? 0 : sumNanos.sum() / 1e6 / n;
+		}
+
+		public double getMaxMillis() {
+			return maxNanos.get() / 1e6;
+		}
+
+		/**
+		 * The p'th percentile, interpolated within its bucket (and never
+		 * more than the maximum).
+		 */
+		public double getPercentileMillis(double p) {
+			long n = count.sum();
+			if (n == 0)
+				return 0;
+			double max = getMaxMillis();
+			long rank = Math.max(1, (long) Math.ceil(p / 100 * n));
+			long seen = 0;
+			for (int i = 0; i < counts.length(); i++) {
+				long c = counts.get(i);
+				if (seen + c >= rank) {
+					double lower = i == 0 ? 0 : BOUNDS_MS[i - 1];
+					double upper = i < BOUNDS_MS.length ? Math.min(BOUNDS_MS[i], max) : max;
+					return Math.min(max, lower + (upper - lower) * (rank - seen) / c);
+				}
+				seen += c;
+			}
+			return max;
+		}
+
+		long getBucketCount(int i) {
+			return counts.get(i);
+		}
+
+	}
+
+	/**
+	 * What is known about one analysis engine.
+	 */
+	public static class Stage {
+
+		private final String name;
+		private final Histogram latency = new Histogram();
+		private final LongAdder annotations = new LongAdder();
+
+		private Stage(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Histogram getLatency() {
+			return latency;
+		}
+
+		/**
+		 * Annotations added (less those removed) by this engine.
+		 */
+		public long getAnnotations() {
+			return annotations.sum();
+		}
+
+	}
+
+	// the probes' timestamps for a document, kept until its CAS is reused
+	private static class CasState {
+		private long begin;
+		private long[] stageBegin = new long[0];
+		private int[] stageAnnotations = new int[0];
+	}
+
+	private final String name;
+	private final List<Stage> stages = Collections.synchronizedList(new ArrayList<Stage>());
+	private final Map<CAS, CasState> open = Collections.synchronizedMap(new IdentityHashMap<CAS, CasState>());
+
+	private final Histogram documentLatency = new Histogram();
+	private final LongAdder documents = new LongAdder();
+	private final LongAdder sentences = new LongAdder();
+	private final LongAdder annotations = new LongAdder();
+	private final LongAdder characters = new LongAdder();
+	private final AtomicLong lastHeapBytes = new AtomicLong();
+	private final AtomicLong maxHeapBytes = new AtomicLong();
+	private final LongAdder sumHeapBytes = new LongAdder();
+
+	private long startMillis = System.currentTimeMillis();
+	private ScheduledExecutorService exporter;
+	private File file;
+	private String format;
+	private boolean console;
+	private long lastExportMillis;
+	private long lastDocuments;
+	private long lastSentences;
+
+	private PipelineMetrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * The metrics the probes with this name report to.
+	 */
+	public static PipelineMetrics get(String name) {
+		return registry.computeIfAbsent(name, PipelineMetrics::new);
+	}
+
+	/**
+	 * Returns a copy of the engine with probes around every delegate (or
+	 * around the engine itself, if it is primitive) reporting to the
+	 * metrics returned by get(name).
+	 */
+	public static AnalysisEngineDescription instrument(AnalysisEngineDescription engine, String name)
+			throws ResourceInitializationException {
+
+		List<String> keys = new ArrayList<String>();
+		List<AnalysisEngineDescription> delegates = new ArrayList<AnalysisEngineDescription>();
+		if (engine.isPrimitive()) {
+			keys.add(engine.getAnalysisEngineMetaData().getName());
+			delegates.add(engine);
+		} else {
+			Map<String, ResourceSpecifier> specs;
+			try {
+				specs = engine.getDelegateAnalysisEngineSpecifiers();
+			} catch (Exception e) {
+				throw new ResourceInitializationException(e);
+			}
+			FixedFlow flow = (FixedFlow) engine.getAnalysisEngineMetaData().getFlowConstraints();
+			for (String key : flow.getFixedFlow()) {
+				keys.add(key);
+				delegates.add((AnalysisEngineDescription) specs.get(key));
+			}
+		}
+
+		AggregateBuilder builder = new AggregateBuilder();
+		boolean allMultiple = true;
+		builder.add(probe(name, -1, "document", true, true));
+		for (int i = 0; i < delegates.size(); i++) {
+			AnalysisEngineDescription aed = delegates.get(i);
+			boolean multiple = aed.getAnalysisEngineMetaData().getOperationalProperties()
+					.isMultipleDeploymentAllowed();
+			allMultiple &= multiple;
+			String stage = stageName(keys.get(i), keys);
+			builder.add(probe(name, i, stage, true, multiple));
+			builder.add(keys.get(i), aed);
+			builder.add(probe(name, i, stage, false, multiple));
+		}
+		builder.add(probe(name, -1, "document", false, allMultiple));
+		return builder.createAggregateDescription();
+
+	}
+
+	/**
+	 * A new name for instrument().
+	 */
+	public static String newName() {
+		return "pipeline-" + nInstrumented.incrementAndGet();
+	}
+
+	private static AnalysisEngineDescription probe(String name, int index, String stage, boolean begin,
+			boolean multipleDeploymentAllowed) throws ResourceInitializationException {
+		AnalysisEngineDescription d = AnalysisEngineFactory.createPrimitiveDescription(MetricsProbe.class,
+				MetricsProbe.PARAM_METRICS, name,
+				MetricsProbe.PARAM_INDEX, index,
+				MetricsProbe.PARAM_STAGE, stage,
+				MetricsProbe.PARAM_BEGIN, begin);
+		d.getAnalysisEngineMetaData().getOperationalProperties()
+				.setMultipleDeploymentAllowed(multipleDeploymentAllowed);
+		return d;
+	}
+
+	/**
+	 * The class name from a delegate key like 'a.b.SentenceAnnotator-1',
+	 * keeping the number only if the class appears more than once.
+	 */
+	private static String stageName(String key, List<String> keys) {
+		String base = key.replaceAll("-\\d+$", "");
+		int n = 0;
+		for (String k : keys) {
+			if (k.replaceAll("-\\d+$", "").equals(base))
+				n++;
+		}
+		String simple = base.substring(base.lastIndexOf('.') + 1);
+		return n > 1 ? simple + key.substring(base.length()) : simple;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<Stage> getStages() {
+		synchronized (stages) {
+			return new ArrayList<Stage>(stages);
+		}
+	}
+
+	private Stage stage(int index, String stageName) {
+		synchronized (stages) {
+			while (stages.size() <= index)
+				stages.add(null);
+			Stage s = stages.get(index);
+			if (s == null) {
+				s = new Stage(stageName);
+				stages.set(index, s);
+			}
+			return s;
+		}
+	}
+
+	private static CAS baseCas(JCas jCas) {
+		return jCas.getCasImpl().getBaseCAS();
+	}
+
+	/**
+	 * Called by the probe at the start of the pipeline.
+	 */
+	public void beginDocument(JCas jCas) {
+		CasState s = new CasState();
+		s.begin = System.nanoTime();
+		open.put(baseCas(jCas), s);
+	}
+
+	/**
+	 * Called by the probe at the end of the pipeline.
+	 */
+	public void endDocument(JCas jCas) {
+
+		CasState s = open.remove(baseCas(jCas));
+		if (s == null)
+			return;
+		documentLatency.record(System.nanoTime() - s.begin);
+		documents.increment();
+
+		Type sentence = jCas.getTypeSystem().getType("org.cleartk.token.type.Sentence");
+		if (sentence != null)
+			sentences.add(jCas.getAnnotationIndex(sentence).size());
+		annotations.add(jCas.getAnnotationIndex().size());
+		if (jCas.getDocumentText() != null)
+			characters.add(jCas.getDocumentText().length());
+
+		long heap = 4L * ((CASImpl) baseCas(jCas)).getHeap().getNextId();
+		lastHeapBytes.set(heap);
+		maxHeapBytes.accumulateAndGet(heap, Math::max);
+		sumHeapBytes.add(heap);
+
+	}
+
+	/**
+	 * Called by the probe before a delegate.
+	 */
+	public void beginStage(int index, String stageName, JCas jCas) {
+		CasState s = open.get(baseCas(jCas));
+		if (s == null)
+			return;
+		stage(index, stageName);
+		if (s.stageBegin.length <= index) {
+			s.stageBegin = Arrays.copyOf(s.stageBegin, index + 1);
+			s.stageAnnotations = Arrays.copyOf(s.stageAnnotations, index + 1);
+		}
+		s.stageAnnotations[index] = jCas.getAnnotationIndex().size();
+		s.stageBegin[index] = System.nanoTime();
+	}
+
+	/**
+	 * Called by the probe after a delegate.
+	 */
+	public void endStage(int index, String stageName, JCas jCas) {
+		long t = System.nanoTime();
+		CasState s = open.get(baseCas(jCas));
+		if (s == null || s.stageBegin.length <= index || s.stageBegin[index] == 0)
+			return;
+		Stage stage = stage(index, stageName);
+		stage.latency.record(t - s.stageBegin[index]);
+		stage.annotations.add(jCas.getAnnotationIndex().size() - s.stageAnnotations[index]);
+	}
+
+	/**
+	 * Starts exporting a snapshot every intervalSeconds.
+	 *
+	 * @param file
+	 *            where to write the metrics, or null
+	 * @param format
+	 *            JSON (a line appended per snapshot) or PROMETHEUS (the file
+	 *            is replaced with each snapshot)
+	 * @param console
+	 *            also log a one-line summary
+	 */
+	public synchronized void start(File file, String format, int intervalSeconds, boolean console) {
+
+		if (format != null && !format.equals(JSON) && !format.equals(PROMETHEUS))
+			throw new IllegalArgumentException("Unknown metrics format '" + format + "', expected " + JSON + " or "
+					+ PROMETHEUS);
+		this.file = file;
+		this.format = format == null ? JSON : format;
+		this.console = console;
+		this.startMillis = System.currentTimeMillis();
+		this.lastExportMillis = startMillis;
+		if (file != null && file.getAbsoluteFile().getParentFile() != null)
+			file.getAbsoluteFile().getParentFile().mkdirs();
+
+		int interval = Math.max(1, intervalSeconds);
+		exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "metrics-export");
+			t.setDaemon(true);
+			return t;
+		});
+		exporter.scheduleAtFixedRate(this::export, interval, interval, TimeUnit.SECONDS);
+
+	}
+
+	/**
+	 * Stops the periodic export and exports a final snapshot.
+	 */
+	public void stop() {
+		synchronized (this) {
+			if (exporter != null) {
+				exporter.shutdownNow();
+				exporter = null;
+			}
+		}
+		export();
+		registry.remove(name);
+	}
+
+	private synchronized void export() {
+		try {
+			long now = System.currentTimeMillis();
+			if (file != null && format.equals(PROMETHEUS)) {
+				try (AtomicFile af = new AtomicFile(file)) {
+					Writer w = new OutputStreamWriter(af.getOutputStream(), StandardCharsets.UTF_8);
+					w.write(toPrometheus());
+					w.close();
+					af.commit();
+				}
+			} else if (file != null) {
+				try (Writer w = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+					w.write(toJson(now));
+					w.write("\n");
+				}
+			}
+			if (console)
+				logger.info(toConsoleLine(now));
+			lastExportMillis = now;
+			lastDocuments = documents.sum();
+			lastSentences = sentences.sum();
+		} catch (Exception e) {
+			logger.warn("Can't export metrics to " + file, e);
+		}
+	}
+
+	private double perSecond(long n, long millis) {
+		return millis > 0 ? n * 1000.0 / millis : 0;
+	}
+
+	/**
+	 * The snapshot as a single line of JSON.
+	 */
+	public String toJson(long now) throws IOException {
+
+		long docs = documents.sum();
+		long sents = sentences.sum();
+		StringWriter sw = new StringWriter();
+		JsonWriter out = new JsonWriter(sw);
+		out.beginObject();
+		out.name("time").value(now);
+		out.name("elapsedSeconds").value((now - startMillis) / 1000.0);
+		out.name("documents").value(docs);
+		out.name("documentsPerSecond").value(perSecond(docs, now - startMillis));
+		out.name("intervalDocumentsPerSecond").value(perSecond(docs - lastDocuments, now - lastExportMillis));
+		out.name("sentences").value(sents);
+		out.name("sentencesPerSecond").value(perSecond(sents, now - startMillis));
+		out.name("intervalSentencesPerSecond").value(perSecond(sents - lastSentences, now - lastExportMillis));
+		out.name("annotations").value(annotations.sum());
+		out.name("characters").value(characters.sum());
+		out.name("casHeapBytes").beginObject();
+		out.name("last").value(lastHeapBytes.get());
+		out.name("max").value(maxHeapBytes.get());
+		out.name("mean").value(docs == 0 ? 0 : sumHeapBytes.sum() / docs);
+		out.endObject();
+		out.name("document");
+		writeHistogram(out, documentLatency);
+		out.name("stages").beginArray();
+		for (Stage s : getStages()) {
+			if (s == null)
+				continue;
+			out.beginObject();
+			out.name("name").value(s.name);
+			out.name("annotations").value(s.getAnnotations());
+			out.name("latency");
+			writeHistogram(out, s.latency);
+			out.endObject();
+		}
+		out.endArray();
+		out.endObject();
+		out.flush();
+		return sw.toString();
+
+	}
+
+	private static void writeHistogram(JsonWriter out, Histogram h) throws IOException {
+		out.beginObject();
+		out.name("count").value(h.getCount());
+		out.name("totalSeconds").value(h.getSumSeconds());
+		out.name("meanMs").value(h.getMeanMillis());
+		out.name("p50Ms").value(h.getPercentileMillis(50));
+		out.name("p95Ms").value(h.getPercentileMillis(95));
+		out.name("p99Ms").value(h.getPercentileMillis(99));
+		out.name("maxMs").value(h.getMaxMillis());
+		out.endObject();
+	}
+
+	/**
+	 * The snapshot in the Prometheus text exposition format.
+	 */
+	public String toPrometheus() {
+
+		StringBuilder sb = new StringBuilder();
+		String pipeline = "pipeline=\"" + name + "\"";
+		counter(sb, "uimabioc_documents_total", "Documents through the whole pipeline", pipeline, documents.sum());
+		counter(sb, "uimabioc_sentences_total", "Sentences in the finished documents", pipeline, sentences.sum());
+		counter(sb, "uimabioc_annotations_total", "Annotations in the finished documents", pipeline,
+				annotations.sum());
+		counter(sb, "uimabioc_characters_total", "Characters of text in the finished documents", pipeline,
+				characters.sum());
+		gauge(sb, "uimabioc_cas_heap_bytes", "CAS feature structure heap of the last document", pipeline,
+				lastHeapBytes.get());
+		gauge(sb, "uimabioc_cas_heap_max_bytes", "Largest CAS feature structure heap", pipeline,
+				maxHeapBytes.get());
+
+		sb.append("# HELP uimabioc_document_latency_seconds Time from the start to the end of the pipeline\n");
+		sb.append("# TYPE uimabioc_document_latency_seconds histogram\n");
+		histogram(sb, "uimabioc_document_latency_seconds", pipeline, documentLatency);
+
+		List<Stage> stages = getStages();
+		sb.append("# HELP uimabioc_stage_latency_seconds Time spent in each analysis engine\n");
+		sb.append("# TYPE uimabioc_stage_latency_seconds histogram\n");
+		for (Stage s : stages) {
+			if (s != null)
+				histogram(sb, "uimabioc_stage_latency_seconds", pipeline + ",stage=\"" + s.name + "\"", s.latency);
+		}
+		sb.append("# HELP uimabioc_stage_annotations_total Annotations added by each analysis engine\n");
+		sb.append("# TYPE uimabioc_stage_annotations_total counter\n");
+		for (Stage s : stages) {
+			if (s != null)
+				sb.append("uimabioc_stage_annotations_total{").append(pipeline).append(",stage=\"").append(s.name)
+						.append("\"} ").append(s.getAnnotations()).append('\n');
+		}
+		return sb.toString();
+
+	}
+
+	private static void counter(StringBuilder sb, String metric, String help, String labels, long value) {
+		sb.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(metric).append(" counter\n");
+		sb.append(metric).append('{').append(labels).append("} ").append(value).append('\n');
+	}
+
+	private static void gauge(StringBuilder sb, String metric, String help, String labels, long value) {
+		sb.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(metric).append(" gauge\n");
+		sb.append(metric).append('{').append(labels).append("} ").append(value).append('\n');
+	}
+
+	private static void histogram(StringBuilder sb, String metric, String labels, Histogram h) {
+		long cumulative = 0;
+		for (int i = 0; i <= Histogram.BOUNDS_MS.length; i++) {
+			cumulative += h.getBucketCount(i);
+			String le = i < Histogram.BOUNDS_MS.length ? Double.toString(Histogram.BOUNDS_MS[i] / 1000.0) : "+Inf";
+			sb.append(metric).append("_bucket{").append(labels).append(",le=\"").append(le).append("\"} ")
+					.append(cumulative).append('\n');
+		}
+		sb.append(metric).append("_sum{").append(labels).append("} ").append(h.getSumSeconds()).append('\n');
+		sb.append(metric).append("_count{").append(labels).append("} ").append(h.getCount()).append('\n');
+	}
+
+	/**
+	 * e.g. 'metrics: 120 docs (0.31/s, ...) | StanfordParse 78% p95 20000 ms | ...',
+	 * showing the five engines that have taken the most time.
+	 */
+	public String toConsoleLine(long now) {
+
+		long docs = documents.sum();
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ROOT, "metrics: %d docs (%.2f/s, %.2f/s recently), %.1f sentences/s, CAS heap max %d KB",
+				docs, perSecond(docs, now - startMillis), perSecond(docs - lastDocuments, now - lastExportMillis),
+				perSecond(sentences.sum(), now - startMillis), maxHeapBytes.get() / 1024));
+
+		List<Stage> sorted = new ArrayList<Stage>();
+		double total = 0;
+		for (Stage s : getStages()) {
+			if (s != null) {
+				sorted.add(s);
+				total += s.latency.getSumSeconds();
+			}
+		}
+		Collections.sort(sorted, (a, b) -> Double.compare(b.latency.getSumSeconds(), a.latency.getSumSeconds()));
+		for (Stage s : sorted.subList(0, Math.min(5, sorted.size()))) {
+			sb.append(String.format(Locale.ROOT, " | %s %.0f%% p95 %.0f ms", s.name,
+					total > 0 ? 100 * s.latency.getSumSeconds() / total : 0, s.latency.getPercentileMillis(95)));
+		}
+		return sb.toString();
+
+	}
+
+}
@@ -0,0 +1,296 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.metadata.FixedFlow;
+import org.apache.uima.collection.CollectionProcessingEngine;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.collection.impl.metadata.cpe.CpeDescriptorFactory;
+import org.apache.uima.collection.metadata.CpeCasProcessors;
+import org.apache.uima.collection.metadata.CpeComponentDescriptor;
+import org.apache.uima.collection.metadata.CpeDescription;
+import org.apache.uima.collection.metadata.CpeInclude;
+import org.apache.uima.collection.metadata.CpeIntegratedCasProcessor;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.kohsuke.args4j.Option;
+import org.uimafit.pipeline.SimplePipeline;
+
+/**
+ * Runs a collection reader and an aggregate analysis engine in a CPE, the
+ * way the UIMABIOC_* drivers used to with CpeBuilder, but with the thread
+ * count, CAS pool size and batch size exposed (see Options) and without
+ * polling: run() blocks on StatusCallbackListenerImpl until the CPE is
+ * done. Per-document failures are logged with the document ID as they
+ * happen and listed again at the end, followed by the throughput and the
+ * CPE performance report.
+ *
+ * As with CpeBuilder, each delegate of the aggregate becomes its own CAS
+ * processor, and the CPE runs those that don't allow multiple deployment
+ * on a single thread.
+ *
+ * The static run() is for the drivers that used SimplePipeline: with one
+ * thread it still uses SimplePipeline, so their output stays as it was.
+ * The collection reader always runs on a single thread.
+ *
+ * With -metrics or -metricsConsole, either way of running collects
+ * per-annotator metrics while it runs (see PipelineMetrics).
+ */
+public class PipelineRunner {
+
+	private static Logger logger = Logger.getLogger(PipelineRunner.class);
+
+	private static final String ACTION_ON_MAX_ERROR = "terminate";
+
+	/**
+	 * Tuning options shared by the drivers; their Options classes extend this.
+	 */
+	public static class Options {
+
+		@Option(name = "-nThreads", usage = "Number of processing threads", required = false, metaVar = "N")
+		public int nThreads = 1;
+
+		@Option(name = "-casPoolSize", usage = "Number of CASes in flight (default: nThreads)", required = false, metaVar = "N")
+		public int casPoolSize = 0;
+
+		@Option(name = "-batchSize", usage = "Number of CASes handed to each analysis engine at a time", required = false, metaVar = "N")
+		public int batchSize = 1;
+
+		@Option(name = "-metrics", usage = "Write per-annotator metrics to this file", required = false, metaVar = "METRICS-FILE")
+		public File metrics;
+
+		@Option(name = "-metricsFormat", usage = "Metrics file format: json (a line per snapshot) or prometheus", required = false, metaVar = "FORMAT")
+		public String metricsFormat = PipelineMetrics.JSON;
+
+		@Option(name = "-metricsInterval", usage = "Seconds between metrics snapshots", required = false, metaVar = "SECONDS")
+		public int metricsInterval = 60;
+
+		@Option(name = "-metricsConsole", usage = "Log a one-line metrics summary with each snapshot", required = false)
+		public boolean metricsConsole = false;
+
+	}
+
+	private int nThreads = 1;
+	private int casPoolSize = 0;
+	private int batchSize = 1;
+
+	private File metricsFile;
+	private String metricsFormat = PipelineMetrics.JSON;
+	private int metricsInterval = 60;
+	private boolean metricsConsole = false;
+	private PipelineMetrics metrics;
+
+	private CollectionReaderDescription reader;
+	private AnalysisEngineDescription engine;
+
+	private CollectionProcessingEngine cpe;
+	private StatusCallbackListenerImpl listener;
+
+	public PipelineRunner(CollectionReaderDescription reader, AnalysisEngineDescription engine) {
+		this.reader = reader;
+		this.engine = engine;
+	}
+
+	public PipelineRunner(CollectionReaderDescription reader, AnalysisEngineDescription engine,
+			Options options) {
+		this(reader, engine);
+		setThreadCount(options.nThreads);
+		setCasPoolSize(options.casPoolSize);
+		setBatchSize(options.batchSize);
+		setMetrics(options.metrics, options.metricsFormat, options.metricsInterval, options.metricsConsole);
+	}
+
+	public void setThreadCount(int nThreads) {
+		this.nThreads = Math.max(1, nThreads);
+	}
+
+	/**
+	 * @param casPoolSize
+	 *            the number of CASes, or 0 for one per thread
+	 */
+	public void setCasPoolSize(int casPoolSize) {
+		this.casPoolSize = Math.max(0, casPoolSize);
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * Collects per-annotator metrics (see PipelineMetrics) if file is set or
+	 * console is true.
+	 */
+	public void setMetrics(File file, String format, int intervalSeconds, boolean console) {
+		this.metricsFile = file;
+		this.metricsFormat = format;
+		this.metricsInterval = intervalSeconds;
+		this.metricsConsole = console;
+	}
+
+	/**
+	 * Runs the pipeline over the whole collection and prints the report.
+	 *
+	 * @return false if the CPE aborted or any document failed
+	 */
+	public boolean run() throws Exception {
+
+		AnalysisEngineDescription engine = this.engine;
+		if (metricsFile != null || metricsConsole) {
+			String name = PipelineMetrics.newName();
+			engine = PipelineMetrics.instrument(engine, name);
+			metrics = PipelineMetrics.get(name);
+		}
+
+		listener = new StatusCallbackListenerImpl();
+		cpe = UIMAFramework.produceCollectionProcessingEngine(createCpeDescription(engine),
+				UIMAFramework.newDefaultResourceManager(), null);
+		cpe.addStatusCallbackListener(listener);
+
+		logger.info("Running CPE with " + nThreads + " threads, CAS pool of "
+				+ (casPoolSize > 0 ? casPoolSize : nThreads) + ", batch size " + batchSize);
+		if (metrics != null)
+			metrics.start(metricsFile, metricsFormat, metricsInterval, metricsConsole);
+		try {
+			cpe.process();
+			listener.waitForCompletion();
+		} finally {
+			if (metrics != null)
+				metrics.stop();
+		}
+
+		report();
+		return !listener.isAborted() && listener.getFailures().isEmpty();
+
+	}
+
+	/**
+	 * Runs the pipeline with SimplePipeline if options.nThreads is 1, and in
+	 * a CPE over a pool of CASes otherwise.
+	 *
+	 * @return false if the CPE aborted or any document failed
+	 */
+	public static boolean run(CollectionReaderDescription reader, AnalysisEngineDescription engine,
+			Options options) throws Exception {
+
+		if (options.nThreads > 1)
+			return new PipelineRunner(reader, engine, options).run();
+
+		if (options.metrics == null && !options.metricsConsole) {
+			SimplePipeline.runPipeline(reader, engine);
+			return true;
+		}
+
+		String name = PipelineMetrics.newName();
+		PipelineMetrics metrics = PipelineMetrics.get(name);
+		AnalysisEngineDescription instrumented = PipelineMetrics.instrument(engine, name);
+		metrics.start(options.metrics, options.metricsFormat, options.metricsInterval, options.metricsConsole);
+		try {
+			SimplePipeline.runPipeline(reader, instrumented);
+		} finally {
+			metrics.stop();
+		}
+		return true;
+
+	}
+
+	public StatusCallbackListenerImpl getListener() {
+		return listener;
+	}
+
+	public CollectionProcessingEngine getCpe() {
+		return cpe;
+	}
+
+	/**
+	 * The metrics of the last run(), or null if they were off.
+	 */
+	public PipelineMetrics getMetrics() {
+		return metrics;
+	}
+
+	private void report() {
+
+		List<StatusCallbackListenerImpl.Failure> failures = listener.getFailures();
+		int nDocs = listener.getCompletedCount();
+		long millis = listener.getElapsedMillis();
+
+		System.out.println("\n\n ------------------ PERFORMANCE REPORT ------------------\n");
+		System.out.println(cpe.getPerformanceReport().toString());
+
+		if (listener.isAborted())
+			System.out.println("\nCPE ABORTED");
+		if (!failures.isEmpty()) {
+			System.out.println("\n" + failures.size() + " FAILURES:");
+			for (StatusCallbackListenerImpl.Failure f : failures)
+				System.out.println("  " + f.getDocumentId() + ": " + f.getException());
+		}
+		System.out.format("\nDOCUMENTS: %d processed, %d failed in %.3f s (%.2f documents/s)\n",
+				nDocs, failures.size(), millis / 1000f,
+				millis > 0 ? nDocs * 1000f / millis : 0f);
+
+	}
+
+	private CpeDescription createCpeDescription(AnalysisEngineDescription engine) throws Exception {
+
+		CpeDescription cpeDesc = CpeDescriptorFactory.produceDescriptor();
+		cpeDesc.addCollectionReader(
+				CpeDescriptorFactory.produceCollectionReader(materializeDescriptor(reader).toURI().toURL().toString()));
+
+		if (engine.isPrimitive()) {
+			cpeDesc.addCasProcessor(createProcessor("", engine));
+		} else {
+			Map<String, ResourceSpecifier> delegates = engine.getDelegateAnalysisEngineSpecifiers();
+			FixedFlow flow = (FixedFlow) engine.getAnalysisEngineMetaData().getFlowConstraints();
+			for (String key : flow.getFixedFlow()) {
+				AnalysisEngineDescription aed = (AnalysisEngineDescription) delegates.get(key);
+				if (!aed.getAnalysisEngineMetaData().getOperationalProperties().isMultipleDeploymentAllowed())
+					logger.info("[" + key + "] runs single-threaded");
+				cpeDesc.addCasProcessor(createProcessor(key, aed));
+			}
+		}
+
+		CpeCasProcessors processors = cpeDesc.getCpeCasProcessors();
+		processors.setPoolSize(casPoolSize > 0 ? casPoolSize : nThreads);
+		cpeDesc.setProcessingUnitThreadCount(nThreads);
+
+		return cpeDesc;
+
+	}
+
+	private CpeIntegratedCasProcessor createProcessor(String key, AnalysisEngineDescription aed)
+			throws Exception {
+
+		CpeInclude include = UIMAFramework.getResourceSpecifierFactory().createInclude();
+		include.set(materializeDescriptor(aed).toURI().toURL().toString());
+		CpeComponentDescriptor ccd = UIMAFramework.getResourceSpecifierFactory().createDescriptor();
+		ccd.setInclude(include);
+
+		CpeIntegratedCasProcessor proc = CpeDescriptorFactory.produceCasProcessor(key);
+		proc.setCpeComponentDescriptor(ccd);
+		proc.setActionOnMaxError(ACTION_ON_MAX_ERROR);
+		proc.setMaxErrorCount(0);
+		proc.setBatchSize(batchSize);
+		return proc;
+
+	}
+
+	private static File materializeDescriptor(ResourceSpecifier spec) throws Exception {
+		File tempDesc = File.createTempFile("desc", ".xml");
+		tempDesc.deleteOnExit();
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(tempDesc))) {
+			spec.toXML(out);
+		} catch (IOException e) {
+			tempDesc.delete();
+			throw e;
+		}
+		return tempDesc;
+	}
+
+}
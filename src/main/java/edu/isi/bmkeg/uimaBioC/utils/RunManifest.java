@@ -0,0 +1,303 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An append-only journal of the documents a run has started and finished,
+ * so that a crashed or killed run can be resumed without looking at the
+ * output directory.
+ *
+ * Each line is 'status&lt;TAB&gt;key&lt;TAB&gt;id&lt;TAB&gt;hash&lt;TAB&gt;millis&lt;TAB&gt;time',
+ * where the key is the document's output file relative to the output
+ * directory, status is 'started' or 'done', hash is the CRC32 of the output
+ * file and millis is the time from claim() to commit(). open() reads the
+ * journal back into a set of finished keys; a document that was started
+ * but never finished is simply done again.
+ *
+ * The readers claim() a document before handing it out and the writers
+ * commit() it once its output file has been renamed into place (see
+ * AtomicFile), so a 'done' line always means a complete output file.
+ * commit() returns once its line is on disk. Lines are written and synced
+ * by one thread, which takes everything queued while the previous sync was
+ * running, so concurrent writers share a sync (group commit). 'started'
+ * lines are queued without waiting.
+ *
+ * The reader and writers of a pipeline share one instance per file via
+ * open() and close(). A journal belongs to one process: give each shard of
+ * a corpus its own.
+ */
+public class RunManifest implements Closeable {
+
+	private static Logger logger = Logger.getLogger(RunManifest.class);
+
+	public static final String STARTED = "started";
+	public static final String DONE = "done";
+
+	private static final Map<File, RunManifest> open = new HashMap<File, RunManifest>();
+
+	private File file;
+	private int references = 0;
+
+	private Set<String> done = ConcurrentHashMap.newKeySet();
+	// claimed in this run and not yet committed -> System.nanoTime() of the claim
+	private Map<String, Long> inFlight = new ConcurrentHashMap<String, Long>();
+
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private Thread committer;
+
+	private final Object lock = new Object();
+	private StringBuilder pending = new StringBuilder();
+	private long queued = 0;
+	private long committed = 0;
+	private int nCommits = 0;
+	private boolean closing = false;
+	private IOException error;
+
+	/**
+	 * Opens (or creates) the journal, reading any entries already in it.
+	 * Every call must be matched by a close().
+	 */
+	public static RunManifest open(File f) throws IOException {
+		File key = f.getCanonicalFile();
+		synchronized (open) {
+			RunManifest m = open.get(key);
+			if (m == null) {
+				m = new RunManifest(key);
+				open.put(key, m);
+			}
+			m.references++;
+			return m;
+		}
+	}
+
+	private RunManifest(File f) throws IOException {
+
+		this.file = f;
+		if (f.getParentFile() != null)
+			f.getParentFile().mkdirs();
+
+		long t = System.currentTimeMillis();
+		this.raf = new RandomAccessFile(f, "rw");
+		this.channel = raf.getChannel();
+		truncatePartialLine();
+		int nStarted = load();
+		channel.position(channel.size());
+
+		logger.info("Manifest " + f + ": " + done.size() + " documents done, " + nStarted
+				+ " started but not finished (read in " + (System.currentTimeMillis() - t) + " ms)");
+
+		this.committer = new Thread(new Runnable() {
+			public void run() {
+				commitLoop();
+			}
+		}, "manifest-commit");
+		committer.setDaemon(true);
+		committer.start();
+
+	}
+
+	/**
+	 * Reads the finished keys, and returns the number of keys that were
+	 * started but never finished.
+	 */
+	private int load() throws IOException {
+
+		Set<String> started = new HashSet<String>();
+		try (BufferedReader in = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if (fields.length < 6)
+					continue;
+				if (fields[0].equals(DONE)) {
+					done.add(fields[1]);
+					started.remove(fields[1]);
+				} else if (fields[0].equals(STARTED) && !done.contains(fields[1])) {
+					started.add(fields[1]);
+				}
+			}
+		}
+		return started.size();
+
+	}
+
+	/**
+	 * Cuts off a line left half-written by a crash, so the next line starts
+	 * on a line of its own.
+	 */
+	private void truncatePartialLine() throws IOException {
+		long size = channel.size();
+		long end = size;
+		ByteBuffer b = ByteBuffer.allocate(1);
+		while (end > 0) {
+			b.clear();
+			channel.read(b, end - 1);
+			if (b.get(0) == '\n')
+				break;
+			end--;
+		}
+		if (end < size) {
+			logger.warn("Dropping " + (size - end) + " bytes of a partial line at the end of " + file);
+			channel.truncate(end);
+		}
+	}
+
+	/**
+	 * Whether the journal says the document with this output key is done.
+	 */
+	public boolean isDone(String key) {
+		return done.contains(key);
+	}
+
+	/**
+	 * Claims a document for this run.
+	 *
+	 * @return false if it is already done, or was claimed earlier in this run
+	 */
+	public boolean claim(String key) throws IOException {
+		if (done.contains(key) || inFlight.putIfAbsent(key, System.nanoTime()) != null)
+			return false;
+		append(line(STARTED, key, "", "", 0), false);
+		return true;
+	}
+
+	/**
+	 * Records a document as done, once its output file is in place, and
+	 * waits for the line to be synced to disk.
+	 */
+	public void commit(String key, String id, String hash) throws IOException {
+		Long start = inFlight.remove(key);
+		long millis = start == null ? 0 : (System.nanoTime() - start) / 1000000;
+		append(line(DONE, key, id, hash, millis), true);
+		done.add(key);
+	}
+
+	private static String line(String status, String key, String id, String hash, long millis) {
+		return status + "\t" + clean(key) + "\t" + clean(id) + "\t" + clean(hash) + "\t" + millis + "\t"
+				+ System.currentTimeMillis() + "\n";
+	}
+
+	private static String clean(String s) {
+		return s == null ? "" : s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+	}
+
+	private void append(String line, boolean wait) throws IOException {
+		synchronized (lock) {
+			if (error != null)
+				throw error;
+			if (closing)
+				throw new IOException("Manifest " + file + " is closed");
+			pending.append(line);
+			long seq = ++queued;
+			lock.notifyAll();
+			if (!wait)
+				return;
+			while (committed < seq && error == null) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e);
+				}
+			}
+			if (error != null)
+				throw error;
+		}
+	}
+
+	private void commitLoop() {
+		while (true) {
+			String batch;
+			long seq;
+			synchronized (lock) {
+				while (pending.length() == 0 && !closing) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (pending.length() == 0)
+					return;
+				batch = pending.toString();
+				pending.setLength(0);
+				seq = queued;
+			}
+			try {
+				ByteBuffer b = ByteBuffer.wrap(batch.getBytes(StandardCharsets.UTF_8));
+				while (b.hasRemaining())
+					channel.write(b);
+				channel.force(false);
+			} catch (IOException e) {
+				logger.error("Can't write to manifest " + file, e);
+				synchronized (lock) {
+					error = e;
+					lock.notifyAll();
+				}
+				return;
+			}
+			synchronized (lock) {
+				committed = seq;
+				nCommits++;
+				lock.notifyAll();
+			}
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getDoneCount() {
+		return done.size();
+	}
+
+	/**
+	 * Writes out anything queued and closes the journal once the last user
+	 * has closed it.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		synchronized (open) {
+			if (--references > 0)
+				return;
+			open.remove(file);
+		}
+
+		synchronized (lock) {
+			closing = true;
+			lock.notifyAll();
+		}
+		try {
+			committer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		logger.info("Manifest " + file + ": " + done.size() + " documents done, " + committed
+				+ " lines written in " + nCommits + " syncs");
+		raf.close();
+		if (error != null)
+			throw error;
+
+	}
+
+}
@@ -0,0 +1,225 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.uimafit.util.JCasUtil;
+
+import bioc.type.UimaBioCAnnotation;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
+
+/**
+ * The nesting of sections in a document, built once per CAS.
+ *
+ * Nodes are the 'sec' annotations that carry a 'sectionHeading' infon,
+ * along with the 'article-title' and 'abstract' annotations, which
+ * readHeadingString(Sentence) treats as headings of their own. Each node
+ * knows its parent, its section depth and its full heading path. Since
+ * sections are properly nested, the nodes in index order (begin
+ * ascending, end descending) form a preorder traversal of the tree.
+ * Finding the sections that cover a span is therefore a binary search
+ * on begin offsets followed by a walk up the parent links, instead of a
+ * selectCovering() call at every level.
+ *
+ * The tree is a snapshot. Build a new one if sections are added or
+ * removed from the CAS.
+ */
+public class SectionTree {
+
+	public static class Node {
+
+		private UimaBioCAnnotation annotation;
+		private Node parent;
+		private String heading;
+		private String headingPath;
+		private boolean section;
+		private int depth;
+
+		public UimaBioCAnnotation getAnnotation() {
+			return annotation;
+		}
+
+		public Node getParent() {
+			return parent;
+		}
+
+		public int getBegin() {
+			return annotation.getBegin();
+		}
+
+		public int getEnd() {
+			return annotation.getEnd();
+		}
+
+		/**
+		 * The 'sectionHeading' infon for sections, the 'value' infon
+		 * ('article-title' or 'abstract') otherwise.
+		 */
+		public String getHeading() {
+			return heading;
+		}
+
+		/**
+		 * Headings of all enclosing sections and this one, joined with '|'.
+		 */
+		public String getHeadingPath() {
+			return headingPath;
+		}
+
+		public boolean isSection() {
+			return section;
+		}
+
+		/**
+		 * Number of enclosing sections, so top-level sections are at depth 0.
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		private boolean covers(int begin, int end) {
+			return getBegin() <= begin && end <= getEnd();
+		}
+
+	}
+
+	private List<Node> nodes = new ArrayList<Node>();
+	private int[] begins;
+
+	public SectionTree(JCas jCas) {
+
+		List<Node> stack = new ArrayList<Node>();
+		for (UimaBioCAnnotation a : JCasUtil.select(jCas, UimaBioCAnnotation.class)) {
+
+			String sectionHeading = UimaBioCInfons.getInfon(a, "sectionHeading");
+			String value = UimaBioCInfons.getValue(a);
+			if (sectionHeading == null && !"article-title".equals(value) && !"abstract".equals(value))
+				continue;
+
+			Node n = new Node();
+			n.annotation = a;
+			n.section = (sectionHeading != null);
+			n.heading = n.section ? sectionHeading : value;
+
+			while (stack.size() > 0 && !stack.get(stack.size() - 1).covers(a.getBegin(), a.getEnd()))
+				stack.remove(stack.size() - 1);
+			if (stack.size() > 0) {
+				n.parent = stack.get(stack.size() - 1);
+				n.depth = n.parent.depth + (n.parent.section ? 1 : 0);
+				n.headingPath = n.parent.headingPath + "|" + n.heading;
+			} else {
+				n.depth = 0;
+				n.headingPath = n.heading;
+			}
+			stack.add(n);
+			nodes.add(n);
+
+		}
+
+		begins = new int[nodes.size()];
+		for (int i = 0; i < nodes.size(); i++)
+			begins[i] = nodes.get(i).getBegin();
+
+	}
+
+	public List<Node> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * The innermost node covering the span, or null.
+	 */
+	public Node readInnermost(int begin, int end) {
+
+		// last node in preorder that begins at or before 'begin'
+		int lo = 0, hi = begins.length - 1, idx = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (begins[mid] <= begin) {
+				idx = mid;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		if (idx < 0)
+			return null;
+
+		Node n = nodes.get(idx);
+		while (n != null && !n.covers(begin, end))
+			n = n.parent;
+		return n;
+
+	}
+
+	/**
+	 * All nodes covering the span, outermost first (i.e., in the same
+	 * order that JCasUtil.selectCovering would return them).
+	 */
+	public List<Node> readCovering(int begin, int end) {
+		List<Node> chain = new ArrayList<Node>();
+		for (Node n = readInnermost(begin, end); n != null; n = n.parent)
+			chain.add(0, n);
+		return chain;
+	}
+
+	/**
+	 * The outermost section starting at the same offset as the annotation.
+	 */
+	public UimaBioCAnnotation readSectionHeading(Annotation a) {
+		for (Node n : readCovering(a.getBegin(), a.getEnd())) {
+			if (n.section && n.getBegin() == a.getBegin())
+				return n.annotation;
+		}
+		return null;
+	}
+
+	/**
+	 * 1 if a section (other than a itself) encloses a, 0 otherwise. The
+	 * 'header-N' codes in the spreadsheets are built from this, and it
+	 * has never counted deeper than one level: the old recursive lookup 
+	 * jumped to the outermost enclosing section and stopped there. Use 
+	 * readInnermost(...).getDepth() for the true nesting depth.
+	 */
+	public int readHeadingLevel(Annotation a) {
+		for (Node n : readCovering(a.getBegin(), a.getEnd())) {
+			if (n.section && !n.annotation.equals(a))
+				return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Appends the heading of the outermost section enclosing the
+	 * annotation to 'heading', separated by '|'.
+	 */
+	public String readHeadingString(UimaBioCAnnotation a, String heading) {
+		for (Node n : readCovering(a.getBegin(), a.getEnd())) {
+			if (!n.section || n.annotation.equals(a))
+				continue;
+			if (!heading.equals(""))
+				heading += "|";
+			return heading + n.heading;
+		}
+		return heading;
+	}
+
+	/**
+	 * As readHeadingString(UimaBioCAnnotation, String), but sentences in
+	 * the title or abstract return 'article-title' or 'abstract'.
+	 */
+	public String readHeadingString(Annotation s, String heading) {
+		List<Node> chain = readCovering(s.getBegin(), s.getEnd());
+		if (chain.size() == 0)
+			return heading;
+		Node n = chain.get(0);
+		if (!n.section)
+			return n.heading;
+		if (!heading.equals(""))
+			heading += "|";
+		return heading + n.heading;
+	}
+
+}
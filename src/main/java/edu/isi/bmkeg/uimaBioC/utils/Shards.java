@@ -0,0 +1,39 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+/**
+ * Splits a corpus into shards by a stable hash of each document's key
+ * (its path relative to the input directory, or its ID). The hash only
+ * depends on the key, so independent processes given the same shard
+ * count agree on which shard every document belongs to without talking
+ * to each other.
+ */
+public class Shards {
+
+	/**
+	 * The shard (0..shardCount-1) that the key belongs to.
+	 */
+	public static int readShard(String key, int shardCount) {
+		// String.hashCode() is fixed by the language spec; the mixing step
+		// (the murmur3 finalizer) spreads similar keys across shards.
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return Math.floorMod(h, shardCount);
+	}
+
+	public static boolean isInShard(String key, int shardIndex, int shardCount) {
+		return shardCount <= 1 || readShard(key, shardCount) == shardIndex;
+	}
+
+	/**
+	 * Throws if the shard parameters don't make sense.
+	 */
+	public static void check(int shardIndex, int shardCount) {
+		if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount)
+			throw new IllegalArgumentException("Shard " + shardIndex + " of " + shardCount + " is not valid");
+	}
+
+}
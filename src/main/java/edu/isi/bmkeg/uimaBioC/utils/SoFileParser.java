@@ -0,0 +1,330 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Parser for the .so stand-off files written by nxml2txt. Each line looks
+ * like
+ *
+ *    T12	xref 1043 1045	12	ref-type="bibr" rid="B7"
+ *
+ * i.e. id, 'tag begin end', the covered text and (optionally) the tag's
+ * attributes, separated by tabs.
+ *
+ * The file is read into a byte buffer and scanned in place: offsets are
+ * parsed straight from the bytes and the tag name is looked up in a small
+ * hash table without building a String. Lines are written to a Records
+ * buffer that is reused from one file to the next, and the text and
+ * attribute fields are only decoded if someone asks for them. Lines with
+ * tags that the readers don't use are dropped.
+ */
+public class SoFileParser {
+
+	public enum Tag {
+		FRONT("front"), ABSTRACT("abstract"), BODY("body"), REF_LIST("ref-list"),
+		P("p"), TITLE("title"), LABEL("label"), CAPTION("caption"),
+		ARTICLE_TITLE("article-title"),
+		FIG("fig"), SUPPLEMENTARY_MATERIAL("supplementary-material"), TABLE_WRAP("table-wrap"),
+		SEC("sec"),
+		BOLD("bold"), ITALIC("italic"), SUB("sub"), SUP("sup"),
+		ARTICLE_ID("article-id"), XREF("xref");
+
+		private final String name;
+		private final byte[] bytes;
+
+		private Tag(String name) {
+			this.name = name;
+			this.bytes = name.getBytes(StandardCharsets.US_ASCII);
+		}
+
+		/**
+		 * The tag as it appears in the .so file.
+		 */
+		public String getName() {
+			return name;
+		}
+	}
+
+	private static final int TABLE_SIZE = 64;
+	private static final Tag[] TABLE = new Tag[TABLE_SIZE];
+	static {
+		for (Tag t : Tag.values()) {
+			int slot = hash(t.bytes, 0, t.bytes.length);
+			while (TABLE[slot] != null)
+				slot = (slot + 1) & (TABLE_SIZE - 1);
+			TABLE[slot] = t;
+		}
+	}
+
+	/**
+	 * Stand-off lines, whether parsed from a .so file (Records) or made
+	 * straight from an .nxml file (Nxml2Txt.Result). getTag() is null for
+	 * lines whose tag the readers don't use.
+	 */
+	public interface Standoffs {
+
+		int size();
+
+		Tag getTag(int i);
+
+		int getBegin(int i);
+
+		int getEnd(int i);
+
+		String getStr(int i);
+
+		String getCodes(int i);
+
+		boolean hasCodes(int i);
+
+	}
+
+	/**
+	 * The parsed lines of one .so file, stored as parallel int arrays over
+	 * the raw bytes of the file.
+	 */
+	public static class Records implements Standoffs {
+
+		private byte[] data = new byte[1 << 16];
+		private int length;
+
+		private int size;
+		private Tag[] tags = new Tag[256];
+		private int[] begins = new int[256];
+		private int[] ends = new int[256];
+		private int[] strStarts = new int[256];
+		private int[] strEnds = new int[256];
+		private int[] codesStarts = new int[256];
+		private int[] codesEnds = new int[256];
+
+		public int size() {
+			return size;
+		}
+
+		public Tag getTag(int i) {
+			return tags[i];
+		}
+
+		public int getBegin(int i) {
+			return begins[i];
+		}
+
+		public int getEnd(int i) {
+			return ends[i];
+		}
+
+		/**
+		 * The third field of the line (the text covered by the tag).
+		 */
+		public String getStr(int i) {
+			return new String(data, strStarts[i], strEnds[i] - strStarts[i], StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * The fourth field of the line (the tag's attributes), or "".
+		 */
+		public String getCodes(int i) {
+			return new String(data, codesStarts[i], codesEnds[i] - codesStarts[i], StandardCharsets.UTF_8);
+		}
+
+		public boolean hasCodes(int i) {
+			return codesEnds[i] > codesStarts[i];
+		}
+
+		private void clear() {
+			size = 0;
+			length = 0;
+		}
+
+		private void add(Tag tag, int begin, int end, int strStart, int strEnd, int codesStart, int codesEnd) {
+			if (size == tags.length) {
+				int n = size * 2;
+				tags = Arrays.copyOf(tags, n);
+				begins = Arrays.copyOf(begins, n);
+				ends = Arrays.copyOf(ends, n);
+				strStarts = Arrays.copyOf(strStarts, n);
+				strEnds = Arrays.copyOf(strEnds, n);
+				codesStarts = Arrays.copyOf(codesStarts, n);
+				codesEnds = Arrays.copyOf(codesEnds, n);
+			}
+			tags[size] = tag;
+			begins[size] = begin;
+			ends[size] = end;
+			strStarts[size] = strStart;
+			strEnds[size] = strEnd;
+			codesStarts[size] = codesStart;
+			codesEnds[size] = codesEnd;
+			size++;
+		}
+
+	}
+
+	/**
+	 * Reads and parses the file into 'out', replacing whatever was there.
+	 */
+	public static void parse(Path soFile, Records out) throws IOException {
+
+		try (InputStream in = Files.newInputStream(soFile)) {
+			parse(in, out);
+		}
+
+	}
+
+	/**
+	 * Reads the stream to the end and parses it into 'out', replacing
+	 * whatever was there. The stream is not closed.
+	 */
+	public static void parse(InputStream in, Records out) throws IOException {
+
+		out.clear();
+		int n;
+		while ((n = in.read(out.data, out.length, out.data.length - out.length)) != -1) {
+			out.length += n;
+			if (out.length == out.data.length)
+				out.data = Arrays.copyOf(out.data, out.data.length * 2);
+		}
+
+		parse(out);
+
+	}
+
+	/**
+	 * Parses the bytes already in out.data[0..out.length).
+	 */
+	private static void parse(Records out) throws IOException {
+
+		byte[] b = out.data;
+		int limit = out.length;
+		int[] tabs = new int[4];
+		int lineNumber = 0;
+
+		int pos = 0;
+		while (pos < limit) {
+
+			lineNumber++;
+			int lineStart = pos;
+			int lineEnd = pos;
+			int nTabs = 0;
+			int nFields = 1;
+			while (lineEnd < limit && b[lineEnd] != '\n') {
+				if (b[lineEnd] == '\t') {
+					if (nTabs < tabs.length)
+						tabs[nTabs] = lineEnd;
+					nTabs++;
+				} else if (b[lineEnd] != '\r') {
+					nFields = nTabs + 1;
+				}
+				lineEnd++;
+			}
+			pos = lineEnd + 1;
+			if (lineEnd > lineStart && b[lineEnd - 1] == '\r')
+				lineEnd--;
+
+			// Same rules as line.split("\t"): trailing empty fields don't
+			// count, and lines with fewer than three fields are skipped.
+			if (nFields < 3)
+				continue;
+
+			// 'tag begin end'
+			int f = tabs[0] + 1;
+			int fEnd = tabs[1];
+			int sp1 = indexOf(b, ' ', f, fEnd);
+			Tag tag = lookup(b, f, sp1 < 0 ? fEnd : sp1);
+			if (tag == null)
+				continue;
+			int sp2 = sp1 < 0 ? -1 : indexOf(b, ' ', sp1 + 1, fEnd);
+			if (sp2 < 0)
+				throw new IOException("Can't read offsets on line " + lineNumber);
+			int sp3 = indexOf(b, ' ', sp2 + 1, fEnd);
+			int begin = parseInt(b, sp1 + 1, sp2, lineNumber);
+			int end = parseInt(b, sp2 + 1, sp3 < 0 ? fEnd : sp3, lineNumber);
+
+			int strStart = tabs[1] + 1;
+			int strEnd = fieldEnd(tabs, 2, nTabs, lineEnd);
+			int codesStart = strEnd;
+			int codesEnd = strEnd;
+			if (nFields > 3) {
+				codesStart = tabs[2] + 1;
+				codesEnd = fieldEnd(tabs, 3, nTabs, lineEnd);
+			}
+
+			out.add(tag, begin, end, strStart, strEnd, codesStart, codesEnd);
+
+		}
+
+	}
+
+	/**
+	 * End of field i (0-based), given the positions of the first tabs.
+	 */
+	private static int fieldEnd(int[] tabs, int i, int nTabs, int lineEnd) {
+		return i < nTabs ? tabs[i] : lineEnd;
+	}
+
+	private static int indexOf(byte[] b, char c, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (b[i] == c)
+				return i;
+		}
+		return -1;
+	}
+
+	private static int parseInt(byte[] b, int from, int to, int lineNumber) throws IOException {
+		if (from >= to)
+			throw new IOException("Empty offset on line " + lineNumber);
+		boolean negative = false;
+		if (b[from] == '-') {
+			negative = true;
+			from++;
+		}
+		int v = 0;
+		for (int i = from; i < to; i++) {
+			int d = b[i] - '0';
+			if (d < 0 || d > 9)
+				throw new IOException("Bad offset on line " + lineNumber);
+			v = v * 10 + d;
+		}
+		return negative ? -v : v;
+	}
+
+	private static int hash(byte[] b, int from, int to) {
+		int h = 0;
+		for (int i = from; i < to; i++)
+			h = 31 * h + b[i];
+		return (h ^ (h >>> 7)) & (TABLE_SIZE - 1);
+	}
+
+	/**
+	 * The tag with this name, or null if the readers don't use it.
+	 */
+	public static Tag readTag(String name) {
+		byte[] b = name.getBytes(StandardCharsets.UTF_8);
+		return lookup(b, 0, b.length);
+	}
+
+	/**
+	 * The tag spelled by b[from..to), or null if the readers don't use it.
+	 */
+	static Tag lookup(byte[] b, int from, int to) {
+		int len = to - from;
+		int slot = hash(b, from, to);
+		Tag t;
+		while ((t = TABLE[slot]) != null) {
+			if (t.bytes.length == len) {
+				int i = 0;
+				while (i < len && t.bytes[i] == b[from + i])
+					i++;
+				if (i == len)
+					return t;
+			}
+			slot = (slot + 1) & (TABLE_SIZE - 1);
+		}
+		return null;
+	}
+
+}
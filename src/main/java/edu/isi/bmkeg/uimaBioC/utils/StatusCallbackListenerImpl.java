@@ -1,65 +1,199 @@
 package edu.isi.bmkeg.uimaBioC.utils;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+import org.apache.log4j.Logger;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.collection.EntityProcessStatus;
 import org.apache.uima.collection.StatusCallbackListener;
+import org.apache.uima.jcas.JCas;
+import org.uimafit.util.JCasUtil;
 
+import bioc.type.UimaBioCDocument;
+import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+
+/**
+ * Counts the documents a CPE finishes, keeps the exceptions it reports
+ * along with the ID of the document they came from, and lets the caller
+ * wait for the end of the run with waitForCompletion() instead of polling
+ * cpe.isProcessing().
+ */
 public class StatusCallbackListenerImpl
 		implements StatusCallbackListener
 	{
 
+		private static Logger logger = Logger.getLogger(StatusCallbackListenerImpl.class);
+
+		/**
+		 * An exception thrown while processing one document.
+		 */
+		public static class Failure {
+
+			private final String documentId;
+			private final Exception exception;
+
+			private Failure(String documentId, Exception exception) {
+				this.documentId = documentId;
+				this.exception = exception;
+			}
+
+			public String getDocumentId() {
+				return documentId;
+			}
+
+			public Exception getException() {
+				return exception;
+			}
+
+		}
+
 		private final List<Exception> exceptions = new ArrayList<Exception>();
+		private final List<Failure> failures = new ArrayList<Failure>();
 		private boolean isProcessing = true;
-	
+		private boolean aborted = false;
+		private int nCompleted = 0;
+		private long startTime = System.currentTimeMillis();
+		private long endTime = -1;
+
 		public void entityProcessComplete(CAS arg0, EntityProcessStatus arg1)
 		{
 			if (arg1.isException()) {
-				for (Exception e : arg1.getExceptions()) {
-					exceptions.add(e);
+				if (CostSchedule.hasEstimates())
+					CostSchedule.logActual(readDocumentKey(arg0));
+				String id = readDocumentId(arg0);
+				synchronized (this) {
+					for (Exception e : arg1.getExceptions()) {
+						exceptions.add(e);
+						failures.add(new Failure(id, e));
+					}
+				}
+				logger.error("Failed to process " + id + " in " + arg1.getFailedComponentNames(),
+						arg1.getExceptions().isEmpty() ? null : arg1.getExceptions().get(0));
+			} else {
+				synchronized (this) {
+					nCompleted++;
 				}
 			}
 		}
-	
+
+		/**
+		 * The document's ID, or its relative-source-path if it has none yet.
+		 */
+		private static String readDocumentId(CAS cas) {
+			if (cas == null)
+				return "(unknown)";
+			try {
+				JCas jCas = cas.getJCas();
+				Collection<UimaBioCDocument> docs = JCasUtil.select(jCas, UimaBioCDocument.class);
+				if (docs.isEmpty())
+					return "(no UimaBioCDocument)";
+				UimaBioCDocument uiD = docs.iterator().next();
+				if (uiD.getId() != null && !uiD.getId().equals("skip"))
+					return uiD.getId();
+				String path = UimaBioCUtils.readInfons(uiD.getInfons(), "relative-source-path");
+				return path != null ? path : String.valueOf(uiD.getId());
+			} catch (Exception e) {
+				return "(unknown)";
+			}
+		}
+
+		/**
+		 * The key a failed document's cost estimate is recorded under (the
+		 * last CostProbe logs the others), see CostSchedule.
+		 */
+		private static String readDocumentKey(CAS cas) {
+			if (cas == null)
+				return null;
+			try {
+				return CostSchedule.readDocumentKey(cas.getJCas());
+			} catch (Exception e) {
+				return null;
+			}
+		}
+
 		public void aborted()
 		{
 			synchronized (this) {
+				aborted = true;
 				if (isProcessing) {
 					isProcessing = false;
-					notify();
+					endTime = System.currentTimeMillis();
+					notifyAll();
 				}
 			}
 		}
-	
+
 		public void batchProcessComplete()
 		{
 			// Do nothing
 		}
-	
+
 		public void collectionProcessComplete()
 		{
 			synchronized (this) {
 				if (isProcessing) {
 					isProcessing = false;
-					notify();
+					endTime = System.currentTimeMillis();
+					notifyAll();
 				}
 			}
 		}
-	
+
 		public void initializationComplete()
 		{
-			// Do nothing
+			synchronized (this) {
+				startTime = System.currentTimeMillis();
+			}
 		}
-	
+
 		public void paused()
 		{
 			// Do nothing
 		}
-	
+
 		public void resumed()
 		{
 			// Do nothing
 		}
-	}
\ No newline at end of file
+
+		/**
+		 * Blocks until the CPE has finished or aborted.
+		 */
+		public synchronized void waitForCompletion() throws InterruptedException
+		{
+			while (isProcessing)
+				wait();
+		}
+
+		public synchronized boolean isAborted()
+		{
+			return aborted;
+		}
+
+		public synchronized int getCompletedCount()
+		{
+			return nCompleted;
+		}
+
+		public synchronized List<Exception> getExceptions()
+		{
+			return new ArrayList<Exception>(exceptions);
+		}
+
+		public synchronized List<Failure> getFailures()
+		{
+			return new ArrayList<Failure>(failures);
+		}
+
+		/**
+		 * Milliseconds from the end of initialization to the end of the run
+		 * (or to now, if it is still running).
+		 */
+		public synchronized long getElapsedMillis()
+		{
+			return (endTime < 0 ? System.currentTimeMillis() : endTime) - startTime;
+		}
+
+	}
@@ -3,7 +3,6 @@ package edu.isi.bmkeg.uimaBioC.utils;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -17,7 +16,7 @@ import org.uimafit.util.JCasUtil;
 
 import bioc.BioCCollection;
 import bioc.type.UimaBioCAnnotation;
-import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.UimaBioCInfons;
 
 public class SubFigureNumberExtractor {
 
@@ -204,10 +203,10 @@ public class SubFigureNumberExtractor {
 	public Set<String> extractExptsFromClause(JCas jCas, Annotation clause) {
 		Set<String> expts = new HashSet<String>();
 		for (UimaBioCAnnotation a : JCasUtil.selectCovered(UimaBioCAnnotation.class, clause)) {
-			Map<String, String> infons = UimaBioCUtils.convertInfons(a.getInfons());
-			if( infons.containsKey("refType") ) {
-				if( infons.get("refType").equals("fig") || 
-						infons.get("refType").equals("supplementary-material")) {
+			String refType = UimaBioCInfons.getInfon(a, "refType");
+			if( refType != null ) {
+				if( refType.equals("fig") || 
+						refType.equals("supplementary-material")) {
 					String exptCodes = readExptCodes(jCas, a);
 					if( exptCodes.length() > 0 ) { 
 						Set<String> cleanedUpCodes = cleanUpFigureReference(exptCodes);
@@ -0,0 +1,268 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.cleartk.token.type.Sentence;
+import org.cleartk.token.type.Token;
+import org.uimafit.util.JCasUtil;
+
+/**
+ * The tokens and sentences of a document as sorted offset arrays.
+ *
+ * Built once per CAS after the TokenAnnotator has run, this replaces
+ * calling JCasUtil.selectCovered(Token.class, s) for every sentence and
+ * building a HashMap<Integer, Token> to map positions in the joined
+ * sentence string back to tokens. Lookups are binary searches over int
+ * arrays.
+ *
+ * Like SectionTree, the table is a snapshot of the CAS at the time it
+ * was built.
+ */
+public class TokenTable {
+
+	private String text;
+
+	private Token[] tokens;
+	private int[] begins;
+	private int[] ends;
+
+	private Sentence[] sentences;
+	private int[] sentenceFirst;
+	private int[] sentenceLast;
+
+	public TokenTable(JCas jCas) {
+
+		this.text = jCas.getDocumentText();
+
+		Collection<Token> tokenList = JCasUtil.select(jCas, Token.class);
+		int n = tokenList.size();
+		this.tokens = new Token[n];
+		this.begins = new int[n];
+		this.ends = new int[n];
+		int i = 0;
+		for (Token t : tokenList) {
+			tokens[i] = t;
+			begins[i] = t.getBegin();
+			ends[i] = t.getEnd();
+			i++;
+		}
+
+		Collection<Sentence> sentenceList = JCasUtil.select(jCas, Sentence.class);
+		int m = sentenceList.size();
+		this.sentences = new Sentence[m];
+		this.sentenceFirst = new int[m];
+		this.sentenceLast = new int[m];
+		int j = 0;
+		for (Sentence s : sentenceList) {
+			sentences[j] = s;
+			sentenceFirst[j] = readFirstCovered(s.getBegin());
+			sentenceLast[j] = readLastCovered(s.getEnd());
+			j++;
+		}
+
+	}
+
+	public int size() {
+		return tokens.length;
+	}
+
+	public Token getToken(int i) {
+		return tokens[i];
+	}
+
+	public int getBegin(int i) {
+		return begins[i];
+	}
+
+	public int getEnd(int i) {
+		return ends[i];
+	}
+
+	public String getText(int i) {
+		return text.substring(begins[i], ends[i]);
+	}
+
+	public int getSentenceCount() {
+		return sentences.length;
+	}
+
+	public Sentence getSentence(int j) {
+		return sentences[j];
+	}
+
+	/**
+	 * Index of the first token of sentence j.
+	 */
+	public int getSentenceFirst(int j) {
+		return sentenceFirst[j];
+	}
+
+	/**
+	 * One past the index of the last token of sentence j.
+	 */
+	public int getSentenceLast(int j) {
+		return sentenceLast[j];
+	}
+
+	/**
+	 * Index of the token that contains the character offset, or -1.
+	 */
+	public int readTokenAt(int offset) {
+		int lo = 0, hi = begins.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (begins[mid] <= offset)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		int i = lo - 1;
+		if (i >= 0 && offset < ends[i])
+			return i;
+		return -1;
+	}
+
+	/**
+	 * Index of the first token that begins at or after the offset.
+	 */
+	public int readFirstCovered(int begin) {
+		int lo = 0, hi = begins.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (begins[mid] < begin)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * One past the index of the last token that begins before the offset.
+	 * Tokens don't overlap, so for a sentence or clause this is also one
+	 * past the last token it covers.
+	 */
+	public int readLastCovered(int end) {
+		int lo = 0, hi = begins.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (begins[mid] < end)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		while (lo > 0 && ends[lo - 1] > end)
+			lo--;
+		return lo;
+	}
+
+	/**
+	 * Tokens covered by the annotation as an index range {first, last},
+	 * where last is exclusive.
+	 */
+	public int[] readCovered(Annotation a) {
+		int first = readFirstCovered(a.getBegin());
+		int last = readLastCovered(a.getEnd());
+		if (last < first)
+			last = first;
+		return new int[] { first, last };
+	}
+
+	public List<Token> readCoveredTokens(Annotation a) {
+		int[] r = readCovered(a);
+		List<Token> list = new ArrayList<Token>(r[1] - r[0]);
+		for (int i = r[0]; i < r[1]; i++)
+			list.add(tokens[i]);
+		return list;
+	}
+
+	/**
+	 * The covered tokens joined by single spaces.
+	 */
+	public String readTokenizedText(Annotation a) {
+		return join(a, " ").getText();
+	}
+
+	/**
+	 * Joins the text of the tokens covered by the annotation with the
+	 * separator, remembering where each token landed in the result.
+	 */
+	public JoinedTokens join(Annotation a, String separator) {
+		int[] r = readCovered(a);
+		List<String> pieces = new ArrayList<String>(r[1] - r[0]);
+		for (int i = r[0]; i < r[1]; i++)
+			pieces.add(getText(i));
+		return new JoinedTokens(r[0], pieces, separator);
+	}
+
+	/**
+	 * As join(Annotation, String), but with the caller's own strings
+	 * standing in for tokens first, first + 1, ... (e.g. after escaping).
+	 */
+	public JoinedTokens join(int first, List<String> pieces, String separator) {
+		return new JoinedTokens(first, pieces, separator);
+	}
+
+	/**
+	 * A run of tokens joined into one string (e.g. the input for a
+	 * parser), with the start and end of each token in that string so
+	 * that positions in the string can be mapped back to tokens.
+	 */
+	public class JoinedTokens {
+
+		private int first;
+		private String joined;
+		private int[] starts;
+		private int[] stops;
+
+		private JoinedTokens(int first, List<String> pieces, String separator) {
+			this.first = first;
+			this.starts = new int[pieces.size()];
+			this.stops = new int[pieces.size()];
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < pieces.size(); i++) {
+				if (i > 0)
+					sb.append(separator);
+				starts[i] = sb.length();
+				sb.append(pieces.get(i));
+				stops[i] = sb.length();
+			}
+			this.joined = sb.toString();
+		}
+
+		public String getText() {
+			return joined;
+		}
+
+		public int size() {
+			return starts.length;
+		}
+
+		/**
+		 * The token that starts at this position in the joined string, or null.
+		 */
+		public Token readTokenStartingAt(int pos) {
+			int i = Arrays.binarySearch(starts, pos);
+			return i >= 0 ? tokens[first + i] : null;
+		}
+
+		/**
+		 * The token that starts or ends at this position in the joined
+		 * string, or null.
+		 */
+		public Token readTokenAt(int pos) {
+			int i = Arrays.binarySearch(starts, pos);
+			if (i >= 0)
+				return tokens[first + i];
+			i = Arrays.binarySearch(stops, pos);
+			return i >= 0 ? tokens[first + i] : null;
+		}
+
+	}
+
+}
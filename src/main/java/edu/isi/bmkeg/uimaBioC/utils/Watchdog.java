@@ -0,0 +1,92 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interrupts a thread that is still inside a piece of work when its time
+ * budget runs out. The work itself has to notice: the Stanford parser
+ * checks Thread.interrupted() in its chart loops and throws a
+ * RuntimeInterruptedException, which leaves the thread free to carry on.
+ *
+ * One daemon thread keeps the deadlines for every Watchdog in the JVM, so
+ * arming and disarming costs no more than scheduling a task.
+ *
+ * <pre>
+ * Watchdog.Alarm alarm = Watchdog.arm(budget);
+ * try {
+ *     ... work ...
+ * } finally {
+ *     if (alarm.disarm())
+ *         ... the work was interrupted ...
+ * }
+ * </pre>
+ */
+public class Watchdog {
+
+	private static ScheduledThreadPoolExecutor timer;
+
+	private static synchronized ScheduledThreadPoolExecutor timer() {
+		if (timer == null) {
+			timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "watchdog");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			timer.setRemoveOnCancelPolicy(true);
+		}
+		return timer;
+	}
+
+	public static class Alarm implements Runnable {
+
+		private Thread thread;
+		private boolean fired = false;
+		private ScheduledFuture<?> future;
+
+		private Alarm(Thread thread) {
+			this.thread = thread;
+		}
+
+		public synchronized void run() {
+			if (thread != null) {
+				fired = true;
+				thread.interrupt();
+			}
+		}
+
+		/**
+		 * Stops the alarm, and returns true if it went off. If it did, the
+		 * thread's interrupt flag is cleared before this returns, so an
+		 * alarm that went off just after the work finished does not leak
+		 * into whatever the thread does next.
+		 */
+		public boolean disarm() {
+			boolean f;
+			synchronized (this) {
+				thread = null;
+				f = fired;
+			}
+			future.cancel(false);
+			if (f)
+				Thread.interrupted();
+			return f;
+		}
+
+	}
+
+	/**
+	 * Interrupts the calling thread in 'millis' ms unless the returned alarm
+	 * is disarmed first.
+	 */
+	public static Alarm arm(long millis) {
+		Alarm a = new Alarm(Thread.currentThread());
+		a.future = timer().schedule(a, Math.max(millis, 0), TimeUnit.MILLISECONDS);
+		return a;
+	}
+
+}
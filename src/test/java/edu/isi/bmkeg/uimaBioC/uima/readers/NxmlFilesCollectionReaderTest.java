@@ -0,0 +1,62 @@
+package edu.isi.bmkeg.uimaBioC.uima.readers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.junit.Test;
+import org.uimafit.factory.CollectionReaderFactory;
+import org.uimafit.factory.JCasFactory;
+import org.uimafit.factory.TypeSystemDescriptionFactory;
+import org.uimafit.util.JCasUtil;
+
+import bioc.type.UimaBioCDocument;
+import edu.isi.bmkeg.uimaBioC.UimaBioCUtils;
+import edu.isi.bmkeg.uimaBioC.utils.Nxml2TxtTest;
+
+/**
+ * Reads the coprecipitation .nxml files and checks each document's text
+ * against python nxml2txt's .txt file for the article (text/<pmid>.txt).
+ */
+public class NxmlFilesCollectionReaderTest {
+
+	@Test
+	public void documentTextMatchesNxml2Txt() throws Exception {
+
+		File nxmlDir = new File(getClass().getResource("/01_plOpenAccess_data/coprecipitation").toURI());
+		File txtDir = new File(getClass().getResource("/text").toURI());
+
+		TypeSystemDescription typeSystem = TypeSystemDescriptionFactory
+				.createTypeSystemDescription("bioc.TypeSystem");
+		CollectionReader cr = CollectionReaderFactory.createCollectionReader(
+				NxmlFilesCollectionReader.class, typeSystem,
+				NxmlFilesCollectionReader.PARAM_INPUT_DIRECTORY, nxmlDir.getPath());
+
+		JCas jcas = JCasFactory.createJCas(typeSystem);
+		int n = 0;
+		while (cr.hasNext()) {
+			jcas.reset();
+			cr.getNext(jcas.getCas());
+
+			UimaBioCDocument doc = JCasUtil.selectSingle(jcas, UimaBioCDocument.class);
+			String pmid = doc.getId();
+			File txt = new File(txtDir, pmid + ".txt");
+			assertTrue(pmid, txt.exists());
+			String expected = new String(Files.readAllBytes(txt.toPath()), StandardCharsets.UTF_8);
+			Nxml2TxtTest.assertSameText(pmid, expected, jcas.getDocumentText());
+			assertEquals(pmid, pmid + ".txt",
+					UimaBioCUtils.readInfons(doc.getInfons(), "relative-source-path"));
+			n++;
+		}
+		cr.close();
+		assertEquals(32, n);
+
+	}
+
+}
@@ -0,0 +1,78 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AtomicFileTest {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	private static final byte[] DATA = "{\"id\":\"1\"}\n".getBytes(StandardCharsets.UTF_8);
+
+	@Test
+	public void commitRenamesIntoPlace() throws Exception {
+
+		File target = new File(tmp.getRoot(), "sub/dir/1.json");
+		String hash;
+		try (AtomicFile af = new AtomicFile(target)) {
+			OutputStream out = af.getOutputStream();
+			out.write(DATA);
+			// closing the stream doesn't end the file
+			out.close();
+			assertFalse(target.exists());
+			hash = af.commit();
+		}
+
+		assertArrayEquals(DATA, Files.readAllBytes(target.toPath()));
+		CRC32 crc = new CRC32();
+		crc.update(DATA);
+		assertEquals(Long.toHexString(crc.getValue()), hash);
+		assertEquals(1, target.getParentFile().list().length);
+
+	}
+
+	@Test
+	public void closeWithoutCommitLeavesNothing() throws Exception {
+
+		File target = new File(tmp.getRoot(), "1.json");
+		try (AtomicFile af = new AtomicFile(target)) {
+			af.getOutputStream().write(DATA);
+		}
+
+		assertFalse(target.exists());
+		assertEquals(0, tmp.getRoot().list().length);
+
+	}
+
+	@Test
+	public void commitReplacesAnOldFile() throws Exception {
+
+		File target = new File(tmp.getRoot(), "1.json");
+		Files.write(target.toPath(), "old and longer than the new file".getBytes(StandardCharsets.UTF_8));
+
+		// unsynced, as SaveAsBioCDocuments writes without a manifest
+		try (AtomicFile af = new AtomicFile(target, false)) {
+			af.getOutputStream().write(DATA);
+			af.commit();
+		}
+
+		assertTrue(target.exists());
+		assertArrayEquals(DATA, Files.readAllBytes(target.toPath()));
+		assertEquals(1, tmp.getRoot().list().length);
+
+	}
+
+}
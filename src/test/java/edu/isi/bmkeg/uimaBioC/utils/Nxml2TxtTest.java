@@ -0,0 +1,254 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Checks Nxml2Txt against the output of python nxml2txt for the 32
+ * coprecipitation articles. text/<pmid>.txt is nxml2txt's .txt file; there
+ * are no .so files from nxml2txt in the tree, so the standoffs are checked
+ * against the .nxml itself: one line per element in document order, spans
+ * that nest like the elements do and cover the element's text.
+ */
+public class Nxml2TxtTest {
+
+	private static final String NXML_DIR = "/01_plOpenAccess_data/coprecipitation/";
+	private static final String TXT_DIR = "/text/";
+
+	// These .nxml files have a literal '?' in their article-title where the
+	// original had a Greek letter, which nxml2txt wrote out as its name
+	// (NF-?B in the .nxml, NF-kappaB in the .txt).
+	private static final Set<String> LOSSY_TITLES = new HashSet<String>(Arrays.asList(
+			"14517278", "15767370", "16492808", "19112497", "19274086", "21629263", "9625770"));
+
+	/**
+	 * Checks that 'actual' is nxml2txt's text for the article, letting a
+	 * '?' on a line of one of the LOSSY_TITLES articles stand for a spelled
+	 * out Greek letter.
+	 */
+	public static void assertSameText(String pmid, String expected, String actual) {
+		if (expected.equals(actual) || !LOSSY_TITLES.contains(pmid)) {
+			assertEquals(pmid, expected, actual);
+			return;
+		}
+		String[] e = expected.split("\n", -1);
+		String[] a = actual.split("\n", -1);
+		assertEquals(pmid, e.length, a.length);
+		for (int i = 0; i < e.length; i++) {
+			if (e[i].equals(a[i]))
+				continue;
+			StringBuilder regex = new StringBuilder();
+			for (String part : a[i].split("\\?", -1)) {
+				if (regex.length() > 0)
+					regex.append("[a-z]+");
+				regex.append(Pattern.quote(part));
+			}
+			assertTrue(pmid + " line " + (i + 1), Pattern.matches(regex.toString(), e[i]));
+		}
+	}
+
+	// coprecipitationPmids.txt lists one article (12370254) with no .nxml
+	private static List<String> readPmids() throws IOException {
+		List<String> pmids = new ArrayList<String>();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(
+				resource(NXML_DIR + "coprecipitationPmids.txt"), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String pmid = line.trim();
+				if (pmid.length() > 0 && Nxml2TxtTest.class.getResource(NXML_DIR + pmid + ".nxml") != null)
+					pmids.add(pmid);
+			}
+		}
+		return pmids;
+	}
+
+	private static InputStream resource(String path) throws IOException {
+		InputStream in = Nxml2TxtTest.class.getResourceAsStream(path);
+		if (in == null)
+			throw new IOException("missing test resource " + path);
+		return in;
+	}
+
+	private static byte[] readResource(String path) throws IOException {
+		try (InputStream in = resource(path)) {
+			return IOUtils.toByteArray(in);
+		}
+	}
+
+	private static Nxml2Txt.Result convert(byte[] nxml) throws Exception {
+		return Nxml2Txt.convert(new ByteArrayInputStream(nxml));
+	}
+
+	@Test
+	public void textMatchesNxml2Txt() throws Exception {
+
+		List<String> pmids = readPmids();
+		assertEquals(32, pmids.size());
+		for (String pmid : pmids) {
+			Nxml2Txt.Result r = convert(readResource(NXML_DIR + pmid + ".nxml"));
+			String expected = new String(readResource(TXT_DIR + pmid + ".txt"), StandardCharsets.UTF_8);
+			assertSameText(pmid, expected, r.getText());
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+				r.writeText(out);
+			}
+			assertSameText(pmid, expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		}
+
+	}
+
+	/**
+	 * An element of the .nxml, with its depth and all the text inside it.
+	 */
+	private static class Element {
+		String tag;
+		int depth;
+		StringBuilder content = new StringBuilder();
+	}
+
+	private static List<Element> readElements(byte[] nxml) throws Exception {
+
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		XMLStreamReader xml = factory.createXMLStreamReader(new ByteArrayInputStream(nxml));
+
+		List<Element> elements = new ArrayList<Element>();
+		List<Element> open = new ArrayList<Element>();
+		while (xml.hasNext()) {
+			switch (xml.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				Element e = new Element();
+				e.tag = xml.getLocalName();
+				e.depth = open.size();
+				elements.add(e);
+				open.add(e);
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				open.remove(open.size() - 1);
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				for (Element o : open)
+					o.content.append(xml.getText());
+				break;
+			}
+		}
+		xml.close();
+		return elements;
+
+	}
+
+	private static String withoutWhitespace(CharSequence s) {
+		StringBuilder b = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (!Character.isWhitespace(c) && c != '\u00a0' && c != '\u2009' && c != '\u200a')
+				b.append(c);
+		}
+		return b.toString();
+	}
+
+	private static boolean isAscii(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) >= 128)
+				return false;
+		}
+		return true;
+	}
+
+	@Test
+	public void standoffsFollowTheNxml() throws Exception {
+
+		for (String pmid : readPmids()) {
+			byte[] nxml = readResource(NXML_DIR + pmid + ".nxml");
+			Nxml2Txt.Result r = convert(nxml);
+			String text = r.getText();
+			List<Nxml2Txt.Standoff> standoffs = r.getStandoffs();
+			List<Element> elements = readElements(nxml);
+
+			assertEquals(pmid, elements.size(), standoffs.size());
+			List<Nxml2Txt.Standoff> open = new ArrayList<Nxml2Txt.Standoff>();
+			for (int i = 0; i < elements.size(); i++) {
+				Element e = elements.get(i);
+				Nxml2Txt.Standoff so = standoffs.get(i);
+				String where = pmid + " T" + (i + 1) + " " + e.tag;
+
+				assertEquals(where, e.tag, so.getTag());
+				assertTrue(where, 0 <= so.getBegin() && so.getBegin() <= so.getEnd() && so.getEnd() <= text.length());
+
+				while (open.size() > e.depth)
+					open.remove(open.size() - 1);
+				if (!open.isEmpty()) {
+					Nxml2Txt.Standoff parent = open.get(open.size() - 1);
+					assertTrue(where, parent.getBegin() <= so.getBegin() && so.getEnd() <= parent.getEnd());
+				}
+				open.add(so);
+
+				// the span holds the element's text, give or take whitespace
+				String content = e.content.toString();
+				if (isAscii(content))
+					assertEquals(where, withoutWhitespace(content),
+							withoutWhitespace(text.substring(so.getBegin(), so.getEnd())));
+			}
+		}
+
+	}
+
+	@Test
+	public void standoffsReadBackFromSoFile() throws Exception {
+
+		SoFileParser.Records records = new SoFileParser.Records();
+		for (String pmid : readPmids()) {
+			Nxml2Txt.Result r = convert(readResource(NXML_DIR + pmid + ".nxml"));
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+				r.writeStandoffs(out);
+			}
+			SoFileParser.parse(new ByteArrayInputStream(bytes.toByteArray()), records);
+
+			int j = 0;
+			for (int i = 0; i < r.size(); i++) {
+				if (r.getTag(i) == null)
+					continue;
+				String where = pmid + " T" + (i + 1);
+				assertTrue(where, j < records.size());
+				assertEquals(where, r.getTag(i), records.getTag(j));
+				assertEquals(where, r.getBegin(i), records.getBegin(j));
+				assertEquals(where, r.getEnd(i), records.getEnd(j));
+				assertEquals(where, r.getStr(i), records.getStr(j));
+				assertEquals(where, r.getCodes(i), records.getCodes(j));
+				j++;
+			}
+			assertEquals(pmid, records.size(), j);
+		}
+
+	}
+
+}
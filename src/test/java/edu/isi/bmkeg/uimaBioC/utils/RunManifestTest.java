@@ -0,0 +1,163 @@
+package edu.isi.bmkeg.uimaBioC.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RunManifestTest {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	private static void write(File f, String s) throws Exception {
+		Files.write(f.toPath(), s.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static List<String> lines(File f) throws Exception {
+		return Files.readAllLines(f.toPath(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void commitIsReadBack() throws Exception {
+
+		File f = new File(tmp.getRoot(), "run.manifest");
+		RunManifest m = RunManifest.open(f);
+		assertTrue(m.claim("a/1.json"));
+		assertFalse(m.claim("a/1.json"));
+		m.commit("a/1.json", "1", "cafe");
+		assertTrue(m.isDone("a/1.json"));
+		assertFalse(m.claim("a/1.json"));
+
+		// commit() returns once the line is on disk
+		List<String> lines = lines(f);
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(0).startsWith(RunManifest.STARTED + "\ta/1.json\t"));
+		assertTrue(lines.get(1).startsWith(RunManifest.DONE + "\ta/1.json\t1\tcafe\t"));
+		m.close();
+
+		m = RunManifest.open(f);
+		assertTrue(m.isDone("a/1.json"));
+		assertEquals(1, m.getDoneCount());
+		m.close();
+
+	}
+
+	@Test
+	public void truncatedLastLineIsDropped() throws Exception {
+
+		File f = new File(tmp.getRoot(), "run.manifest");
+		write(f, "done\ta.json\ta\t1\t5\t100\n"
+				+ "started\tb.json\t\t\t0\t101\n"
+				+ "done\tb.json\tb\t2");
+
+		RunManifest m = RunManifest.open(f);
+		assertTrue(m.isDone("a.json"));
+		assertFalse(m.isDone("b.json"));
+		assertEquals(2, lines(f).size());
+
+		// the next line starts on a line of its own
+		assertTrue(m.claim("b.json"));
+		m.commit("b.json", "b", "2");
+		m.close();
+
+		List<String> lines = lines(f);
+		assertEquals(4, lines.size());
+		for (String line : lines)
+			assertEquals(line, 6, line.split("\t", -1).length);
+
+		m = RunManifest.open(f);
+		assertTrue(m.isDone("b.json"));
+		m.close();
+
+	}
+
+	@Test
+	public void startedButNotDoneIsDoneAgain() throws Exception {
+
+		File f = new File(tmp.getRoot(), "run.manifest");
+		write(f, "started\ta.json\t\t\t0\t100\n"
+				+ "started\tb.json\t\t\t0\t101\n"
+				+ "done\tb.json\tb\t2\t5\t102\n");
+
+		RunManifest m = RunManifest.open(f);
+		assertFalse(m.isDone("a.json"));
+		assertTrue(m.isDone("b.json"));
+		assertTrue(m.claim("a.json"));
+		assertFalse(m.claim("b.json"));
+		m.close();
+
+	}
+
+	@Test
+	public void openSharesOneInstancePerFile() throws Exception {
+
+		File f = new File(tmp.getRoot(), "run.manifest");
+		RunManifest reader = RunManifest.open(f);
+		RunManifest writer = RunManifest.open(new File(tmp.getRoot(), "./run.manifest"));
+		assertSame(reader, writer);
+
+		assertTrue(reader.claim("a.json"));
+		writer.commit("a.json", "a", "1");
+		reader.close();
+
+		// still open for the writer
+		assertTrue(writer.claim("b.json"));
+		writer.commit("b.json", "b", "2");
+		writer.close();
+
+		assertEquals(4, lines(f).size());
+
+	}
+
+	@Test
+	public void concurrentCommitsAllReachTheDisk() throws Exception {
+
+		File f = new File(tmp.getRoot(), "run.manifest");
+		final RunManifest m = RunManifest.open(f);
+		final int nThreads = 8;
+		final int nDocs = 50;
+
+		ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+		List<Future<?>> jobs = new ArrayList<Future<?>>();
+		for (int t = 0; t < nThreads; t++) {
+			final int thread = t;
+			jobs.add(pool.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					for (int i = 0; i < nDocs; i++) {
+						String key = thread + "/" + i + ".json";
+						assertTrue(m.claim(key));
+						m.commit(key, key, "0");
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<?> job : jobs)
+			job.get();
+		pool.shutdown();
+		assertEquals(nThreads * nDocs, m.getDoneCount());
+		m.close();
+
+		assertEquals(2 * nThreads * nDocs, lines(f).size());
+		RunManifest reopened = RunManifest.open(f);
+		assertEquals(nThreads * nDocs, reopened.getDoneCount());
+		reopened.close();
+
+	}
+
+}